@@ -0,0 +1,86 @@
+package com.gabrieljamesbenedict;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.LexicalAnalysis.TokenBuffer;
+import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
+import com.gabrieljamesbenedict.SyntaxAnalysis.SyntaxAnalyzer;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Lexes and parses many scripts at once on a ForkJoinPool. Every file gets its own lexer and parser,
+// so nothing is shared between tasks, and a failing file only fails its own result.
+public class BatchCompiler {
+
+    public record Result(File file, AbstractSyntaxTree ast, int tokens, String error) {
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    private final int parallelism;
+
+    // Filled in by the last compile() call
+    private long elapsedNanos = 0;
+    private long totalTokens = 0;
+
+    public BatchCompiler(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    // Results come back in the same order as the files, whatever order they finished in
+    public List<Result> compile(List<File> files) {
+        long start = System.nanoTime();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<Result> results = new ArrayList<>(files.size());
+        try {
+            List<ForkJoinTask<Result>> tasks = new ArrayList<>(files.size());
+            for (File file : files) {
+                tasks.add(pool.submit(() -> compile(file)));
+            }
+            for (ForkJoinTask<Result> task : tasks) {
+                results.add(task.join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        elapsedNanos = System.nanoTime() - start;
+        totalTokens = results.stream().mapToLong(Result::tokens).sum();
+        return results;
+    }
+
+    public static Result compile(File file) {
+        TokenBuffer tokens = null;
+        try {
+            tokens = LexicalAnalyzer.open(file.toPath());
+            AbstractSyntaxTree ast = new SyntaxAnalyzer(tokens).parse();
+            return new Result(file, ast, tokens.size(), null);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            return new Result(file, null, 0, "Error: Cannot find file \"" + file.getName() + "\"");
+        } catch (IOException e) {
+            return new Result(file, null, 0, "Error: Something went wrong while reading the file \"" + file.getName() + "\"");
+        } catch (CompileException e) {
+            return new Result(file, null, tokens.size(), e.getMessage());
+        } catch (RuntimeException e) {
+            return new Result(file, null, (tokens != null) ? tokens.size() : 0, "Internal compiler error: " + e);
+        }
+    }
+
+    public String summary(List<Result> results) {
+        long failed = results.stream().filter(Result::failed).count();
+        double seconds = elapsedNanos / 1e9;
+        return String.format("%d files, %d failed, %d tokens in %.1f ms (%.0f files/s, %.0f tokens/s, %d threads)",
+                results.size(), failed, totalTokens, elapsedNanos / 1e6,
+                results.size() / seconds, totalTokens / seconds, parallelism);
+    }
+}
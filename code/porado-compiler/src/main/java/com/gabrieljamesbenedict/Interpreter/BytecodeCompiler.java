@@ -0,0 +1,578 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.SyntaxAnalysis.Address;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Expression;
+import com.gabrieljamesbenedict.SyntaxAnalysis.NodeType;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.gabrieljamesbenedict.Interpreter.Opcode.*;
+
+/*
+    Compiles a resolved statement, and the bodies of the functions it declares, into Chunks for
+    BytecodeRunner. Control flow becomes jumps inside the chunk, so break and continue are a jump
+    to their loop's exit or test, and one that has no loop to leave fails where it stands, which is
+    where CodeRunner would have failed after passing the completion up.
+
+    Evaluation order, and every error and its message, are CodeRunner's.
+ */
+final class BytecodeCompiler {
+
+    // The op operand of UPDATE and UPDATE_ELEMENT
+    static final CodeRunner.NumericOp[] ARITHMETIC = {
+            CodeRunner.ADD, CodeRunner.SUBTRACT, CodeRunner.MULTIPLY, CodeRunner.DIVIDE, CodeRunner.MODULO
+    };
+
+    private record Loop(int next, int exit, Loop outer) {}
+
+    private final String name;
+
+    private int[] code = new int[64];
+    private int length = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    // Operands on the stack after the last instruction, and the most there have been
+    private int depth = 0;
+    private int maxDepth = 0;
+
+    // Per label: its code offset once placed, and the depth the jumps to it leave
+    private int[] labels = new int[16];
+    private int[] labelDepths = new int[16];
+    private int labelCount = 0;
+    private final List<int[]> fixups = new ArrayList<>();
+
+    // The innermost loop around the code being compiled, null outside any
+    private Loop loop = null;
+
+    private BytecodeCompiler(String name) {
+        this.name = name;
+    }
+
+    static Chunk compile(Statement statement, String name) {
+        BytecodeCompiler compiler = new BytecodeCompiler(name);
+        compiler.statement(statement);
+        compiler.op(END, 0);
+        return compiler.finish();
+    }
+
+    private Chunk finish() {
+        for (int[] fixup : fixups) code[fixup[0]] = labels[fixup[1]];
+        return new Chunk(name, Arrays.copyOf(code, length), constants.toArray(), maxDepth);
+    }
+
+    // ---------------------------------------------------------------------------
+    // EMITTING
+    // ---------------------------------------------------------------------------
+
+    // Writes an opcode and its operands and moves the depth by how many values it pushes less
+    // how many it pops
+    private void op(int opcode, int effect, int... operands) {
+        word(opcode);
+        for (int operand : operands) word(operand);
+        depth += effect;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    private void word(int value) {
+        if (length == code.length) code = Arrays.copyOf(code, length * 2);
+        code[length++] = value;
+    }
+
+    private int constant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndex.put(value, index);
+        }
+        return index;
+    }
+
+    private int label() {
+        if (labelCount == labels.length) {
+            labels = Arrays.copyOf(labels, labelCount * 2);
+            labelDepths = Arrays.copyOf(labelDepths, labelCount * 2);
+        }
+        labels[labelCount] = -1;
+        labelDepths[labelCount] = -1;
+        return labelCount++;
+    }
+
+    private void place(int label) {
+        labels[label] = length;
+        if (labelDepths[label] >= 0) depth = labelDepths[label];
+    }
+
+    // A jump target operand, after the rest of the instruction has been written
+    private void target(int label) {
+        fixups.add(new int[] { length, label });
+        word(-1);
+        labelDepths[label] = depth;
+    }
+
+    private void jump(int opcode, int effect, int label) {
+        op(opcode, effect);
+        target(label);
+    }
+
+    private void fail(String message) {
+        op(FAIL, 0, constant(message));
+    }
+
+    // Fails where an expression should leave its value
+    private void failValue(String message) {
+        fail(message);
+        depth++;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    // ---------------------------------------------------------------------------
+    // STATEMENTS
+    // ---------------------------------------------------------------------------
+
+    // A statement leaves the operand stack as it found it. After one that fails, or jumps away, the
+    // code that follows is only reached through a label, so the depth is put back either way.
+    private void statement(Statement node) {
+        int before = depth;
+        compileStatement(node);
+        depth = before;
+    }
+
+    private void compileStatement(Statement node) {
+        if (node == null) return;
+
+        switch (node) {
+
+            case Statement.Empty e:
+                return;
+
+            case Statement.Block block: {
+                if (block.slots() > 0) op(CLEAR, 0, block.first(), block.slots());
+                for (Statement child : block.statements()) statement(child);
+                return;
+            }
+
+            case Statement.VariableDeclaration decl: {
+                expression(decl.value());
+                declare(decl.address(), decl.name());
+                return;
+            }
+
+            case Statement.ArrayDeclaration decl: {
+                if (decl.elements() != null) {
+                    for (int i = 0; i < decl.elements().size(); i++) {
+                        lexeme(decl.elements().get(i), decl.elementAddresses().get(i), decl.elementValues().get(i));
+                    }
+                    op(NEW_ARRAY, 1 - decl.elements().size(), decl.elements().size());
+                } else if (decl.copyOf() != null) {
+                    op(COPY_ARRAY, 1, constant(decl.source()), constant(decl.copyOf()));
+                } else {
+                    op(NEW_ARRAY, 1, 0);
+                }
+                declare(decl.address(), decl.name());
+                return;
+            }
+
+            case Statement.FunctionDeclaration decl: {
+                int arity = (decl.parameters() != null) ? decl.parameters().size() : 0;
+                Chunk body = compile(decl.body(), decl.name());
+                op(DECLARE_FUNCTION, 0, decl.function(), constant(new Chunk.Function(decl.name(), arity, decl.slots(), body, decl)));
+                return;
+            }
+
+            case Statement.Print print: {
+                expression(print.value());
+                op(PRINT, -1);
+                return;
+            }
+
+            case Statement.Return ret: {
+                expression(ret.value());
+                op(RETURN, -1);
+                return;
+            }
+
+            case Statement.Break b: {
+                if (loop == null) fail("Break outside of a loop");
+                else jump(JUMP, 0, loop.exit());
+                return;
+            }
+
+            case Statement.Continue c: {
+                if (loop == null) fail("Continue outside of a loop");
+                else jump(JUMP, 0, loop.next());
+                return;
+            }
+
+            case Statement.Conditional cond: {
+                int end = label();
+                for (Statement.Branch branch : cond.branches()) {
+                    int next = label();
+                    branch(branch.condition(), false, next);
+                    statement(branch.body());
+                    jump(JUMP, 0, end);
+                    place(next);
+                }
+                statement(cond.otherwise());
+                place(end);
+                return;
+            }
+
+            // a break inside a case leaves the enclosing loop, not the switch, so the key is popped
+            // before a body runs
+            case Statement.Switch sw: {
+                if (sw.subject() == null) {
+                    fail("Switch has no expression");
+                    return;
+                }
+                int end = label();
+                expression(sw.subject());
+                for (Statement.Case c : sw.cases()) {
+                    if (c.value() == null) continue;
+                    int next = label();
+                    expression(c.value());
+                    jump(JUMP_NO_MATCH, -1, next);
+                    op(POP, -1);
+                    statement(c.body());
+                    jump(JUMP, 0, end);
+                    place(next);
+                }
+                op(POP, -1);
+                statement(sw.otherwise());
+                place(end);
+                return;
+            }
+
+            // The test sits after the body, so each turn of the loop takes one jump
+            case Statement.ConditionLoop loop: {
+                boolean until = (loop.kind() == NodeType.UNTIL || loop.kind() == NodeType.DO_UNTIL);
+                int body = label(), test = label(), exit = label();
+                if (loop.kind() == NodeType.WHILE || loop.kind() == NodeType.UNTIL) jump(JUMP, 0, test);
+                place(body);
+                loopBody(loop.body(), test, exit);
+                place(test);
+                branch(loop.condition(), !until, body);
+                place(exit);
+                return;
+            }
+
+            case Statement.Repeat loop: {
+                int next = label(), exit = label();
+                expression(loop.times());
+                op(REPEAT_INIT, 0);
+                place(next);
+                op(REPEAT_NEXT, 0);
+                target(exit);
+                loopBody(loop.body(), next, exit);
+                jump(JUMP, 0, next);
+                place(exit);
+                op(POP, -1);
+                return;
+            }
+
+            case Statement.For loop: {
+                int next = label(), exit = label();
+                op(FOR_INIT, 2, constant(loop.source()), constant(loop.array()));
+                place(next);
+                op(FOR_NEXT, 0, constant(loop.element()));
+                target(exit);
+                loopBody(loop.body(), next, exit);
+                jump(JUMP, 0, next);
+                place(exit);
+                op(POP, -1);
+                op(POP, -1);
+                return;
+            }
+
+            case Statement.ExpressionStatement stmt: {
+                if (stmt.expression() instanceof Expression.Assignment assignment) {
+                    assignment(assignment);
+                } else if (!CodeRunner.isExpressionNode(stmt.kind())) {
+                    fail("Unhandled statement node type: " + stmt.kind());
+                } else if (!step(stmt.expression())) {
+                    expression(stmt.expression());
+                    op(POP, -1);
+                }
+                return;
+            }
+        }
+    }
+
+    private void loopBody(Statement body, int next, int exit) {
+        loop = new Loop(next, exit, loop);
+        try {
+            statement(body);
+        } finally {
+            loop = loop.outer();
+        }
+    }
+
+    private void declare(Address address, String name) {
+        if (!address.isGlobal() && address.depth() == 0) op(DECLARE_LOCAL, -1, address.slot(), constant(name));
+        else op(DECLARE, -1, constant(address), constant(name));
+    }
+
+    // The resolver gave an address to every lexeme that does not read as a literal, and decoded the rest
+    private void lexeme(String lexeme, Address address, Object value) {
+        if (lexeme == null) op(CONST, 1, constant(null));
+        else if (address == null) op(CONST, 1, constant(value));
+        else op(LOAD_LEXEME, 1, constant(address), constant(lexeme));
+    }
+
+    // Jumps to label when the condition's truth is when, falling through otherwise. A comparison
+    // decides the jump itself instead of leaving a boolean to test.
+    private void branch(Expression condition, boolean when, int label) {
+        if (condition instanceof Expression.Binary binary) {
+            int opcode = switch (binary.kind()) {
+                case LESS -> when ? JUMP_LT : JUMP_GE;
+                case LESSEQUALS -> when ? JUMP_LE : JUMP_GT;
+                case GREATER -> when ? JUMP_GT : JUMP_LE;
+                case GREATEREQUALS -> when ? JUMP_GE : JUMP_LT;
+                case EQUALS -> when ? JUMP_EQ : JUMP_NE;
+                case NOTEQUALS -> when ? JUMP_NE : JUMP_EQ;
+                default -> -1;
+            };
+            if (opcode >= 0) {
+                expression(binary.left());
+                expression(binary.right());
+                jump(opcode, -2, label);
+                return;
+            }
+        }
+        expression(condition);
+        jump(when ? JUMP_TRUE : JUMP_FALSE, -1, label);
+    }
+
+    // ---------------------------------------------------------------------------
+    // ASSIGNMENT
+    // ---------------------------------------------------------------------------
+
+    private void assignment(Expression.Assignment node) {
+        Expression target = node.target();
+        int arithmetic = switch (node.kind()) {
+            case ADDITION_ASSIGNMENT -> 0;
+            case SUBTRACTION_ASSIGNMENT -> 1;
+            case MULTIPLICATION_ASSIGNMENT -> 2;
+            case DIVISION_ASSIGNMENT -> 3;
+            case MODULO_ASSIGNMENT -> 4;
+            default -> -1;
+        };
+
+        if (node.kind() == NodeType.ASSIGNMENT) {
+            // x = x + 1 and x = x - 1 on a local or global
+            if (target instanceof Expression.Variable variable && node.value() instanceof Expression.Binary binary
+                    && (binary.kind() == NodeType.ADDITION || binary.kind() == NodeType.SUBTRACTION)
+                    && binary.left() instanceof Expression.Variable read && read.address().equals(variable.address())
+                    && binary.right() instanceof Expression.Literal literal && literal.value() instanceof Long amount
+                    && stepVariable(variable, (binary.kind() == NodeType.ADDITION) ? amount : -amount, "Undefined variable: ")) {
+                return;
+            }
+            expression(node.value());
+            assign(target);
+            return;
+        }
+
+        if (arithmetic < 0) {
+            expression(node.value());
+            op(POP, -1);
+            fail("Unknown assignment type: " + node.kind());
+            return;
+        }
+
+        // x += 1 and x -= 1 on a local or global
+        if (arithmetic <= 1 && target instanceof Expression.Variable variable
+                && node.value() instanceof Expression.Literal literal && literal.value() instanceof Long amount
+                && stepVariable(variable, (arithmetic == 0) ? amount : -amount, "Unknown variable: ")) {
+            return;
+        }
+        expression(node.value());
+        if (update(target, arithmetic, true)) op(POP, -1);
+    }
+
+    private void assign(Expression target) {
+        if (target instanceof Expression.Variable variable) {
+            Address address = variable.address();
+            if (address.isGlobal()) op(STORE_GLOBAL, -1, address.slot());
+            else if (address.depth() == 0) op(STORE_LOCAL, -1, address.slot());
+            else op(STORE, -1, constant(address));
+        } else if (target instanceof Expression.ArrayAccess access) {
+            op(ARRAY_WRITE, 1, constant(access.address()), constant(access.name()));
+            if (access.index() == null) {
+                fail("Array assignment missing index: " + access.name());
+                return;
+            }
+            expression(access.index());
+            op(SET_ELEMENT, -3);
+        } else {
+            op(POP, -1);
+            fail("Unsupported assignment target: " + target.kind());
+        }
+    }
+
+    // With the operand on the stack, leaves the target's new or old value; false if the target
+    // cannot be updated, which fails instead
+    private boolean update(Expression target, int arithmetic, boolean returnNew) {
+        if (target instanceof Expression.Variable variable) {
+            op(UPDATE, 0, constant(variable.address()), constant(variable.name()), arithmetic, returnNew ? 1 : 0);
+            return true;
+        }
+        if (target instanceof Expression.ArrayAccess access) {
+            op(ARRAY_WRITE, 1, constant(access.address()), constant(access.name()));
+            expression(access.index());
+            op(UPDATE_ELEMENT, -2, arithmetic, returnNew ? 1 : 0);
+            return true;
+        }
+        op(POP, -1);
+        fail("Unsupported assignment target: " + target.kind());
+        return false;
+    }
+
+    // ++ or -- as a statement of its own, whose value nothing reads
+    private boolean step(Expression expression) {
+        if (!(expression instanceof Expression.Unary unary) || !(unary.operand() instanceof Expression.Variable variable)) return false;
+        return switch (unary.kind()) {
+            case PRE_INCREMENT, POST_INCREMENT -> stepVariable(variable, 1, "Unknown variable: ");
+            case PRE_DECREMENT, POST_DECREMENT -> stepVariable(variable, -1, "Unknown variable: ");
+            default -> false;
+        };
+    }
+
+    private boolean stepVariable(Expression.Variable variable, long delta, String undefined) {
+        Address address = variable.address();
+        if (!address.isGlobal() && address.depth() != 0) return false;
+        op(address.isGlobal() ? STEP_GLOBAL : STEP_LOCAL, 0, address.slot(), constant(delta), constant(undefined + variable.name()));
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------
+    // EXPRESSIONS
+    // ---------------------------------------------------------------------------
+
+    private void expression(Expression node) {
+        if (node == null) {
+            op(CONST, 1, constant(null));
+            return;
+        }
+
+        switch (node) {
+
+            // literals that failed to decode report why when they run
+            case Expression.Literal literal: {
+                if (literal.value() != null) op(CONST, 1, constant(literal.value()));
+                else op(DECODE, 1, constant(literal));
+                return;
+            }
+
+            case Expression.Variable variable: {
+                Address address = variable.address();
+                if (address.isGlobal()) op(LOAD_GLOBAL, 1, address.slot(), constant(variable.name()));
+                else if (address.depth() == 0) op(LOAD_LOCAL, 1, address.slot(), constant(variable.name()));
+                else op(LOAD, 1, constant(address), constant(variable.name()));
+                return;
+            }
+
+            case Expression.ArrayAccess access: {
+                op(ARRAY_READ, 1, constant(access.address()), constant(access.name()));
+                if (access.index() == null) {
+                    fail("Array index missing for " + access.name());
+                    return;
+                }
+                expression(access.index());
+                op(ELEMENT, -1);
+                return;
+            }
+
+            // the callee is looked up before the arguments run
+            case Expression.Call call: {
+                op(CHECK_FUNCTION, 0, call.function(), constant(call.name()));
+                for (Expression argument : call.arguments()) expression(argument);
+                op(CALL, 1 - call.arguments().size(), call.function(), call.arguments().size());
+                return;
+            }
+
+            case Expression.Binary binary: {
+                binary(binary);
+                return;
+            }
+
+            case Expression.Unary unary: {
+                unary(unary);
+                return;
+            }
+
+            case Expression.Assignment assignment:
+                failValue("Unhandled expression node: " + assignment.kind());
+        }
+    }
+
+    private void binary(Expression.Binary node) {
+        int opcode = switch (node.kind()) {
+            case ADDITION -> ADD;
+            case SUBTRACTION -> SUB;
+            case MULTIPLICATION -> MUL;
+            case DIVISION -> DIV;
+            case MODULO -> MOD;
+            case EQUALS -> EQ;
+            case NOTEQUALS -> NE;
+            case LESS -> LT;
+            case LESSEQUALS -> LE;
+            case GREATER -> GT;
+            case GREATEREQUALS -> GE;
+            case XOR, XNOR -> XOR;
+            default -> -1;
+        };
+        if (opcode >= 0) {
+            expression(node.left());
+            expression(node.right());
+            op(opcode, -1);
+            if (node.kind() == NodeType.XNOR) op(NOT, 0);
+            return;
+        }
+
+        switch (node.kind()) {
+            // the right side only runs when the left does not decide
+            case AND, NAND, OR, NOR -> {
+                boolean and = (node.kind() == NodeType.AND || node.kind() == NodeType.NAND);
+                int decided = label(), end = label();
+                expression(node.left());
+                jump(and ? JUMP_FALSE : JUMP_TRUE, -1, decided);
+                expression(node.right());
+                op(TRUTH, 0);
+                jump(JUMP, 0, end);
+                place(decided);
+                op(CONST, 1, constant(!and));
+                place(end);
+                if (node.kind() == NodeType.NAND || node.kind() == NodeType.NOR) op(NOT, 0);
+            }
+            default -> failValue("Unhandled expression node: " + node.kind());
+        }
+    }
+
+    private void unary(Expression.Unary node) {
+        switch (node.kind()) {
+            case NEGATIVE -> {
+                expression(node.operand());
+                op(NEG, 0);
+            }
+            case PRE_INCREMENT, POST_INCREMENT, PRE_DECREMENT, POST_DECREMENT -> {
+                boolean increment = (node.kind() == NodeType.PRE_INCREMENT || node.kind() == NodeType.POST_INCREMENT);
+                boolean pre = (node.kind() == NodeType.PRE_INCREMENT || node.kind() == NodeType.PRE_DECREMENT);
+                Expression target = node.operand();
+                if (!(target instanceof Expression.Variable) && !(target instanceof Expression.ArrayAccess)) {
+                    failValue("Unsupported assignment target: " + target.kind());
+                    return;
+                }
+                op(CONST, 1, constant(1L));
+                update(target, increment ? 0 : 1, pre);
+            }
+            default -> failValue("Unhandled expression node: " + node.kind());
+        }
+    }
+}
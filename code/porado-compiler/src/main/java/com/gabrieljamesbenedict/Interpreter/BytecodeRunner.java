@@ -0,0 +1,572 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.SemanticAnalysis.ScopeResolver;
+import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Address;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Expression;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.gabrieljamesbenedict.Interpreter.Opcode.*;
+
+// Runs a program as bytecode: each top-level statement is compiled to a Chunk just before it runs,
+// and a chunk runs in one loop over its code array. Locals stay in Memory, shared with the other
+// engines; only the operands of the instruction being run live on the operand stack.
+//
+// With jvm set, functions and top-level loops JvmCompiler can compile run as JVM bytecode instead,
+// falling back to the chunk whenever the compiled code declines a call.
+public class BytecodeRunner implements CompiledCode.Caller {
+
+    public final AbstractSyntaxTree ast;
+    private final boolean jvm;
+
+    private static final Object UNSET = Memory.UNSET;
+
+    // A declared function and the frame it was declared in, like CodeRunner's
+    // Compiled is null when it is not being run as JVM bytecode.
+    private record Function(Chunk.Function code, int frame, long serial, CompiledCode compiled) {}
+
+    private Memory memory;
+    private Function[] functions;
+
+    // Every running chunk's operands, the callers' below the callee's
+    private Object[] operands = new Object[64];
+    // Where the next chunk to run puts its operands
+    private int top = 0;
+
+    // The value of the last RETURN, until its call picks it up
+    private Object returnValue;
+
+    // What each function compiled to, so a declaration that runs again is not compiled again
+    private final Map<Chunk.Function, CompiledCode> compiled = new IdentityHashMap<>();
+
+    public BytecodeRunner(AbstractSyntaxTree ast) {
+        this(ast, false);
+    }
+
+    public BytecodeRunner(AbstractSyntaxTree ast, boolean jvm) {
+        this.ast = ast;
+        this.jvm = jvm;
+    }
+
+    public void run() {
+        memory = new Memory();
+        functions = new Function[0];
+        returnValue = null;
+
+        List<Statement> program = ast.getStatements();
+        if (program == null) return;
+
+        ScopeResolver resolver = new ScopeResolver();
+        for (Statement child : program) {
+            Statement resolved = resolver.resolve(child);
+            memory.fit(resolver);
+            if (functions.length < resolver.functions()) {
+                functions = Arrays.copyOf(functions, Math.max(resolver.functions(), functions.length * 2));
+            }
+            // a top-level return ends the program
+            top = 0;
+            CompiledCode code = jvm ? JvmCompiler.compileTopLevel(resolved) : null;
+            if (code != null) {
+                if (code.run(this, memory, null, 0, 0) != JvmRuntime.NORMAL) return;
+            } else if (execute(BytecodeCompiler.compile(resolved, "<top level>"))) {
+                return;
+            }
+        }
+    }
+
+    // For compiled code, which checks the callee before working out the arguments
+    @Override
+    public void checkFunction(int slot, String name) {
+        if (functions[slot] == null) throw new RuntimeException("Unknown function: " + name);
+    }
+
+    @Override
+    public Object invoke(int slot, Object[] arguments) {
+        return call(functions[slot], arguments, 0, arguments.length);
+    }
+
+    // null when JvmCompiler cannot compile the function, which is remembered too
+    private CompiledCode compiled(Chunk.Function function) {
+        if (!compiled.containsKey(function)) compiled.put(function, JvmCompiler.compile(function.declaration()));
+        return compiled.get(function);
+    }
+
+    // Calls with count arguments from arguments[at]
+    private Object call(Function function, Object[] arguments, int at, int count) {
+        if (function.compiled() != null) {
+            Object result = function.compiled().run(this, memory, arguments, at, count);
+            if (result != JvmRuntime.DECLINED) return result;
+        }
+
+        Chunk.Function code = function.code();
+        Memory m = memory;
+        int arity = code.arity();
+        int caller = m.frame;
+        int base = m.reserve(code.slots());
+        try {
+            for (int i = 0; i < Math.min(count, arity); i++) m.stack[base + i] = arguments[at + i];
+            m.prepare(base, count, arity, code.slots());
+            m.enter(base, function.frame(), function.serial());
+
+            // without an explicit return the call gives null
+            if (!execute(code.body())) return null;
+            Object result = returnValue;
+            returnValue = null;
+            return result;
+        } finally {
+            m.leave(caller, base);
+        }
+    }
+
+    // Runs a chunk in the running frame. True if it ended with a RETURN, whose value is then in
+    // returnValue.
+    private boolean execute(Chunk chunk) {
+        final int[] code = chunk.code();
+        final Object[] k = chunk.constants();
+        final Memory m = memory;
+
+        int sp = top;
+        if (sp + chunk.maxStack() > operands.length) {
+            operands = Arrays.copyOf(operands, Math.max(sp + chunk.maxStack(), operands.length * 2));
+        }
+        Object[] ops = operands;
+        // Only a call can move the stack or change the frame, so these are read again after one
+        Object[] stack = m.stack;
+        int base = m.bases[m.frame];
+        int pc = 0;
+
+        while (true) {
+            switch (code[pc++]) {
+
+                case CONST:
+                    ops[sp++] = k[code[pc++]];
+                    break;
+
+                case DECODE:
+                    ops[sp++] = CodeRunner.evalLiteral((Expression.Literal) k[code[pc++]]);
+                    break;
+
+                case LOAD_LOCAL: {
+                    Object value = stack[base + code[pc++]];
+                    int name = code[pc++];
+                    if (value == UNSET) throw new RuntimeException("Undefined variable: " + k[name]);
+                    ops[sp++] = value;
+                    break;
+                }
+
+                case LOAD_GLOBAL: {
+                    Object value = m.globals[code[pc++]];
+                    int name = code[pc++];
+                    if (value == UNSET) throw new RuntimeException("Undefined variable: " + k[name]);
+                    ops[sp++] = value;
+                    break;
+                }
+
+                case LOAD: {
+                    Object value = m.load((Address) k[code[pc++]]);
+                    int name = code[pc++];
+                    if (value == UNSET) throw new RuntimeException("Undefined variable: " + k[name]);
+                    ops[sp++] = value;
+                    break;
+                }
+
+                // an array element written as a name reads as itself while the name is undefined
+                case LOAD_LEXEME: {
+                    Object value = m.load((Address) k[code[pc++]]);
+                    Object lexeme = k[code[pc++]];
+                    ops[sp++] = (value == UNSET) ? lexeme : value;
+                    break;
+                }
+
+                case STORE_LOCAL:
+                    stack[base + code[pc++]] = ops[--sp];
+                    break;
+
+                case STORE_GLOBAL:
+                    m.globals[code[pc++]] = ops[--sp];
+                    break;
+
+                case STORE:
+                    m.store((Address) k[code[pc++]], ops[--sp]);
+                    break;
+
+                case DECLARE_LOCAL: {
+                    int slot = base + code[pc++];
+                    int name = code[pc++];
+                    if (stack[slot] != UNSET) throw new RuntimeException("Symbol already exists: " + k[name]);
+                    stack[slot] = ops[--sp];
+                    break;
+                }
+
+                case DECLARE: {
+                    Address address = (Address) k[code[pc++]];
+                    m.declare(address, (String) k[code[pc++]], ops[--sp]);
+                    break;
+                }
+
+                case CLEAR: {
+                    int first = base + code[pc++];
+                    Arrays.fill(stack, first, first + code[pc++], UNSET);
+                    break;
+                }
+
+                case POP:
+                    ops[--sp] = null;
+                    break;
+
+                case ARRAY_READ: {
+                    Object data = m.load((Address) k[code[pc++]]);
+                    Object name = k[code[pc++]];
+                    if (data == UNSET) throw new RuntimeException("Undefined array: " + name);
+                    if (!(data instanceof List)) throw new RuntimeException(name + " is not an array");
+                    ops[sp++] = data;
+                    break;
+                }
+
+                case ARRAY_WRITE: {
+                    Object data = m.load((Address) k[code[pc++]]);
+                    Object name = k[code[pc++]];
+                    if (data == UNSET) throw new RuntimeException("Unknown array: " + name);
+                    if (!(data instanceof List)) throw new RuntimeException(name + " is not an array");
+                    ops[sp++] = data;
+                    break;
+                }
+
+                case ELEMENT: {
+                    int idx = (int) CodeRunner.toLong(ops[--sp]);
+                    List<Object> arr = list(ops[sp - 1]);
+                    if (idx < 0 || idx >= arr.size()) throw new RuntimeException("Array index out of bounds: " + idx);
+                    ops[sp - 1] = arr.get(idx);
+                    break;
+                }
+
+                case SET_ELEMENT: {
+                    int idx = (int) CodeRunner.toLong(ops[--sp]);
+                    List<Object> arr = list(ops[--sp]);
+                    Object value = ops[--sp];
+                    if (idx < 0 || idx >= arr.size()) throw new RuntimeException("Array index out of bounds: " + idx);
+                    arr.set(idx, value);
+                    break;
+                }
+
+                case UPDATE: {
+                    Address address = (Address) k[code[pc++]];
+                    int name = code[pc++];
+                    CodeRunner.NumericOp op = BytecodeCompiler.ARITHMETIC[code[pc++]];
+                    boolean returnNew = code[pc++] != 0;
+                    Object[] slots = address.isGlobal() ? m.globals : stack;
+                    int i = address.isGlobal() ? address.slot() : m.index(address);
+                    Object current = slots[i];
+                    if (current == UNSET) throw new RuntimeException("Unknown variable: " + k[name]);
+                    Object result = CodeRunner.numericBinaryRaw(current, ops[sp - 1], op);
+                    slots[i] = result;
+                    ops[sp - 1] = returnNew ? result : current;
+                    break;
+                }
+
+                case UPDATE_ELEMENT: {
+                    CodeRunner.NumericOp op = BytecodeCompiler.ARITHMETIC[code[pc++]];
+                    boolean returnNew = code[pc++] != 0;
+                    int idx = (int) CodeRunner.toLong(ops[--sp]);
+                    List<Object> arr = list(ops[--sp]);
+                    if (idx < 0 || idx >= arr.size()) throw new RuntimeException("Array index out of bounds: " + idx);
+                    Object current = arr.get(idx);
+                    Object result = CodeRunner.numericBinaryRaw(current, ops[sp - 1], op);
+                    arr.set(idx, result);
+                    ops[sp - 1] = returnNew ? result : current;
+                    break;
+                }
+
+                case STEP_LOCAL: {
+                    int slot = base + code[pc++];
+                    Long delta = (Long) k[code[pc++]];
+                    int message = code[pc++];
+                    Object current = stack[slot];
+                    if (current instanceof Long value) {
+                        stack[slot] = value + delta;
+                    } else {
+                        if (current == UNSET) throw new RuntimeException((String) k[message]);
+                        stack[slot] = CodeRunner.numericBinaryRaw(current, delta, CodeRunner.ADD);
+                    }
+                    break;
+                }
+
+                case STEP_GLOBAL: {
+                    int slot = code[pc++];
+                    Long delta = (Long) k[code[pc++]];
+                    int message = code[pc++];
+                    Object current = m.globals[slot];
+                    if (current instanceof Long value) {
+                        m.globals[slot] = value + delta;
+                    } else {
+                        if (current == UNSET) throw new RuntimeException((String) k[message]);
+                        m.globals[slot] = CodeRunner.numericBinaryRaw(current, delta, CodeRunner.ADD);
+                    }
+                    break;
+                }
+
+                case NEW_ARRAY: {
+                    int count = code[pc++];
+                    List<Object> arr = new ArrayList<>();
+                    for (int i = sp - count; i < sp; i++) arr.add(ops[i]);
+                    sp -= count;
+                    ops[sp++] = arr;
+                    break;
+                }
+
+                case COPY_ARRAY: {
+                    Object data = m.load((Address) k[code[pc++]]);
+                    Object name = k[code[pc++]];
+                    if (data == UNSET) throw new RuntimeException("Unknown array: " + name);
+                    if (!(data instanceof List)) throw new RuntimeException("Not an array: " + name);
+                    ops[sp++] = new ArrayList<>(list(data));
+                    break;
+                }
+
+                // Arithmetic and comparison of two longs is done in place; anything else goes
+                // through CodeRunner's rules
+                case ADD: {
+                    Object b = ops[--sp], a = ops[sp - 1];
+                    ops[sp - 1] = (a instanceof Long x && b instanceof Long y) ? (Object) (x + y) : CodeRunner.numericBinaryRaw(a, b, CodeRunner.ADD);
+                    break;
+                }
+
+                case SUB: {
+                    Object b = ops[--sp], a = ops[sp - 1];
+                    ops[sp - 1] = (a instanceof Long x && b instanceof Long y) ? (Object) (x - y) : CodeRunner.numericBinaryRaw(a, b, CodeRunner.SUBTRACT);
+                    break;
+                }
+
+                case MUL: {
+                    Object b = ops[--sp], a = ops[sp - 1];
+                    ops[sp - 1] = (a instanceof Long x && b instanceof Long y) ? (Object) (x * y) : CodeRunner.numericBinaryRaw(a, b, CodeRunner.MULTIPLY);
+                    break;
+                }
+
+                case DIV: {
+                    Object b = ops[--sp], a = ops[sp - 1];
+                    ops[sp - 1] = (a instanceof Long x && b instanceof Long y) ? (Object) (x / y) : CodeRunner.numericBinaryRaw(a, b, CodeRunner.DIVIDE);
+                    break;
+                }
+
+                case MOD: {
+                    Object b = ops[--sp], a = ops[sp - 1];
+                    ops[sp - 1] = (a instanceof Long x && b instanceof Long y) ? (Object) (x % y) : CodeRunner.numericBinaryRaw(a, b, CodeRunner.MODULO);
+                    break;
+                }
+
+                case NEG: {
+                    Object v = ops[sp - 1];
+                    ops[sp - 1] = (v instanceof Double d) ? (Object) (-d) : (Object) (-CodeRunner.toLong(v));
+                    break;
+                }
+
+                case EQ: {
+                    Object b = ops[--sp];
+                    ops[sp - 1] = Objects.equals(ops[sp - 1], b);
+                    break;
+                }
+
+                case NE: {
+                    Object b = ops[--sp];
+                    ops[sp - 1] = !Objects.equals(ops[sp - 1], b);
+                    break;
+                }
+
+                case LT: {
+                    Object b = ops[--sp], a = ops[sp - 1];
+                    ops[sp - 1] = (a instanceof Long x && b instanceof Long y) ? x < y : CodeRunner.compare(a, b) < 0;
+                    break;
+                }
+
+                case LE: {
+                    Object b = ops[--sp], a = ops[sp - 1];
+                    ops[sp - 1] = (a instanceof Long x && b instanceof Long y) ? x <= y : CodeRunner.compare(a, b) <= 0;
+                    break;
+                }
+
+                case GT: {
+                    Object b = ops[--sp], a = ops[sp - 1];
+                    ops[sp - 1] = (a instanceof Long x && b instanceof Long y) ? x > y : CodeRunner.compare(a, b) > 0;
+                    break;
+                }
+
+                case GE: {
+                    Object b = ops[--sp], a = ops[sp - 1];
+                    ops[sp - 1] = (a instanceof Long x && b instanceof Long y) ? x >= y : CodeRunner.compare(a, b) >= 0;
+                    break;
+                }
+
+                case TRUTH:
+                    ops[sp - 1] = CodeRunner.truthy(ops[sp - 1]);
+                    break;
+
+                case NOT:
+                    ops[sp - 1] = !CodeRunner.truthy(ops[sp - 1]);
+                    break;
+
+                case XOR: {
+                    boolean b = CodeRunner.truthy(ops[--sp]);
+                    ops[sp - 1] = CodeRunner.truthy(ops[sp - 1]) ^ b;
+                    break;
+                }
+
+                case JUMP:
+                    pc = code[pc];
+                    break;
+
+                case JUMP_FALSE: {
+                    int target = code[pc++];
+                    if (!CodeRunner.truthy(ops[--sp])) pc = target;
+                    break;
+                }
+
+                case JUMP_TRUE: {
+                    int target = code[pc++];
+                    if (CodeRunner.truthy(ops[--sp])) pc = target;
+                    break;
+                }
+
+                case JUMP_LT: {
+                    int target = code[pc++];
+                    Object b = ops[--sp], a = ops[--sp];
+                    if ((a instanceof Long x && b instanceof Long y) ? x < y : CodeRunner.compare(a, b) < 0) pc = target;
+                    break;
+                }
+
+                case JUMP_LE: {
+                    int target = code[pc++];
+                    Object b = ops[--sp], a = ops[--sp];
+                    if ((a instanceof Long x && b instanceof Long y) ? x <= y : CodeRunner.compare(a, b) <= 0) pc = target;
+                    break;
+                }
+
+                case JUMP_GT: {
+                    int target = code[pc++];
+                    Object b = ops[--sp], a = ops[--sp];
+                    if ((a instanceof Long x && b instanceof Long y) ? x > y : CodeRunner.compare(a, b) > 0) pc = target;
+                    break;
+                }
+
+                case JUMP_GE: {
+                    int target = code[pc++];
+                    Object b = ops[--sp], a = ops[--sp];
+                    if ((a instanceof Long x && b instanceof Long y) ? x >= y : CodeRunner.compare(a, b) >= 0) pc = target;
+                    break;
+                }
+
+                case JUMP_EQ: {
+                    int target = code[pc++];
+                    Object b = ops[--sp], a = ops[--sp];
+                    if (Objects.equals(a, b)) pc = target;
+                    break;
+                }
+
+                case JUMP_NE: {
+                    int target = code[pc++];
+                    Object b = ops[--sp], a = ops[--sp];
+                    if (!Objects.equals(a, b)) pc = target;
+                    break;
+                }
+
+                case JUMP_NO_MATCH: {
+                    int target = code[pc++];
+                    Object value = ops[--sp];
+                    if (!Objects.equals(value, ops[sp - 1])) pc = target;
+                    break;
+                }
+
+                case PRINT:
+                    System.out.println(CodeRunner.stringify(ops[--sp]));
+                    break;
+
+                case CHECK_FUNCTION: {
+                    int function = code[pc++];
+                    int name = code[pc++];
+                    if (functions[function] == null) throw new RuntimeException("Unknown function: " + k[name]);
+                    break;
+                }
+
+                // the arguments are the top count operands; the callee's go above them
+                case CALL: {
+                    Function function = functions[code[pc++]];
+                    int count = code[pc++];
+                    sp -= count;
+                    top = sp + count;
+                    Object result = call(function, ops, sp, count);
+                    ops = operands;
+                    stack = m.stack;
+                    base = m.bases[m.frame];
+                    ops[sp++] = result;
+                    break;
+                }
+
+                case DECLARE_FUNCTION: {
+                    int slot = code[pc++];
+                    Chunk.Function function = (Chunk.Function) k[code[pc++]];
+                    if (functions[slot] != null) throw new RuntimeException("Symbol already exists: " + function.name());
+                    functions[slot] = new Function(function, m.frame, m.serials[m.frame], jvm ? compiled(function) : null);
+                    break;
+                }
+
+                case RETURN:
+                    returnValue = ops[--sp];
+                    return true;
+
+                case END:
+                    return false;
+
+                case FOR_INIT: {
+                    Object data = m.load((Address) k[code[pc++]]);
+                    Object name = k[code[pc++]];
+                    if (!(data instanceof List)) throw new RuntimeException("FOR source not array: " + name);
+                    ops[sp++] = data;
+                    ops[sp++] = new int[1];
+                    break;
+                }
+
+                // the element variable lives in the scope around the loop
+                case FOR_NEXT: {
+                    Address element = (Address) k[code[pc++]];
+                    int exit = code[pc++];
+                    int[] position = (int[]) ops[sp - 1];
+                    List<Object> arr = list(ops[sp - 2]);
+                    if (position[0] >= arr.size()) pc = exit;
+                    else m.store(element, arr.get(position[0]++));
+                    break;
+                }
+
+                case REPEAT_INIT:
+                    ops[sp - 1] = new long[] { CodeRunner.toLong(ops[sp - 1]) };
+                    break;
+
+                case REPEAT_NEXT: {
+                    int exit = code[pc++];
+                    long[] remaining = (long[]) ops[sp - 1];
+                    if (remaining[0] <= 0) pc = exit;
+                    else remaining[0]--;
+                    break;
+                }
+
+                case FAIL:
+                    throw new RuntimeException((String) k[code[pc]]);
+
+                default:
+                    throw new IllegalStateException("Bad opcode " + code[pc - 1] + " at " + (pc - 1) + " in " + chunk.name());
+            }
+        }
+    }
+
+    // Arrays are List<Object> wherever they were built; the operand stack only knows them as Object
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Object array) {
+        return (List<Object>) array;
+    }
+}
@@ -0,0 +1,12 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+
+// The bytecode of one top-level statement or function body. maxStack is the most operands it
+// holds at once, so the runner can make room once on entry.
+record Chunk(String name, int[] code, Object[] constants, int maxStack) {
+
+    // The constant a DECLARE_FUNCTION names, everything a call needs but the declaring frame.
+    // declaration is what the JVM engine compiles the function from.
+    record Function(String name, int arity, int slots, Chunk body, Statement.FunctionDeclaration declaration) {}
+}
@@ -0,0 +1,1511 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.SyntaxAnalysis.Address;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Expression;
+import com.gabrieljamesbenedict.SyntaxAnalysis.NodeType;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/*
+    Turns resolved statements into trees of small executable nodes for ClosureRunner, once, before
+    they run. Every operation is a final class with its operands compiled into its fields, so running
+    a node is a direct call into its children instead of a switch on the node type each time it is
+    visited. Reads, writes and ++/-- of a local in the running frame get classes of their own, since
+    they are most of what a loop does. Arithmetic and comparisons specialize on the types they see
+    while they run, as described above Negate.
+
+    The rules for values are CodeRunner's static helpers, so both engines print the same output. An
+    error CodeRunner only finds when a node runs compiles into a node that throws it when it runs,
+    so a program also fails at the same point, after the same output.
+ */
+final class ClosureCompiler {
+
+    // A statement, run for how it completes
+    abstract static class Exec {
+        abstract Completion exec(ClosureRunner r);
+    }
+
+    // An expression, run for its value. The typed forms let a specialized node take its operands
+    // unboxed; they give the value as that type or throw Unexpected with it, having run once either
+    // way. eval itself never throws Unexpected.
+    abstract static class Eval {
+        abstract Object eval(ClosureRunner r);
+
+        long evalLong(ClosureRunner r) {
+            return expectLong(eval(r));
+        }
+
+        double evalDouble(ClosureRunner r) {
+            return expectDouble(eval(r));
+        }
+
+        // The value read as a condition
+        boolean test(ClosureRunner r) {
+            return CodeRunner.truthy(eval(r));
+        }
+    }
+
+    // A value that was not the type asked for, already worked out. It is how a node finds out it has
+    // to de-specialize, so it carries no stack trace.
+    private static final class Unexpected extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // Never serialized: it is caught by the node that asked for the value
+        final transient Object value;
+
+        Unexpected(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+
+    private static final Object UNSET = Memory.UNSET;
+
+    // ---------------------------------------------------------------------------
+    // STATEMENTS
+    // ---------------------------------------------------------------------------
+
+    Exec statement(Statement node) {
+        if (node == null) return NOTHING;
+
+        switch (node) {
+
+            case Statement.Empty e:
+                return NOTHING;
+
+            case Statement.Block block:
+                return new Block(block.first(), block.slots(), statements(block.statements()));
+
+            case Statement.VariableDeclaration decl:
+                return new Declare(decl.address(), decl.name(), expression(decl.value()));
+
+            case Statement.ArrayDeclaration decl: {
+                Eval[] elements = null;
+                if (decl.elements() != null) {
+                    elements = new Eval[decl.elements().size()];
+                    for (int i = 0; i < elements.length; i++) {
+                        elements[i] = lexeme(decl.elements().get(i), decl.elementAddresses().get(i), decl.elementValues().get(i));
+                    }
+                }
+                return new DeclareArray(decl.address(), decl.name(), elements, decl.source(), decl.copyOf());
+            }
+
+            case Statement.FunctionDeclaration decl: {
+                int arity = (decl.parameters() != null) ? decl.parameters().size() : 0;
+                return new DeclareFunction(decl.name(), decl.function(), arity, decl.slots(), statement(decl.body()));
+            }
+
+            case Statement.Print print:
+                return new Print(expression(print.value()));
+
+            case Statement.Return ret:
+                return new Return(expression(ret.value()));
+
+            case Statement.Break b:
+                return BREAK;
+
+            case Statement.Continue c:
+                return CONTINUE;
+
+            // else-if branches become ifs nested in the else
+            case Statement.Conditional cond: {
+                Exec otherwise = statement(cond.otherwise());
+                List<Statement.Branch> branches = cond.branches();
+                for (int i = branches.size() - 1; i >= 0; i--) {
+                    otherwise = new If(expression(branches.get(i).condition()), statement(branches.get(i).body()), otherwise);
+                }
+                return otherwise;
+            }
+
+            case Statement.Switch sw: {
+                if (sw.subject() == null) return new Discard(new Fail(null, "Switch has no expression"));
+                List<Eval> values = new ArrayList<>();
+                List<Exec> bodies = new ArrayList<>();
+                for (Statement.Case c : sw.cases()) {
+                    if (c.value() == null) continue;
+                    values.add(expression(c.value()));
+                    bodies.add(statement(c.body()));
+                }
+                return new Switch(expression(sw.subject()), values.toArray(new Eval[0]), bodies.toArray(new Exec[0]),
+                        statement(sw.otherwise()));
+            }
+
+            case Statement.ConditionLoop loop: {
+                boolean until = (loop.kind() == NodeType.UNTIL || loop.kind() == NodeType.DO_UNTIL);
+                Eval condition = expression(loop.condition());
+                Exec body = statement(loop.body());
+                if (loop.kind() == NodeType.WHILE || loop.kind() == NodeType.UNTIL) return new While(condition, body, until);
+                return new DoWhile(condition, body, until);
+            }
+
+            case Statement.For loop:
+                return new ForEach(loop.source(), loop.array(), loop.element(), statement(loop.body()));
+
+            case Statement.Repeat loop:
+                return new Repeat(expression(loop.times()), statement(loop.body()));
+
+            case Statement.ExpressionStatement stmt: {
+                if (stmt.expression() instanceof Expression.Assignment assignment) return assignment(assignment);
+                if (CodeRunner.isExpressionNode(stmt.kind())) return new Discard(expression(stmt.expression()));
+                return new Discard(new Fail(null, "Unhandled statement node type: " + stmt.kind()));
+            }
+        }
+    }
+
+    private Exec[] statements(List<Statement> statements) {
+        Exec[] compiled = new Exec[statements.size()];
+        for (int i = 0; i < compiled.length; i++) compiled[i] = statement(statements.get(i));
+        return compiled;
+    }
+
+    private Exec assignment(Expression.Assignment node) {
+        Eval value = expression(node.value());
+        switch (node.kind()) {
+            case ASSIGNMENT:
+                return assign(node.target(), value);
+            case ADDITION_ASSIGNMENT:
+                return new Discard(update(node.target(), CodeRunner.ADD, value, true));
+            case SUBTRACTION_ASSIGNMENT:
+                return new Discard(update(node.target(), CodeRunner.SUBTRACT, value, true));
+            case MULTIPLICATION_ASSIGNMENT:
+                return new Discard(update(node.target(), CodeRunner.MULTIPLY, value, true));
+            case DIVISION_ASSIGNMENT:
+                return new Discard(update(node.target(), CodeRunner.DIVIDE, value, true));
+            case MODULO_ASSIGNMENT:
+                return new Discard(update(node.target(), CodeRunner.MODULO, value, true));
+            default:
+                return new Discard(new Fail(value, "Unknown assignment type: " + node.kind()));
+        }
+    }
+
+    private Exec assign(Expression target, Eval value) {
+        if (target instanceof Expression.Variable variable) {
+            Address address = variable.address();
+            if (address.isGlobal()) return new AssignGlobal(address.slot(), value);
+            if (address.depth() == 0) return new AssignLocal(address.slot(), value);
+            return new AssignOuter(address, value);
+        }
+        if (target instanceof Expression.ArrayAccess access) {
+            return new AssignElement(access.address(), access.name(), optional(access.index()), value);
+        }
+        return new Discard(new Fail(value, "Unsupported assignment target: " + target.kind()));
+    }
+
+    // Compound assignment and ++/--; operand is null for the last two, which add a constant
+    private Eval update(Expression target, CodeRunner.NumericOp op, Eval operand, boolean returnNew) {
+        if (target instanceof Expression.Variable variable) {
+            Address address = variable.address();
+            if (operand == null && !address.isGlobal() && address.depth() == 0) {
+                return new StepLocal(address.slot(), variable.name(), (op == CodeRunner.ADD) ? 1 : -1, returnNew);
+            }
+            return new UpdateVariable(address, variable.name(), op, operand, returnNew);
+        }
+        if (target instanceof Expression.ArrayAccess access) {
+            return new UpdateElement(access.address(), access.name(), expression(access.index()), op, operand, returnNew);
+        }
+        return new Fail(operand, "Unsupported assignment target: " + target.kind());
+    }
+
+    // ---------------------------------------------------------------------------
+    // EXPRESSIONS
+    // ---------------------------------------------------------------------------
+
+    Eval expression(Expression node) {
+        if (node == null) return NULL;
+
+        switch (node) {
+
+            // literals that failed to decode report why when they run
+            case Expression.Literal literal:
+                return (literal.value() != null) ? new Constant(literal.value()) : new DecodeLiteral(literal);
+
+            case Expression.Variable variable: {
+                Address address = variable.address();
+                if (address.isGlobal()) return new ReadGlobal(address.slot(), variable.name());
+                if (address.depth() == 0) return new ReadLocal(address.slot(), variable.name());
+                return new ReadOuter(address, variable.name());
+            }
+
+            case Expression.ArrayAccess access:
+                return new ReadElement(access.address(), access.name(), optional(access.index()));
+
+            case Expression.Call call: {
+                Eval[] arguments = new Eval[call.arguments().size()];
+                for (int i = 0; i < arguments.length; i++) arguments[i] = expression(call.arguments().get(i));
+                return new Call(call.name(), call.function(), arguments);
+            }
+
+            case Expression.Binary binary:
+                return binary(binary);
+
+            case Expression.Unary unary:
+                return unary(unary);
+
+            case Expression.Assignment assignment:
+                return new Fail(null, "Unhandled expression node: " + assignment.kind());
+        }
+    }
+
+    // null where CodeRunner reports a missing expression rather than reading it as null
+    private Eval optional(Expression node) {
+        return (node == null) ? null : expression(node);
+    }
+
+    private Eval binary(Expression.Binary node) {
+        switch (node.kind()) {
+            case ADDITION: return new Add(expression(node.left()), expression(node.right()));
+            case SUBTRACTION: return new Subtract(expression(node.left()), expression(node.right()));
+            case MULTIPLICATION: return new Multiply(expression(node.left()), expression(node.right()));
+            case DIVISION: return new Divide(expression(node.left()), expression(node.right()));
+            case MODULO: return new Modulo(expression(node.left()), expression(node.right()));
+
+            case EQUALS: return new Equals(expression(node.left()), expression(node.right()), false);
+            case NOTEQUALS: return new Equals(expression(node.left()), expression(node.right()), true);
+
+            case LESS: return new Less(expression(node.left()), expression(node.right()));
+            case LESSEQUALS: return new LessEquals(expression(node.left()), expression(node.right()));
+            case GREATER: return new Greater(expression(node.left()), expression(node.right()));
+            case GREATEREQUALS: return new GreaterEquals(expression(node.left()), expression(node.right()));
+
+            case AND: return new And(expression(node.left()), expression(node.right()), false);
+            case NAND: return new And(expression(node.left()), expression(node.right()), true);
+            case OR: return new Or(expression(node.left()), expression(node.right()), false);
+            case NOR: return new Or(expression(node.left()), expression(node.right()), true);
+            case XOR: return new Xor(expression(node.left()), expression(node.right()), false);
+            case XNOR: return new Xor(expression(node.left()), expression(node.right()), true);
+
+            default:
+                return new Fail(null, "Unhandled expression node: " + node.kind());
+        }
+    }
+
+    private Eval unary(Expression.Unary node) {
+        switch (node.kind()) {
+            case NEGATIVE: return new Negate(expression(node.operand()));
+            case PRE_INCREMENT: return update(node.operand(), CodeRunner.ADD, null, true);
+            case POST_INCREMENT: return update(node.operand(), CodeRunner.ADD, null, false);
+            case PRE_DECREMENT: return update(node.operand(), CodeRunner.SUBTRACT, null, true);
+            case POST_DECREMENT: return update(node.operand(), CodeRunner.SUBTRACT, null, false);
+            default:
+                return new Fail(null, "Unhandled expression node: " + node.kind());
+        }
+    }
+
+    // The resolver gave an address to every lexeme that does not read as a literal, and decoded the rest
+    private Eval lexeme(String lexeme, Address address, Object value) {
+        if (lexeme == null) return NULL;
+        if (address == null) return new Constant(value);
+        return new ReadLexeme(address, lexeme);
+    }
+
+    // ---------------------------------------------------------------------------
+    // STATEMENT NODES
+    // ---------------------------------------------------------------------------
+
+    private static final Exec NOTHING = new Exec() {
+        Completion exec(ClosureRunner r) { return Completion.NORMAL; }
+    };
+
+    private static final Exec BREAK = new Exec() {
+        Completion exec(ClosureRunner r) { return Completion.BREAK; }
+    };
+
+    private static final Exec CONTINUE = new Exec() {
+        Completion exec(ClosureRunner r) { return Completion.CONTINUE; }
+    };
+
+    private static final class Block extends Exec {
+        final int first, slots;
+        final Exec[] statements;
+
+        Block(int first, int slots, Exec[] statements) {
+            this.first = first;
+            this.slots = slots;
+            this.statements = statements;
+        }
+
+        Completion exec(ClosureRunner r) {
+            r.memory.clear(first, slots);
+            for (Exec statement : statements) {
+                Completion completion = statement.exec(r);
+                if (completion != Completion.NORMAL) return completion;
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class Discard extends Exec {
+        final Eval expression;
+
+        Discard(Eval expression) {
+            this.expression = expression;
+        }
+
+        Completion exec(ClosureRunner r) {
+            expression.eval(r);
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class Print extends Exec {
+        final Eval value;
+
+        Print(Eval value) {
+            this.value = value;
+        }
+
+        Completion exec(ClosureRunner r) {
+            System.out.println(CodeRunner.stringify(value.eval(r)));
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class Return extends Exec {
+        final Eval value;
+
+        Return(Eval value) {
+            this.value = value;
+        }
+
+        Completion exec(ClosureRunner r) {
+            r.returnValue = value.eval(r);
+            return Completion.RETURN;
+        }
+    }
+
+    private static final class Declare extends Exec {
+        final Address address;
+        final String name;
+        final Eval value;
+
+        Declare(Address address, String name, Eval value) {
+            this.address = address;
+            this.name = name;
+            this.value = value;
+        }
+
+        Completion exec(ClosureRunner r) {
+            Object initial = value.eval(r);
+            r.memory.declare(address, name, initial);
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class DeclareArray extends Exec {
+        final Address address, source;
+        final String name, copyOf;
+        // null unless the declaration lists its elements
+        final Eval[] elements;
+
+        DeclareArray(Address address, String name, Eval[] elements, Address source, String copyOf) {
+            this.address = address;
+            this.name = name;
+            this.elements = elements;
+            this.source = source;
+            this.copyOf = copyOf;
+        }
+
+        Completion exec(ClosureRunner r) {
+            List<Object> arr = new ArrayList<>();
+            if (elements != null) {
+                for (Eval element : elements) arr.add(element.eval(r));
+            } else if (copyOf != null) {
+                Object data = r.memory.load(source);
+                if (data == UNSET) throw new RuntimeException("Unknown array: " + copyOf);
+                if (!(data instanceof List)) throw new RuntimeException("Not an array: " + copyOf);
+                arr = new ArrayList<>(list(data));
+            }
+            r.memory.declare(address, name, arr);
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class DeclareFunction extends Exec {
+        final String name;
+        final int function, arity, slots;
+        final Exec body;
+
+        DeclareFunction(String name, int function, int arity, int slots, Exec body) {
+            this.name = name;
+            this.function = function;
+            this.arity = arity;
+            this.slots = slots;
+            this.body = body;
+        }
+
+        Completion exec(ClosureRunner r) {
+            if (r.functions[function] != null) throw new RuntimeException("Symbol already exists: " + name);
+            Memory m = r.memory;
+            r.functions[function] = new ClosureRunner.Function(name, arity, slots, body, m.frame, m.serials[m.frame]);
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class If extends Exec {
+        final Eval condition;
+        final Exec then, otherwise;
+
+        If(Eval condition, Exec then, Exec otherwise) {
+            this.condition = condition;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        Completion exec(ClosureRunner r) {
+            return condition.test(r) ? then.exec(r) : otherwise.exec(r);
+        }
+    }
+
+    // a break inside a case leaves the enclosing loop, not the switch
+    private static final class Switch extends Exec {
+        final Eval subject;
+        final Eval[] values;
+        final Exec[] bodies;
+        final Exec otherwise;
+
+        Switch(Eval subject, Eval[] values, Exec[] bodies, Exec otherwise) {
+            this.subject = subject;
+            this.values = values;
+            this.bodies = bodies;
+            this.otherwise = otherwise;
+        }
+
+        Completion exec(ClosureRunner r) {
+            Object key = subject.eval(r);
+            for (int i = 0; i < values.length; i++) {
+                if (Objects.equals(values[i].eval(r), key)) return bodies[i].exec(r);
+            }
+            return otherwise.exec(r);
+        }
+    }
+
+    // WHILE and UNTIL, which test before the first run
+    private static final class While extends Exec {
+        final Eval condition;
+        final Exec body;
+        final boolean until;
+
+        While(Eval condition, Exec body, boolean until) {
+            this.condition = condition;
+            this.body = body;
+            this.until = until;
+        }
+
+        Completion exec(ClosureRunner r) {
+            while (condition.test(r) != until) {
+                Completion completion = body.exec(r);
+                if (completion == Completion.BREAK) return Completion.NORMAL;
+                if (completion == Completion.RETURN) return completion;
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    // DO_WHILE and DO_UNTIL
+    private static final class DoWhile extends Exec {
+        final Eval condition;
+        final Exec body;
+        final boolean until;
+
+        DoWhile(Eval condition, Exec body, boolean until) {
+            this.condition = condition;
+            this.body = body;
+            this.until = until;
+        }
+
+        Completion exec(ClosureRunner r) {
+            do {
+                Completion completion = body.exec(r);
+                if (completion == Completion.BREAK) return Completion.NORMAL;
+                if (completion == Completion.RETURN) return completion;
+            } while (condition.test(r) != until);
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class Repeat extends Exec {
+        final Eval times;
+        final Exec body;
+
+        Repeat(Eval times, Exec body) {
+            this.times = times;
+            this.body = body;
+        }
+
+        Completion exec(ClosureRunner r) {
+            long count = CodeRunner.toLong(times.eval(r));
+            for (long i = 0; i < count; i++) {
+                Completion completion = body.exec(r);
+                if (completion == Completion.BREAK) return Completion.NORMAL;
+                if (completion == Completion.RETURN) return completion;
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class ForEach extends Exec {
+        final Address source, element;
+        final String array;
+        final Exec body;
+
+        ForEach(Address source, String array, Address element, Exec body) {
+            this.source = source;
+            this.array = array;
+            this.element = element;
+            this.body = body;
+        }
+
+        Completion exec(ClosureRunner r) {
+            Object data = r.memory.load(source);
+            if (!(data instanceof List)) throw new RuntimeException("FOR source not array: " + array);
+            List<Object> arr = list(data);
+            for (int i = 0; i < arr.size(); i++) {
+                r.memory.store(element, arr.get(i));
+                Completion completion = body.exec(r);
+                if (completion == Completion.BREAK) return Completion.NORMAL;
+                if (completion == Completion.RETURN) return completion;
+            }
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class AssignLocal extends Exec {
+        final int slot;
+        final Eval value;
+
+        AssignLocal(int slot, Eval value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        Completion exec(ClosureRunner r) {
+            Object v = value.eval(r);
+            Memory m = r.memory;
+            m.stack[m.bases[m.frame] + slot] = v;
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class AssignGlobal extends Exec {
+        final int slot;
+        final Eval value;
+
+        AssignGlobal(int slot, Eval value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        // an undeclared name resolves to a global, which the assignment creates
+        Completion exec(ClosureRunner r) {
+            r.memory.globals[slot] = value.eval(r);
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class AssignOuter extends Exec {
+        final Address address;
+        final Eval value;
+
+        AssignOuter(Address address, Eval value) {
+            this.address = address;
+            this.value = value;
+        }
+
+        Completion exec(ClosureRunner r) {
+            Object v = value.eval(r);
+            r.memory.store(address, v);
+            return Completion.NORMAL;
+        }
+    }
+
+    private static final class AssignElement extends Exec {
+        final Address address;
+        final String name;
+        final Eval index, value;
+
+        AssignElement(Address address, String name, Eval index, Eval value) {
+            this.address = address;
+            this.name = name;
+            this.index = index;
+            this.value = value;
+        }
+
+        Completion exec(ClosureRunner r) {
+            Object v = value.eval(r);
+            List<Object> arr = array(r, address, name);
+            if (index == null) throw new RuntimeException("Array assignment missing index: " + name);
+            int idx = (int) CodeRunner.toLong(index.eval(r));
+            if (idx < 0 || idx >= arr.size()) throw new RuntimeException("Array index out of bounds: " + idx);
+            arr.set(idx, v);
+            return Completion.NORMAL;
+        }
+    }
+
+    private static List<Object> array(ClosureRunner r, Address address, String name) {
+        Object data = r.memory.load(address);
+        if (data == UNSET) throw new RuntimeException("Unknown array: " + name);
+        if (!(data instanceof List)) throw new RuntimeException(name + " is not an array");
+        return list(data);
+    }
+
+    // Arrays are only ever built as List<Object>, so this is the one unchecked cast the engine needs
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Object data) {
+        return (List<Object>) data;
+    }
+
+    // ---------------------------------------------------------------------------
+    // EXPRESSION NODES
+    // ---------------------------------------------------------------------------
+
+    private static final Eval NULL = new Constant(null);
+
+    private static final class Constant extends Eval {
+        final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        Object eval(ClosureRunner r) {
+            return value;
+        }
+
+        long evalLong(ClosureRunner r) {
+            return expectLong(value);
+        }
+
+        double evalDouble(ClosureRunner r) {
+            return expectDouble(value);
+        }
+    }
+
+    private static final class DecodeLiteral extends Eval {
+        final Expression.Literal literal;
+
+        DecodeLiteral(Expression.Literal literal) {
+            this.literal = literal;
+        }
+
+        Object eval(ClosureRunner r) {
+            return CodeRunner.evalLiteral(literal);
+        }
+    }
+
+    // Throws when it runs, after running first if there is one
+    private static final class Fail extends Eval {
+        final Eval first;
+        final String message;
+
+        Fail(Eval first, String message) {
+            this.first = first;
+            this.message = message;
+        }
+
+        Object eval(ClosureRunner r) {
+            if (first != null) first.eval(r);
+            throw new RuntimeException(message);
+        }
+    }
+
+    private static final class ReadLocal extends Eval {
+        final int slot;
+        final String name;
+
+        ReadLocal(int slot, String name) {
+            this.slot = slot;
+            this.name = name;
+        }
+
+        Object eval(ClosureRunner r) {
+            Memory m = r.memory;
+            Object value = m.stack[m.bases[m.frame] + slot];
+            if (value == UNSET) throw new RuntimeException("Undefined variable: " + name);
+            return value;
+        }
+
+        long evalLong(ClosureRunner r) {
+            Memory m = r.memory;
+            return variableLong(m.stack[m.bases[m.frame] + slot], name);
+        }
+
+        double evalDouble(ClosureRunner r) {
+            Memory m = r.memory;
+            return variableDouble(m.stack[m.bases[m.frame] + slot], name);
+        }
+    }
+
+    private static final class ReadGlobal extends Eval {
+        final int slot;
+        final String name;
+
+        ReadGlobal(int slot, String name) {
+            this.slot = slot;
+            this.name = name;
+        }
+
+        Object eval(ClosureRunner r) {
+            Object value = r.memory.globals[slot];
+            if (value == UNSET) throw new RuntimeException("Undefined variable: " + name);
+            return value;
+        }
+
+        long evalLong(ClosureRunner r) {
+            return variableLong(r.memory.globals[slot], name);
+        }
+
+        double evalDouble(ClosureRunner r) {
+            return variableDouble(r.memory.globals[slot], name);
+        }
+    }
+
+    private static final class ReadOuter extends Eval {
+        final Address address;
+        final String name;
+
+        ReadOuter(Address address, String name) {
+            this.address = address;
+            this.name = name;
+        }
+
+        Object eval(ClosureRunner r) {
+            Object value = r.memory.load(address);
+            if (value == UNSET) throw new RuntimeException("Undefined variable: " + name);
+            return value;
+        }
+    }
+
+    // An array element written as a name, which reads as itself while the name is undefined
+    private static final class ReadLexeme extends Eval {
+        final Address address;
+        final String lexeme;
+
+        ReadLexeme(Address address, String lexeme) {
+            this.address = address;
+            this.lexeme = lexeme;
+        }
+
+        Object eval(ClosureRunner r) {
+            Object value = r.memory.load(address);
+            return (value == UNSET) ? lexeme : value;
+        }
+    }
+
+    private static final class ReadElement extends Eval {
+        final Address address;
+        final String name;
+        final Eval index;
+
+        ReadElement(Address address, String name, Eval index) {
+            this.address = address;
+            this.name = name;
+            this.index = index;
+        }
+
+        Object eval(ClosureRunner r) {
+            Object data = r.memory.load(address);
+            if (data == UNSET) throw new RuntimeException("Undefined array: " + name);
+            if (!(data instanceof List)) throw new RuntimeException(name + " is not an array");
+            List<Object> arr = list(data);
+            if (index == null) throw new RuntimeException("Array index missing for " + name);
+            int idx = (int) CodeRunner.toLong(index.eval(r));
+            if (idx < 0 || idx >= arr.size()) throw new RuntimeException("Array index out of bounds: " + idx);
+            return arr.get(idx);
+        }
+    }
+
+    // The arguments run in the caller's frame and land straight in the callee's. Missing arguments
+    // are null and extra ones are evaluated and dropped.
+    private static final class Call extends Eval {
+        final String name;
+        final int function;
+        final Eval[] arguments;
+
+        Call(String name, int function, Eval[] arguments) {
+            this.name = name;
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        Object eval(ClosureRunner r) {
+            ClosureRunner.Function callee = r.functions[function];
+            if (callee == null) throw new RuntimeException("Unknown function: " + name);
+
+            Memory m = r.memory;
+            int arity = callee.arity();
+            int caller = m.frame;
+            int base = m.reserve(callee.frameSize());
+            try {
+                for (int i = 0; i < arguments.length; i++) {
+                    Object value = arguments[i].eval(r);
+                    if (i < arity) m.stack[base + i] = value;
+                }
+                m.prepare(base, arguments.length, arity, callee.frameSize());
+                m.enter(base, callee.frame(), callee.serial());
+
+                // without an explicit return the call gives null
+                if (CodeRunner.outsideLoop(callee.body().exec(r)) != Completion.RETURN) return null;
+                Object result = r.returnValue;
+                r.returnValue = null;
+                return result;
+            } finally {
+                m.leave(caller, base);
+            }
+        }
+    }
+
+    // ++ and -- of a local in the running frame
+    private static final class StepLocal extends Eval {
+        final int slot;
+        final String name;
+        final long delta;
+        final boolean returnNew;
+
+        StepLocal(int slot, String name, long delta, boolean returnNew) {
+            this.slot = slot;
+            this.name = name;
+            this.delta = delta;
+            this.returnNew = returnNew;
+        }
+
+        Object eval(ClosureRunner r) {
+            Memory m = r.memory;
+            int i = m.bases[m.frame] + slot;
+            Object current = m.stack[i];
+            Object result;
+            if (current instanceof Long l) {
+                result = l + delta;
+            } else {
+                if (current == UNSET) throw new RuntimeException("Unknown variable: " + name);
+                result = CodeRunner.numericBinaryRaw(current, delta, CodeRunner.ADD);
+            }
+            m.stack[i] = result;
+            return returnNew ? result : current;
+        }
+    }
+
+    // The slot is found once and written straight back. operand is null for ++ and --.
+    private static final class UpdateVariable extends Eval {
+        final Address address;
+        final String name;
+        final CodeRunner.NumericOp op;
+        final Eval operand;
+        final boolean returnNew;
+
+        UpdateVariable(Address address, String name, CodeRunner.NumericOp op, Eval operand, boolean returnNew) {
+            this.address = address;
+            this.name = name;
+            this.op = op;
+            this.operand = operand;
+            this.returnNew = returnNew;
+        }
+
+        Object eval(ClosureRunner r) {
+            Object by = (operand == null) ? (Object) 1L : operand.eval(r);
+            Memory m = r.memory;
+            Object[] slots = address.isGlobal() ? m.globals : m.stack;
+            int i = address.isGlobal() ? address.slot() : m.index(address);
+            Object current = slots[i];
+            if (current == UNSET) throw new RuntimeException("Unknown variable: " + name);
+            Object result = CodeRunner.numericBinaryRaw(current, by, op);
+            slots[i] = result;
+            return returnNew ? result : current;
+        }
+    }
+
+    private static final class UpdateElement extends Eval {
+        final Address address;
+        final String name;
+        final Eval index;
+        final CodeRunner.NumericOp op;
+        final Eval operand;
+        final boolean returnNew;
+
+        UpdateElement(Address address, String name, Eval index, CodeRunner.NumericOp op, Eval operand, boolean returnNew) {
+            this.address = address;
+            this.name = name;
+            this.index = index;
+            this.op = op;
+            this.operand = operand;
+            this.returnNew = returnNew;
+        }
+
+        Object eval(ClosureRunner r) {
+            Object by = (operand == null) ? (Object) 1L : operand.eval(r);
+            List<Object> arr = array(r, address, name);
+            int idx = (int) CodeRunner.toLong(index.eval(r));
+            if (idx < 0 || idx >= arr.size()) throw new RuntimeException("Array index out of bounds: " + idx);
+            Object current = arr.get(idx);
+            Object result = CodeRunner.numericBinaryRaw(current, by, op);
+            arr.set(idx, result);
+            return returnNew ? result : current;
+        }
+    }
+
+    /*
+        Arithmetic, comparison and negation specialize on the operands they see. A node starts out
+        uninitialized and, the first time it runs, settles on LONG or DOUBLE when its operands were
+        that type, or GENERIC otherwise. A node in LONG asks its operands for evalLong, so a chain
+        like i * 2 + 1 < n passes primitives from node to node and boxes nothing until a value is
+        stored, and it checks no types of its own. When an operand then turns out to be some other
+        type it arrives as an Unexpected, and the node drops to GENERIC for good, working that one
+        value out through CodeRunner's rules, so a node whose types keep changing settles instead of
+        respecializing each time.
+
+        The LONG path is written out in each operation's own class, so each has a call site of its
+        own for its operands; DOUBLE and the rest are shared. Every state gives CodeRunner's answer for
+        any operands, so the state is only ever about speed.
+     */
+    private static final byte UNINITIALIZED = 0, LONG = 1, DOUBLE = 2, GENERIC = 3;
+
+    private static long expectLong(Object value) {
+        if (value instanceof Long l) return l;
+        throw new Unexpected(value);
+    }
+
+    private static double expectDouble(Object value) {
+        if (value instanceof Double d) return d;
+        throw new Unexpected(value);
+    }
+
+    // The typed reads of a variable, which fail as eval does when it is undefined
+    private static long variableLong(Object value, String name) {
+        if (value instanceof Long l) return l;
+        if (value == UNSET) throw new RuntimeException("Undefined variable: " + name);
+        throw new Unexpected(value);
+    }
+
+    private static double variableDouble(Object value, String name) {
+        if (value instanceof Double d) return d;
+        if (value == UNSET) throw new RuntimeException("Undefined variable: " + name);
+        throw new Unexpected(value);
+    }
+
+    private static byte specialization(Object a, Object b) {
+        if (a instanceof Long && b instanceof Long) return LONG;
+        if (a instanceof Double && b instanceof Double) return DOUBLE;
+        return GENERIC;
+    }
+
+    private static final class Negate extends Eval {
+        final Eval operand;
+        byte state;
+
+        Negate(Eval operand) {
+            this.operand = operand;
+        }
+
+        Object eval(ClosureRunner r) {
+            if (state != LONG) return evalGeneric(r);
+            try {
+                return evalLong(r);
+            } catch (Unexpected e) {
+                return e.value;
+            }
+        }
+
+        long evalLong(ClosureRunner r) {
+            if (state != LONG) return expectLong(evalGeneric(r));
+            try {
+                return -operand.evalLong(r);
+            } catch (Unexpected e) {
+                state = GENERIC;
+                return expectLong(negate(e.value));
+            }
+        }
+
+        private Object evalGeneric(ClosureRunner r) {
+            switch (state) {
+                case DOUBLE:
+                    try {
+                        return -operand.evalDouble(r);
+                    } catch (Unexpected e) {
+                        state = GENERIC;
+                        return negate(e.value);
+                    }
+                case GENERIC:
+                    return negate(operand.eval(r));
+                default: {
+                    Object v = operand.eval(r);
+                    state = (v instanceof Long) ? LONG : (v instanceof Double) ? DOUBLE : GENERIC;
+                    return negate(v);
+                }
+            }
+        }
+
+        private static Object negate(Object v) {
+            if (v instanceof Double) return -((Double) v);
+            return -CodeRunner.toLong(v);
+        }
+    }
+
+    // Two doubles are cut to longs first, as NumericOp.applyDouble does
+    private abstract static class Arithmetic extends Eval {
+        final Eval left, right;
+        final CodeRunner.NumericOp op;
+        byte state;
+
+        Arithmetic(Eval left, Eval right, CodeRunner.NumericOp op) {
+            this.left = left;
+            this.right = right;
+            this.op = op;
+        }
+
+        // Every state but LONG
+        Object evalGeneric(ClosureRunner r) {
+            switch (state) {
+                case DOUBLE: {
+                    double a;
+                    try {
+                        a = left.evalDouble(r);
+                    } catch (Unexpected e) {
+                        return despecialize(e.value, right.eval(r));
+                    }
+                    try {
+                        return op.applyDouble(a, right.evalDouble(r));
+                    } catch (Unexpected e) {
+                        return despecialize(a, e.value);
+                    }
+                }
+                case GENERIC:
+                    return CodeRunner.numericBinaryRaw(left.eval(r), right.eval(r), op);
+                default: {
+                    Object a = left.eval(r), b = right.eval(r);
+                    state = specialization(a, b);
+                    return CodeRunner.numericBinaryRaw(a, b, op);
+                }
+            }
+        }
+
+        Object despecialize(Object a, Object b) {
+            state = GENERIC;
+            return CodeRunner.numericBinaryRaw(a, b, op);
+        }
+    }
+
+    private static final class Add extends Arithmetic {
+        Add(Eval left, Eval right) {
+            super(left, right, CodeRunner.ADD);
+        }
+
+        Object eval(ClosureRunner r) {
+            if (state != LONG) return evalGeneric(r);
+            try {
+                return evalLong(r);
+            } catch (Unexpected e) {
+                return e.value;
+            }
+        }
+
+        long evalLong(ClosureRunner r) {
+            if (state != LONG) return expectLong(evalGeneric(r));
+            long a;
+            try {
+                a = left.evalLong(r);
+            } catch (Unexpected e) {
+                return expectLong(despecialize(e.value, right.eval(r)));
+            }
+            try {
+                return a + right.evalLong(r);
+            } catch (Unexpected e) {
+                return expectLong(despecialize(a, e.value));
+            }
+        }
+    }
+
+    private static final class Subtract extends Arithmetic {
+        Subtract(Eval left, Eval right) {
+            super(left, right, CodeRunner.SUBTRACT);
+        }
+
+        Object eval(ClosureRunner r) {
+            if (state != LONG) return evalGeneric(r);
+            try {
+                return evalLong(r);
+            } catch (Unexpected e) {
+                return e.value;
+            }
+        }
+
+        long evalLong(ClosureRunner r) {
+            if (state != LONG) return expectLong(evalGeneric(r));
+            long a;
+            try {
+                a = left.evalLong(r);
+            } catch (Unexpected e) {
+                return expectLong(despecialize(e.value, right.eval(r)));
+            }
+            try {
+                return a - right.evalLong(r);
+            } catch (Unexpected e) {
+                return expectLong(despecialize(a, e.value));
+            }
+        }
+    }
+
+    private static final class Multiply extends Arithmetic {
+        Multiply(Eval left, Eval right) {
+            super(left, right, CodeRunner.MULTIPLY);
+        }
+
+        Object eval(ClosureRunner r) {
+            if (state != LONG) return evalGeneric(r);
+            try {
+                return evalLong(r);
+            } catch (Unexpected e) {
+                return e.value;
+            }
+        }
+
+        long evalLong(ClosureRunner r) {
+            if (state != LONG) return expectLong(evalGeneric(r));
+            long a;
+            try {
+                a = left.evalLong(r);
+            } catch (Unexpected e) {
+                return expectLong(despecialize(e.value, right.eval(r)));
+            }
+            try {
+                return a * right.evalLong(r);
+            } catch (Unexpected e) {
+                return expectLong(despecialize(a, e.value));
+            }
+        }
+    }
+
+    private static final class Divide extends Arithmetic {
+        Divide(Eval left, Eval right) {
+            super(left, right, CodeRunner.DIVIDE);
+        }
+
+        Object eval(ClosureRunner r) {
+            if (state != LONG) return evalGeneric(r);
+            try {
+                return evalLong(r);
+            } catch (Unexpected e) {
+                return e.value;
+            }
+        }
+
+        long evalLong(ClosureRunner r) {
+            if (state != LONG) return expectLong(evalGeneric(r));
+            long a;
+            try {
+                a = left.evalLong(r);
+            } catch (Unexpected e) {
+                return expectLong(despecialize(e.value, right.eval(r)));
+            }
+            try {
+                return a / right.evalLong(r);
+            } catch (Unexpected e) {
+                return expectLong(despecialize(a, e.value));
+            }
+        }
+    }
+
+    private static final class Modulo extends Arithmetic {
+        Modulo(Eval left, Eval right) {
+            super(left, right, CodeRunner.MODULO);
+        }
+
+        Object eval(ClosureRunner r) {
+            if (state != LONG) return evalGeneric(r);
+            try {
+                return evalLong(r);
+            } catch (Unexpected e) {
+                return e.value;
+            }
+        }
+
+        long evalLong(ClosureRunner r) {
+            if (state != LONG) return expectLong(evalGeneric(r));
+            long a;
+            try {
+                a = left.evalLong(r);
+            } catch (Unexpected e) {
+                return expectLong(despecialize(e.value, right.eval(r)));
+            }
+            try {
+                return a % right.evalLong(r);
+            } catch (Unexpected e) {
+                return expectLong(despecialize(a, e.value));
+            }
+        }
+    }
+
+    // Objects.equals, which for two doubles compares their bits
+    private static final class Equals extends Eval {
+        final Eval left, right;
+        final boolean negate;
+        byte state;
+
+        Equals(Eval left, Eval right, boolean negate) {
+            this.left = left;
+            this.right = right;
+            this.negate = negate;
+        }
+
+        Object eval(ClosureRunner r) {
+            return test(r);
+        }
+
+        boolean test(ClosureRunner r) {
+            if (state != LONG) return testGeneric(r);
+            long a;
+            try {
+                a = left.evalLong(r);
+            } catch (Unexpected e) {
+                return despecialize(e.value, right.eval(r));
+            }
+            try {
+                return (a == right.evalLong(r)) != negate;
+            } catch (Unexpected e) {
+                return despecialize(a, e.value);
+            }
+        }
+
+        private boolean testGeneric(ClosureRunner r) {
+            switch (state) {
+                case DOUBLE: {
+                    double a;
+                    try {
+                        a = left.evalDouble(r);
+                    } catch (Unexpected e) {
+                        return despecialize(e.value, right.eval(r));
+                    }
+                    try {
+                        return (Double.doubleToLongBits(a) == Double.doubleToLongBits(right.evalDouble(r))) != negate;
+                    } catch (Unexpected e) {
+                        return despecialize(a, e.value);
+                    }
+                }
+                case GENERIC:
+                    return Objects.equals(left.eval(r), right.eval(r)) != negate;
+                default: {
+                    Object a = left.eval(r), b = right.eval(r);
+                    state = specialization(a, b);
+                    return Objects.equals(a, b) != negate;
+                }
+            }
+        }
+
+        private boolean despecialize(Object a, Object b) {
+            state = GENERIC;
+            return Objects.equals(a, b) != negate;
+        }
+    }
+
+    // Two doubles go by Double.compare, as CodeRunner.compare does
+    private abstract static class Comparison extends Eval {
+        final Eval left, right;
+        byte state;
+
+        Comparison(Eval left, Eval right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        // Whether the comparison holds, given the sign of a compared with b
+        abstract boolean holds(int comparison);
+
+        Object eval(ClosureRunner r) {
+            return test(r);
+        }
+
+        // Every state but LONG
+        boolean testGeneric(ClosureRunner r) {
+            switch (state) {
+                case DOUBLE: {
+                    double a;
+                    try {
+                        a = left.evalDouble(r);
+                    } catch (Unexpected e) {
+                        return despecialize(e.value, right.eval(r));
+                    }
+                    try {
+                        return holds(Double.compare(a, right.evalDouble(r)));
+                    } catch (Unexpected e) {
+                        return despecialize(a, e.value);
+                    }
+                }
+                case GENERIC:
+                    return holds(CodeRunner.compare(left.eval(r), right.eval(r)));
+                default: {
+                    Object a = left.eval(r), b = right.eval(r);
+                    state = specialization(a, b);
+                    return holds(CodeRunner.compare(a, b));
+                }
+            }
+        }
+
+        boolean despecialize(Object a, Object b) {
+            state = GENERIC;
+            return holds(CodeRunner.compare(a, b));
+        }
+    }
+
+    private static final class Less extends Comparison {
+        Less(Eval left, Eval right) {
+            super(left, right);
+        }
+
+        boolean holds(int comparison) {
+            return comparison < 0;
+        }
+
+        boolean test(ClosureRunner r) {
+            if (state != LONG) return testGeneric(r);
+            long a;
+            try {
+                a = left.evalLong(r);
+            } catch (Unexpected e) {
+                return despecialize(e.value, right.eval(r));
+            }
+            try {
+                return a < right.evalLong(r);
+            } catch (Unexpected e) {
+                return despecialize(a, e.value);
+            }
+        }
+    }
+
+    private static final class LessEquals extends Comparison {
+        LessEquals(Eval left, Eval right) {
+            super(left, right);
+        }
+
+        boolean holds(int comparison) {
+            return comparison <= 0;
+        }
+
+        boolean test(ClosureRunner r) {
+            if (state != LONG) return testGeneric(r);
+            long a;
+            try {
+                a = left.evalLong(r);
+            } catch (Unexpected e) {
+                return despecialize(e.value, right.eval(r));
+            }
+            try {
+                return a <= right.evalLong(r);
+            } catch (Unexpected e) {
+                return despecialize(a, e.value);
+            }
+        }
+    }
+
+    private static final class Greater extends Comparison {
+        Greater(Eval left, Eval right) {
+            super(left, right);
+        }
+
+        boolean holds(int comparison) {
+            return comparison > 0;
+        }
+
+        boolean test(ClosureRunner r) {
+            if (state != LONG) return testGeneric(r);
+            long a;
+            try {
+                a = left.evalLong(r);
+            } catch (Unexpected e) {
+                return despecialize(e.value, right.eval(r));
+            }
+            try {
+                return a > right.evalLong(r);
+            } catch (Unexpected e) {
+                return despecialize(a, e.value);
+            }
+        }
+    }
+
+    private static final class GreaterEquals extends Comparison {
+        GreaterEquals(Eval left, Eval right) {
+            super(left, right);
+        }
+
+        boolean holds(int comparison) {
+            return comparison >= 0;
+        }
+
+        boolean test(ClosureRunner r) {
+            if (state != LONG) return testGeneric(r);
+            long a;
+            try {
+                a = left.evalLong(r);
+            } catch (Unexpected e) {
+                return despecialize(e.value, right.eval(r));
+            }
+            try {
+                return a >= right.evalLong(r);
+            } catch (Unexpected e) {
+                return despecialize(a, e.value);
+            }
+        }
+    }
+
+    // The logical operators test their operands, so a comparison under one never boxes its answer
+    private static final class And extends Eval {
+        final Eval left, right;
+        final boolean negate;
+
+        And(Eval left, Eval right, boolean negate) {
+            this.left = left;
+            this.right = right;
+            this.negate = negate;
+        }
+
+        Object eval(ClosureRunner r) {
+            return test(r);
+        }
+
+        boolean test(ClosureRunner r) {
+            return (left.test(r) && right.test(r)) != negate;
+        }
+    }
+
+    private static final class Or extends Eval {
+        final Eval left, right;
+        final boolean negate;
+
+        Or(Eval left, Eval right, boolean negate) {
+            this.left = left;
+            this.right = right;
+            this.negate = negate;
+        }
+
+        Object eval(ClosureRunner r) {
+            return test(r);
+        }
+
+        boolean test(ClosureRunner r) {
+            return (left.test(r) || right.test(r)) != negate;
+        }
+    }
+
+    private static final class Xor extends Eval {
+        final Eval left, right;
+        final boolean negate;
+
+        Xor(Eval left, Eval right, boolean negate) {
+            this.left = left;
+            this.right = right;
+            this.negate = negate;
+        }
+
+        Object eval(ClosureRunner r) {
+            return test(r);
+        }
+
+        boolean test(ClosureRunner r) {
+            boolean a = left.test(r);
+            boolean b = right.test(r);
+            return (a ^ b) != negate;
+        }
+    }
+}
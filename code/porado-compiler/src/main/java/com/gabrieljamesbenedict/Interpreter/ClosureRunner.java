@@ -0,0 +1,49 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.SemanticAnalysis.ScopeResolver;
+import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Runs a program the way CodeRunner does, but through nodes ClosureCompiler built from each
+// statement before it runs, so a loop or function body is only looked at once however often it runs
+public class ClosureRunner {
+
+    public final AbstractSyntaxTree ast;
+
+    // A declared function, its compiled body and the frame it was declared in, like CodeRunner's
+    record Function(String name, int arity, int frameSize, ClosureCompiler.Exec body, int frame, long serial) {}
+
+    Memory memory;
+    Function[] functions;
+
+    // The value of the return statement that completed with RETURN, until its call picks it up
+    Object returnValue;
+
+    public ClosureRunner(AbstractSyntaxTree ast) {
+        this.ast = ast;
+    }
+
+    public void run() {
+        memory = new Memory();
+        functions = new Function[0];
+        returnValue = null;
+
+        List<Statement> program = ast.getStatements();
+        if (program == null) return;
+
+        ScopeResolver resolver = new ScopeResolver();
+        ClosureCompiler compiler = new ClosureCompiler();
+        for (Statement child : program) {
+            Statement resolved = resolver.resolve(child);
+            memory.fit(resolver);
+            if (functions.length < resolver.functions()) {
+                functions = Arrays.copyOf(functions, Math.max(resolver.functions(), functions.length * 2));
+            }
+            // a top-level return ends the program
+            if (CodeRunner.outsideLoop(compiler.statement(resolved).exec(this)) == Completion.RETURN) return;
+        }
+    }
+}
@@ -1,564 +1,448 @@
 package com.gabrieljamesbenedict.Interpreter;
 
-import com.gabrieljamesbenedict.Interpreter.Symbol;
-import com.gabrieljamesbenedict.Interpreter.SymbolTable;
+import com.gabrieljamesbenedict.SemanticAnalysis.ScopeResolver;
 import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
-import com.gabrieljamesbenedict.SyntaxAnalysis.Node;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Address;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Expression;
 import com.gabrieljamesbenedict.SyntaxAnalysis.NodeType;
-import lombok.Data;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
-@Data
-public class CodeRunner {
+@RequiredArgsConstructor
+public class CodeRunner implements CompiledCode.Caller {
 
+    @Getter
     public final AbstractSyntaxTree ast;
-    public final SymbolTable symbolTable = new SymbolTable();
 
-    private final Deque<SymbolTable> scopeStack = new ArrayDeque<>();
+    // Names are resolved to addresses before they run, and the addresses index memory
+    private static final Object UNSET = Memory.UNSET;
 
+    private ScopeResolver resolver;
+    private Memory memory;
+    private Function[] functions = new Function[0];
 
-    public void run() {
-        scopeStack.clear();
-        scopeStack.push(new SymbolTable());
-        visitProgram(ast.getRoot());
+    /*
+        Tiered execution, off unless set. Everything starts out walked as a tree; a function called
+        HOT_CALLS times, or a loop that has turned HOT_TURNS times, is handed to JvmCompiler and runs
+        as JVM bytecode from then on. A loop switches in the middle of running, at its back edge,
+        since Memory already holds everything the compiled loop needs to carry on.
+
+        A function compiled for its declared parameter types declines a call whose arguments are of
+        other types, and that call is walked as a tree instead. After DECLINES of those the
+        function is compiled again to take any arguments. A loop has nothing to decline: what it
+        shares with the code around it stays boxed in Memory and goes through the same rules as
+        here, and only the variables declared inside it whose every assignment is of one type in
+        the code itself are kept as primitives, so no value it meets can break what it was
+        compiled for. The counts are kept by function slot and by the number the resolver gave
+        each loop.
+     */
+    static final int HOT_CALLS = 500;
+    static final int HOT_TURNS = 2000;
+    static final int DECLINES = 20;
+
+    private boolean tiered;
+    private Hotness[] hotFunctions = new Hotness[0];
+    private Hotness[] hotLoops = new Hotness[0];
+
+    // How often a function has been called or a loop has turned, and what it compiled to once hot
+    private static final class Hotness {
+        int count;
+        int declines;
+        CompiledCode code;
+    }
+
+    public void setTiered(boolean tiered) {
+        this.tiered = tiered;
     }
 
 
-    private static class ReturnValue extends RuntimeException {
-        final Object value;
-        public ReturnValue(Object value) { this.value = value; }
+    public void run() {
+        resolver = new ScopeResolver();
+        memory = new Memory();
+        functions = new Function[0];
+        hotFunctions = new Hotness[0];
+        hotLoops = new Hotness[0];
+        visitProgram(ast.getStatements());
     }
 
-    private static class BreakSignal extends RuntimeException {}
-    private static class ContinueSignal extends RuntimeException {}
 
+    // A declared function, worked out once when the declaration runs, and the frame it was declared
+    // in, valid while that call is running. The parameters take slots 0 to arity - 1 of frameSize.
+    private record Function(String name, int arity, int frameSize, Statement body, int frame, long serial,
+                            Statement.FunctionDeclaration declaration) {}
+
+
+    // The value of the return statement that completed with RETURN, until its call picks it up
+    private Object returnValue;
 
-    private void visitProgram(Node program) {
+
+    private void visitProgram(List<Statement> program) {
         if (program == null) return;
-        for (Node child : program.getChildren()) {
-            execStatement(child);
+        // Each top-level statement is resolved just before it runs, so a lazily decoded program is
+        // still only held one statement at a time
+        for (Statement child : program) {
+            Statement resolved = resolver.resolve(child);
+            memory.fit(resolver);
+            if (functions.length < resolver.functions()) {
+                functions = Arrays.copyOf(functions, Math.max(resolver.functions(), functions.length * 2));
+                hotFunctions = Arrays.copyOf(hotFunctions, functions.length);
+            }
+            if (hotLoops.length < resolver.loops()) {
+                hotLoops = Arrays.copyOf(hotLoops, Math.max(resolver.loops(), hotLoops.length * 2));
+            }
+            // a top-level return ends the program
+            if (outsideLoop(execStatement(resolved)) == Completion.RETURN) return;
         }
     }
 
+    // A break or continue has reached a call or the top level without meeting a loop
+    static Completion outsideLoop(Completion completion) {
+        if (completion == Completion.BREAK) throw new RuntimeException("Break outside of a loop");
+        if (completion == Completion.CONTINUE) throw new RuntimeException("Continue outside of a loop");
+        return completion;
+    }
+
 
-    private void execStatement(Node node) {
-        if (node == null) return;
+    private Completion execStatement(Statement node) {
+        if (node == null) return Completion.NORMAL;
 
-        switch (node.getType()) {
+        switch (node) {
 
-            case EMPTY_STATEMENT:
-                return;
+            case Statement.Empty e:
+                return Completion.NORMAL;
 
-            case BLOCK_STATEMENT:
-                executeBlock(node);
-                return;
+            case Statement.Block block:
+                return executeBlock(block);
 
-            case VARIABLE_DECLARATION:
-                execVariableDeclaration(node);
-                return;
+            case Statement.VariableDeclaration decl:
+                execVariableDeclaration(decl);
+                return Completion.NORMAL;
 
-            case ARRAY_DECLARATION:
-                execArrayDeclaration(node);
-                return;
+            case Statement.ArrayDeclaration decl:
+                execArrayDeclaration(decl);
+                return Completion.NORMAL;
 
-            case FUNCTION_DECLARATION:
-                execFunctionDeclaration(node);
-                return;
+            case Statement.FunctionDeclaration decl:
+                execFunctionDeclaration(decl);
+                return Completion.NORMAL;
 
-            case PRINT:
-                Node printExpr = node.getChildren().getFirst();
-                Object value = evalExpression(printExpr);
+            case Statement.Print print:
+                Object value = evalExpression(print.value());
                 System.out.println(stringify(value));
-                break;
+                return Completion.NORMAL;
 
-            case ASSIGNMENT:
-            case ADDITION_ASSIGNMENT:
-            case SUBTRACTION_ASSIGNMENT:
-            case MULTIPLICATION_ASSIGNMENT:
-            case DIVISION_ASSIGNMENT:
-            case MODULO_ASSIGNMENT:
-                execAssignment(node);
-                return;
-
-            case RETURN_STATEMENT:
-                if (!node.getChildren().isEmpty() && node.getChildren().getFirst().getType() != NodeType.NO_RETURN) {
-                    Object r = evalExpression(node.getChildren().getFirst());
-                    throw new ReturnValue(r);
-                } else {
-                    throw new ReturnValue(null);
-                }
+            case Statement.Return ret:
+                returnValue = evalExpression(ret.value());
+                return Completion.RETURN;
 
-            case BREAK:
-                throw new BreakSignal();
+            case Statement.Break b:
+                return Completion.BREAK;
 
-            case CONTINUE:
-                throw new ContinueSignal();
+            case Statement.Continue c:
+                return Completion.CONTINUE;
 
-            case CONDITIONAL:
-                execConditional(node);
-                return;
+            case Statement.Conditional cond:
+                return execConditional(cond);
 
-            case SWITCH:
-                execSwitch(node);
-                return;
+            case Statement.Switch sw:
+                return execSwitch(sw);
 
-            case LOOP:
-                execLoop(node);
-                return;
+            case Statement.ConditionLoop loop:
+                return execConditionLoop(loop);
 
-            case EOF:
-                return;
+            case Statement.For loop:
+                return execFor(loop);
 
+            case Statement.Repeat loop:
+                return execRepeat(loop);
 
-            default:
-                if (isExpressionNode(node.getType())) {
-                    evalExpression(node);
-                    return;
+            case Statement.ExpressionStatement stmt:
+                if (stmt.expression() instanceof Expression.Assignment assignment) {
+                    execAssignment(assignment);
+                    return Completion.NORMAL;
+                }
+                if (isExpressionNode(stmt.kind())) {
+                    evalExpression(stmt.expression());
+                    return Completion.NORMAL;
                 }
 
-                throw new RuntimeException("Unhandled statement node type: " + node.getType());
+                throw new RuntimeException("Unhandled statement node type: " + stmt.kind());
         }
     }
 
 
-    private Object eval(Node node) {
-        switch (node.getType()) {
 
-            case LITERAL_INT -> {
-                return Integer.parseInt(node.getText());
-            }
-            case LITERAL_FLOAT -> {
-                return Float.parseFloat(node.getText());
-            }
-            case LITERAL_STRING -> {
-                return node.getText();//.replace("\"","");
-            }
-            case LITERAL_CHAR -> {
-                return node.getText();//.replace("''","");
-            }
-            case LITERAL_TRUE -> {
-                return true;
-            }
-            case LITERAL_FALSE -> {
-                return false;
-            }
-            case VARIABLE_ACCESS -> {
-                Node varNameNode = node.getChildById(NodeType.VARIABLE_NAME);
-                Symbol symbol = symbolTable.lookup(varNameNode.getText());
-                if (symbol == null) throw new RuntimeException("Undefined variable: " + varNameNode.getText());
-                return symbol.getData();
-            }
-            case ARRAY_ACCESS -> {
-                Node arrayNameNode = node.getChildById(NodeType.ARRAY_NAME);
-                Symbol arraySymbol = symbolTable.lookup(arrayNameNode.getText());
-                if (arraySymbol == null) throw new RuntimeException("Undefined array: " + arrayNameNode.getText());
-                Object[] array = (Object[]) arraySymbol.getData();
-                int index = (int) eval(node.getChildById(NodeType.LITERAL_INT));
-                return array[index];
-            }
-            // Add more operators here (ADDITION, SUBTRACTION, etc.)
-            default -> throw new RuntimeException("Cannot evaluate node type: " + node.getType());
-        }
-    }
-
-
-
-    private void executeBlock(Node block) {
-        SymbolTable blockScope = new SymbolTable();
-        scopeStack.push(blockScope);
-        try {
-            for (Node child : block.getChildren()) {
-                execStatement(child);
-            }
-        } catch (BreakSignal | ContinueSignal bs) {
-            throw bs;
-        } finally {
-            scopeStack.pop();
+    private Completion executeBlock(Statement.Block block) {
+        memory.clear(block.first(), block.slots());
+        List<Statement> statements = block.statements();
+        for (int i = 0; i < statements.size(); i++) {
+            Completion completion = execStatement(statements.get(i));
+            if (completion != Completion.NORMAL) return completion;
         }
+        return Completion.NORMAL;
     }
 
-    private void execVariableDeclaration(Node decl) {
-        // Expect first child to be VARIABLE_NAME (text set)
-        Node nameNode = decl.getChildById(NodeType.VARIABLE_NAME);
-        String name = nameNode.getText();
-        Object initial = null;
-        if (decl.getChildren().stream().anyMatch(n -> n.getType() == NodeType.VARIABLE_BODY)) {
-            Node body = decl.getChildById(NodeType.VARIABLE_BODY);
-            if (!body.getChildren().isEmpty()) {
-                initial = evalExpression(body.getChildren().getFirst());
-            }
-        }
-        Symbol sym = Symbol.builder().name(name).data(initial).build();
-        currentScope().add(sym);
+    private void execVariableDeclaration(Statement.VariableDeclaration decl) {
+        Object initial = evalExpression(decl.value());
+        memory.declare(decl.address(), decl.name(), initial);
     }
 
-    private void execArrayDeclaration(Node decl) {
-        Node arrNameNode = decl.getChildById(NodeType.ARRAY_NAME);
-        if (arrNameNode == null) throw new RuntimeException("Array must have a name");
-        String name = arrNameNode.getText();
+    private void execArrayDeclaration(Statement.ArrayDeclaration decl) {
+        String name = decl.name();
 
         List<Object> arr = new ArrayList<>();
 
-        Node body = decl.getChildById(NodeType.ARRAY_BODY);
-        if (body != null && !body.getChildren().isEmpty()) {
-            Node arrLiteral = body.getChildren().getFirst();
-            if (arrLiteral.getType() == NodeType.LITERAL_ARRAY) {
-                for (Node el : arrLiteral.getChildren()) {
-                    arr.add(parseLiteralNode(el));
-                }
-            } else {
-                // maybe copying another array
-                Symbol other = lookupSymbol(arrLiteral.getText());
-                if (other == null) throw new RuntimeException("Unknown array: " + arrLiteral.getText());
-                Object data = other.getData();
-                if (!(data instanceof List)) throw new RuntimeException("Not an array: " + arrLiteral.getText());
-                arr = new ArrayList<>((List<Object>) data);
+        if (decl.elements() != null) {
+            for (int i = 0; i < decl.elements().size(); i++) {
+                Address address = decl.elementAddresses().get(i);
+                arr.add((address == null) ? decl.elementValues().get(i) : lexemeValue(decl.elements().get(i), address));
             }
+        } else if (decl.copyOf() != null) {
+            // copying another array
+            Object data = memory.load(decl.source());
+            if (data == UNSET) throw new RuntimeException("Unknown array: " + decl.copyOf());
+            if (!(data instanceof List)) throw new RuntimeException("Not an array: " + decl.copyOf());
+            arr = new ArrayList<>((List<Object>) data);
         }
 
-        Symbol sym = Symbol.builder().name(name).data(arr).build();
-        currentScope().add(sym);
+        memory.declare(decl.address(), name, arr);
     }
 
 
 
-    private void execFunctionDeclaration(Node decl) {
-        Node nameNode = decl.getChildById(NodeType.FUNCTION_NAME);
-        String name = nameNode.getText();
-
-        Symbol sym = Symbol.builder().name(name).data(decl).build();
-        symbolTable.add(sym);
+    private void execFunctionDeclaration(Statement.FunctionDeclaration decl) {
+        if (functions[decl.function()] != null) throw new RuntimeException("Symbol already exists: " + decl.name());
+        int arity = (decl.parameters() != null) ? decl.parameters().size() : 0;
+        functions[decl.function()] = new Function(decl.name(), arity, decl.slots(), decl.body(), memory.frame, memory.serials[memory.frame], decl);
     }
 
 
-    private void execAssignment(Node node) {
-        Node left = node.getChildren().getFirst();
-        Node right = node.getChildren().get(1);
-        Object rVal = evalExpression(right);
+    private void execAssignment(Expression.Assignment node) {
+        Expression left = node.target();
+        Object rVal = evalExpression(node.value());
 
-        switch (node.getType()) {
+        switch (node.kind()) {
             case ASSIGNMENT:
                 assignToTarget(left, rVal);
                 break;
             case ADDITION_ASSIGNMENT:
-                assignToTarget(left, arithmeticOpOnTarget(left, rVal, NodeType.ADDITION));
+                update(left, ADD, rVal, true);
                 break;
             case SUBTRACTION_ASSIGNMENT:
-                assignToTarget(left, arithmeticOpOnTarget(left, rVal, NodeType.SUBTRACTION));
+                update(left, SUBTRACT, rVal, true);
                 break;
             case MULTIPLICATION_ASSIGNMENT:
-                assignToTarget(left, arithmeticOpOnTarget(left, rVal, NodeType.MULTIPLICATION));
+                update(left, MULTIPLY, rVal, true);
                 break;
             case DIVISION_ASSIGNMENT:
-                assignToTarget(left, arithmeticOpOnTarget(left, rVal, NodeType.DIVISION));
+                update(left, DIVIDE, rVal, true);
                 break;
             case MODULO_ASSIGNMENT:
-                assignToTarget(left, arithmeticOpOnTarget(left, rVal, NodeType.MODULO));
+                update(left, MODULO, rVal, true);
                 break;
             default:
-                throw new RuntimeException("Unknown assignment type: " + node.getType());
+                throw new RuntimeException("Unknown assignment type: " + node.kind());
         }
     }
 
-    private Object arithmeticOpOnTarget(Node left, Object rVal, NodeType op) {
-        Object currentVal = loadFromTarget(left);
-        Node temp = new Node();
-        temp.setType(op);
-        temp.addChild(makeLiteralFromObject(currentVal));
-        temp.addChild(makeLiteralFromObject(rVal));
-        return evalExpression(temp);
-    }
-
-    private void assignToTarget(Node target, Object value) {
-        if (target.getType() == NodeType.VARIABLE_ACCESS) {
-            String name = target.getText();
-            Symbol s = lookupSymbol(name);
-            if (s == null) {
-                s = Symbol.builder().name(name).data(value).build();
-                symbolTable.add(s);
-            } else {
-                s.setData(value);
-            }
-        } else if (target.getType() == NodeType.ARRAY_ACCESS) {
-            String name = target.getText();
-            Symbol s = lookupSymbol(name);
-            if (s == null) throw new RuntimeException("Unknown array: " + name);
-            Object data = s.getData();
-            if (!(data instanceof List)) throw new RuntimeException(name + " is not an array");
-            List<Object> arr = (List<Object>) data;
+    // Read-modify-write for compound assignment and ++/--. The target's slot, or its array and index,
+    // is found once and the new value is written straight back. Returns the new value, or the old one.
+    private Object update(Expression target, NumericOp op, Object operand, boolean returnNew) {
+        if (target instanceof Expression.Variable variable) {
+            Address address = variable.address();
+            Object[] slots = address.isGlobal() ? memory.globals : memory.stack;
+            int i = address.isGlobal() ? address.slot() : memory.index(address);
+            Object current = slots[i];
+            if (current == UNSET) throw new RuntimeException("Unknown variable: " + variable.name());
+            Object result = numericBinaryRaw(current, operand, op);
+            slots[i] = result;
+            return returnNew ? result : current;
+        } else if (target instanceof Expression.ArrayAccess access) {
+            List<Object> arr = arrayOf(access);
+            int idx = (int) toLong(evalExpression(access.index()));
+            if (idx < 0 || idx >= arr.size())
+                throw new RuntimeException("Array index out of bounds: " + idx);
+            Object current = arr.get(idx);
+            Object result = numericBinaryRaw(current, operand, op);
+            arr.set(idx, result);
+            return returnNew ? result : current;
+        } else {
+            throw new RuntimeException("Unsupported assignment target: " + target.kind());
+        }
+    }
 
-            if (target.getChildren().isEmpty())
-                throw new RuntimeException("Array assignment missing index: " + name);
+    private void assignToTarget(Expression target, Object value) {
+        if (target instanceof Expression.Variable variable) {
+            // an undeclared name resolves to a global, which the assignment creates
+            memory.store(variable.address(), value);
+        } else if (target instanceof Expression.ArrayAccess access) {
+            List<Object> arr = arrayOf(access);
 
-            Node idxNode = target.getChildren().getFirst();
-            int idx = (int) toLong(evalExpression(idxNode));
+            if (access.index() == null)
+                throw new RuntimeException("Array assignment missing index: " + access.name());
+
+            int idx = (int) toLong(evalExpression(access.index()));
 
             if (idx < 0 || idx >= arr.size())
                 throw new RuntimeException("Array index out of bounds: " + idx);
 
             arr.set(idx, value);
         } else {
-            throw new RuntimeException("Unsupported assignment target: " + target.getType());
+            throw new RuntimeException("Unsupported assignment target: " + target.kind());
         }
     }
 
-
-    // read the current value of a target (variable or array access)
-    private Object loadFromTarget(Node target) {
-        if (target.getType() == NodeType.VARIABLE_ACCESS) {
-            String name = target.getText();
-            Symbol s = lookupSymbol(name);
-            if (s == null) throw new RuntimeException("Unknown variable: " + name);
-            return s.getData();
-        } else if (target.getType() == NodeType.ARRAY_ACCESS) {
-            String name = target.getText();
-            Symbol s = lookupSymbol(name);
-            if (s == null) throw new RuntimeException("Unknown array: " + name);
-            Object data = s.getData();
-            if (!(data instanceof List)) throw new RuntimeException(name + " is not an array");
-            List<Object> arr = (List<Object>) data;
-            Object idxObj = evalExpression(target.getChildren().getFirst());
-            int idx = (int) toLong(idxObj);
-            return arr.get(idx);
-        } else {
-            throw new RuntimeException("Unsupported assignment source: " + target.getType());
-        }
+    private List<Object> arrayOf(Expression.ArrayAccess access) {
+        String name = access.name();
+        Object data = memory.load(access.address());
+        if (data == UNSET) throw new RuntimeException("Unknown array: " + name);
+        if (!(data instanceof List)) throw new RuntimeException(name + " is not an array");
+        return (List<Object>) data;
     }
 
     // -----------------------
     // Conditionals & Switch
     // -----------------------
 
-    private void execConditional(Node cond) {
-        // children: IF, ELSE_IF*, ELSE?
-        for (Node n : cond.getChildren()) {
-            if (n.getType() == NodeType.IF) {
-                Node condExpr = n.getChildById(NodeType.IF_CONDITION).getChildren().getFirst();
-                boolean truth = truthy(evalExpression(condExpr));
-                if (truth) {
-                    execStatement(n.getChildById(NodeType.IF_BODY).getChildren().getFirst());
-                    return;
-                }
-            } else if (n.getType() == NodeType.ELSE_IF) {
-                Node condExpr = n.getChildById(NodeType.ELSE_IF_CONDITION).getChildren().getFirst();
-                boolean truth = truthy(evalExpression(condExpr));
-                if (truth) {
-                    execStatement(n.getChildById(NodeType.ELSE_IF_BODY).getChildren().getFirst());
-                    return;
-                }
-            } else if (n.getType() == NodeType.ELSE) {
-                execStatement(n.getChildById(NodeType.ELSE_BODY).getChildren().getFirst());
-                return;
+    private Completion execConditional(Statement.Conditional cond) {
+        // if branch, else-if branches, then the optional else
+        for (Statement.Branch branch : cond.branches()) {
+            boolean truth = truthy(evalExpression(branch.condition()));
+            if (truth) {
+                return execStatement(branch.body());
             }
         }
+        return execStatement(cond.otherwise());
     }
 
-    private void execSwitch(Node switchNode) {
+    // a break inside a case leaves the enclosing loop, not the switch
+    private Completion execSwitch(Statement.Switch switchNode) {
         // Evaluate the switch expression
-        Node switchExprNode = switchNode.getChildById(NodeType.SWITCH_EXPRESSION);
-        if (switchExprNode == null || switchExprNode.getChildren().isEmpty()) {
+        if (switchNode.subject() == null) {
             throw new RuntimeException("Switch has no expression");
         }
-        Object key = evalExpression(switchExprNode.getChildren().getFirst());
-
-        // Get the CASES node
-        Node casesNode = switchNode.getChildById(NodeType.CASES);
-        if (casesNode == null) return;
-
-        boolean ran = false;
+        Object key = evalExpression(switchNode.subject());
 
-        for (Node caseNode : casesNode.getChildren()) {
-            Node caseExprNode = caseNode.getChildById(NodeType.CASE_EXPRESSION);
-            if (caseExprNode == null || caseExprNode.getChildren().isEmpty()) continue;
+        for (Statement.Case caseNode : switchNode.cases()) {
+            if (caseNode.value() == null) continue;
 
-            Object caseVal = evalExpression(caseExprNode.getChildren().getFirst());
+            Object caseVal = evalExpression(caseNode.value());
             if (Objects.equals(caseVal, key)) {
-                // Execute the case body
-                Node caseBody = caseNode.getChildById(NodeType.CASE_BODY);
-                if (caseBody != null) {
-                    for (Node stmt : caseBody.getChildren()) {
-                        if (stmt.getType() == NodeType.BLOCK_STATEMENT) {
-                            execStatement(stmt); // BLOCK_STATEMENT will handle its own children
-                        } else {
-                            execStatement(stmt);
-                        }
-                    }
-                }
-                ran = true;
-                break;// only execute the first matching case
+                // only execute the first matching case
+                return execStatement(caseNode.body());
             }
         }
 
-        if (!ran) {
-            Node defaultNode = switchNode.getChildren().stream()
-                    .filter(n -> n.getType() == NodeType.DEFAULT)
-                    .findFirst().orElse(null);
-
-            if (defaultNode != null) {
-                Node defaultBody = defaultNode.getChildById(NodeType.DEFAULT_BODY);
-                if (defaultBody != null) {
-                    for (Node stmt : defaultBody.getChildren()) {
-                        if (stmt.getType() == NodeType.BLOCK_STATEMENT) {
-                            execStatement(stmt);
-                        } else {
-                            execStatement(stmt);
-                        }
-                    }
-                }
-            }
-        }
+        return execStatement(switchNode.otherwise());
     }
 
 
-    private void execLoop(Node loopNode) {
-        // loopNode children contain nodes like WHILE, UNTIL, FOR, REPEAT, etc
-        for (Node n : loopNode.getChildren()) {
-            switch (n.getType()) {
-                case WHILE: {
-                    Node condn = n.getChildById(NodeType.LOOP_CONDITION).getChildren().getFirst();
-                    Node body = n.getChildById(NodeType.LOOP_BODY).getChildren().getFirst();
-
-                    while (truthy(evalExpression(condn))) {
-                        try {
-                            execStatement(body);
-                        } catch (BreakSignal bs) {
-                            return;
-                        } catch (ContinueSignal cs) {
-                        }
-                    }
-                    break;
-                }
-                case UNTIL: {
-                    Node condn = n.getChildById(NodeType.LOOP_CONDITION).getChildren().getFirst();
-                    Node body = n.getChildById(NodeType.LOOP_BODY).getChildren().getFirst();
-
-                    while (!truthy(evalExpression(condn))) {
-                        try {
-                            execStatement(body);
-                        } catch (BreakSignal bs) {
-                            return;
-                        } catch (ContinueSignal cs) {
-                        }
-                    }
-                    break;
-                }
-                case REPEAT: {
-                    Node amountNode = n.getChildById(NodeType.REPEAT_AMOUNT).getChildren().getFirst();
-                    long times = toLong(evalExpression(amountNode));
-                    Node body = n.getChildById(NodeType.LOOP_BODY).getChildren().getFirst();
-                    for (long i = 0; i < times; i++) {
-                        try {
-                            execStatement(body);
-                        } catch (BreakSignal bs) {
-                            return;
-                        } catch (ContinueSignal cs) {
-                        }
-                    }
-                    break;
-                }
+    private Completion execConditionLoop(Statement.ConditionLoop loop) {
+        // WHILE and DO_WHILE run while the condition holds, UNTIL and DO_UNTIL until it does
+        boolean until = (loop.kind() == NodeType.UNTIL || loop.kind() == NodeType.DO_UNTIL);
+        boolean testFirst = (loop.kind() == NodeType.WHILE || loop.kind() == NodeType.UNTIL);
 
-                case FOR: {
-                    Node body = n.getChildById(NodeType.LOOP_BODY).getChildren().getFirst();
-
-                    String forVar = null;
-                    String forArr = null;
-
-                    for (Node ch : n.getChildren()) {
-                        if (ch.getType() == NodeType.FOR_VARIABLE && ch.getText() != null) forVar = ch.getText();
-                        if (ch.getType() == NodeType.FOR_ARRAY && ch.getText() != null) forArr = ch.getText();
-                    }
-                    if (forArr == null) {
-                        throw new RuntimeException("FOR loop interpreter expected FOR_ARRAY name present on node");
-                    }
-                    Symbol arrSym = lookupSymbol(forArr);
-                    if (arrSym == null || !(arrSym.getData() instanceof List)) throw new RuntimeException("FOR source not array: " + forArr);
-                    List<Object> arr = (List<Object>) arrSym.getData();
-                    for (int i = 0; i < arr.size(); i++) {
-                        if (forVar != null) {
-                            // set element into current scope
-                            Symbol s = lookupLocalSymbol(forVar);
-                            if (s == null) {
-                                s = Symbol.builder().name(forVar).data(arr.get(i)).build();
-                                currentScope().add(s);
-                            } else {
-                                s.setData(arr.get(i));
-                            }
-                        }
-                        try {
-                            execStatement(body);
-                        } catch (BreakSignal bs) { break; }
-                        catch (ContinueSignal cs) { continue; }
-                    }
-                    break;
-                }
-                default: break;
-            }
+        // a compiled loop starts with its test, which a do loop runs after one turn
+        Hotness hot = tiered ? hotness(loop.loop()) : null;
+        if (hot != null && hot.code != null && testFirst) return finish(hot.code.run(this, memory, null, 0, 0));
+
+        if (testFirst && truthy(evalExpression(loop.condition())) == until) return Completion.NORMAL;
+        do {
+            Completion completion = execStatement(loop.body());
+            if (completion == Completion.BREAK) return Completion.NORMAL;
+            if (completion == Completion.RETURN) return completion;
+            if (hot != null && turned(hot, loop)) return finish(hot.code.run(this, memory, null, 0, 0));
+        } while (truthy(evalExpression(loop.condition())) != until);
+        return Completion.NORMAL;
+    }
+
+    private Completion execRepeat(Statement.Repeat loop) {
+        long times = toLong(evalExpression(loop.times()));
+        // the compiled loop is told the count and the turn that has just ended
+        Hotness hot = tiered ? hotness(loop.loop()) : null;
+        if (hot != null && hot.code != null) return finish(hot.code.run(this, memory, new Object[] { times, -1L }, 0, 2));
+
+        for (long i = 0; i < times; i++) {
+            Completion completion = execStatement(loop.body());
+            if (completion == Completion.BREAK) return Completion.NORMAL;
+            if (completion == Completion.RETURN) return completion;
+            if (hot != null && turned(hot, loop)) return finish(hot.code.run(this, memory, new Object[] { times, i }, 0, 2));
+        }
+        return Completion.NORMAL;
+    }
+
+    private Completion execFor(Statement.For loop) {
+        Object source = memory.load(loop.source());
+        if (!(source instanceof List)) throw new RuntimeException("FOR source not array: " + loop.array());
+        List<Object> arr = (List<Object>) source;
+        // the compiled loop is told the array and the index of the next element
+        Hotness hot = tiered ? hotness(loop.loop()) : null;
+        if (hot != null && hot.code != null) return finish(hot.code.run(this, memory, new Object[] { arr, 0L }, 0, 2));
+
+        for (int i = 0; i < arr.size(); i++) {
+            // the element variable lives in the scope around the loop
+            memory.store(loop.element(), arr.get(i));
+            Completion completion = execStatement(loop.body());
+            if (completion == Completion.BREAK) return Completion.NORMAL;
+            if (completion == Completion.RETURN) return completion;
+            if (hot != null && turned(hot, loop)) return finish(hot.code.run(this, memory, new Object[] { arr, i + 1L }, 0, 2));
         }
+        return Completion.NORMAL;
     }
 
+    private Hotness hotness(int loop) {
+        Hotness hot = hotLoops[loop];
+        if (hot == null) hot = hotLoops[loop] = new Hotness();
+        return hot;
+    }
 
-    private Object evalExpression(Node node) {
+    // Counts a turn of a loop, true once there is compiled code to carry on in
+    private static boolean turned(Hotness hot, Statement loop) {
+        if (hot.count < HOT_TURNS && ++hot.count == HOT_TURNS) hot.code = JvmCompiler.compileLoop(loop);
+        return hot.code != null;
+    }
+
+    // How a compiled loop ended, as the loop's completion
+    private Completion finish(Object result) {
+        if (result == JvmRuntime.NORMAL) return Completion.NORMAL;
+        returnValue = result;
+        return Completion.RETURN;
+    }
+
+
+    private Object evalExpression(Expression node) {
         if (node == null) return null;
-        switch (node.getType()) {
+        switch (node) {
 
-            case LITERAL_INT:
-                return Long.parseLong(node.getText());
-            case LITERAL_FLOAT:
-                return Double.parseDouble(node.getText());
-            case LITERAL_STRING:
-                return node.getText();
-            case LITERAL_CHAR:
-                String txt = node.getText();
-                if (txt.length() >= 3 && txt.startsWith("'") && txt.endsWith("'")) {
-                    return txt.charAt(1);
-                }
-                throw new RuntimeException("Invalid char literal: " + txt);
-            case LITERAL_TRUE:
-                return Boolean.TRUE;
-            case LITERAL_FALSE:
-                return Boolean.FALSE;
-            case LITERAL_ARRAY: {
-                List<Object> arr = new ArrayList<>();
-                for (Node el : node.getChildren()) arr.add(parseLiteralNode(el));
-                return arr;
-            }
+            // decoded when the tree was built; evalLiteral only reports the ones that failed to
+            case Expression.Literal literal:
+                return (literal.value() != null) ? literal.value() : evalLiteral(literal);
 
             // Variable access
-            case VARIABLE_ACCESS: {
-                String name = node.getText();
-                Symbol s = lookupSymbol(name);
-                if (s == null) throw new RuntimeException("Undefined variable: " + name);
-                return s.getData();
-            }
-
-            // Variable name
-            case VARIABLE_NAME: {
-                String name = node.getText();
-                Symbol s = lookupSymbol(name);
-                if (s == null) throw new RuntimeException("Undefined variable: " + name);
-                return s.getData();
+            case Expression.Variable variable: {
+                Object value = memory.load(variable.address());
+                if (value == UNSET) throw new RuntimeException("Undefined variable: " + variable.name());
+                return value;
             }
 
             // Array access
-            case ARRAY_ACCESS: {
-                String name = node.getText();
-                Symbol s = lookupSymbol(name);
-                if (s == null) throw new RuntimeException("Undefined array: " + name);
-                Object data = s.getData();
+            case Expression.ArrayAccess access: {
+                String name = access.name();
+                Object data = memory.load(access.address());
+                if (data == UNSET) throw new RuntimeException("Undefined array: " + name);
                 if (!(data instanceof List)) throw new RuntimeException(name + " is not an array");
                 List<Object> arr = (List<Object>) data;
 
-                if (node.getChildren().isEmpty())
+                if (access.index() == null)
                     throw new RuntimeException("Array index missing for " + name);
 
-                Node idxNode = node.getChildren().getFirst();  // first child is the index expression
-                int idx = (int) toLong(evalExpression(idxNode));
+                int idx = (int) toLong(evalExpression(access.index()));
 
                 if (idx < 0 || idx >= arr.size())
                     throw new RuntimeException("Array index out of bounds: " + idx);
@@ -568,81 +452,137 @@ public class CodeRunner {
 
 
             // function call
-            case FUNCTION_CALL: {
-                String fname = node.getText();
-                Symbol fsym = lookupSymbol(fname);
-                if (fsym == null) throw new RuntimeException("Unknown function: " + fname);
-                Object funcData = fsym.getData();
-                if (!(funcData instanceof Node)) throw new RuntimeException("Function symbol malformed: " + fname);
-                Node funcDecl = (Node) funcData;
-                // get parameter names and body
-                List<Node> paramNodes = new ArrayList<>();
-                if (funcDecl.getChildren().stream().anyMatch(n -> n.getType() == NodeType.FUNCTION_PARAMETERS)) {
-                    Node params = funcDecl.getChildById(NodeType.FUNCTION_PARAMETERS);
-                    paramNodes = params.getChildren();
-                }
-                Node body = funcDecl.getChildById(NodeType.FUNCTION_BODY);
-
-                // build argument values from FUNCTION_ARGUMENTS (child 0)
-                Node argsNode = node.getChildById(NodeType.FUNCTION_ARGUMENTS);
-                List<Object> argValues = argsNode.getChildren().stream()
-                        .map(arg -> {
-                            // each FUNCTION_ARGUMENT contains a FUNCTION_ARGUMENT_NAME which holds lexeme text for literal or identifier
-                            Node argName = arg.getChildById(NodeType.FUNCTION_ARGUMENT_NAME);
-                            Node argType = arg.getChildById(NodeType.FUNCTION_ARGUMENT_TYPE);
-                            // parser produced argument nodes with lexeme text; for simplicity we evaluate by parsing text or treating as literal
-                            // If argType text starts with LITERAL_ we parse literal; else if IDENTIFIER then lookup
-                            String typeText = argType.getText();
-                            if (typeText == null) {
-                                // try evaluate the argument child by evaluating the FUNCTION_ARGUMENT_NAME as expression
-                                return tryParseLiteralOrLookup(argName.getText());
-                            } else {
-                                // try parse literal or lookup
-                                return tryParseLiteralOrLookup(argName.getText());
-                            }
-                        }).collect(Collectors.toList());
-
-                // call: create new scope and bind parameters
-                SymbolTable local = new SymbolTable();
-                scopeStack.push(local);
-                try {
-                    // bind params
-                    for (int i = 0; i < paramNodes.size(); i++) {
-                        Node param = paramNodes.get(i);
-                        String pname = param.getChildById(NodeType.FUNCTION_PARAMETER_NAME).getText();
-                        Object pval = (i < argValues.size()) ? argValues.get(i) : null;
-                        local.add(Symbol.builder().name(pname).data(pval).build());
-                    }
-
-                    // execute function body: body is FUNCTION_BODY -> BLOCK_STATEMENT
-                    try {
-                        execStatement(body.getChildren().getFirst());
-                    } catch (ReturnValue rv) {
-                        return rv.value;
-                    }
-                    // no explicit return
-                    return null;
-                } finally {
-                    scopeStack.pop();
-                }
+            case Expression.Call call:
+                return call(call);
+
+            case Expression.Binary binary:
+                return evalBinary(binary);
+
+            case Expression.Unary unary:
+                return evalUnary(unary);
+
+            case Expression.Assignment assignment:
+                throw new RuntimeException("Unhandled expression node: " + assignment.kind());
+        }
+    }
+
+    // The resolver fixed the callee's slot and a function is only declared once per run, so the slot
+    // is the call site's cache: one array load finds the descriptor, and a call is a frame push.
+    private Object call(Expression.Call call) {
+        Function function = functions[call.function()];
+        if (function == null) throw new RuntimeException("Unknown function: " + call.name());
+        if (tiered) return callTiered(call.function(), call.arguments());
+
+        List<Expression> args = call.arguments();
+        int arity = function.arity();
+
+        // The arguments run in the caller's frame and land straight in the callee's. Missing
+        // arguments are null and extra ones are evaluated and dropped.
+        int caller = memory.frame;
+        int base = memory.reserve(function.frameSize());
+        try {
+            for (int i = 0; i < args.size(); i++) {
+                Object value = evalExpression(args.get(i));
+                if (i < arity) memory.stack[base + i] = value;
             }
+            memory.prepare(base, args.size(), arity, function.frameSize());
+            memory.enter(base, function.frame(), function.serial());
+
+            // without an explicit return the call gives null
+            if (outsideLoop(execStatement(function.body())) != Completion.RETURN) return null;
+            Object result = returnValue;
+            returnValue = null;
+            return result;
+        } finally {
+            memory.leave(caller, base);
+        }
+    }
+
+    // Tiered calls work the arguments out first, as compiled code takes them in an array
+    private Object callTiered(int slot, List<Expression> args) {
+        Object[] arguments = new Object[args.size()];
+        for (int i = 0; i < arguments.length; i++) arguments[i] = evalExpression(args.get(i));
+        return invoke(slot, arguments);
+    }
+
+    @Override
+    public void checkFunction(int slot, String name) {
+        if (functions[slot] == null) throw new RuntimeException("Unknown function: " + name);
+    }
+
+    // A call with its arguments worked out, from a tiered call or from compiled code
+    @Override
+    public Object invoke(int slot, Object[] arguments) {
+        Function function = functions[slot];
+        Hotness hot = hotFunctions[slot];
+        if (hot == null) hot = hotFunctions[slot] = new Hotness();
+        if (hot.count < HOT_CALLS && ++hot.count == HOT_CALLS) hot.code = JvmCompiler.compile(function.declaration());
+
+        if (hot.code != null) {
+            Object result = hot.code.run(this, memory, arguments, 0, arguments.length);
+            if (result != JvmRuntime.DECLINED) return result;
+            if (++hot.declines == DECLINES) hot.code = JvmCompiler.compileGeneric(function.declaration());
+        }
+
+        int arity = function.arity();
+        int caller = memory.frame;
+        int base = memory.reserve(function.frameSize());
+        try {
+            for (int i = 0; i < Math.min(arguments.length, arity); i++) memory.stack[base + i] = arguments[i];
+            memory.prepare(base, arguments.length, arity, function.frameSize());
+            memory.enter(base, function.frame(), function.serial());
+
+            if (outsideLoop(execStatement(function.body())) != Completion.RETURN) return null;
+            Object result = returnValue;
+            returnValue = null;
+            return result;
+        } finally {
+            memory.leave(caller, base);
+        }
+    }
+
+    static Object evalLiteral(Expression.Literal node) {
+        switch (node.kind()) {
+            case LITERAL_INT:
+                return Long.parseLong(node.text());
+            case LITERAL_FLOAT:
+                return Double.parseDouble(node.text());
+            case LITERAL_STRING:
+                return node.text();
+            case LITERAL_CHAR:
+                String txt = node.text();
+                if (txt.length() >= 3 && txt.startsWith("'") && txt.endsWith("'")) {
+                    return txt.charAt(1);
+                }
+                throw new RuntimeException("Invalid char literal: " + txt);
+            case LITERAL_TRUE:
+                return Boolean.TRUE;
+            case LITERAL_FALSE:
+                return Boolean.FALSE;
+            default:
+                throw new RuntimeException("Unhandled expression node: " + node.kind());
+        }
+    }
+
+    private Object evalBinary(Expression.Binary node) {
+        switch (node.kind()) {
 
-            // Binary operators (structure: node.children[0] left, children[1] right)
+            // Arithmetic
             case ADDITION:
-                return numericBinaryOp(node, (a, b) -> a + b);
+                return numericBinaryOp(node, ADD);
             case SUBTRACTION:
-                return numericBinaryOp(node, (a, b) -> a - b);
+                return numericBinaryOp(node, SUBTRACT);
             case MULTIPLICATION:
-                return numericBinaryOp(node, (a, b) -> a * b);
+                return numericBinaryOp(node, MULTIPLY);
             case DIVISION:
-                return numericBinaryOp(node, (a, b) -> a / b);
+                return numericBinaryOp(node, DIVIDE);
             case MODULO:
-                return numericBinaryOp(node, (a, b) -> a % b);
+                return numericBinaryOp(node, MODULO);
 
             case EQUALS:
-                return Objects.equals(evalExpression(node.getChildren().getFirst()), evalExpression(node.getChildren().get(1)));
+                return Objects.equals(evalExpression(node.left()), evalExpression(node.right()));
             case NOTEQUALS:
-                return !Objects.equals(evalExpression(node.getChildren().getFirst()), evalExpression(node.getChildren().get(1)));
+                return !Objects.equals(evalExpression(node.left()), evalExpression(node.right()));
 
             case LESS:
                 return compareNumeric(node) < 0;
@@ -654,49 +594,48 @@ public class CodeRunner {
                 return compareNumeric(node) >= 0;
 
             case AND:
-                return truthy(evalExpression(node.getChildren().getFirst())) && truthy(evalExpression(node.getChildren().get(1)));
+                return truthy(evalExpression(node.left())) && truthy(evalExpression(node.right()));
             case NAND:
-                return !(truthy(evalExpression(node.getChildren().getFirst())) && truthy(evalExpression(node.getChildren().get(1))));
+                return !(truthy(evalExpression(node.left())) && truthy(evalExpression(node.right())));
             case OR:
-                return truthy(evalExpression(node.getChildren().getFirst())) || truthy(evalExpression(node.getChildren().get(1)));
+                return truthy(evalExpression(node.left())) || truthy(evalExpression(node.right()));
             case NOR:
-                return !(truthy(evalExpression(node.getChildren().getFirst())) || truthy(evalExpression(node.getChildren().get(1))));
+                return !(truthy(evalExpression(node.left())) || truthy(evalExpression(node.right())));
             case XOR: {
-                boolean a = truthy(evalExpression(node.getChildren().getFirst()));
-                boolean b = truthy(evalExpression(node.getChildren().get(1)));
+                boolean a = truthy(evalExpression(node.left()));
+                boolean b = truthy(evalExpression(node.right()));
                 return a ^ b;
             }
             case XNOR: {
-                boolean a = truthy(evalExpression(node.getChildren().getFirst()));
-                boolean b = truthy(evalExpression(node.getChildren().get(1)));
+                boolean a = truthy(evalExpression(node.left()));
+                boolean b = truthy(evalExpression(node.right()));
                 return !(a ^ b);
             }
 
+            default:
+                throw new RuntimeException("Unhandled expression node: " + node.kind());
+        }
+    }
+
+    private Object evalUnary(Expression.Unary node) {
+        switch (node.kind()) {
+
             case NEGATIVE:
-                Object v = evalExpression(node.getChildren().getFirst());
+                Object v = evalExpression(node.operand());
                 if (v instanceof Double) return -((Double) v);
                 return -toLong(v);
 
             case PRE_INCREMENT:
-            case POST_INCREMENT: {
-                Node target = node.getChildren().getFirst();
-                Object current = loadFromTarget(target);
-                Object newv = numericBinaryRaw(current, 1, (a, b) -> a + b);
-                assignToTarget(target, newv);
-                return node.getType() == NodeType.PRE_INCREMENT ? newv : current;
-            }
-
+                return update(node.operand(), ADD, 1L, true);
+            case POST_INCREMENT:
+                return update(node.operand(), ADD, 1L, false);
             case PRE_DECREMENT:
-            case POST_DECREMENT: {
-                Node target = node.getChildren().getFirst();
-                Object current = loadFromTarget(target);
-                Object newv = numericBinaryRaw(current, 1, (a, b) -> a - b);
-                assignToTarget(target, newv);
-                return node.getType() == NodeType.PRE_DECREMENT ? newv : current;
-            }
+                return update(node.operand(), SUBTRACT, 1L, true);
+            case POST_DECREMENT:
+                return update(node.operand(), SUBTRACT, 1L, false);
 
             default:
-                throw new RuntimeException("Unhandled expression node: " + node.getType());
+                throw new RuntimeException("Unhandled expression node: " + node.kind());
         }
     }
 
@@ -704,7 +643,7 @@ public class CodeRunner {
     // Small helpers
     // -----------------------
 
-    private boolean isExpressionNode(NodeType t) {
+    static boolean isExpressionNode(NodeType t) {
         // treat many node types as expressions
         switch (t) {
             case ADDITION: case SUBTRACTION: case MULTIPLICATION: case DIVISION: case MODULO:
@@ -723,58 +662,14 @@ public class CodeRunner {
         }
     }
 
-    private Object parseLiteralNode(Node node) {
-        switch (node.getType()) {
-            case ARRAY_ELEMENT:
-                // parser stores token lexeme in text
-                return tryParseLiteralOrLookup(node.getText());
-            case LITERAL_INT:
-                return Long.parseLong(node.getText());
-            case LITERAL_FLOAT:
-                return Double.parseDouble(node.getText());
-            case LITERAL_STRING:
-                return node.getText();
-            case LITERAL_CHAR:
-                return node.getText().charAt(0);
-            case LITERAL_TRUE:
-                return true;
-            case LITERAL_FALSE:
-                return false;
-            default:
-                // fallback: evaluate as expression
-                return evalExpression(node);
-        }
-    }
-
-    private Object tryParseLiteralOrLookup(String lexeme) {
-        if (lexeme == null) return null;
-        // try integer
-        try { return Long.parseLong(lexeme); } catch (Exception ignored) {}
-        try { return Double.parseDouble(lexeme); } catch (Exception ignored) {}
-        if ("true".equalsIgnoreCase(lexeme)) return true;
-        if ("false".equalsIgnoreCase(lexeme)) return false;
-        if (lexeme.length() >= 2 && lexeme.startsWith("\"") && lexeme.endsWith("\"")) return lexeme.substring(1, lexeme.length()-1);
-        // else lookup variable
-        Symbol s = lookupSymbol(lexeme);
-        if (s != null) return s.getData();
+    // The resolver gave an address to every lexeme that does not read as a literal
+    private Object lexemeValue(String lexeme, Address address) {
+        Object value = memory.load(address);
         // fallback raw string
-        return lexeme;
-    }
-
-    private Node makeLiteralFromObject(Object o) {
-        Node n = new Node();
-        if (o == null) { n.setType(NodeType.LITERAL_STRING); n.setText("null"); return n; }
-        if (o instanceof Long) { n.setType(NodeType.LITERAL_INT); n.setText(Long.toString((Long)o)); return n; }
-        if (o instanceof Double) { n.setType(NodeType.LITERAL_FLOAT); n.setText(Double.toString((Double)o)); return n; }
-        if (o instanceof Boolean) { n.setType((Boolean)o ? NodeType.LITERAL_TRUE : NodeType.LITERAL_FALSE); n.setText(Boolean.toString((Boolean)o)); return n; }
-        if (o instanceof String) { n.setType(NodeType.LITERAL_STRING); n.setText((String)o); return n; }
-        // arrays and other types are not used here
-        n.setType(NodeType.LITERAL_STRING);
-        n.setText(o.toString());
-        return n;
+        return (value == UNSET) ? lexeme : value;
     }
 
-    private long toLong(Object v) {
+    static long toLong(Object v) {
         if (v == null) return 0;
         if (v instanceof Long) return (Long) v;
         if (v instanceof Integer) return (Integer) v;
@@ -783,7 +678,7 @@ public class CodeRunner {
         throw new RuntimeException("Cannot convert to long: " + v.getClass());
     }
 
-    private double toDouble(Object v) {
+    static double toDouble(Object v) {
         if (v == null) return 0.0;
         if (v instanceof Double) return (Double) v;
         if (v instanceof Long) return ((Long) v).doubleValue();
@@ -792,7 +687,7 @@ public class CodeRunner {
         throw new RuntimeException("Cannot convert to double: " + v.getClass());
     }
 
-    private boolean truthy(Object v) {
+    static boolean truthy(Object v) {
         if (v == null) return false;
         if (v instanceof Boolean) return (Boolean) v;
         if (v instanceof Long) return ((Long) v) != 0L;
@@ -802,9 +697,9 @@ public class CodeRunner {
         return true;
     }
 
-    private Object numericBinaryOp(Node node, NumericOp op) {
-        Object a = evalExpression(node.getChildren().getFirst());
-        Object b = evalExpression(node.getChildren().get(1));
+    private Object numericBinaryOp(Expression.Binary node, NumericOp op) {
+        Object a = evalExpression(node.left());
+        Object b = evalExpression(node.right());
         // if any double -> double arithmetic
         if (a instanceof Double || b instanceof Double) {
             double ad = toDouble(a), bd = toDouble(b);
@@ -815,7 +710,7 @@ public class CodeRunner {
         }
     }
 
-    private Object numericBinaryRaw(Object a, Object bObj, NumericOp op) {
+    static Object numericBinaryRaw(Object a, Object bObj, NumericOp op) {
         if (a instanceof Double || bObj instanceof Double) {
             double ad = toDouble(a), bd = toDouble(bObj);
             return op.applyDouble(ad, bd);
@@ -825,9 +720,11 @@ public class CodeRunner {
         }
     }
 
-    private int compareNumeric(Node node) {
-        Object left = evalExpression(node.getChildren().getFirst());
-        Object right = evalExpression(node.getChildren().get(1));
+    private int compareNumeric(Expression.Binary node) {
+        return compare(evalExpression(node.left()), evalExpression(node.right()));
+    }
+
+    static int compare(Object left, Object right) {
         if (left instanceof Double || right instanceof Double) {
             double dL = toDouble(left), dR = toDouble(right);
             return Double.compare(dL, dR);
@@ -837,40 +734,22 @@ public class CodeRunner {
         }
     }
 
-    private String stringify(Object value) {
+    static String stringify(Object value) {
 //        if (value instanceof String) return "\"" + value + "\"";
 //        if (value instanceof Character) return "'" + value + "'";
         return String.valueOf(value);
     }
 
 
-    private SymbolTable currentScope() {
-        return scopeStack.peek();
-    }
-
-    private Symbol lookupLocalSymbol(String name) {
-        SymbolTable local = scopeStack.peek();
-        if (local == null) return null;
-        return local.lookup(name);
-    }
-
-    private Symbol lookupSymbol(String name) {
-        // check local scopes from top -> bottom
-        for (SymbolTable st : scopeStack) {
-            Symbol s = st.lookup(name);
-            if (s != null) return s;
-        }
-        // then global symbol table
-        return symbolTable.lookup(name);
-    }
-
-    private Object loadFromTargetForEval(Node target) {
-        return loadFromTarget(target);
-    }
-
     // Interface for numeric operations
-    private interface NumericOp {
+    interface NumericOp {
         long applyLong(long a, long b);
         default double applyDouble(double a, double b) { return applyLong((long)a, (long)b); }
     }
+
+    static final NumericOp ADD = (a, b) -> a + b;
+    static final NumericOp SUBTRACT = (a, b) -> a - b;
+    static final NumericOp MULTIPLY = (a, b) -> a * b;
+    static final NumericOp DIVIDE = (a, b) -> a / b;
+    static final NumericOp MODULO = (a, b) -> a % b;
 }
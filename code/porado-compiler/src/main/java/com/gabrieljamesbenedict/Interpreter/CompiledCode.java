@@ -0,0 +1,17 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+// A function, top-level statement or loop JvmCompiler turned into a hidden class
+interface CompiledCode {
+
+    // The runner compiled code runs under, which it calls other functions through
+    interface Caller {
+        void checkFunction(int slot, String name);
+        Object invoke(int slot, Object[] arguments);
+    }
+
+    // Runs with count arguments from arguments[at]. A function gives its result, or
+    // JvmRuntime.DECLINED without running when an argument is not the type it was compiled for; a
+    // top-level statement or loop gives JvmRuntime.NORMAL unless it returned. A loop is given its
+    // state as the arguments, as JvmCompiler.compileLoop describes.
+    Object run(Caller caller, Memory memory, Object[] arguments, int at, int count);
+}
@@ -0,0 +1,10 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+// How a statement finished. Anything but NORMAL is passed up until a loop or call consumes it,
+// so break, continue and return cost a compare per enclosing statement rather than an exception.
+enum Completion {
+    NORMAL,
+    BREAK,
+    CONTINUE,
+    RETURN
+}
@@ -0,0 +1,67 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.SemanticAnalysis.ScopeResolver;
+import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Lists the bytecode BytecodeRunner would run for a program, for porado disassemble
+public final class Disassembler {
+
+    private Disassembler() {}
+
+    public static String disassemble(AbstractSyntaxTree ast) {
+        StringBuilder out = new StringBuilder();
+        List<Statement> program = ast.getStatements();
+        if (program == null) return "";
+
+        ScopeResolver resolver = new ScopeResolver();
+        for (int i = 0; i < program.size(); i++) {
+            Chunk chunk = BytecodeCompiler.compile(resolver.resolve(program.get(i)), "statement " + (i + 1));
+            disassemble(chunk, out);
+        }
+        return out.toString();
+    }
+
+    // The chunk, then the bodies of the functions it declares
+    static void disassemble(Chunk chunk, StringBuilder out) {
+        List<Chunk.Function> functions = new ArrayList<>();
+        int[] code = chunk.code();
+        Object[] k = chunk.constants();
+
+        out.append("== ").append(chunk.name()).append(" (stack ").append(chunk.maxStack()).append(") ==\n");
+        int pc = 0;
+        while (pc < code.length) {
+            int opcode = code[pc];
+            String kinds = Opcode.OPERANDS[opcode];
+            out.append(String.format("%5d  %-16s", pc, Opcode.NAMES[opcode]));
+
+            StringBuilder comment = new StringBuilder();
+            for (int i = 0; i < kinds.length(); i++) {
+                int operand = code[pc + 1 + i];
+                out.append(' ').append(operand);
+                if (kinds.charAt(i) == 'k') {
+                    Object constant = k[operand];
+                    if (constant instanceof Chunk.Function function) {
+                        functions.add(function);
+                        constant = "function " + function.name();
+                    }
+                    comment.append(comment.isEmpty() ? "  ; " : ", ").append(describe(constant));
+                }
+            }
+            out.append(comment).append('\n');
+            pc += 1 + kinds.length();
+        }
+
+        for (Chunk.Function function : functions) {
+            disassemble(function.body(), out);
+        }
+    }
+
+    private static String describe(Object constant) {
+        if (constant instanceof Character c) return "'" + c + "'";
+        return String.valueOf(constant);
+    }
+}
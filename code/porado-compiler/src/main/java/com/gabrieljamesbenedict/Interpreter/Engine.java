@@ -0,0 +1,54 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
+
+// The ways a parsed program can be run, picked with porado run --engine=NAME
+public enum Engine {
+
+    // walks the tree, the default
+    TREE {
+        public void run(AbstractSyntaxTree ast) {
+            new CodeRunner(ast).run();
+        }
+    },
+
+    // compiles each statement into executable nodes first
+    CLOSURE {
+        public void run(AbstractSyntaxTree ast) {
+            new ClosureRunner(ast).run();
+        }
+    },
+
+    // compiles each statement to bytecode for a dispatch loop
+    VM {
+        public void run(AbstractSyntaxTree ast) {
+            new BytecodeRunner(ast).run();
+        }
+    },
+
+    // the VM, with what it can of the program compiled to JVM classes
+    JVM {
+        public void run(AbstractSyntaxTree ast) {
+            new BytecodeRunner(ast, true).run();
+        }
+    },
+
+    // walks the tree, and compiles what turns out to be hot to JVM classes as it goes
+    TIERED {
+        public void run(AbstractSyntaxTree ast) {
+            CodeRunner runner = new CodeRunner(ast);
+            runner.setTiered(true);
+            runner.run();
+        }
+    };
+
+    public abstract void run(AbstractSyntaxTree ast);
+
+    // null for a name no engine has
+    public static Engine named(String name) {
+        for (Engine engine : values()) {
+            if (engine.name().equalsIgnoreCase(name)) return engine;
+        }
+        return null;
+    }
+}
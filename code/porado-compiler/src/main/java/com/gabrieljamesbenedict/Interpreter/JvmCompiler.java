@@ -0,0 +1,1462 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.SyntaxAnalysis.Address;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Expression;
+import com.gabrieljamesbenedict.SyntaxAnalysis.NodeType;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.io.Serial;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/*
+    Compiles a function, a top-level statement with a loop in it, or a loop already running, to JVM
+    bytecode and defines it as a hidden class, so HotSpot compiles Porado loops and arithmetic to
+    native code like any other Java method.
+
+    Only code the generated class can run by itself is compiled: its own locals and parameters,
+    globals, arrays held in variables, and calls. Code that reads an enclosing function's locals, or
+    declares arrays or functions, stays with the interpreter, and compile gives null for it. Every
+    call compiles afresh and keeps nothing: the runner keeps what it compiled for the run, so runs on
+    other threads never wait on each other here.
+
+    A variable declared int, float or boolean lives in a primitive JVM local when every value
+    assigned to it is statically a long, double or boolean. Parameters too, which the entry checks:
+    a call whose arguments are not those types is declined and runs interpreted instead, and
+    compileGeneric makes a version that boxes them and takes anything. Everything else is boxed, and
+    a slot that could be read before its declaration has run holds UNSET as it would in Memory, so
+    the generated code fails where and how CodeRunner does.
+
+    A loop compiled by compileLoop is entered at its back edge, with the state the interpreter had
+    for it: on-stack replacement. The names it shares with the code around it stay in the Memory
+    frame, so the interpreter sees every change when the loop ends.
+ */
+final class JvmCompiler {
+
+    private enum Kind { LONG, DOUBLE, BOOLEAN, OBJECT }
+
+    // Where a name's value lives in the generated code
+    private sealed interface Place permits Var, Slot, Frame, Global {}
+
+    // A parameter, or a declaration that is the only one of its slot in its block, so nothing can
+    // read it before it has a value. It gets a JVM local of its own.
+    private static final class Var implements Place {
+        final String name;
+        final boolean parameter;
+        Kind kind;
+        int local;
+
+        Var(String name, Kind kind, boolean parameter) {
+            this.name = name;
+            this.kind = kind;
+            this.parameter = parameter;
+        }
+    }
+
+    // A slot of the frame kept the way Memory keeps it
+    private record Slot(int slot) implements Place {}
+
+    // A slot of the running Memory frame itself, for a loop to share with the code around it
+    private record Frame(int slot) implements Place {}
+
+    private record Global(int slot) implements Place {}
+
+    // A value given to a Var: op is -1 for a plain assignment, else the arithmetic applied to it,
+    // by 1 when value is null
+    private record Assign(Var var, int op, Expression value) {}
+
+    private record Loop(Label next, Label exit, Loop outer) {}
+
+    // Thrown while checking code the generated class cannot run
+    private static final class NotCompilable extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        NotCompilable() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String CALLER_TYPE = Type.getInternalName(CompiledCode.Caller.class);
+    private static final String MEMORY = Type.getInternalName(Memory.class);
+    private static final String RUNTIME = Type.getInternalName(JvmRuntime.class);
+    private static final String CODE_RUNNER = Type.getInternalName(CodeRunner.class);
+    private static final String COMPILED_CODE = Type.getInternalName(CompiledCode.class);
+
+    private static final int[] LONG_ARITHMETIC = { LADD, LSUB, LMUL, LDIV, LREM };
+
+    // The locals body starts with: where calls go, the Memory it runs in, its globals, and the
+    // loop state a loop is entered with. The parameters follow.
+    private static final int CALLER = 0, FRAMES = 1, GLOBALS = 2, STATE = 3;
+
+    // null for top-level code and loops
+    private final Statement.FunctionDeclaration function;
+    private final Statement body;
+    private final String name;
+    // Parameters are boxed rather than checked on entry
+    private final boolean generic;
+    // body is a loop entered at its back edge
+    private final boolean osr;
+
+    private final List<Var> parameters = new ArrayList<>();
+    private Kind returns = Kind.OBJECT;
+
+    // What checking found: the place of every name, keyed by the node naming it
+    private final Map<Object, Place> places = new IdentityHashMap<>();
+    private final Map<Statement.For, Place> elements = new IdentityHashMap<>();
+    private final List<Var> vars = new ArrayList<>();
+    private final List<Assign> assigns = new ArrayList<>();
+    private final List<Expression> returnValues = new ArrayList<>();
+    private final Set<Integer> slots = new TreeSet<>();
+
+    // The Vars in scope while checking, by slot, and the blocks of the unit around the statement
+    // being checked
+    private Map<Integer, Var> scope = new HashMap<>();
+    private final List<Statement.Block> blocks = new ArrayList<>();
+
+    private MethodVisitor mv;
+    private int nextLocal;
+    private final Map<Integer, Integer> slotLocals = new HashMap<>();
+    private Loop loop = null;
+
+    private JvmCompiler(Statement.FunctionDeclaration function, Statement body, String name, boolean generic, boolean osr) {
+        this.function = function;
+        this.body = body;
+        this.name = name;
+        this.generic = generic;
+        this.osr = osr;
+    }
+
+    // null when the function uses something the generated code cannot do by itself
+    static CompiledCode compile(Statement.FunctionDeclaration function) {
+        return new JvmCompiler(function, function.body(), function.name(), false, false).compile();
+    }
+
+    // For a function whose calls keep being declined: never declines
+    static CompiledCode compileGeneric(Statement.FunctionDeclaration function) {
+        return new JvmCompiler(function, function.body(), function.name(), true, false).compile();
+    }
+
+    // Only a statement with a loop in it is worth a class of its own
+    static CompiledCode compileTopLevel(Statement statement) {
+        if (!hasLoop(statement)) return null;
+        return new JvmCompiler(null, statement, "top level", false, false).compile();
+    }
+
+    /*
+        A ConditionLoop, Repeat or For, run in the Memory frame it is in, from the point where the
+        condition is tested next. A Repeat is given how many times it runs and the turn that has
+        just ended as two Longs, a For its array and the index of the next element.
+     */
+    static CompiledCode compileLoop(Statement loop) {
+        return new JvmCompiler(null, loop, "loop", false, true).compile();
+    }
+
+    private CompiledCode compile() {
+        try {
+            check();
+        } catch (NotCompilable e) {
+            return null;
+        }
+        infer();
+
+        byte[] bytes;
+        try {
+            bytes = generate();
+        } catch (RuntimeException e) {
+            // ASM refuses a method past the JVM's 64 KB limit
+            return null;
+        }
+
+        try {
+            MethodHandles.Lookup hidden = LOOKUP.defineHiddenClass(bytes, true);
+            return (CompiledCode) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot load the class compiled for " + name, e);
+        }
+    }
+
+    private static boolean hasLoop(Statement node) {
+        if (node == null) return false;
+        return switch (node) {
+            case Statement.ConditionLoop l -> true;
+            case Statement.Repeat l -> true;
+            case Statement.For l -> true;
+            case Statement.Block block -> block.statements().stream().anyMatch(JvmCompiler::hasLoop);
+            case Statement.Conditional cond -> hasLoop(cond.otherwise())
+                    || cond.branches().stream().anyMatch(branch -> hasLoop(branch.body()));
+            case Statement.Switch sw -> hasLoop(sw.otherwise()) || sw.cases().stream().anyMatch(c -> hasLoop(c.body()));
+            default -> false;
+        };
+    }
+
+    // ---------------------------------------------------------------------------
+    // CHECKING
+    // ---------------------------------------------------------------------------
+
+    private void check() {
+        if (function != null) {
+            List<Statement.Parameter> declared = (function.parameters() != null) ? function.parameters() : List.of();
+            for (int i = 0; i < declared.size(); i++) {
+                Statement.Parameter parameter = declared.get(i);
+                if (parameters.stream().anyMatch(p -> p.name.equals(parameter.name()))) throw new NotCompilable();
+                Var var = new Var(parameter.name(), generic ? Kind.OBJECT : declaredKind(parameter.type()), true);
+                parameters.add(var);
+                vars.add(var);
+                scope.put(i, var);
+            }
+            returns = declaredKind(function.returnType());
+        }
+        check(body);
+    }
+
+    private static Kind declaredKind(String type) {
+        if ("int".equalsIgnoreCase(type)) return Kind.LONG;
+        if ("float".equalsIgnoreCase(type)) return Kind.DOUBLE;
+        if ("boolean".equalsIgnoreCase(type)) return Kind.BOOLEAN;
+        return Kind.OBJECT;
+    }
+
+    private Place place(Address address) {
+        if (address.isGlobal()) return new Global(address.slot());
+        if (address.depth() != 0) throw new NotCompilable();
+        Var var = scope.get(address.slot());
+        if (var != null) return var;
+        return slot(address.slot());
+    }
+
+    // A declaration that is not a Var's
+    private Place declared(Address address) {
+        if (address.isGlobal()) return new Global(address.slot());
+        if (address.depth() != 0 || scope.containsKey(address.slot())) throw new NotCompilable();
+        return slot(address.slot());
+    }
+
+    // A loop's slots are its own only inside its blocks; the rest belong to the code around it
+    private Place slot(int slot) {
+        if (osr && blocks.stream().noneMatch(block -> slot >= block.first() && slot < block.first() + block.slots())) {
+            return new Frame(slot);
+        }
+        slots.add(slot);
+        return new Slot(slot);
+    }
+
+    private void check(Statement node) {
+        if (node == null) return;
+
+        switch (node) {
+            case Statement.Empty e -> {}
+            case Statement.Break b -> {}
+            case Statement.Continue c -> {}
+
+            case Statement.Block block -> checkBlock(block);
+
+            case Statement.VariableDeclaration decl -> {
+                check(decl.value());
+                places.put(decl, declared(decl.address()));
+            }
+
+            case Statement.Print print -> check(print.value());
+
+            case Statement.Return ret -> {
+                check(ret.value());
+                returnValues.add(ret.value());
+            }
+
+            case Statement.Conditional cond -> {
+                for (Statement.Branch branch : cond.branches()) {
+                    check(branch.condition());
+                    check(branch.body());
+                }
+                check(cond.otherwise());
+            }
+
+            case Statement.Switch sw -> {
+                if (sw.subject() == null) throw new NotCompilable();
+                check(sw.subject());
+                for (Statement.Case c : sw.cases()) {
+                    if (c.value() == null) continue;
+                    check(c.value());
+                    check(c.body());
+                }
+                check(sw.otherwise());
+            }
+
+            case Statement.ConditionLoop loop -> {
+                check(loop.condition());
+                check(loop.body());
+            }
+
+            case Statement.Repeat loop -> {
+                check(loop.times());
+                check(loop.body());
+            }
+
+            case Statement.For loop -> {
+                places.put(loop, place(loop.source()));
+                elements.put(loop, declared(loop.element()));
+                check(loop.body());
+            }
+
+            case Statement.ExpressionStatement stmt -> {
+                if (stmt.expression() instanceof Expression.Assignment assignment) checkAssignment(assignment);
+                else if (CodeRunner.isExpressionNode(stmt.kind())) check(stmt.expression());
+                else throw new NotCompilable();
+            }
+
+            case Statement.ArrayDeclaration decl -> throw new NotCompilable();
+            case Statement.FunctionDeclaration decl -> throw new NotCompilable();
+        }
+    }
+
+    private void checkBlock(Statement.Block block) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Statement child : block.statements()) countDeclarations(child, counts);
+
+        Map<Integer, Var> outer = scope;
+        scope = new HashMap<>(outer);
+        blocks.add(block);
+        for (Statement child : block.statements()) {
+            if (child instanceof Statement.VariableDeclaration decl && !decl.address().isGlobal()
+                    && counts.get(decl.address().slot()) == 1) {
+                check(decl.value());
+                Var var = new Var(decl.name(), declaredKind(decl.type()), false);
+                vars.add(var);
+                assigns.add(new Assign(var, -1, decl.value()));
+                places.put(decl, var);
+                scope.put(decl.address().slot(), var);
+            } else {
+                check(child);
+            }
+        }
+        blocks.remove(blocks.size() - 1);
+        scope = outer;
+    }
+
+    // The declarations a statement makes into the block it is in, by slot
+    private static void countDeclarations(Statement node, Map<Integer, Integer> counts) {
+        if (node == null) return;
+
+        switch (node) {
+            case Statement.VariableDeclaration decl -> {
+                if (!decl.address().isGlobal()) counts.merge(decl.address().slot(), 1, Integer::sum);
+            }
+            case Statement.For loop -> {
+                if (!loop.element().isGlobal()) counts.merge(loop.element().slot(), 1, Integer::sum);
+                countDeclarations(loop.body(), counts);
+            }
+            case Statement.ConditionLoop loop -> countDeclarations(loop.body(), counts);
+            case Statement.Repeat loop -> countDeclarations(loop.body(), counts);
+            case Statement.Conditional cond -> {
+                for (Statement.Branch branch : cond.branches()) countDeclarations(branch.body(), counts);
+                countDeclarations(cond.otherwise(), counts);
+            }
+            case Statement.Switch sw -> {
+                for (Statement.Case c : sw.cases()) countDeclarations(c.body(), counts);
+                countDeclarations(sw.otherwise(), counts);
+            }
+            default -> {}
+        }
+    }
+
+    private void checkAssignment(Expression.Assignment node) {
+        int op = assignmentOp(node.kind());
+        if (op < 0 && node.kind() != NodeType.ASSIGNMENT) throw new NotCompilable();
+        check(node.value());
+        checkTarget(node.target(), op, node.value());
+    }
+
+    private void checkTarget(Expression target, int op, Expression value) {
+        if (target instanceof Expression.Variable variable) {
+            Place place = place(variable.address());
+            places.put(variable, place);
+            if (place instanceof Var var) assigns.add(new Assign(var, op, value));
+        } else if (target instanceof Expression.ArrayAccess access) {
+            if (access.index() == null) throw new NotCompilable();
+            places.put(access, place(access.address()));
+            check(access.index());
+        } else {
+            throw new NotCompilable();
+        }
+    }
+
+    private void check(Expression node) {
+        if (node == null) return;
+
+        switch (node) {
+            case Expression.Literal literal -> {
+                if (literal.value() == null) throw new NotCompilable();
+            }
+
+            case Expression.Variable variable -> places.put(variable, place(variable.address()));
+
+            case Expression.ArrayAccess access -> {
+                if (access.index() == null) throw new NotCompilable();
+                places.put(access, place(access.address()));
+                check(access.index());
+            }
+
+            case Expression.Call call -> {
+                for (Expression argument : call.arguments()) check(argument);
+            }
+
+            case Expression.Binary binary -> {
+                switch (binary.kind()) {
+                    case ADDITION, SUBTRACTION, MULTIPLICATION, DIVISION, MODULO,
+                         EQUALS, NOTEQUALS, LESS, LESSEQUALS, GREATER, GREATEREQUALS,
+                         AND, NAND, OR, NOR, XOR, XNOR -> {}
+                    default -> throw new NotCompilable();
+                }
+                check(binary.left());
+                check(binary.right());
+            }
+
+            case Expression.Unary unary -> {
+                switch (unary.kind()) {
+                    case NEGATIVE -> check(unary.operand());
+                    case PRE_INCREMENT, POST_INCREMENT -> checkTarget(unary.operand(), 0, null);
+                    case PRE_DECREMENT, POST_DECREMENT -> checkTarget(unary.operand(), 1, null);
+                    default -> throw new NotCompilable();
+                }
+            }
+
+            case Expression.Assignment assignment -> throw new NotCompilable();
+        }
+    }
+
+    private static int assignmentOp(NodeType kind) {
+        return switch (kind) {
+            case ADDITION_ASSIGNMENT -> 0;
+            case SUBTRACTION_ASSIGNMENT -> 1;
+            case MULTIPLICATION_ASSIGNMENT -> 2;
+            case DIVISION_ASSIGNMENT -> 3;
+            case MODULO_ASSIGNMENT -> 4;
+            default -> -1;
+        };
+    }
+
+    private static int arithmetic(NodeType kind) {
+        return switch (kind) {
+            case ADDITION -> 0;
+            case SUBTRACTION -> 1;
+            case MULTIPLICATION -> 2;
+            case DIVISION -> 3;
+            case MODULO -> 4;
+            default -> -1;
+        };
+    }
+
+    // ---------------------------------------------------------------------------
+    // TYPES
+    // ---------------------------------------------------------------------------
+
+    // Starts every Var at its declared kind and boxes the ones given a value of another kind,
+    // until nothing changes. Only ever boxing more, so it ends.
+    private void infer() {
+        if (function != null && completes(body)) returns = Kind.OBJECT;
+
+        boolean changed;
+        do {
+            changed = false;
+            for (Assign assign : assigns) {
+                Var var = assign.var();
+                if (var.kind == Kind.OBJECT) continue;
+                Kind kind = (assign.op() < 0) ? kind(assign.value())
+                        : numeric(var.kind, (assign.value() == null) ? Kind.LONG : kind(assign.value()));
+                if (kind != var.kind) {
+                    var.kind = Kind.OBJECT;
+                    changed = true;
+                }
+            }
+            if (returns != Kind.OBJECT) {
+                for (Expression value : returnValues) {
+                    if (kind(value) != returns) {
+                        returns = Kind.OBJECT;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        } while (changed);
+    }
+
+    // What CodeRunner's arithmetic gives for operands of these kinds, if that is known
+    private static Kind numeric(Kind a, Kind b) {
+        if (a == Kind.LONG && b == Kind.LONG) return Kind.LONG;
+        if (isNumber(a) && isNumber(b)) return Kind.DOUBLE;
+        return Kind.OBJECT;
+    }
+
+    private static boolean isNumber(Kind kind) {
+        return kind == Kind.LONG || kind == Kind.DOUBLE;
+    }
+
+    private Kind kind(Expression node) {
+        if (node == null) return Kind.OBJECT;
+
+        return switch (node) {
+            case Expression.Literal literal -> {
+                if (literal.value() instanceof Long) yield Kind.LONG;
+                if (literal.value() instanceof Double) yield Kind.DOUBLE;
+                if (literal.value() instanceof Boolean) yield Kind.BOOLEAN;
+                yield Kind.OBJECT;
+            }
+            case Expression.Variable variable -> (places.get(variable) instanceof Var var) ? var.kind : Kind.OBJECT;
+            case Expression.ArrayAccess access -> Kind.OBJECT;
+            case Expression.Call call -> selfTyped(call) ? returns : Kind.OBJECT;
+            case Expression.Binary binary ->
+                    (arithmetic(binary.kind()) >= 0) ? numeric(kind(binary.left()), kind(binary.right())) : Kind.BOOLEAN;
+            case Expression.Unary unary -> {
+                if (unary.kind() == NodeType.NEGATIVE) {
+                    Kind operand = kind(unary.operand());
+                    yield isNumber(operand) ? operand : Kind.OBJECT;
+                }
+                yield (places.get(unary.operand()) instanceof Var var) ? numeric(var.kind, Kind.LONG) : Kind.OBJECT;
+            }
+            case Expression.Assignment assignment -> Kind.OBJECT;
+        };
+    }
+
+    // A call of the function being compiled whose arguments are known to pass its entry check, so
+    // it can go straight to the compiled body
+    private boolean selfTyped(Expression.Call call) {
+        if (function == null || call.function() != function.function()) return false;
+        if (call.arguments().size() != parameters.size()) return false;
+        for (int i = 0; i < parameters.size(); i++) {
+            Kind kind = parameters.get(i).kind;
+            if (kind != Kind.OBJECT && kind(call.arguments().get(i)) != kind) return false;
+        }
+        return true;
+    }
+
+    // Whether running the statement can reach its end. Loops always can, as far as this knows.
+    private static boolean completes(Statement node) {
+        if (node == null) return true;
+        return switch (node) {
+            case Statement.Return r -> false;
+            case Statement.Break b -> false;
+            case Statement.Continue c -> false;
+            case Statement.Block block -> block.statements().stream().allMatch(JvmCompiler::completes);
+            case Statement.Conditional cond -> cond.otherwise() == null || completes(cond.otherwise())
+                    || cond.branches().stream().anyMatch(branch -> completes(branch.body()));
+            default -> true;
+        };
+    }
+
+    // ---------------------------------------------------------------------------
+    // GENERATING
+    // ---------------------------------------------------------------------------
+
+    private static String descriptor(Kind kind) {
+        return switch (kind) {
+            case LONG -> "J";
+            case DOUBLE -> "D";
+            case BOOLEAN -> "Z";
+            case OBJECT -> "Ljava/lang/Object;";
+        };
+    }
+
+    private String bodyDescriptor() {
+        StringBuilder descriptor = new StringBuilder("(L" + CALLER_TYPE + ";L" + MEMORY + ";[Ljava/lang/Object;[Ljava/lang/Object;");
+        for (Var parameter : parameters) descriptor.append(descriptor(parameter.kind));
+        return descriptor.append(')').append(descriptor(returns)).toString();
+    }
+
+    private String className() {
+        StringBuilder safe = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            if (Character.isLetterOrDigit(c)) safe.append(c);
+        }
+        return LOOKUP.lookupClass().getPackageName().replace('.', '/') + "/Compiled$" + safe;
+    }
+
+    private byte[] generate() {
+        // Values merged at a jump are only ever used as the types they share, which for the
+        // references here is Object or an interface
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String a, String b) {
+                return OBJECT;
+            }
+        };
+        String className = className();
+        cw.visit(V21, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, className, null, OBJECT, new String[] { COMPILED_CODE });
+
+        MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        generateEntry(cw, className);
+        generateBody(cw, className);
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    // run: checks the arguments a function was compiled for, unboxes them and calls body
+    private void generateEntry(ClassWriter cw, String className) {
+        mv = cw.visitMethod(ACC_PUBLIC, "run", "(L" + CALLER_TYPE + ";L" + MEMORY + ";[Ljava/lang/Object;II)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+
+        int first = 6;
+        Label decline = new Label();
+        for (int i = 0; i < parameters.size(); i++) {
+            // a missing argument is null
+            Label missing = new Label(), given = new Label();
+            mv.visitVarInsn(ILOAD, 5);
+            push(i);
+            mv.visitJumpInsn(IF_ICMPLE, missing);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitVarInsn(ILOAD, 4);
+            push(i);
+            mv.visitInsn(IADD);
+            mv.visitInsn(AALOAD);
+            mv.visitJumpInsn(GOTO, given);
+            mv.visitLabel(missing);
+            mv.visitInsn(ACONST_NULL);
+            mv.visitLabel(given);
+            mv.visitVarInsn(ASTORE, first + i);
+
+            String box = boxType(parameters.get(i).kind);
+            if (box != null) {
+                mv.visitVarInsn(ALOAD, first + i);
+                mv.visitTypeInsn(INSTANCEOF, box);
+                mv.visitJumpInsn(IFEQ, decline);
+            }
+        }
+
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitFieldInsn(GETFIELD, MEMORY, "globals", "[Ljava/lang/Object;");
+        mv.visitVarInsn(ALOAD, 3);
+        for (int i = 0; i < parameters.size(); i++) {
+            mv.visitVarInsn(ALOAD, first + i);
+            Kind kind = parameters.get(i).kind;
+            String box = boxType(kind);
+            if (box != null) {
+                mv.visitTypeInsn(CHECKCAST, box);
+                String unbox = switch (kind) {
+                    case LONG -> "longValue";
+                    case DOUBLE -> "doubleValue";
+                    default -> "booleanValue";
+                };
+                mv.visitMethodInsn(INVOKEVIRTUAL, box, unbox, "()" + descriptor(kind), false);
+            }
+        }
+        mv.visitMethodInsn(INVOKESTATIC, className, "body", bodyDescriptor(), false);
+        box(returns);
+        mv.visitInsn(ARETURN);
+
+        mv.visitLabel(decline);
+        mv.visitFieldInsn(GETSTATIC, RUNTIME, "DECLINED", "Ljava/lang/Object;");
+        mv.visitInsn(ARETURN);
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void generateBody(ClassWriter cw, String className) {
+        mv = cw.visitMethod(ACC_PRIVATE | ACC_STATIC, "body", bodyDescriptor(), null, null);
+        mv.visitCode();
+
+        nextLocal = STATE + 1;
+        for (Var parameter : parameters) parameter.local = allocate(parameter.kind);
+        for (Var var : vars) {
+            if (var.parameter) continue;
+            var.local = allocate(var.kind);
+            zero(var.kind);
+            store(var);
+        }
+        for (int slot : slots) {
+            int local = allocate(Kind.OBJECT);
+            slotLocals.put(slot, local);
+            unset();
+            mv.visitVarInsn(ASTORE, local);
+        }
+
+        statement(body);
+
+        // top-level code runs to its end; so can a function whose results are boxed
+        if (function == null) {
+            mv.visitFieldInsn(GETSTATIC, RUNTIME, "NORMAL", "Ljava/lang/Object;");
+            mv.visitInsn(ARETURN);
+        } else if (returns == Kind.OBJECT) {
+            mv.visitInsn(ACONST_NULL);
+            mv.visitInsn(ARETURN);
+        } else {
+            fail("Reached the end of " + name);
+        }
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    // ---------------------------------------------------------------------------
+    // STATEMENTS
+    // ---------------------------------------------------------------------------
+
+    private void statement(Statement node) {
+        if (node == null) return;
+
+        switch (node) {
+            case Statement.Empty e -> {}
+
+            case Statement.Block block -> {
+                for (int slot = block.first(); slot < block.first() + block.slots(); slot++) {
+                    Integer local = slotLocals.get(slot);
+                    if (local == null) continue;
+                    unset();
+                    mv.visitVarInsn(ASTORE, local);
+                }
+                for (Statement child : block.statements()) statement(child);
+            }
+
+            case Statement.VariableDeclaration decl -> {
+                Place place = places.get(decl);
+                if (place instanceof Var var) {
+                    value(decl.value(), var.kind);
+                    store(var);
+                } else if (place instanceof Slot slot) {
+                    int local = slotLocals.get(slot.slot());
+                    value(decl.value(), Kind.OBJECT);
+                    mv.visitVarInsn(ALOAD, local);
+                    mv.visitLdcInsn(decl.name());
+                    runtime("declare", "(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;");
+                    mv.visitVarInsn(ASTORE, local);
+                } else if (place instanceof Frame frame) {
+                    value(decl.value(), Kind.OBJECT);
+                    mv.visitVarInsn(ALOAD, FRAMES);
+                    push(frame.slot());
+                    mv.visitLdcInsn(decl.name());
+                    runtime("declare", "(Ljava/lang/Object;L" + MEMORY + ";ILjava/lang/String;)V");
+                } else {
+                    value(decl.value(), Kind.OBJECT);
+                    mv.visitVarInsn(ALOAD, GLOBALS);
+                    push(((Global) place).slot());
+                    mv.visitLdcInsn(decl.name());
+                    runtime("declare", "(Ljava/lang/Object;[Ljava/lang/Object;ILjava/lang/String;)V");
+                }
+            }
+
+            case Statement.Print print -> {
+                value(print.value(), Kind.OBJECT);
+                runtime("print", "(Ljava/lang/Object;)V");
+            }
+
+            // a top-level return ends the program, which anything but NORMAL tells the runner
+            case Statement.Return ret -> {
+                Kind kind = (function != null) ? returns : Kind.OBJECT;
+                value(ret.value(), kind);
+                mv.visitInsn(switch (kind) {
+                    case LONG -> LRETURN;
+                    case DOUBLE -> DRETURN;
+                    case BOOLEAN -> IRETURN;
+                    case OBJECT -> ARETURN;
+                });
+            }
+
+            case Statement.Break b -> {
+                if (loop == null) fail("Break outside of a loop");
+                else mv.visitJumpInsn(GOTO, loop.exit());
+            }
+
+            case Statement.Continue c -> {
+                if (loop == null) fail("Continue outside of a loop");
+                else mv.visitJumpInsn(GOTO, loop.next());
+            }
+
+            case Statement.Conditional cond -> {
+                Label end = new Label();
+                for (Statement.Branch branch : cond.branches()) {
+                    Label next = new Label();
+                    jump(branch.condition(), false, next);
+                    statement(branch.body());
+                    mv.visitJumpInsn(GOTO, end);
+                    mv.visitLabel(next);
+                }
+                statement(cond.otherwise());
+                mv.visitLabel(end);
+            }
+
+            case Statement.Switch sw -> {
+                Label end = new Label();
+                int key = allocate(Kind.OBJECT);
+                value(sw.subject(), Kind.OBJECT);
+                mv.visitVarInsn(ASTORE, key);
+                for (Statement.Case c : sw.cases()) {
+                    if (c.value() == null) continue;
+                    Label next = new Label();
+                    value(c.value(), Kind.OBJECT);
+                    mv.visitVarInsn(ALOAD, key);
+                    mv.visitMethodInsn(INVOKESTATIC, "java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z", false);
+                    mv.visitJumpInsn(IFEQ, next);
+                    statement(c.body());
+                    mv.visitJumpInsn(GOTO, end);
+                    mv.visitLabel(next);
+                }
+                statement(sw.otherwise());
+                mv.visitLabel(end);
+            }
+
+            // The test sits after the body, as in the VM. A loop entered at its back edge, any loop
+            // compileLoop was given, starts with the test.
+            case Statement.ConditionLoop loop -> {
+                boolean until = (loop.kind() == NodeType.UNTIL || loop.kind() == NodeType.DO_UNTIL);
+                Label body = new Label(), test = new Label(), exit = new Label();
+                if (loop.kind() == NodeType.WHILE || loop.kind() == NodeType.UNTIL || entered(loop)) mv.visitJumpInsn(GOTO, test);
+                mv.visitLabel(body);
+                loopBody(loop.body(), test, exit);
+                mv.visitLabel(test);
+                jump(loop.condition(), !until, body);
+                mv.visitLabel(exit);
+            }
+
+            case Statement.Repeat loop -> {
+                Label body = new Label(), next = new Label(), test = new Label(), exit = new Label();
+                int times = allocate(Kind.LONG), count = allocate(Kind.LONG);
+                if (entered(loop)) {
+                    state(0);
+                    mv.visitVarInsn(LSTORE, times);
+                    state(1);
+                    mv.visitVarInsn(LSTORE, count);
+                    mv.visitJumpInsn(GOTO, next);
+                } else {
+                    toLong(loop.times());
+                    mv.visitVarInsn(LSTORE, times);
+                    mv.visitInsn(LCONST_0);
+                    mv.visitVarInsn(LSTORE, count);
+                    mv.visitJumpInsn(GOTO, test);
+                }
+                mv.visitLabel(body);
+                loopBody(loop.body(), next, exit);
+                mv.visitLabel(next);
+                mv.visitVarInsn(LLOAD, count);
+                mv.visitInsn(LCONST_1);
+                mv.visitInsn(LADD);
+                mv.visitVarInsn(LSTORE, count);
+                mv.visitLabel(test);
+                mv.visitVarInsn(LLOAD, count);
+                mv.visitVarInsn(LLOAD, times);
+                mv.visitInsn(LCMP);
+                mv.visitJumpInsn(IFLT, body);
+                mv.visitLabel(exit);
+            }
+
+            // the element variable lives in the scope around the loop
+            case Statement.For loop -> {
+                Label test = new Label(), exit = new Label();
+                int list = allocate(Kind.OBJECT), index = nextLocal++;
+                if (entered(loop)) {
+                    mv.visitVarInsn(ALOAD, STATE);
+                    mv.visitInsn(ICONST_0);
+                    mv.visitInsn(AALOAD);
+                    mv.visitTypeInsn(CHECKCAST, "java/util/List");
+                    mv.visitVarInsn(ASTORE, list);
+                    state(1);
+                    mv.visitInsn(L2I);
+                } else {
+                    loadRaw(places.get(loop));
+                    mv.visitLdcInsn(loop.array());
+                    runtime("forSource", "(Ljava/lang/Object;Ljava/lang/String;)Ljava/util/List;");
+                    mv.visitVarInsn(ASTORE, list);
+                    mv.visitInsn(ICONST_0);
+                }
+                mv.visitVarInsn(ISTORE, index);
+                mv.visitLabel(test);
+                mv.visitVarInsn(ILOAD, index);
+                mv.visitVarInsn(ALOAD, list);
+                mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "size", "()I", true);
+                mv.visitJumpInsn(IF_ICMPGE, exit);
+                mv.visitVarInsn(ALOAD, list);
+                mv.visitVarInsn(ILOAD, index);
+                mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "get", "(I)Ljava/lang/Object;", true);
+                storeRaw(elements.get(loop));
+                mv.visitIincInsn(index, 1);
+                loopBody(loop.body(), test, exit);
+                mv.visitJumpInsn(GOTO, test);
+                mv.visitLabel(exit);
+            }
+
+            case Statement.ExpressionStatement stmt -> {
+                Expression expression = stmt.expression();
+                if (expression instanceof Expression.Assignment assignment) {
+                    assignment(assignment);
+                } else if (expression instanceof Expression.Unary unary && unary.kind() != NodeType.NEGATIVE) {
+                    step(unary, false);
+                } else {
+                    emit(expression);
+                    pop(kind(expression));
+                }
+            }
+
+            case Statement.ArrayDeclaration decl -> throw new IllegalStateException();
+            case Statement.FunctionDeclaration decl -> throw new IllegalStateException();
+        }
+    }
+
+    private boolean entered(Statement loop) {
+        return osr && loop == body;
+    }
+
+    // Leaves a long of the state a loop was entered with
+    private void state(int i) {
+        mv.visitVarInsn(ALOAD, STATE);
+        push(i);
+        mv.visitInsn(AALOAD);
+        mv.visitMethodInsn(INVOKESTATIC, CODE_RUNNER, "toLong", "(Ljava/lang/Object;)J", false);
+    }
+
+    private void loopBody(Statement body, Label next, Label exit) {
+        loop = new Loop(next, exit, loop);
+        try {
+            statement(body);
+        } finally {
+            loop = loop.outer();
+        }
+    }
+
+    private void assignment(Expression.Assignment node) {
+        int op = assignmentOp(node.kind());
+        if (node.target() instanceof Expression.Variable variable) {
+            Place place = places.get(variable);
+            if (op >= 0) {
+                update(place, variable.name(), op, node.value(), false, false);
+            } else if (place instanceof Var var) {
+                value(node.value(), var.kind);
+                store(var);
+            } else {
+                value(node.value(), Kind.OBJECT);
+                storeRaw(place);
+            }
+            return;
+        }
+
+        Expression.ArrayAccess access = (Expression.ArrayAccess) node.target();
+        if (op < 0) {
+            value(node.value(), Kind.OBJECT);
+            array(access, "arrayForWrite");
+            toLong(access.index());
+            runtime("setElement", "(Ljava/lang/Object;Ljava/util/List;J)V");
+        } else {
+            int operand = allocate(Kind.OBJECT);
+            value(node.value(), Kind.OBJECT);
+            mv.visitVarInsn(ASTORE, operand);
+            array(access, "arrayForWrite");
+            toLong(access.index());
+            mv.visitVarInsn(ALOAD, operand);
+            push(op);
+            mv.visitInsn(ICONST_1);
+            runtime("updateElement", "(Ljava/util/List;JLjava/lang/Object;IZ)Ljava/lang/Object;");
+            mv.visitInsn(POP);
+        }
+    }
+
+    // ++ and --, leaving the new or old value when keep
+    private void step(Expression.Unary node, boolean keep) {
+        int op = (node.kind() == NodeType.PRE_INCREMENT || node.kind() == NodeType.POST_INCREMENT) ? 0 : 1;
+        boolean pre = (node.kind() == NodeType.PRE_INCREMENT || node.kind() == NodeType.PRE_DECREMENT);
+        if (node.operand() instanceof Expression.Variable variable) {
+            update(places.get(variable), variable.name(), op, null, pre, keep);
+            return;
+        }
+
+        Expression.ArrayAccess access = (Expression.ArrayAccess) node.operand();
+        array(access, "arrayForWrite");
+        toLong(access.index());
+        mv.visitInsn(LCONST_1);
+        box(Kind.LONG);
+        push(op);
+        push(pre ? 1 : 0);
+        runtime("updateElement", "(Ljava/util/List;JLjava/lang/Object;IZ)Ljava/lang/Object;");
+        if (!keep) mv.visitInsn(POP);
+    }
+
+    // Read-modify-write of a variable by operand, or by 1 when operand is null. The operand runs
+    // first, then the variable is read, as in CodeRunner.update.
+    private void update(Place place, String name, int op, Expression operand, boolean returnNew, boolean keep) {
+        if (place instanceof Var var && isNumber(var.kind)) {
+            int amount = -1;
+            if (operand != null) {
+                amount = allocate(Kind.LONG);
+                Kind kind = kind(operand);
+                emit(operand);
+                if (kind == Kind.DOUBLE) mv.visitInsn(D2L);
+                mv.visitVarInsn(LSTORE, amount);
+            }
+            load(var);
+            if (keep && !returnNew) mv.visitInsn(DUP2);
+            // double arithmetic truncates both sides, as NumericOp.applyDouble does
+            if (var.kind == Kind.DOUBLE) mv.visitInsn(D2L);
+            if (amount >= 0) mv.visitVarInsn(LLOAD, amount);
+            else mv.visitInsn(LCONST_1);
+            mv.visitInsn(LONG_ARITHMETIC[op]);
+            if (var.kind == Kind.DOUBLE) mv.visitInsn(L2D);
+            if (keep && returnNew) mv.visitInsn(DUP2);
+            store(var);
+            return;
+        }
+
+        int amount = allocate(Kind.OBJECT);
+        if (operand != null) {
+            value(operand, Kind.OBJECT);
+        } else {
+            mv.visitInsn(LCONST_1);
+            box(Kind.LONG);
+        }
+        mv.visitVarInsn(ASTORE, amount);
+
+        loadRaw(place);
+        mv.visitLdcInsn(name);
+        runtime("known", "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;");
+        int old = -1;
+        if (keep && !returnNew) {
+            old = allocate(Kind.OBJECT);
+            mv.visitInsn(DUP);
+            mv.visitVarInsn(ASTORE, old);
+        }
+        mv.visitVarInsn(ALOAD, amount);
+        push(op);
+        runtime("arithmetic", "(Ljava/lang/Object;Ljava/lang/Object;I)Ljava/lang/Object;");
+        if (keep && returnNew) mv.visitInsn(DUP);
+        storeRaw(place);
+        if (old >= 0) mv.visitVarInsn(ALOAD, old);
+    }
+
+    // ---------------------------------------------------------------------------
+    // EXPRESSIONS
+    // ---------------------------------------------------------------------------
+
+    // Leaves the value as the given kind, which is its own or OBJECT
+    private void value(Expression node, Kind kind) {
+        Kind own = kind(node);
+        emit(node);
+        if (own == kind) return;
+        if (kind != Kind.OBJECT) throw new IllegalStateException(own + " where " + kind + " is needed");
+        box(own);
+    }
+
+    // Leaves the value as kind(node)
+    private void emit(Expression node) {
+        if (node == null) {
+            mv.visitInsn(ACONST_NULL);
+            return;
+        }
+
+        switch (node) {
+            case Expression.Literal literal -> constant(literal.value());
+
+            case Expression.Variable variable -> {
+                Place place = places.get(variable);
+                if (place instanceof Var var) {
+                    load(var);
+                } else {
+                    loadRaw(place);
+                    mv.visitLdcInsn(variable.name());
+                    runtime("read", "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;");
+                }
+            }
+
+            case Expression.ArrayAccess access -> {
+                array(access, "arrayForRead");
+                toLong(access.index());
+                runtime("element", "(Ljava/util/List;J)Ljava/lang/Object;");
+            }
+
+            case Expression.Call call -> call(call);
+
+            case Expression.Binary binary -> binary(binary);
+
+            case Expression.Unary unary -> {
+                if (unary.kind() != NodeType.NEGATIVE) {
+                    step(unary, true);
+                    return;
+                }
+                Kind kind = kind(unary.operand());
+                if (kind == Kind.LONG) {
+                    emit(unary.operand());
+                    mv.visitInsn(LNEG);
+                } else if (kind == Kind.DOUBLE) {
+                    emit(unary.operand());
+                    mv.visitInsn(DNEG);
+                } else {
+                    value(unary.operand(), Kind.OBJECT);
+                    runtime("negate", "(Ljava/lang/Object;)Ljava/lang/Object;");
+                }
+            }
+
+            case Expression.Assignment assignment -> throw new IllegalStateException();
+        }
+    }
+
+    private void constant(Object value) {
+        switch (value) {
+            case Long l -> {
+                if (l == 0L || l == 1L) mv.visitInsn(l == 0L ? LCONST_0 : LCONST_1);
+                else mv.visitLdcInsn(l);
+            }
+            case Double d -> mv.visitLdcInsn(d);
+            case Boolean b -> mv.visitInsn(b ? ICONST_1 : ICONST_0);
+            case Character c -> {
+                push(c);
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Character", "valueOf", "(C)Ljava/lang/Character;", false);
+            }
+            default -> mv.visitLdcInsn(value);
+        }
+    }
+
+    // The callee is looked up before the arguments run. A call of this function with arguments it
+    // was compiled for goes straight to its body.
+    private void call(Expression.Call call) {
+        List<Expression> arguments = call.arguments();
+        mv.visitVarInsn(ALOAD, CALLER);
+        if (selfTyped(call)) {
+            mv.visitVarInsn(ALOAD, FRAMES);
+            mv.visitVarInsn(ALOAD, GLOBALS);
+            mv.visitInsn(ACONST_NULL);
+            for (int i = 0; i < arguments.size(); i++) value(arguments.get(i), parameters.get(i).kind);
+            mv.visitMethodInsn(INVOKESTATIC, className(), "body", bodyDescriptor(), false);
+            return;
+        }
+
+        push(call.function());
+        mv.visitLdcInsn(call.name());
+        mv.visitMethodInsn(INVOKEINTERFACE, CALLER_TYPE, "checkFunction", "(ILjava/lang/String;)V", true);
+        mv.visitVarInsn(ALOAD, CALLER);
+        push(call.function());
+        push(arguments.size());
+        mv.visitTypeInsn(ANEWARRAY, OBJECT);
+        for (int i = 0; i < arguments.size(); i++) {
+            mv.visitInsn(DUP);
+            push(i);
+            value(arguments.get(i), Kind.OBJECT);
+            mv.visitInsn(AASTORE);
+        }
+        mv.visitMethodInsn(INVOKEINTERFACE, CALLER_TYPE, "invoke", "(I[Ljava/lang/Object;)Ljava/lang/Object;", true);
+    }
+
+    private void binary(Expression.Binary node) {
+        int op = arithmetic(node.kind());
+        if (op >= 0) {
+            Kind left = kind(node.left()), right = kind(node.right());
+            Kind kind = numeric(left, right);
+            if (kind == Kind.LONG) {
+                emit(node.left());
+                emit(node.right());
+                mv.visitInsn(LONG_ARITHMETIC[op]);
+            } else if (kind == Kind.DOUBLE) {
+                // NumericOp.applyDouble truncates both sides and does the long arithmetic
+                emit(node.left());
+                if (left == Kind.DOUBLE) mv.visitInsn(D2L);
+                emit(node.right());
+                if (right == Kind.DOUBLE) mv.visitInsn(D2L);
+                mv.visitInsn(LONG_ARITHMETIC[op]);
+                mv.visitInsn(L2D);
+            } else {
+                value(node.left(), Kind.OBJECT);
+                value(node.right(), Kind.OBJECT);
+                push(op);
+                runtime("arithmetic", "(Ljava/lang/Object;Ljava/lang/Object;I)Ljava/lang/Object;");
+            }
+            return;
+        }
+
+        if (node.kind() == NodeType.XOR || node.kind() == NodeType.XNOR) {
+            truth(node.left());
+            truth(node.right());
+            mv.visitInsn(IXOR);
+            if (node.kind() == NodeType.XNOR) {
+                mv.visitInsn(ICONST_1);
+                mv.visitInsn(IXOR);
+            }
+            return;
+        }
+
+        Label no = new Label(), end = new Label();
+        jump(node, false, no);
+        mv.visitInsn(ICONST_1);
+        mv.visitJumpInsn(GOTO, end);
+        mv.visitLabel(no);
+        mv.visitInsn(ICONST_0);
+        mv.visitLabel(end);
+    }
+
+    // Leaves truthy(value) as a boolean
+    private void truth(Expression node) {
+        if (kind(node) == Kind.BOOLEAN) {
+            emit(node);
+            return;
+        }
+        Label no = new Label(), end = new Label();
+        jump(node, false, no);
+        mv.visitInsn(ICONST_1);
+        mv.visitJumpInsn(GOTO, end);
+        mv.visitLabel(no);
+        mv.visitInsn(ICONST_0);
+        mv.visitLabel(end);
+    }
+
+    // Jumps to target when the condition's truth is when, falling through otherwise. Comparisons
+    // and the logical operators jump directly instead of making a boolean first.
+    private void jump(Expression condition, boolean when, Label target) {
+        if (condition instanceof Expression.Binary binary) {
+            switch (binary.kind()) {
+                case LESS, LESSEQUALS, GREATER, GREATEREQUALS, EQUALS, NOTEQUALS -> {
+                    compare(binary, when, target);
+                    return;
+                }
+                case AND, NAND -> {
+                    logical(binary, true, when != (binary.kind() == NodeType.NAND), target);
+                    return;
+                }
+                case OR, NOR -> {
+                    logical(binary, false, when != (binary.kind() == NodeType.NOR), target);
+                    return;
+                }
+                default -> {}
+            }
+        }
+
+        Kind kind = kind(condition);
+        emit(condition);
+        switch (kind) {
+            case LONG -> {
+                mv.visitInsn(LCONST_0);
+                mv.visitInsn(LCMP);
+            }
+            case DOUBLE -> {
+                // NaN compares as not equal to 0, so it is true like in CodeRunner.truthy
+                mv.visitInsn(DCONST_0);
+                mv.visitInsn(DCMPL);
+            }
+            case OBJECT -> mv.visitMethodInsn(INVOKESTATIC, CODE_RUNNER, "truthy", "(Ljava/lang/Object;)Z", false);
+            case BOOLEAN -> {}
+        }
+        mv.visitJumpInsn(when ? IFNE : IFEQ, target);
+    }
+
+    // The right side only runs when the left does not decide
+    private void logical(Expression.Binary node, boolean and, boolean when, Label target) {
+        if (and == when) {
+            Label skip = new Label();
+            jump(node.left(), !and, skip);
+            jump(node.right(), when, target);
+            mv.visitLabel(skip);
+        } else {
+            jump(node.left(), when, target);
+            jump(node.right(), when, target);
+        }
+    }
+
+    private void compare(Expression.Binary node, boolean when, Label target) {
+        Kind left = kind(node.left()), right = kind(node.right());
+
+        if (node.kind() == NodeType.EQUALS || node.kind() == NodeType.NOTEQUALS) {
+            boolean equal = (node.kind() == NodeType.EQUALS) == when;
+            if (left == right && left != Kind.OBJECT) {
+                emit(node.left());
+                emit(node.right());
+                switch (left) {
+                    case LONG -> mv.visitInsn(LCMP);
+                    // Double.equals, which Objects.equals calls, agrees with Double.compare
+                    case DOUBLE -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "compare", "(DD)I", false);
+                    default -> {
+                        mv.visitJumpInsn(equal ? IF_ICMPEQ : IF_ICMPNE, target);
+                        return;
+                    }
+                }
+                mv.visitJumpInsn(equal ? IFEQ : IFNE, target);
+            } else {
+                value(node.left(), Kind.OBJECT);
+                value(node.right(), Kind.OBJECT);
+                mv.visitMethodInsn(INVOKESTATIC, "java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z", false);
+                mv.visitJumpInsn(equal ? IFNE : IFEQ, target);
+            }
+            return;
+        }
+
+        if (left == Kind.LONG && right == Kind.LONG) {
+            emit(node.left());
+            emit(node.right());
+            mv.visitInsn(LCMP);
+        } else if (isNumber(left) && isNumber(right)) {
+            emit(node.left());
+            if (left == Kind.LONG) mv.visitInsn(L2D);
+            emit(node.right());
+            if (right == Kind.LONG) mv.visitInsn(L2D);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "compare", "(DD)I", false);
+        } else {
+            value(node.left(), Kind.OBJECT);
+            value(node.right(), Kind.OBJECT);
+            runtime("compare", "(Ljava/lang/Object;Ljava/lang/Object;)I");
+        }
+        mv.visitJumpInsn(switch (node.kind()) {
+            case LESS -> when ? IFLT : IFGE;
+            case LESSEQUALS -> when ? IFLE : IFGT;
+            case GREATER -> when ? IFGT : IFLE;
+            default -> when ? IFGE : IFLT;
+        }, target);
+    }
+
+    // Leaves toLong(value)
+    private void toLong(Expression node) {
+        Kind kind = kind(node);
+        emit(node);
+        switch (kind) {
+            case LONG -> {}
+            case DOUBLE -> mv.visitInsn(D2L);
+            default -> {
+                box(kind);
+                mv.visitMethodInsn(INVOKESTATIC, CODE_RUNNER, "toLong", "(Ljava/lang/Object;)J", false);
+            }
+        }
+    }
+
+    // Leaves the array a name holds, or fails the way reading or writing it would
+    private void array(Expression.ArrayAccess access, String check) {
+        loadRaw(places.get(access));
+        mv.visitLdcInsn(access.name());
+        runtime(check, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/util/List;");
+    }
+
+    // ---------------------------------------------------------------------------
+    // LOCALS AND VALUES
+    // ---------------------------------------------------------------------------
+
+    private int allocate(Kind kind) {
+        int local = nextLocal;
+        nextLocal += (kind == Kind.LONG || kind == Kind.DOUBLE) ? 2 : 1;
+        return local;
+    }
+
+    private void load(Var var) {
+        mv.visitVarInsn(switch (var.kind) {
+            case LONG -> LLOAD;
+            case DOUBLE -> DLOAD;
+            case BOOLEAN -> ILOAD;
+            case OBJECT -> ALOAD;
+        }, var.local);
+    }
+
+    private void store(Var var) {
+        mv.visitVarInsn(switch (var.kind) {
+            case LONG -> LSTORE;
+            case DOUBLE -> DSTORE;
+            case BOOLEAN -> ISTORE;
+            case OBJECT -> ASTORE;
+        }, var.local);
+    }
+
+    // The value a place holds as an Object, UNSET included
+    private void loadRaw(Place place) {
+        switch (place) {
+            case Var var -> {
+                load(var);
+                box(var.kind);
+            }
+            case Slot slot -> mv.visitVarInsn(ALOAD, slotLocals.get(slot.slot()));
+            case Frame frame -> {
+                mv.visitVarInsn(ALOAD, FRAMES);
+                push(frame.slot());
+                runtime("local", "(L" + MEMORY + ";I)Ljava/lang/Object;");
+            }
+            case Global global -> {
+                mv.visitVarInsn(ALOAD, GLOBALS);
+                push(global.slot());
+                mv.visitInsn(AALOAD);
+            }
+        }
+    }
+
+    // Stores the Object on the stack; only a boxed Var is ever given one
+    private void storeRaw(Place place) {
+        switch (place) {
+            case Var var -> {
+                if (var.kind != Kind.OBJECT) throw new IllegalStateException("Boxed value for " + var.name);
+                store(var);
+            }
+            case Slot slot -> mv.visitVarInsn(ASTORE, slotLocals.get(slot.slot()));
+            case Frame frame -> {
+                mv.visitVarInsn(ALOAD, FRAMES);
+                push(frame.slot());
+                runtime("setLocal", "(Ljava/lang/Object;L" + MEMORY + ";I)V");
+            }
+            case Global global -> {
+                int value = allocate(Kind.OBJECT);
+                mv.visitVarInsn(ASTORE, value);
+                mv.visitVarInsn(ALOAD, GLOBALS);
+                push(global.slot());
+                mv.visitVarInsn(ALOAD, value);
+                mv.visitInsn(AASTORE);
+            }
+        }
+    }
+
+    private static String boxType(Kind kind) {
+        return switch (kind) {
+            case LONG -> "java/lang/Long";
+            case DOUBLE -> "java/lang/Double";
+            case BOOLEAN -> "java/lang/Boolean";
+            case OBJECT -> null;
+        };
+    }
+
+    private void box(Kind kind) {
+        String box = boxType(kind);
+        if (box != null) mv.visitMethodInsn(INVOKESTATIC, box, "valueOf", "(" + descriptor(kind) + ")L" + box + ";", false);
+    }
+
+    private void zero(Kind kind) {
+        mv.visitInsn(switch (kind) {
+            case LONG -> LCONST_0;
+            case DOUBLE -> DCONST_0;
+            case BOOLEAN -> ICONST_0;
+            case OBJECT -> ACONST_NULL;
+        });
+    }
+
+    private void pop(Kind kind) {
+        mv.visitInsn((kind == Kind.LONG || kind == Kind.DOUBLE) ? POP2 : POP);
+    }
+
+    private void unset() {
+        mv.visitFieldInsn(GETSTATIC, RUNTIME, "UNSET", "Ljava/lang/Object;");
+    }
+
+    private void push(int value) {
+        if (value >= -1 && value <= 5) mv.visitInsn(ICONST_0 + value);
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) mv.visitIntInsn(BIPUSH, value);
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) mv.visitIntInsn(SIPUSH, value);
+        else mv.visitLdcInsn(value);
+    }
+
+    private void runtime(String method, String descriptor) {
+        mv.visitMethodInsn(INVOKESTATIC, RUNTIME, method, descriptor, false);
+    }
+
+    private void fail(String message) {
+        mv.visitLdcInsn(message);
+        runtime("fail", "(Ljava/lang/String;)Ljava/lang/RuntimeException;");
+        mv.visitInsn(ATHROW);
+    }
+}
@@ -0,0 +1,130 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import java.util.List;
+
+// What the classes JvmCompiler generates call for anything but primitive arithmetic, so boxed values
+// follow CodeRunner's rules and fail with its messages
+final class JvmRuntime {
+
+    static final Object UNSET = Memory.UNSET;
+
+    static final Object DECLINED = new Object();
+    static final Object NORMAL = new Object();
+
+    private JvmRuntime() {}
+
+    static RuntimeException fail(String message) {
+        return new RuntimeException(message);
+    }
+
+    // A variable read, from a slot that may not have been declared yet
+    static Object read(Object value, String name) {
+        if (value == UNSET) throw new RuntimeException("Undefined variable: " + name);
+        return value;
+    }
+
+    static void declare(Object value, Object[] globals, int slot, String name) {
+        if (globals[slot] != UNSET) throw new RuntimeException("Symbol already exists: " + name);
+        globals[slot] = value;
+    }
+
+    // A slot of the running frame, for a loop compiled while it ran
+    static Object local(Memory memory, int slot) {
+        return memory.stack[memory.bases[memory.frame] + slot];
+    }
+
+    static void setLocal(Object value, Memory memory, int slot) {
+        memory.stack[memory.bases[memory.frame] + slot] = value;
+    }
+
+    static void declare(Object value, Memory memory, int slot, String name) {
+        int i = memory.bases[memory.frame] + slot;
+        if (memory.stack[i] != UNSET) throw new RuntimeException("Symbol already exists: " + name);
+        memory.stack[i] = value;
+    }
+
+    // The value to store in a local slot whose current value is current
+    static Object declare(Object value, Object current, String name) {
+        if (current != UNSET) throw new RuntimeException("Symbol already exists: " + name);
+        return value;
+    }
+
+    static void print(Object value) {
+        System.out.println(CodeRunner.stringify(value));
+    }
+
+    // Two longs are worked out here rather than through a NumericOp, as the VM's ADD and the rest do
+    static Object arithmetic(Object a, Object b, int op) {
+        if (a instanceof Long x && b instanceof Long y) {
+            long l = x, r = y;
+            return switch (op) {
+                case 0 -> l + r;
+                case 1 -> l - r;
+                case 2 -> l * r;
+                case 3 -> l / r;
+                default -> l % r;
+            };
+        }
+        return CodeRunner.numericBinaryRaw(a, b, BytecodeCompiler.ARITHMETIC[op]);
+    }
+
+    static int compare(Object a, Object b) {
+        if (a instanceof Long x && b instanceof Long y) return Long.compare(x, y);
+        return CodeRunner.compare(a, b);
+    }
+
+    static Object negate(Object value) {
+        if (value instanceof Double d) return -d;
+        return -CodeRunner.toLong(value);
+    }
+
+    // The current value of a variable about to be updated in place
+    static Object known(Object current, String name) {
+        if (current == UNSET) throw new RuntimeException("Unknown variable: " + name);
+        return current;
+    }
+
+    static List<Object> arrayForRead(Object data, String name) {
+        if (data == UNSET) throw new RuntimeException("Undefined array: " + name);
+        if (!(data instanceof List)) throw new RuntimeException(name + " is not an array");
+        return list(data);
+    }
+
+    static List<Object> arrayForWrite(Object data, String name) {
+        if (data == UNSET) throw new RuntimeException("Unknown array: " + name);
+        if (!(data instanceof List)) throw new RuntimeException(name + " is not an array");
+        return list(data);
+    }
+
+    static Object element(List<Object> arr, long index) {
+        int idx = (int) index;
+        if (idx < 0 || idx >= arr.size()) throw new RuntimeException("Array index out of bounds: " + idx);
+        return arr.get(idx);
+    }
+
+    static void setElement(Object value, List<Object> arr, long index) {
+        int idx = (int) index;
+        if (idx < 0 || idx >= arr.size()) throw new RuntimeException("Array index out of bounds: " + idx);
+        arr.set(idx, value);
+    }
+
+    static Object updateElement(List<Object> arr, long index, Object operand, int op, boolean returnNew) {
+        int idx = (int) index;
+        if (idx < 0 || idx >= arr.size()) throw new RuntimeException("Array index out of bounds: " + idx);
+        Object current = arr.get(idx);
+        Object result = CodeRunner.numericBinaryRaw(current, operand, BytecodeCompiler.ARITHMETIC[op]);
+        arr.set(idx, result);
+        return returnNew ? result : current;
+    }
+
+    static List<Object> forSource(Object data, String name) {
+        if (!(data instanceof List)) throw new RuntimeException("FOR source not array: " + name);
+        return list(data);
+    }
+
+    // The generated code hands arrays over as Object; they are List<Object> however they were made
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Object data) {
+        return (List<Object>) data;
+    }
+}
@@ -0,0 +1,130 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.SemanticAnalysis.ScopeResolver;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Address;
+
+import java.util.Arrays;
+
+/*
+    Where a running program keeps its values, so every engine agrees on what a resolved Address
+    points at.
+
+    Locals live in one value stack. Frame 0 belongs to the top-level code and each running call
+    adds one above it, so frames are numbered by call depth. For frame f:
+
+        bases[f]    index of its slot 0 in the stack
+        links[f]    the frame its function was declared in, which depth 1 addresses read
+        serials[f]  a number no other call gets, so a stale link can be told from a live one
+
+    Blocks only reset their own slots, so neither a block nor a call allocates anything.
+ */
+final class Memory {
+
+    // A slot holds UNSET until its declaration has run, which is what tells an undefined name from
+    // one holding null
+    static final Object UNSET = new Object();
+
+    static final int NONE = -1;
+
+    Object[] globals = new Object[0];
+
+    Object[] stack = new Object[64];
+    int[] bases = new int[16];
+    int[] links = new int[16];
+    long[] serials = new long[16];
+    int frame = 0;
+    // First stack slot past the running frame
+    int sp = 0;
+    long calls = 0;
+
+    Memory() {
+        links[0] = NONE;
+    }
+
+    // Makes room for every global and top-level slot the resolver has handed out so far
+    void fit(ScopeResolver resolver) {
+        if (globals.length < resolver.globals()) {
+            int from = globals.length;
+            globals = Arrays.copyOf(globals, Math.max(resolver.globals(), from * 2));
+            Arrays.fill(globals, from, globals.length, UNSET);
+        }
+        sp = Math.max(sp, resolver.frameSize());
+        ensureStack(sp);
+    }
+
+    void ensureStack(int size) {
+        if (size > stack.length) stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+    }
+
+    // Where a local lives in the stack
+    int index(Address address) {
+        int f = frame;
+        for (int i = address.depth(); i > 0; i--) {
+            f = links[f];
+            if (f == NONE) throw new RuntimeException("Enclosing function has already returned");
+        }
+        return bases[f] + address.slot();
+    }
+
+    Object load(Address address) {
+        return address.isGlobal() ? globals[address.slot()] : stack[index(address)];
+    }
+
+    void store(Address address, Object value) {
+        if (address.isGlobal()) globals[address.slot()] = value;
+        else stack[index(address)] = value;
+    }
+
+    void declare(Address address, String name, Object value) {
+        if (load(address) != UNSET) throw new RuntimeException("Symbol already exists: " + name);
+        store(address, value);
+    }
+
+    // A fresh run of a block starts with none of its own names declared
+    void clear(int first, int slots) {
+        int from = bases[frame] + first;
+        Arrays.fill(stack, from, from + slots, UNSET);
+    }
+
+    // -----------------------
+    // Calls
+    // -----------------------
+
+    // Takes size slots above the running frame for a call and returns where they start. sp moves
+    // past them before the arguments run, so a call made by an argument is stacked above.
+    int reserve(int size) {
+        int base = sp;
+        ensureStack(base + size);
+        sp = base + size;
+        return base;
+    }
+
+    // Fills a reserved frame past its arguments: missing parameters are null, the rest UNSET
+    void prepare(int base, int given, int arity, int size) {
+        Arrays.fill(stack, base + Math.min(given, arity), base + arity, null);
+        Arrays.fill(stack, base + arity, base + size, UNSET);
+    }
+
+    // Runs the frame at base as a call of a function declared in frame declaredIn while that frame
+    // had the given serial
+    void enter(int base, int declaredIn, long serial) {
+        int caller = frame;
+        int callee = caller + 1;
+        if (callee == bases.length) {
+            bases = Arrays.copyOf(bases, callee * 2);
+            links = Arrays.copyOf(links, callee * 2);
+            serials = Arrays.copyOf(serials, callee * 2);
+        }
+        bases[callee] = base;
+        boolean declaredInRunningCall = declaredIn <= caller && serials[declaredIn] == serial;
+        links[callee] = declaredInRunningCall ? declaredIn : NONE;
+        serials[callee] = ++calls;
+        frame = callee;
+    }
+
+    // Back to the caller's frame, giving up every slot from base
+    void leave(int caller, int base) {
+        frame = caller;
+        sp = base;
+    }
+}
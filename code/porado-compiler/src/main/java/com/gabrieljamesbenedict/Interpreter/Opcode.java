@@ -0,0 +1,114 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+/*
+    The instruction set BytecodeCompiler emits and BytecodeRunner runs. An instruction is its opcode
+    followed by its operands in the same int[]: slots, counts, jump targets as code offsets, and
+    indexes into the chunk's constant pool (marked k below). Values are passed on an operand stack.
+
+    The superinstructions do in one dispatch what would otherwise take three or four: STEP_LOCAL
+    and STEP_GLOBAL for x++, x += 1 and x = x + 1, JUMP_LT and the rest for a comparison that
+    decides a branch, and JUMP_NO_MATCH for a switch case.
+ */
+final class Opcode {
+
+    // operands                                 stack before -> after
+    static final int CONST = 0;             // k value                          -> value
+    static final int DECODE = 1;            // k literal, that failed to decode -> value
+    static final int LOAD_LOCAL = 2;        // slot, k name                     -> value
+    static final int LOAD_GLOBAL = 3;       // slot, k name                     -> value
+    static final int LOAD = 4;              // k address, k name                -> value
+    static final int LOAD_LEXEME = 5;       // k address, k lexeme              -> value
+    static final int STORE_LOCAL = 6;       // slot                     value   ->
+    static final int STORE_GLOBAL = 7;      // slot                     value   ->
+    static final int STORE = 8;             // k address                value   ->
+    static final int DECLARE_LOCAL = 9;     // slot, k name             value   ->
+    static final int DECLARE = 10;          // k address, k name        value   ->
+    static final int CLEAR = 11;            // first slot, count
+    static final int POP = 12;              //                          value   ->
+    static final int ARRAY_READ = 13;       // k address, k name                -> list
+    static final int ARRAY_WRITE = 14;      // k address, k name                -> list
+    static final int ELEMENT = 15;          //                     list, index  -> value
+    static final int SET_ELEMENT = 16;      //              value, list, index  ->
+    static final int UPDATE = 17;           // k address, k name, op, new  operand -> result
+    static final int UPDATE_ELEMENT = 18;   // op, new           operand, list, index -> result
+    static final int STEP_LOCAL = 19;       // slot, k delta, k error message
+    static final int STEP_GLOBAL = 20;
+    static final int NEW_ARRAY = 21;        // count                    values  -> list
+    static final int COPY_ARRAY = 22;       // k address, k name                -> list
+    static final int ADD = 23;              //                            a, b  -> a + b
+    static final int SUB = 24;
+    static final int MUL = 25;
+    static final int DIV = 26;
+    static final int MOD = 27;
+    static final int NEG = 28;              //                           value  -> -value
+    static final int EQ = 29;               //                            a, b  -> boolean
+    static final int NE = 30;
+    static final int LT = 31;
+    static final int LE = 32;
+    static final int GT = 33;
+    static final int GE = 34;
+    static final int TRUTH = 35;            //                           value  -> boolean
+    static final int NOT = 36;              //                           value  -> !boolean
+    static final int XOR = 37;              //                            a, b  -> boolean
+    static final int JUMP = 38;             // target
+    static final int JUMP_FALSE = 39;       // target                    value  ->
+    static final int JUMP_TRUE = 40;        // target                    value  ->
+    static final int JUMP_LT = 41;          // target, taken if a < b     a, b  ->
+    static final int JUMP_LE = 42;
+    static final int JUMP_GT = 43;
+    static final int JUMP_GE = 44;
+    static final int JUMP_EQ = 45;
+    static final int JUMP_NE = 46;
+    static final int JUMP_NO_MATCH = 47;    // target                key, value -> key
+    static final int PRINT = 48;            //                           value  ->
+    static final int CHECK_FUNCTION = 49;   // function slot, k name
+    static final int CALL = 50;             // function slot, count   arguments -> result
+    static final int DECLARE_FUNCTION = 51; // function slot, k function
+    static final int RETURN = 52;           //                           value  ->
+    static final int END = 53;
+    static final int FOR_INIT = 54;         // k address, k name                -> list, position
+    static final int FOR_NEXT = 55;         // k element address, exit target
+    static final int REPEAT_INIT = 56;      //                           times  -> remaining
+    static final int REPEAT_NEXT = 57;      // exit target
+    static final int FAIL = 58;             // k message
+
+    static final int COUNT = 59;
+
+    static final String[] NAMES = new String[COUNT];
+
+    // The operands each opcode takes, one letter per operand: n for a number (slot, count or op),
+    // k for a constant index and t for a jump target
+    static final String[] OPERANDS = new String[COUNT];
+
+    static {
+        for (Field field : Opcode.class.getDeclaredFields()) {
+            if (field.getType() != int.class || !Modifier.isStatic(field.getModifiers()) || field.getName().equals("COUNT")) continue;
+            try {
+                NAMES[field.getInt(null)] = field.getName();
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        Arrays.fill(OPERANDS, "");
+        operands("k", CONST, DECODE, STORE, FAIL);
+        operands("n", STORE_LOCAL, STORE_GLOBAL, NEW_ARRAY);
+        operands("t", JUMP, JUMP_FALSE, JUMP_TRUE, JUMP_LT, JUMP_LE, JUMP_GT, JUMP_GE, JUMP_EQ, JUMP_NE, JUMP_NO_MATCH,
+                REPEAT_NEXT);
+        operands("nk", LOAD_LOCAL, LOAD_GLOBAL, DECLARE_LOCAL, CHECK_FUNCTION, DECLARE_FUNCTION);
+        operands("kk", LOAD, LOAD_LEXEME, DECLARE, ARRAY_READ, ARRAY_WRITE, COPY_ARRAY, FOR_INIT);
+        operands("nn", CLEAR, UPDATE_ELEMENT, CALL);
+        operands("kt", FOR_NEXT);
+        operands("nkk", STEP_LOCAL, STEP_GLOBAL);
+        operands("kknn", UPDATE);
+    }
+
+    private static void operands(String kinds, int... opcodes) {
+        for (int opcode : opcodes) OPERANDS[opcode] = kinds;
+    }
+
+    private Opcode() {}
+}
@@ -1,9 +1,15 @@
 package com.gabrieljamesbenedict.Interpreter;
 
 import lombok.Builder;
-import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
-@Data
+// Compared by identity: a symbol's data changes as the program runs, so it must not feed
+// equals or hashCode
+@Getter
+@Setter
+@ToString
 @Builder
 public class Symbol {
 
@@ -13,4 +19,7 @@ public class Symbol {
 
     Object data;
 
+    // Where the ScopeResolver placed the name in its frame
+    int slot;
+
 }
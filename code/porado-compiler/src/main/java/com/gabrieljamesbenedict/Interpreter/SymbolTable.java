@@ -1,61 +1,125 @@
 package com.gabrieljamesbenedict.Interpreter;
 
-import java.util.HashSet;
+import java.util.Arrays;
 
+/*
+    Symbols keyed by name in an open-addressing table with linear probing. Only the name is hashed,
+    and String caches its hash, so neither adding nor looking up touches a symbol's data. Symbols
+    compare by identity, which keeps a symbol findable however its data changes.
+
+    The capacity is a power of two kept at most half full, and removal shifts the following run of
+    entries back instead of leaving tombstones, so every probe stops at the first empty slot.
+ */
 public class SymbolTable {
 
-    private final HashSet<Symbol> table = new HashSet<>();
+    private static final int INITIAL_CAPACITY = 8;
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private Symbol[] symbols = new Symbol[INITIAL_CAPACITY];
+    private int size = 0;
 
 
     public boolean add(Symbol symbol) {
-        boolean alreadyExists = table.stream().map(Symbol::getName).toList().contains(symbol.getName());
-        if (alreadyExists) throw new RuntimeException("Symbol already exists: " + symbol.getName());
-        return table.add(symbol);
+        String name = symbol.getName();
+        int i = indexOf(name);
+        if (names[i] != null) throw new RuntimeException("Symbol already exists: " + name);
+
+        names[i] = name;
+        symbols[i] = symbol;
+        if (++size * 2 > names.length) resize(names.length * 2);
+        return true;
     }
 
 
     public boolean exists(Symbol symbol) {
-        return table.contains(symbol);
+        return lookup(symbol.getName()) == symbol;
     }
 
 
     public Symbol lookup(String name) {
-        for (Symbol s : table) {
-            if (s.getName().equals(name)) {
-                return s;
-            }
-        }
-        return null;
+        return symbols[indexOf(name)];
     }
 
 
     public boolean remove(Symbol symbol) {
-        return table.remove(symbol);
+        int i = indexOf(symbol.getName());
+        if (symbols[i] != symbol) return false;
+        removeAt(i);
+        return true;
     }
 
     public boolean removeByName(String name) {
-        Symbol s = lookup(name);
-        if (s != null) {
-            return table.remove(s);
-        }
-        return false;
+        int i = indexOf(name);
+        if (names[i] == null) return false;
+        removeAt(i);
+        return true;
     }
 
 
     public int size() {
-        return table.size();
+        return size;
     }
 
 
     public void clear() {
-        table.clear();
+        Arrays.fill(names, null);
+        Arrays.fill(symbols, null);
+        size = 0;
     }
 
 
     public void printAll() {
-        for (Symbol s : table) {
-            System.out.println(s);
+        for (Symbol s : symbols) {
+            if (s != null) System.out.println(s);
         }
     }
-}
 
+
+    // The slot holding name, or the empty slot where it would go
+    private int indexOf(String name) {
+        int mask = names.length - 1;
+        int i = hash(name) & mask;
+        while (names[i] != null && !names[i].equals(name)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // Moves back every later entry of the run that could otherwise no longer be reached from its home
+    private void removeAt(int hole) {
+        int mask = names.length - 1;
+        names[hole] = null;
+        symbols[hole] = null;
+        size--;
+
+        for (int i = (hole + 1) & mask; names[i] != null; i = (i + 1) & mask) {
+            int home = hash(names[i]) & mask;
+            // home lies cyclically outside (hole, i], so the entry belongs at or before the hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                names[hole] = names[i];
+                symbols[hole] = symbols[i];
+                names[i] = null;
+                symbols[i] = null;
+                hole = i;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        String[] oldNames = names;
+        Symbol[] oldSymbols = symbols;
+        names = new String[capacity];
+        symbols = new Symbol[capacity];
+        for (int j = 0; j < oldNames.length; j++) {
+            if (oldNames[j] == null) continue;
+            int i = indexOf(oldNames[j]);
+            names[i] = oldNames[j];
+            symbols[i] = oldSymbols[j];
+        }
+    }
+}
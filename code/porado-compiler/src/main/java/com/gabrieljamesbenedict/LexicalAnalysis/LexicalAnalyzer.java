@@ -1,25 +1,21 @@
 package com.gabrieljamesbenedict.LexicalAnalysis;
 
-import jdk.jfr.Category;
-import lombok.RequiredArgsConstructor;
-
-import javax.xml.catalog.Catalog;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import static java.util.Map.entry;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-@RequiredArgsConstructor
 public class LexicalAnalyzer {
 
-    private static Deque<Character> history = new ArrayDeque<>();
-
     private static final Map<String, TokenType> KEYWORDS = Map.<String, TokenType>ofEntries(
             entry("as", TokenType.KEYWORD_AS),
             entry("strict", TokenType.KEYWORD_STRICT),
@@ -98,128 +94,368 @@ public class LexicalAnalyzer {
         entry(";", TokenType.DELIMITER_SEMICOLON)
     );
 
-    private static final Set<Character> operators = Set.of(
-        '+','-','*','/','%'
-    );
+    // Reserved words and symbols in an open-addressing table keyed by String.hashCode, so a
+    // symbol can be looked up straight from the source buffer without building a String first
+    private static final int RESERVED_SLOTS = 256;
+    private static final String[] RESERVED_WORDS = new String[RESERVED_SLOTS];
+    private static final TokenType[] RESERVED_TYPES = new TokenType[RESERVED_SLOTS];
+
+    private static final TokenCategory[] CATEGORIES = new TokenCategory[TokenType.values().length];
+    private static final String[] SPELLINGS = new String[TokenType.values().length];
+
+    // Character classes for the scanner, indexed by ASCII code
+    private static final byte OTHER = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte NEWLINE = 2;
+    private static final byte DELIMITER = 3;
+    private static final byte OPERATOR = 4;
+
+    private static final byte[] CHAR_CLASS = new byte[128];
+    private static final TokenType[] SINGLE_CHAR_TYPES = new TokenType[128];
+
+    static {
+        register(KEYWORDS, TokenCategory.KEYWORD);
+        register(TYPES, TokenCategory.TYPE);
+        register(OPERATORS, TokenCategory.OPERATOR);
+        register(DELIMITERS, TokenCategory.DELIMITER);
+        register(Map.of("negative", TokenType.OPERATOR_NEGATIVE), TokenCategory.OPERATOR);
+
+        for (TokenType type : TokenType.values()) {
+            if (type.name().startsWith("LITERAL_")) CATEGORIES[type.ordinal()] = TokenCategory.LITERAL;
+        }
+        CATEGORIES[TokenType.KEYWORD_ELSEIF.ordinal()] = TokenCategory.KEYWORD;
+        CATEGORIES[TokenType.IDENTIFIER.ordinal()] = TokenCategory.IDENTIFIER;
+        CATEGORIES[TokenType.PROGRAM.ordinal()] = TokenCategory.PROGRAM;
+        CATEGORIES[TokenType.WHITESPACE.ordinal()] = TokenCategory.WHITESPACE;
+        CATEGORIES[TokenType.NEWLINE.ordinal()] = TokenCategory.NEWLINE;
+        CATEGORIES[TokenType.EOF.ordinal()] = TokenCategory.EOF;
+
+        // "-" and "negative" both mean OPERATOR_NEGATIVE, so it has no single spelling
+        SPELLINGS[TokenType.OPERATOR_NEGATIVE.ordinal()] = null;
+        SPELLINGS[TokenType.KEYWORD_ELSEIF.ordinal()] = "else-if";
+        SPELLINGS[TokenType.EOF.ordinal()] = "eof";
+
+        CHAR_CLASS[' '] = WHITESPACE;
+        CHAR_CLASS['\t'] = WHITESPACE;
+        CHAR_CLASS['\r'] = WHITESPACE;
+        CHAR_CLASS['\n'] = NEWLINE;
+        DELIMITERS.forEach((delimiter, type) -> {
+            CHAR_CLASS[delimiter.charAt(0)] = DELIMITER;
+            SINGLE_CHAR_TYPES[delimiter.charAt(0)] = type;
+        });
+        for (char c : new char[] {'+', '-', '*', '/', '%'}) {
+            CHAR_CLASS[c] = OPERATOR;
+            SINGLE_CHAR_TYPES[c] = OPERATORS.get(String.valueOf(c));
+        }
+    }
+
+    private static void register(Map<String, TokenType> table, TokenCategory category) {
+        table.forEach((lexeme, type) -> {
+            int slot = slotOf(lexeme.hashCode());
+            while (RESERVED_WORDS[slot] != null) slot = (slot + 1) & (RESERVED_SLOTS - 1);
+            RESERVED_WORDS[slot] = lexeme;
+            RESERVED_TYPES[slot] = type;
+            CATEGORIES[type.ordinal()] = category;
+            SPELLINGS[type.ordinal()] = lexeme;
+        });
+    }
+
+    private static int slotOf(int hash) {
+        return (hash ^ (hash >>> 16)) & (RESERVED_SLOTS - 1);
+    }
+
+    static TokenCategory categoryOf(TokenType type) {
+        return CATEGORIES[type.ordinal()];
+    }
+
+    // The one way a token's text is spelled, or null if it has to come from the source
+    static String spellingOf(TokenType type) {
+        return SPELLINGS[type.ordinal()];
+    }
+
+    // Materializes the lexeme of a scanned token. Only identifiers, literals and negative signs
+    // actually copy characters out of the source; everything else has a fixed spelling.
+    static String lexemeOf(char[] source, TokenType type, int start, int end) {
+        String spelling = SPELLINGS[type.ordinal()];
+        if (spelling != null) return spelling;
+        String text = new String(source, start, end - start);
+        return (CATEGORIES[type.ordinal()] == TokenCategory.LITERAL) ? LiteralClassifier.unquote(text, type) : text;
+    }
+
+
+    // ---------------------------------------------------------------------------
+    // SCANNER
+    // ---------------------------------------------------------------------------
+
+    private final char[] source;
+    private final CharBuffer text;
+    private final int end;
+    private int pos;
+    private boolean eofScanned = false;
+
+    // The raw token found by scanRaw()
+    private TokenType rawType;
+    private int rawStart;
+    private int rawEnd;
+
+    // One token of lookbehind for unary minus detection and the else-if / compound assignment merges
+    private TokenType pendingType = null;
+    private int pendingStart;
+    private int pendingEnd;
+    private TokenType previousType = null;
+
+    // The current cleaned token, valid after advance() returned true
+    private TokenType tokenType;
+    private int tokenStart;
+    private int tokenEnd;
+
+    public LexicalAnalyzer(char[] source, int offset, int length) {
+        this.source = source;
+        this.text = CharBuffer.wrap(source);
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    public TokenType tokenType() {
+        return tokenType;
+    }
 
-    public static Stream<Token> tokenize(PushbackReader codeReader) throws IOException {
+    public int tokenStart() {
+        return tokenStart;
+    }
 
-        StringBuilder symbol = new StringBuilder();
-        ArrayList<Token> tokenArrayList = new ArrayList<>();
+    public int tokenEnd() {
+        return tokenEnd;
+    }
 
-        while (codeReader.ready()) {
-            char c = (char) codeReader.read();
-            history.push(c);
+    public char[] source() {
+        return source;
+    }
 
-            boolean isWhitespace = (c == ' ' || c == '\t' || c == '\r');
-            boolean isDelimiter  = DELIMITERS.containsKey(String.valueOf(c));
-            boolean isOperator   = operators.contains(c);
-            boolean isTokenBreak = isWhitespace || isDelimiter || isOperator;
+    public String lexeme() {
+        return lexemeOf(source, tokenType, tokenStart, tokenEnd);
+    }
 
-            String current = symbol.toString();
+    public Token token() {
+        return new Token(lexeme(), tokenType, categoryOf(tokenType));
+    }
 
-            if (c == '\n') {
-                tokenArrayList.add(new Token("newline", TokenType.NEWLINE, TokenCategory.NEWLINE));
-                symbol.setLength(0);
+    // Moves to the next cleaned token. Returns false once the EOF token has been handed out.
+    public boolean advance() {
+        while (scanRaw()) {
+            if (pendingType == null) {
+                hold();
                 continue;
             }
 
-            if (isWhitespace) {
-                tokenArrayList.add(new Token("whitespace", TokenType.WHITESPACE, TokenCategory.WHITESPACE));
+            // The pending token has a successor now, so its unary minus status is final
+            if (pendingType == TokenType.OPERATOR_MINUS
+                    && (previousType == null || TokenPostProcesser.allowsNegative(previousType, categoryOf(previousType)))) {
+                pendingType = TokenType.OPERATOR_NEGATIVE;
             }
 
-            if (isTokenBreak) {
+            TokenType merged = TokenPostProcesser.mergedType(pendingType, rawType);
+            if (merged != null) {
+                pendingType = merged;
+                pendingEnd = rawEnd;
+                continue;
+            }
 
-                if (!current.isEmpty()) {
-                    addToken(current, tokenArrayList);
-                    symbol.setLength(0);
-                }
+            emitPending();
+            hold();
+            return true;
+        }
 
-                if (isDelimiter) {
-                    addToken(String.valueOf(c), tokenArrayList);
-                } else if (isOperator) {
-                    char check = (char) codeReader.read();
-
-                    boolean isSingleComment = c == '/' && check == '/';
-                    boolean isMultiComment = c == '/' && check == '*';
-
-                    if (isSingleComment) {
-                        while (codeReader.ready() && c != '\n') {
-                            c = (char) codeReader.read();
-                            symbol.append(c);
-                        }
-                        symbol.setLength(0);
-                        continue;
-
-                    } else if (isMultiComment) {
-                        while (codeReader.ready() && !symbol.toString().endsWith("*/")) {
-                            c = (char) codeReader.read();
-                            symbol.append(c);
-                        }
-                        symbol.setLength(0);
-                        continue;
-                    }
-
-                    boolean isIncrement = c == '+' && check == '+';
-                    boolean isDecrement = c == '-' && check == '-';
-
-                    if (isIncrement) {
-                        addToken("++", tokenArrayList);
-                        continue;
-                    } else if (isDecrement) {
-                        addToken("--", tokenArrayList);
-                        continue;
-                    }
-                    else codeReader.unread(check);
-                    addToken(String.valueOf(c), tokenArrayList);
-                }
+        if (pendingType == null) return false;
+        emitPending();
+        return true;
+    }
 
+    private void hold() {
+        pendingType = rawType;
+        pendingStart = rawStart;
+        pendingEnd = rawEnd;
+    }
+
+    private void emitPending() {
+        tokenType = pendingType;
+        tokenStart = pendingStart;
+        tokenEnd = pendingEnd;
+        previousType = pendingType;
+        pendingType = null;
+    }
+
+    private boolean scanRaw() {
+        int symbolStart = -1;
+
+        while (pos < end) {
+            char c = source[pos++];
+            byte charClass = (c < 128) ? CHAR_CLASS[c] : OTHER;
+
+            if (charClass == OTHER) {
+                if (symbolStart < 0) symbolStart = pos - 1;
                 continue;
             }
 
-            symbol.append(c);
+            // A newline throws away the pending symbol, exactly like the old reader loop did
+            if (charClass == NEWLINE) {
+                symbolStart = -1;
+                continue;
+            }
+
+            if (symbolStart >= 0) {
+                // Hand out the symbol first; the break character is scanned again on the next call
+                pos--;
+                classifySymbol(symbolStart, pos);
+                return true;
+            }
+
+            if (charClass == DELIMITER) {
+                return raw(SINGLE_CHAR_TYPES[c], pos - 1, pos);
+            } else if (charClass == OPERATOR) {
+                char check = (pos < end) ? source[pos] : '\0';
+
+                if (c == '/' && check == '/') {
+                    // Skip up to and including the end of the line
+                    pos++;
+                    while (pos < end && source[pos++] != '\n');
+                } else if (c == '/' && check == '*') {
+                    // Skip up to and including the closing */, or to the end of the source
+                    pos++;
+                    while (pos + 1 < end && !(source[pos] == '*' && source[pos + 1] == '/')) pos++;
+                    pos = Math.min(pos + 2, end);
+                } else if (c == '+' && check == '+') {
+                    pos++;
+                    return raw(TokenType.OPERATOR_INCREMENT, pos - 2, pos);
+                } else if (c == '-' && check == '-') {
+                    pos++;
+                    return raw(TokenType.OPERATOR_DECREMENT, pos - 2, pos);
+                } else {
+                    return raw(SINGLE_CHAR_TYPES[c], pos - 1, pos);
+                }
+            }
         }
 
-        Token eof = Token
-                .builder()
-                .lexeme("eof")
-                .type(TokenType.EOF)
-                .category(TokenCategory.EOF)
-                .build();
-        tokenArrayList.add(eof);
-        TokenPostProcesser postProcesser = new TokenPostProcesser();
-
-        return postProcesser.clean(tokenArrayList.stream());
-    }
-
-
-    private static void addToken(String lexeme, List<Token> list) {
-        TokenType type;
-        TokenCategory category;
-        if (KEYWORDS.containsKey(lexeme)) {
-            type = KEYWORDS.get(lexeme);
-            category = TokenCategory.KEYWORD;
-        } else if (TYPES.containsKey(lexeme)) {
-            type = TYPES.get(lexeme);
-            category = TokenCategory.TYPE;
-        } else if (OPERATORS.containsKey(lexeme)) {
-            type = OPERATORS.get(lexeme);
-            category = TokenCategory.OPERATOR;
-        } else if (DELIMITERS.containsKey(lexeme)) {
-            type = DELIMITERS.get(lexeme);
-            category = TokenCategory.DELIMITER;
-        } else {
-            type = TokenType.IDENTIFIER;
-            category = TokenCategory.IDENTIFIER;
+        // Like before, a symbol still pending at the end of the source is dropped
+        if (eofScanned) return false;
+        eofScanned = true;
+        return raw(TokenType.EOF, end, end);
+    }
+
+    private boolean raw(TokenType type, int start, int end) {
+        rawType = type;
+        rawStart = start;
+        rawEnd = end;
+        return true;
+    }
+
+    private void classifySymbol(int start, int end) {
+        TokenType type = reservedType(start, end);
+        if (type == null) {
+            type = LiteralClassifier.classify(text, start, end);
+            if (type == null) type = TokenType.IDENTIFIER;
         }
+        raw(type, start, end);
+    }
+
+    private TokenType reservedType(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + source[i];
 
-        if (lexeme.equals("negative")) {
-            type = TokenType.OPERATOR_NEGATIVE;
-            category = TokenCategory.OPERATOR;
+        for (int slot = slotOf(hash); RESERVED_WORDS[slot] != null; slot = (slot + 1) & (RESERVED_SLOTS - 1)) {
+            if (sameText(RESERVED_WORDS[slot], start, end)) return RESERVED_TYPES[slot];
         }
+        return null;
+    }
 
-        list.add(new Token(lexeme, type, category));
+    private boolean sameText(String word, int start, int end) {
+        if (word.length() != end - start) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) != source[start + i]) return false;
+        }
+        return true;
+    }
+
+
+    // ---------------------------------------------------------------------------
+    // ENTRY POINTS
+    // ---------------------------------------------------------------------------
+
+    public static CharBuffer read(Path path) throws IOException {
+        return StandardCharsets.UTF_8.decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    public static CharBuffer read(Reader codeReader) throws IOException {
+        char[] buffer = new char[8192];
+        int length = 0;
+        int read;
+        while ((read = codeReader.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        return CharBuffer.wrap(buffer, 0, length);
+    }
+
+    private static LexicalAnalyzer over(CharBuffer source) {
+        return new LexicalAnalyzer(source.array(), source.arrayOffset() + source.position(), source.remaining());
     }
-}
 
+    public static Stream<Token> tokenize(Path path) throws IOException {
+        return tokenize(read(path));
+    }
+
+    public static Stream<Token> tokenize(Reader codeReader) throws IOException {
+        return tokenize(read(codeReader));
+    }
+
+    // Tokens are only created as the stream is consumed
+    public static Stream<Token> tokenize(CharBuffer source) {
+        LexicalAnalyzer lexer = over(source);
+        Iterator<Token> tokens = new Iterator<>() {
+            private boolean ready = false;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) ready = lexer.advance();
+                return ready;
+            }
+
+            @Override
+            public Token next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                return lexer.token();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(tokens, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public static TokenBuffer scan(Path path) throws IOException {
+        return scan(read(path));
+    }
 
+    public static TokenBuffer scan(Reader codeReader) throws IOException {
+        return scan(read(codeReader));
+    }
+
+    // Scans everything into a compact TokenBuffer; no Token or String is created along the way
+    public static TokenBuffer scan(CharBuffer source) {
+        TokenBuffer buffer = new TokenBuffer(over(source), Math.max(16, source.remaining() / 8));
+        buffer.fill();
+        return buffer;
+    }
+
+    public static TokenBuffer open(Path path) throws IOException {
+        return open(read(path));
+    }
+
+    public static TokenBuffer open(Reader codeReader) throws IOException {
+        return open(read(codeReader));
+    }
+
+    // A TokenBuffer that scans on demand as the reader moves through it, keeping only the window
+    // of tokens that has not been released yet
+    public static TokenBuffer open(CharBuffer source) {
+        return new TokenBuffer(over(source), 64);
+    }
+}
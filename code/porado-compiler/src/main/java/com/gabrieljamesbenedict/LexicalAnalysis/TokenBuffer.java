@@ -0,0 +1,150 @@
+package com.gabrieljamesbenedict.LexicalAnalysis;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+// Struct-of-arrays token storage: one byte for the token type and two ints pointing into the
+// source buffer, instead of a Token object and a String per token. Lexemes are only built
+// when someone asks for them.
+//
+// A buffer can also be filled lazily from a LexicalAnalyzer. Tokens are then scanned only when
+// the reader asks for them, and tokens before the release point are dropped from the window,
+// so a streaming reader only keeps as many tokens as it is looking back and ahead over.
+// Indexes are always absolute positions in the token stream.
+public class TokenBuffer {
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final char[] source;
+
+    // Still pulling tokens from here while non-null
+    private LexicalAnalyzer lexer = null;
+
+    private byte[] types;
+    private int[] starts;
+    private int[] ends;
+    private int size = 0;
+
+    // Absolute index of the token stored at slot 0, and of the first token that is still needed
+    private int base = 0;
+    private int released = 0;
+
+    TokenBuffer(char[] source, int capacity) {
+        this.source = source;
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+    }
+
+    TokenBuffer(LexicalAnalyzer lexer, int capacity) {
+        this(lexer.source(), capacity);
+        this.lexer = lexer;
+    }
+
+    // Packs already materialized tokens into a buffer by laying their lexemes out back to back
+    public static TokenBuffer of(Stream<Token> tokenStream) {
+        StringBuilder text = new StringBuilder();
+        TokenBuffer layout = new TokenBuffer((char[]) null, 16);
+        tokenStream.forEachOrdered(token -> {
+            int start = text.length();
+            text.append(token.getLexeme());
+            layout.add(token.getType(), start, text.length());
+        });
+
+        char[] source = new char[text.length()];
+        text.getChars(0, text.length(), source, 0);
+        return new TokenBuffer(source, layout);
+    }
+
+    private TokenBuffer(char[] source, TokenBuffer layout) {
+        this.source = source;
+        this.types = layout.types;
+        this.starts = layout.starts;
+        this.ends = layout.ends;
+        this.size = layout.size;
+    }
+
+    void add(TokenType type, int start, int end) {
+        if (size - base == types.length) makeRoom();
+        int slot = size - base;
+        types[slot] = (byte) type.ordinal();
+        starts[slot] = start;
+        ends[slot] = end;
+        size++;
+    }
+
+    // Drops released tokens before growing, and only grows when the live window is more than half full
+    private void makeRoom() {
+        int live = size - released;
+        if (released > base) {
+            int dropped = released - base;
+            System.arraycopy(types, dropped, types, 0, live);
+            System.arraycopy(starts, dropped, starts, 0, live);
+            System.arraycopy(ends, dropped, ends, 0, live);
+            base = released;
+        }
+        if (live * 2 > types.length || types.length == 0) {
+            int capacity = Math.max(16, types.length * 2);
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+    }
+
+    // Scans everything that is left, for callers that want the whole token stream up front
+    void fill() {
+        while (pull());
+        types = Arrays.copyOf(types, size - base);
+        starts = Arrays.copyOf(starts, size - base);
+        ends = Arrays.copyOf(ends, size - base);
+    }
+
+    private boolean pull() {
+        if (lexer == null) return false;
+        if (lexer.advance()) {
+            add(lexer.tokenType(), lexer.tokenStart(), lexer.tokenEnd());
+            return true;
+        }
+        lexer = null;
+        return false;
+    }
+
+    // Whether the token at index exists, scanning up to it if the buffer is filled lazily
+    public boolean has(int index) {
+        while (index >= size) {
+            if (!pull()) return false;
+        }
+        return true;
+    }
+
+    // Tells the buffer that no token before index will be read again
+    public void release(int index) {
+        if (index > released) released = Math.min(index, size);
+    }
+
+    // Number of tokens scanned so far; the whole stream once the buffer is filled
+    public int size() {
+        return size;
+    }
+
+    // Slots currently allocated for the token window
+    int capacity() {
+        return types.length;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index - base]];
+    }
+
+    public TokenCategory category(int index) {
+        return LexicalAnalyzer.categoryOf(type(index));
+    }
+
+    public String lexeme(int index) {
+        return LexicalAnalyzer.lexemeOf(source, type(index), starts[index - base], ends[index - base]);
+    }
+
+    public Token token(int index) {
+        return new Token(lexeme(index), type(index), category(index));
+    }
+}
@@ -1,174 +1,33 @@
 package com.gabrieljamesbenedict.LexicalAnalysis;
 
-import lombok.RequiredArgsConstructor;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
-
-@RequiredArgsConstructor
-public class TokenPostProcesser {
-
-    public Stream<Token> clean(Stream<Token> tokenStream) {
-
-        Stream<Token> s = tokenStream
-                .peek(
-                        token -> {
-                            if (checkIfLiteral(token.getLexeme()) != null) {
-                                token.setType(checkIfLiteral(token.getLexeme()));
-                                token.setCategory(TokenCategory.LITERAL);
-                            }
-                        }
-                )
-                .peek(
-                        token -> {
-                            String newLexeme = switch (token.getType()) {
-                                case TokenType.LITERAL_CHAR -> token.getLexeme().replace("'", "");
-                                case TokenType.LITERAL_STRING -> token.getLexeme().replace("\"", "");
-                                default -> token.getLexeme();
-                            };
-                            token.setLexeme(newLexeme);
-                        }
-                )
-                .filter(
-                        token -> token.getCategory() != TokenCategory.NEWLINE
-                ).filter(
-                        token -> token.getCategory() != TokenCategory.WHITESPACE
-                );
-
-        List<Token> tokenList = new ArrayList<>(s.toList());
-        for (int i = 0; i < tokenList.size()-1; i++) {
-            if (i == 0) {
-                if (tokenList.get(i).getType() == TokenType.OPERATOR_MINUS) {
-                    tokenList.getFirst().setType(TokenType.OPERATOR_NEGATIVE);
-                }
-                continue;
-            }
-
-            if (
-                    (tokenList.get(i-1).getCategory() == TokenCategory.OPERATOR
-                    || tokenList.get(i-1).getType() == TokenType.DELIMITER_LPARENTH
-                    || tokenList.get(i-1).getType() == TokenType.DELIMITER_LBRACKET
-                    || tokenList.get(i-1).getType() == TokenType.DELIMITER_COMMA
-                    || tokenList.get(i-1).getType() == TokenType.KEYWORD_RETURN
-                    )
-                    && tokenList.get(i).getType() == TokenType.OPERATOR_MINUS
-            ) {
-                tokenList.get(i).setType(TokenType.OPERATOR_NEGATIVE);
-            }
-        }
-
-        for (int i = 1; i < tokenList.size(); i++) {
-            Token prev = tokenList.get(i - 1);
-            Token curr = tokenList.get(i);
-
-            if (prev.getType() == TokenType.KEYWORD_ELSE &&
-                    curr.getType() == TokenType.KEYWORD_IF) {
-
-                tokenList.set(i - 1, new Token(
-                        "else-if",
-                        TokenType.KEYWORD_ELSEIF,
-                        TokenCategory.KEYWORD
-                ));
-                tokenList.remove(i);
-                i--;
-            }
-
-            if (curr.getType() == TokenType.OPERATOR_ASSIGN &&
-                    prev.getType() == TokenType.OPERATOR_PLUS) {
-
-                tokenList.set(i - 1, new Token(
-                        "+=",
-                        TokenType.OPERATOR_ASSIGNPLUS,
-                        TokenCategory.OPERATOR
-                ));
-                tokenList.remove(i);
-                i--;
-            }
-
-            if (curr.getType() == TokenType.OPERATOR_ASSIGN &&
-                    prev.getType() == TokenType.OPERATOR_MINUS) {
-
-                tokenList.set(i - 1, new Token(
-                        "-=",
-                        TokenType.OPERATOR_ASSIGNMINUS,
-                        TokenCategory.OPERATOR
-                ));
-                tokenList.remove(i);
-                i--;
-            }
-
-            if (curr.getType() == TokenType.OPERATOR_ASSIGN &&
-                    prev.getType() == TokenType.OPERATOR_TIMES) {
-
-                tokenList.set(i - 1, new Token(
-                        "*=",
-                        TokenType.OPERATOR_ASSIGNTIMES,
-                        TokenCategory.OPERATOR
-                ));
-                tokenList.remove(i);
-                i--;
-            }
-
-            if (curr.getType() == TokenType.OPERATOR_ASSIGN &&
-                    prev.getType() == TokenType.OPERATOR_DIVIDE) {
-
-                tokenList.set(i - 1, new Token(
-                        "/=",
-                        TokenType.OPERATOR_ASSIGNDIVIDE,
-                        TokenCategory.OPERATOR
-                ));
-                tokenList.remove(i);
-                i--;
-            }
-
-            if (curr.getType() == TokenType.OPERATOR_ASSIGN &&
-                    prev.getType() == TokenType.OPERATOR_MODULO) {
-
-                tokenList.set(i - 1, new Token(
-                        "%=",
-                        TokenType.OPERATOR_ASSIGNMODULO,
-                        TokenCategory.OPERATOR
-                ));
-                tokenList.remove(i);
-                i--;
-            }
-        }
-
-
-        return tokenList.stream();
+// The rules LexicalAnalyzer.advance applies to the raw tokens as it scans: negative signs, else-if and
+// compound assignments. They need at most one token of lookbehind, so the lexer applies them while
+// it holds back its pending token.
+public final class TokenPostProcesser {
+
+    private TokenPostProcesser() {}
+
+    // A minus is a negative sign when it follows an operator, an opening bracket, a comma or return
+    static boolean allowsNegative(TokenType previous, TokenCategory previousCategory) {
+        return previousCategory == TokenCategory.OPERATOR
+                || previous == TokenType.DELIMITER_LPARENTH
+                || previous == TokenType.DELIMITER_LBRACKET
+                || previous == TokenType.DELIMITER_COMMA
+                || previous == TokenType.KEYWORD_RETURN;
     }
 
-    private TokenType checkIfLiteral (String compare) {
-        final String literalInt = "[0-9]+";
-        final String literalFloat = "[0-9]+\\.[0-9]+";
-        final String literalChar = "^\'(.)*\'$";
-        final String literalString = "^\"(.)*\"$";
-        final String literalTrue = "true";
-        final String literalFalse = "false";
-        final String[] literalRegexArray = {
-                literalFloat, literalInt, literalChar, literalString, literalTrue, literalFalse
-        };
+    // else + if becomes else-if, and an arithmetic operator followed by = becomes a compound assignment
+    static TokenType mergedType(TokenType prev, TokenType curr) {
+        if (prev == TokenType.KEYWORD_ELSE && curr == TokenType.KEYWORD_IF) return TokenType.KEYWORD_ELSEIF;
 
-        int type = -1;
-        for (int i = 0; i < 6; i++) {
-            Pattern pattern = Pattern.compile(literalRegexArray[i], Pattern.CASE_INSENSITIVE);
-            Matcher matcher = pattern.matcher(compare);
-            if (matcher.matches()) {
-                type = i;
-                break;
-            }
-        }
+        if (curr != TokenType.OPERATOR_ASSIGN) return null;
 
-        return switch (type) {
-            case 1 -> TokenType.LITERAL_INT;
-            case 0 -> TokenType.LITERAL_FLOAT;
-            case 2 -> TokenType.LITERAL_CHAR;
-            case 3 -> TokenType.LITERAL_STRING;
-            case 4 -> TokenType.LITERAL_TRUE;
-            case 5 -> TokenType.LITERAL_FALSE;
+        return switch (prev) {
+            case OPERATOR_PLUS -> TokenType.OPERATOR_ASSIGNPLUS;
+            case OPERATOR_MINUS -> TokenType.OPERATOR_ASSIGNMINUS;
+            case OPERATOR_TIMES -> TokenType.OPERATOR_ASSIGNTIMES;
+            case OPERATOR_DIVIDE -> TokenType.OPERATOR_ASSIGNDIVIDE;
+            case OPERATOR_MODULO -> TokenType.OPERATOR_ASSIGNMODULO;
             default -> null;
         };
     }
@@ -1,16 +1,18 @@
 package com.gabrieljamesbenedict;
 
 import com.gabrieljamesbenedict.Exceptions.CompileException;
-import com.gabrieljamesbenedict.Interpreter.CodeRunner;
+import com.gabrieljamesbenedict.Interpreter.Disassembler;
+import com.gabrieljamesbenedict.Interpreter.Engine;
 import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
-import com.gabrieljamesbenedict.LexicalAnalysis.Token;
+import com.gabrieljamesbenedict.LexicalAnalysis.TokenBuffer;
 import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
 import com.gabrieljamesbenedict.SyntaxAnalysis.SyntaxAnalyzer;
 
 import java.io.*;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Stream;
 
 public class Porado
 {
@@ -24,33 +26,75 @@ public class Porado
         String command = args[0];
         switch (command) {
             case "run" -> compile(args);
+            case "check" -> check(args);
+            case "disassemble" -> disassemble(args);
             default -> System.out.println("Error: Unknown command \"" + command + "\"");
         }
     }
 
     private static void compile(String[] args) {
         ArrayList<File> files = new ArrayList<>();
-        PushbackReader reader;
+        int parallelism = 0;
+        Path cacheDirectory = ScriptCache.defaultDirectory();
+        Engine engine = Engine.TREE;
 
         for (int i = 0; i < args.length; i++) {
             if (i < 1) continue;
 
+            if (args[i].equals("--parallel")) {
+                parallelism = parallelism(args, ++i);
+                if (parallelism < 1) return;
+                continue;
+            }
+            if (args[i].equals("--no-cache")) {
+                cacheDirectory = null;
+                continue;
+            }
+            if (args[i].equals("--cache-dir")) {
+                if (++i >= args.length) {
+                    System.out.println("Error: --cache-dir expects a directory");
+                    return;
+                }
+                cacheDirectory = Path.of(args[i]);
+                continue;
+            }
+            if (args[i].startsWith("--engine=")) {
+                engine = Engine.named(args[i].substring("--engine=".length()));
+                if (engine == null) {
+                    System.out.println("Error: Unknown engine \"" + args[i].substring("--engine=".length()) + "\"");
+                    return;
+                }
+                continue;
+            }
             files.add(new File(args[i]));
         }
 
+        if (parallelism > 0) {
+            runBatch(files, parallelism, engine);
+            return;
+        }
+
+        ScriptCache cache = (cacheDirectory != null) ? new ScriptCache(cacheDirectory) : null;
+
         for (File file : files) {
             try {
-                reader = new PushbackReader (new FileReader(file));
-
                 // FIVE STEPS OF COMPILATION
-                Stream<Token> tokenStream = LexicalAnalyzer.tokenize(reader);
-                List<Token> copy = tokenStream.toList();
-                AbstractSyntaxTree ast = SyntaxAnalyzer.parse(copy.stream());
+                AbstractSyntaxTree ast;
+                if (cache != null) {
+                    ScriptCache.Entry entry = cache.compile(file);
+                    if (entry.hit()) {
+                        System.err.printf("Loaded %s from cache in %.1f ms, saved %.1f ms%n",
+                                file.getName(), entry.loadNanos() / 1e6, entry.savedNanos() / 1e6);
+                    }
+                    ast = entry.tree().decode();
+                } else {
+                    TokenBuffer tokens = LexicalAnalyzer.open(file.toPath());
+                    ast = new SyntaxAnalyzer(tokens).parse();
+                }
                 //ast.print();
-                CodeRunner runner = new CodeRunner(ast);
-                runner.run();
+                engine.run(ast);
 
-            } catch (FileNotFoundException e) {
+            } catch (FileNotFoundException | NoSuchFileException e) {
                 System.out.println("Error: Cannot find file \"" + file.getName() + "\"");
                 return;
             } catch (IOException e) {
@@ -62,5 +106,76 @@ public class Porado
             }
         }
     }
-}
 
+    // Compiles every file up front on a pool, then runs them one by one in the order they were given.
+    // A file that fails to compile reports its error in its place and the rest still run.
+    private static void runBatch(List<File> files, int parallelism, Engine engine) {
+        BatchCompiler compiler = new BatchCompiler(parallelism);
+        List<BatchCompiler.Result> results = compiler.compile(files);
+
+        for (BatchCompiler.Result result : results) {
+            if (result.failed()) {
+                System.out.println(result.error());
+                continue;
+            }
+            engine.run(result.ast());
+        }
+
+        System.err.println("Compiled " + compiler.summary(results));
+    }
+
+    // Only lexes and parses, reporting every file's diagnostics
+    private static void check(String[] args) {
+        ArrayList<File> files = new ArrayList<>();
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--parallel")) {
+                parallelism = parallelism(args, ++i);
+                if (parallelism < 1) return;
+                continue;
+            }
+            files.add(new File(args[i]));
+        }
+
+        BatchCompiler compiler = new BatchCompiler(parallelism);
+        List<BatchCompiler.Result> results = compiler.compile(files);
+
+        for (BatchCompiler.Result result : results) {
+            System.out.println(result.file().getPath() + ": " + (result.failed() ? result.error() : "OK"));
+        }
+        System.out.println("Checked " + compiler.summary(results));
+    }
+
+    // Prints the bytecode the vm engine would run for each file
+    private static void disassemble(String[] args) {
+        for (int i = 1; i < args.length; i++) {
+            File file = new File(args[i]);
+            try {
+                TokenBuffer tokens = LexicalAnalyzer.open(file.toPath());
+                AbstractSyntaxTree ast = new SyntaxAnalyzer(tokens).parse();
+                System.out.print(Disassembler.disassemble(ast));
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                System.out.println("Error: Cannot find file \"" + file.getName() + "\"");
+                return;
+            } catch (IOException e) {
+                System.out.println("Error: Something went wrong while reading the file \"" + file.getName() + "\"");
+                return;
+            } catch (CompileException e) {
+                System.out.println(e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private static int parallelism(String[] args, int i) {
+        try {
+            int parallelism = Integer.parseInt(args[i]);
+            if (parallelism > 0) return parallelism;
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            // Reported below
+        }
+        System.out.println("Error: --parallel expects a positive number of threads");
+        return 0;
+    }
+}
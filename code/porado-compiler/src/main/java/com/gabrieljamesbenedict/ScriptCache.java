@@ -0,0 +1,165 @@
+package com.gabrieljamesbenedict;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.SyntaxAnalysis.FlatTree;
+import com.gabrieljamesbenedict.SyntaxAnalysis.SyntaxAnalyzer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Keeps parsed scripts on disk as serialized FlatTrees, so an unchanged script skips the lexer and
+// parser on its next run. Entries are named by a hash of the source and of the compiler build, so an
+// edited script or a rebuilt compiler simply misses and writes a fresh entry.
+public class ScriptCache {
+
+    private static final int MAGIC = 0x504F5243; // "PORC"
+
+    // The packages whose code decides what a script parses to. Every class file in them, nested and
+    // synthetic classes included, stands in for the compiler version, so any rebuild of the front end
+    // invalidates every entry.
+    private static final Class<?>[] FRONT_END = { LexicalAnalyzer.class, SyntaxAnalyzer.class };
+
+    private static byte[] compilerVersion;
+
+    public record Entry(FlatTree tree, boolean hit, long loadNanos, long compileNanos) {
+
+        // Time this run did not spend lexing and parsing, the parse cost being the one recorded when
+        // the entry was written
+        public long savedNanos() {
+            return hit ? compileNanos - loadNanos : 0;
+        }
+    }
+
+    private final Path directory;
+
+    public ScriptCache(Path directory) {
+        this.directory = directory;
+    }
+
+    // PORADO_CACHE if set, otherwise .porado/cache in the home directory
+    public static Path defaultDirectory() {
+        String configured = System.getenv("PORADO_CACHE");
+        if (configured != null && !configured.isEmpty()) return Path.of(configured);
+        return Path.of(System.getProperty("user.home"), ".porado", "cache");
+    }
+
+    public Entry compile(File file) throws IOException, CompileException {
+        long start = System.nanoTime();
+        byte[] source = Files.readAllBytes(file.toPath());
+        Path entry = directory.resolve(key(source) + ".porc");
+
+        if (Files.isRegularFile(entry)) {
+            try {
+                ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(entry));
+                if (in.remaining() > 12 && in.getInt() == MAGIC) {
+                    long compileNanos = in.getLong();
+                    FlatTree tree = FlatTree.read(in);
+                    tree.check();
+                    return new Entry(tree, true, System.nanoTime() - start, compileNanos);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Unreadable, undecodable or from another format; parse again and overwrite it
+            }
+        }
+
+        FlatTree tree = new SyntaxAnalyzer(LexicalAnalyzer.open(StandardCharsets.UTF_8.decode(ByteBuffer.wrap(source)))).parseFlat();
+        long compileNanos = System.nanoTime() - start;
+        store(entry, tree, compileNanos);
+        return new Entry(tree, false, 0, compileNanos);
+    }
+
+    // Written to a temporary file first so a concurrent run never reads half an entry. A cache that
+    // cannot be written is not an error, the script has already been parsed.
+    private void store(Path entry, FlatTree tree, long compileNanos) {
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "entry", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeLong(compileNanos);
+                tree.write(out);
+            }
+            try {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            try {
+                if (temp != null) Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Nothing more to clean up
+            }
+        }
+    }
+
+    private static String key(byte[] source) {
+        MessageDigest digest = sha256();
+        digest.update(compilerVersion());
+        digest.update(source);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static synchronized byte[] compilerVersion() {
+        if (compilerVersion == null) {
+            MessageDigest digest = sha256();
+            digest.update(Integer.toString(FlatTree.FORMAT).getBytes(StandardCharsets.UTF_8));
+            try {
+                // The classes directory, or the jar they were loaded from
+                Path location = Path.of(LexicalAnalyzer.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+                if (Files.isDirectory(location)) {
+                    hashClassFiles(digest, location);
+                } else {
+                    try (FileSystem jar = FileSystems.newFileSystem(location)) {
+                        hashClassFiles(digest, jar.getPath("/"));
+                    }
+                }
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                // The class files cannot be read, so nothing proves an entry came from this build and
+                // entries are only trusted within this run
+                digest.update(Long.toString(System.nanoTime()).getBytes(StandardCharsets.UTF_8));
+            }
+            compilerVersion = digest.digest();
+        }
+        return compilerVersion;
+    }
+
+    private static void hashClassFiles(MessageDigest digest, Path root) throws IOException {
+        for (Class<?> type : FRONT_END) {
+            List<Path> classes;
+            try (Stream<Path> files = Files.list(root.resolve(type.getPackageName().replace('.', '/')))) {
+                classes = files.filter(file -> file.getFileName().toString().endsWith(".class")).sorted().toList();
+            }
+            for (Path file : classes) {
+                digest.update(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(file));
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.gabrieljamesbenedict.SemanticAnalysis;
+
+import com.gabrieljamesbenedict.Interpreter.Symbol;
+import com.gabrieljamesbenedict.Interpreter.SymbolTable;
+import com.gabrieljamesbenedict.Interpreter.SymbolType;
+import com.gabrieljamesbenedict.LexicalAnalysis.LiteralClassifier;
+import com.gabrieljamesbenedict.LexicalAnalysis.TokenType;
+import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Address;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Expression;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Runs between parsing and execution and gives every name an address, so the interpreter indexes
+    frames instead of searching symbol tables by name.
+
+    Each function gets one frame, and so does the top-level code. A block takes a range of slots in
+    the frame it runs in: first the names it declares itself, counted before its body is resolved,
+    then the ranges of its nested blocks, which siblings share because only one of them runs at a
+    time. A frame's size is the deepest such nesting, fixed before the function first runs.
+
+    A local's address is the number of function frames between the use and the declaration, and
+    the slot. Names declared at the top level, and names assigned without being declared anywhere,
+    are globals. Globals are numbered the first time the name appears, so a function may use a
+    global the program only declares after it. Functions get a slot in a table of their own, and
+    loops are numbered so a runner can keep counts for them in an array.
+
+    Scoping is lexical: a function sees the scopes around its declaration, not its caller's.
+ */
+public class ScopeResolver {
+
+    // The slots of one function body, or of the top-level code
+    private static class Frame {
+        int size = 0;
+        // First slot not held by a scope that is still open
+        int next = 0;
+
+        int reserve(int count) {
+            int first = next;
+            next += count;
+            size = Math.max(size, next);
+            return first;
+        }
+    }
+
+    private static class Scope {
+        final SymbolTable names = new SymbolTable();
+        final Scope parent;
+        final Frame frame;
+        final int first;
+        int declared = 0;
+
+        Scope(Scope parent, Frame frame, int count) {
+            this.parent = parent;
+            this.frame = frame;
+            this.first = frame.reserve(count);
+        }
+
+        void close() {
+            frame.next = first;
+        }
+    }
+
+    // null at the top level
+    private Scope scope = null;
+    private final Frame program = new Frame();
+
+    private final SymbolTable globals = new SymbolTable();
+    private final SymbolTable functions = new SymbolTable();
+    private int loops = 0;
+
+    public static AbstractSyntaxTree resolve(AbstractSyntaxTree ast) {
+        ScopeResolver resolver = new ScopeResolver();
+        List<Statement> statements = new ArrayList<>();
+        for (Statement stmt : ast.getStatements()) {
+            statements.add(resolver.resolve(stmt));
+        }
+        return new AbstractSyntaxTree(statements);
+    }
+
+    // Resolves one more top-level statement against everything resolved before it
+    public Statement resolve(Statement stmt) {
+        return statement(stmt);
+    }
+
+    public int globals() {
+        return globals.size();
+    }
+
+    public int functions() {
+        return functions.size();
+    }
+
+    public int loops() {
+        return loops;
+    }
+
+    // The frame blocks at the top level share
+    public int frameSize() {
+        return program.size;
+    }
+
+    // ---------------------------------------------------------------------------
+    // NAMES
+    // ---------------------------------------------------------------------------
+
+    private Address declare(String name) {
+        if (scope == null) return Address.global(slot(globals, name, SymbolType.VARIABLE));
+
+        // Declaring the same name twice in one scope reuses the slot, running the second declaration
+        // is what fails
+        Symbol existing = scope.names.lookup(name);
+        if (existing != null) return Address.local(0, existing.getSlot());
+
+        int slot = scope.first + scope.declared++;
+        scope.names.add(Symbol.builder().name(name).symbolType(SymbolType.VARIABLE).slot(slot).build());
+        return Address.local(0, slot);
+    }
+
+    private Address lookup(String name) {
+        int depth = 0;
+        Frame frame = (scope == null) ? null : scope.frame;
+        for (Scope s = scope; s != null; s = s.parent) {
+            if (s.frame != frame) {
+                depth++;
+                frame = s.frame;
+            }
+            Symbol symbol = s.names.lookup(name);
+            if (symbol != null) return Address.local(depth, symbol.getSlot());
+        }
+        return Address.global(slot(globals, name, SymbolType.VARIABLE));
+    }
+
+    private static int slot(SymbolTable table, String name, SymbolType type) {
+        Symbol symbol = table.lookup(name);
+        if (symbol == null) {
+            symbol = Symbol.builder().name(name).symbolType(type).slot(table.size()).build();
+            table.add(symbol);
+        }
+        return symbol.getSlot();
+    }
+
+    // What a literal element stands for, decoded here so the engines do not parse it on every run.
+    // An int too long for a long is read as a double, as it always was.
+    private static Object constant(String lexeme, TokenType literal) {
+        switch (literal) {
+            case LITERAL_INT:
+                try { return Long.parseLong(lexeme); } catch (NumberFormatException tooLong) { return Double.parseDouble(lexeme); }
+            case LITERAL_FLOAT:
+                return Double.parseDouble(lexeme);
+            case LITERAL_TRUE:
+                return true;
+            case LITERAL_FALSE:
+                return false;
+            case LITERAL_STRING:
+                return lexeme.substring(1, lexeme.length() - 1);
+            default:
+                return lexeme;
+        }
+    }
+
+    // Names a statement declares into the scope it runs in, an upper bound since a repeated name
+    // shares its slot. Blocks and functions declare into scopes of their own.
+    private static int declarations(Statement node) {
+        if (node == null) return 0;
+
+        switch (node) {
+            case Statement.VariableDeclaration decl:
+                return 1;
+            case Statement.ArrayDeclaration decl:
+                return 1;
+            case Statement.For loop:
+                return 1 + declarations(loop.body());
+            case Statement.ConditionLoop loop:
+                return declarations(loop.body());
+            case Statement.Repeat loop:
+                return declarations(loop.body());
+            case Statement.Conditional cond: {
+                int count = declarations(cond.otherwise());
+                for (Statement.Branch branch : cond.branches()) count += declarations(branch.body());
+                return count;
+            }
+            case Statement.Switch sw: {
+                int count = declarations(sw.otherwise());
+                for (Statement.Case c : sw.cases()) count += declarations(c.body());
+                return count;
+            }
+            default:
+                return 0;
+        }
+    }
+
+    // ---------------------------------------------------------------------------
+    // STATEMENTS
+    // ---------------------------------------------------------------------------
+
+    private Statement statement(Statement node) {
+        if (node == null) return null;
+
+        switch (node) {
+
+            case Statement.Empty e:
+                return e;
+            case Statement.Break b:
+                return b;
+            case Statement.Continue c:
+                return c;
+
+            case Statement.Block block: {
+                int count = 0;
+                for (Statement child : block.statements()) count += declarations(child);
+                scope = new Scope(scope, (scope == null) ? program : scope.frame, count);
+                try {
+                    List<Statement> statements = new ArrayList<>(block.statements().size());
+                    for (Statement child : block.statements()) statements.add(statement(child));
+                    return new Statement.Block(statements, scope.first, count);
+                } finally {
+                    scope.close();
+                    scope = scope.parent;
+                }
+            }
+
+            case Statement.ExpressionStatement stmt:
+                return new Statement.ExpressionStatement(expression(stmt.expression()));
+
+            case Statement.Print print:
+                return new Statement.Print(expression(print.value()));
+
+            case Statement.Return ret:
+                return new Statement.Return(expression(ret.value()));
+
+            // The initial value is read before the name exists
+            case Statement.VariableDeclaration decl: {
+                Expression value = expression(decl.value());
+                return new Statement.VariableDeclaration(decl.name(), decl.type(), value, declare(decl.name()));
+            }
+
+            case Statement.ArrayDeclaration decl: {
+                Expression size = expression(decl.size());
+                List<Address> elementAddresses = null;
+                List<Object> elementValues = null;
+                if (decl.elements() != null) {
+                    elementAddresses = new ArrayList<>(decl.elements().size());
+                    elementValues = new ArrayList<>(decl.elements().size());
+                    for (String el : decl.elements()) {
+                        // Read as a literal first, by the lexer's own rule, and only then as a name
+                        TokenType literal = (el == null) ? null : LiteralClassifier.classify(el);
+                        elementAddresses.add((el == null || literal != null) ? null : lookup(el));
+                        elementValues.add((literal == null) ? null : constant(el, literal));
+                    }
+                }
+                Address source = (decl.copyOf() == null) ? null : lookup(decl.copyOf());
+                return new Statement.ArrayDeclaration(decl.name(), size, decl.elementType(), decl.elements(), decl.copyOf(),
+                        declare(decl.name()), elementAddresses, elementValues, source);
+            }
+
+            case Statement.FunctionDeclaration decl: {
+                int function = slot(functions, decl.name(), SymbolType.FUNCTION);
+                int parameters = (decl.parameters() == null) ? 0 : decl.parameters().size();
+                Frame frame = new Frame();
+                scope = new Scope(scope, frame, parameters + declarations(decl.body()));
+                try {
+                    // parameters take the first slots, in order
+                    if (decl.parameters() != null) {
+                        for (Statement.Parameter param : decl.parameters()) declare(param.name());
+                    }
+                    Statement body = statement(decl.body());
+                    return new Statement.FunctionDeclaration(decl.name(), decl.parameters(), decl.returnType(), body,
+                            function, frame.size);
+                } finally {
+                    scope = scope.parent;
+                }
+            }
+
+            case Statement.Conditional cond: {
+                List<Statement.Branch> branches = new ArrayList<>(cond.branches().size());
+                for (Statement.Branch branch : cond.branches()) {
+                    branches.add(new Statement.Branch(expression(branch.condition()), statement(branch.body())));
+                }
+                return new Statement.Conditional(branches, statement(cond.otherwise()));
+            }
+
+            case Statement.Switch sw: {
+                Expression subject = expression(sw.subject());
+                List<Statement.Case> cases = new ArrayList<>(sw.cases().size());
+                for (Statement.Case c : sw.cases()) {
+                    cases.add(new Statement.Case(expression(c.value()), statement(c.body())));
+                }
+                return new Statement.Switch(subject, cases, statement(sw.otherwise()));
+            }
+
+            case Statement.ConditionLoop loop:
+                return new Statement.ConditionLoop(loop.kind(), expression(loop.condition()), statement(loop.body()), loops++);
+
+            // The loop variable lives in the scope around the loop
+            case Statement.For loop: {
+                Address source = lookup(loop.array());
+                Address element = declare(loop.variable());
+                return new Statement.For(loop.variable(), loop.array(), statement(loop.body()), element, source, loops++);
+            }
+
+            case Statement.Repeat loop:
+                return new Statement.Repeat(expression(loop.times()), loop.variable(), loop.start(), statement(loop.body()), loops++);
+        }
+    }
+
+    // ---------------------------------------------------------------------------
+    // EXPRESSIONS
+    // ---------------------------------------------------------------------------
+
+    private Expression expression(Expression node) {
+        if (node == null) return null;
+
+        switch (node) {
+
+            case Expression.Literal literal:
+                return literal;
+
+            case Expression.Variable variable:
+                return new Expression.Variable(variable.name(), lookup(variable.name()));
+
+            case Expression.ArrayAccess access:
+                return new Expression.ArrayAccess(access.name(), expression(access.index()), lookup(access.name()));
+
+            case Expression.Call call: {
+                List<Expression> arguments = new ArrayList<>(call.arguments().size());
+                for (Expression arg : call.arguments()) arguments.add(expression(arg));
+                return new Expression.Call(call.name(), arguments, slot(functions, call.name(), SymbolType.FUNCTION));
+            }
+
+            case Expression.Unary unary:
+                return new Expression.Unary(unary.kind(), expression(unary.operand()));
+
+            case Expression.Binary binary:
+                return new Expression.Binary(binary.kind(), expression(binary.left()), expression(binary.right()));
+
+            case Expression.Assignment assignment:
+                return new Expression.Assignment(assignment.kind(), expression(assignment.target()), expression(assignment.value()));
+        }
+    }
+
+}
@@ -2,28 +2,227 @@ package com.gabrieljamesbenedict.SyntaxAnalysis;
 
 import lombok.Data;
 
-import java.io.Serializable;
+import java.util.List;
 
 @Data
 public class AbstractSyntaxTree {
 
-    private Node root;
-
-    private void print(Node node, int level) {
-        final String indent = "--".repeat(Math.max(0, level - 1));
-        String label = (node.getText() == null)
-                ? (node.getType() != null)? node.getType().toString()
-                : "Err"
-                : node.getType().toString() + ": " +node.getText();
-        System.out.println(indent + label);
-        for (Node child : node.getChildren()) {
-            print(child, level + 1);
+    // Top-level statements in source order
+    private final List<Statement> statements;
+
+    // Replays the tree as the labelled outline the old generic tree had, wrapper labels included,
+    // so dumps stay comparable across versions and FlatTree can store the same shape
+    public void accept(TreeVisitor v) {
+        v.enter(NodeType.PROGRAM, null);
+        for (Statement stmt : statements) {
+            accept(stmt, v);
+        }
+        v.leave(NodeType.PROGRAM);
+    }
+
+    private static void leaf(TreeVisitor v, NodeType kind, String text) {
+        v.enter(kind, text);
+        v.leave(kind);
+    }
+
+    private static void wrap(TreeVisitor v, NodeType kind, Statement stmt) {
+        v.enter(kind, null);
+        accept(stmt, v);
+        v.leave(kind);
+    }
+
+    private static void wrap(TreeVisitor v, NodeType kind, Expression expr) {
+        v.enter(kind, null);
+        accept(expr, v);
+        v.leave(kind);
+    }
+
+    static void accept(Statement stmt, TreeVisitor v) {
+        if (stmt == null) return;
+
+        // Most statements label themselves with their kind, loops are wrapped in a LOOP node
+        NodeType label = switch (stmt) {
+            case Statement.ExpressionStatement e -> null;
+            case Statement.ConditionLoop l -> NodeType.LOOP;
+            case Statement.For f -> NodeType.LOOP;
+            case Statement.Repeat r -> NodeType.LOOP;
+            default -> stmt.kind();
+        };
+        if (label != null) v.enter(label, (stmt instanceof Statement.Return) ? "return" : null);
+
+        switch (stmt) {
+            case Statement.Empty e -> {}
+            case Statement.Break b -> {}
+            case Statement.Continue c -> {}
+            case Statement.Block b -> {
+                for (Statement s : b.statements()) accept(s, v);
+            }
+            case Statement.ExpressionStatement e -> accept(e.expression(), v);
+            case Statement.Print p -> accept(p.value(), v);
+            case Statement.VariableDeclaration d -> {
+                leaf(v, NodeType.VARIABLE_NAME, d.name());
+                leaf(v, NodeType.VARIABLE_TYPE, d.type());
+                if (d.value() != null) wrap(v, NodeType.VARIABLE_BODY, d.value());
+            }
+            case Statement.ArrayDeclaration d -> {
+                leaf(v, NodeType.ARRAY_NAME, d.name());
+                if (d.size() != null) wrap(v, NodeType.ARRAY_SIZE, d.size());
+                leaf(v, NodeType.ARRAY_ELEMENT_TYPE, d.elementType());
+                if (d.elements() != null) {
+                    v.enter(NodeType.ARRAY_BODY, null);
+                    v.enter(NodeType.LITERAL_ARRAY, null);
+                    for (String element : d.elements()) leaf(v, NodeType.ARRAY_ELEMENT, element);
+                    v.leave(NodeType.LITERAL_ARRAY);
+                    v.leave(NodeType.ARRAY_BODY);
+                } else if (d.copyOf() != null) {
+                    v.enter(NodeType.ARRAY_BODY, null);
+                    leaf(v, NodeType.ARRAY_NAME, d.copyOf());
+                    v.leave(NodeType.ARRAY_BODY);
+                }
+            }
+            case Statement.FunctionDeclaration d -> {
+                leaf(v, NodeType.FUNCTION_NAME, d.name());
+                if (d.parameters() != null) {
+                    v.enter(NodeType.FUNCTION_PARAMETERS, null);
+                    for (Statement.Parameter p : d.parameters()) {
+                        v.enter(NodeType.FUNCTION_PARAMETER, null);
+                        leaf(v, NodeType.FUNCTION_PARAMETER_NAME, p.name());
+                        leaf(v, NodeType.FUNCTION_PARAMETER_TYPE, p.type());
+                        v.leave(NodeType.FUNCTION_PARAMETER);
+                    }
+                    v.leave(NodeType.FUNCTION_PARAMETERS);
+                }
+                if (d.returnType() != null) {
+                    v.enter(NodeType.FUNCTION_RETURN_TYPE, null);
+                    leaf(v, NodeType.valueOf("TYPE_" + d.returnType().toUpperCase()), d.returnType());
+                    v.leave(NodeType.FUNCTION_RETURN_TYPE);
+                }
+                wrap(v, NodeType.FUNCTION_BODY, d.body());
+            }
+            case Statement.Return r -> {
+                if (r.value() == null) leaf(v, NodeType.NO_RETURN, null);
+                else accept(r.value(), v);
+            }
+            case Statement.Conditional c -> {
+                for (int i = 0; i < c.branches().size(); i++) {
+                    Statement.Branch branch = c.branches().get(i);
+                    boolean first = (i == 0);
+                    v.enter(first ? NodeType.IF : NodeType.ELSE_IF, null);
+                    wrap(v, first ? NodeType.IF_CONDITION : NodeType.ELSE_IF_CONDITION, branch.condition());
+                    wrap(v, first ? NodeType.IF_BODY : NodeType.ELSE_IF_BODY, branch.body());
+                    v.leave(first ? NodeType.IF : NodeType.ELSE_IF);
+                }
+                if (c.otherwise() != null) {
+                    v.enter(NodeType.ELSE, null);
+                    wrap(v, NodeType.ELSE_BODY, c.otherwise());
+                    v.leave(NodeType.ELSE);
+                }
+            }
+            case Statement.Switch s -> {
+                wrap(v, NodeType.SWITCH_EXPRESSION, s.subject());
+                v.enter(NodeType.CASES, null);
+                for (Statement.Case c : s.cases()) {
+                    v.enter(NodeType.CASE, null);
+                    wrap(v, NodeType.CASE_EXPRESSION, c.value());
+                    wrap(v, NodeType.CASE_BODY, c.body());
+                    v.leave(NodeType.CASE);
+                }
+                if (s.otherwise() != null) {
+                    v.enter(NodeType.DEFAULT, null);
+                    wrap(v, NodeType.DEFAULT_BODY, s.otherwise());
+                    v.leave(NodeType.DEFAULT);
+                }
+                v.leave(NodeType.CASES);
+            }
+            case Statement.ConditionLoop l -> {
+                v.enter(l.kind(), null);
+                boolean testFirst = (l.kind() == NodeType.WHILE || l.kind() == NodeType.UNTIL);
+                if (testFirst) wrap(v, NodeType.LOOP_CONDITION, l.condition());
+                wrap(v, NodeType.LOOP_BODY, l.body());
+                if (!testFirst) wrap(v, NodeType.LOOP_CONDITION, l.condition());
+                v.leave(l.kind());
+            }
+            case Statement.For f -> {
+                v.enter(NodeType.FOR, null);
+                leaf(v, NodeType.FOR_VARIABLE, f.variable());
+                leaf(v, NodeType.FOR_ARRAY, f.array());
+                wrap(v, NodeType.LOOP_BODY, f.body());
+                v.leave(NodeType.FOR);
+            }
+            case Statement.Repeat r -> {
+                v.enter(NodeType.REPEAT, null);
+                wrap(v, NodeType.REPEAT_AMOUNT, r.times());
+                if (r.variable() != null) leaf(v, NodeType.REPEAT_VARIABLE, r.variable());
+                if (r.start() != null) leaf(v, NodeType.REPEAT_VARIABLE_START, r.start());
+                wrap(v, NodeType.LOOP_BODY, r.body());
+                v.leave(NodeType.REPEAT);
+            }
         }
+
+        if (label != null) v.leave(label);
+    }
+
+    static void accept(Expression expr, TreeVisitor v) {
+        if (expr == null) return;
+        switch (expr) {
+            case Expression.Literal l -> leaf(v, l.kind(), l.text());
+            case Expression.Variable var -> leaf(v, NodeType.VARIABLE_ACCESS, var.name());
+            case Expression.ArrayAccess a -> {
+                v.enter(NodeType.ARRAY_ACCESS, a.name());
+                accept(a.index(), v);
+                v.leave(NodeType.ARRAY_ACCESS);
+            }
+            case Expression.Call c -> {
+                v.enter(NodeType.FUNCTION_CALL, c.name());
+                v.enter(NodeType.FUNCTION_ARGUMENTS, null);
+                for (Expression arg : c.arguments()) {
+                    v.enter(NodeType.FUNCTION_ARGUMENT, null);
+                    accept(arg, v);
+                    v.leave(NodeType.FUNCTION_ARGUMENT);
+                }
+                v.leave(NodeType.FUNCTION_ARGUMENTS);
+                v.leave(NodeType.FUNCTION_CALL);
+            }
+            case Expression.Unary u -> {
+                v.enter(u.kind(), operator(u.kind()));
+                accept(u.operand(), v);
+                v.leave(u.kind());
+            }
+            case Expression.Binary b -> {
+                v.enter(b.kind(), null);
+                accept(b.left(), v);
+                accept(b.right(), v);
+                v.leave(b.kind());
+            }
+            case Expression.Assignment a -> {
+                v.enter(a.kind(), operator(a.kind()));
+                accept(a.target(), v);
+                accept(a.value(), v);
+                v.leave(a.kind());
+            }
+        }
+    }
+
+    // Source spelling of the operators the outline labels with their text
+    static String operator(NodeType kind) {
+        return switch (kind) {
+            case PRE_INCREMENT, POST_INCREMENT -> "++";
+            case PRE_DECREMENT, POST_DECREMENT -> "--";
+            case NEGATIVE -> "-";
+            case NOT -> "!";
+            case ASSIGNMENT -> "=";
+            case ADDITION_ASSIGNMENT -> "+=";
+            case SUBTRACTION_ASSIGNMENT -> "-=";
+            case MULTIPLICATION_ASSIGNMENT -> "*=";
+            case DIVISION_ASSIGNMENT -> "/=";
+            case MODULO_ASSIGNMENT -> "%=";
+            default -> null;
+        };
     }
 
     public void print() {
-        if (root != null) {
-            print(root, 1);
+        if (statements != null) {
+            accept(new TreePrinter(System.out));
         } else {
             System.out.println("AST is empty");
         }
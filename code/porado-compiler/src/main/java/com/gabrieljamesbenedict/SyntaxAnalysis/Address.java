@@ -0,0 +1,21 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+// Where the resolver placed a name. A local is depth function frames out from the one running, then
+// a slot in that frame. Top-level and undeclared names are globals, found by slot alone.
+public record Address(int depth, int slot) {
+
+    public static final int GLOBAL = -1;
+
+    public static Address global(int slot) {
+        return new Address(GLOBAL, slot);
+    }
+
+    public static Address local(int depth, int slot) {
+        return new Address(depth, slot);
+    }
+
+    public boolean isGlobal() {
+        return depth == GLOBAL;
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+import java.util.List;
+
+// Typed expression nodes. Every construct keeps its parts in fields, so the interpreter reads
+// operands and names directly instead of searching a child list.
+public sealed interface Expression {
+
+    NodeType kind();
+
+    // LITERAL_INT, LITERAL_FLOAT, LITERAL_CHAR, LITERAL_STRING, LITERAL_TRUE or LITERAL_FALSE.
+    // Char and string literals keep their quotes in text, like the source spelled them. value is the
+    // text decoded once when the node is built, or null if it does not decode, so the error is only
+    // raised if the literal is actually evaluated.
+    record Literal(NodeType kind, String text, Object value) implements Expression {
+
+        public Literal(NodeType kind, String text) {
+            this(kind, text, decode(kind, text));
+        }
+
+        private static Object decode(NodeType kind, String text) {
+            if (text == null) return null;
+            try {
+                switch (kind) {
+                    case LITERAL_INT:
+                        return Long.valueOf(text);
+                    case LITERAL_FLOAT:
+                        return Double.valueOf(text);
+                    case LITERAL_STRING:
+                        return text;
+                    case LITERAL_CHAR:
+                        if (text.length() >= 3 && text.startsWith("'") && text.endsWith("'")) return text.charAt(1);
+                        return null;
+                    case LITERAL_TRUE:
+                        return Boolean.TRUE;
+                    case LITERAL_FALSE:
+                        return Boolean.FALSE;
+                    default:
+                        return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    // address, like the other resolved fields below, is left null or -1 by the parser and filled in
+    // by the ScopeResolver
+    record Variable(String name, Address address) implements Expression {
+        public Variable(String name) { this(name, null); }
+        public NodeType kind() { return NodeType.VARIABLE_ACCESS; }
+    }
+
+    record ArrayAccess(String name, Expression index, Address address) implements Expression {
+        public ArrayAccess(String name, Expression index) { this(name, index, null); }
+        public NodeType kind() { return NodeType.ARRAY_ACCESS; }
+    }
+
+    // function is the callee's slot in the function table
+    record Call(String name, List<Expression> arguments, int function) implements Expression {
+        public Call(String name, List<Expression> arguments) { this(name, arguments, -1); }
+        public NodeType kind() { return NodeType.FUNCTION_CALL; }
+    }
+
+    // NEGATIVE, NOT, PRE_INCREMENT, PRE_DECREMENT, POST_INCREMENT or POST_DECREMENT
+    record Unary(NodeType kind, Expression operand) implements Expression {}
+
+    // Arithmetic, comparison and logical operators
+    record Binary(NodeType kind, Expression left, Expression right) implements Expression {}
+
+    // ASSIGNMENT or one of the compound assignments; target is a Variable or an ArrayAccess
+    record Assignment(NodeType kind, Expression target, Expression value) implements Expression {}
+
+}
@@ -0,0 +1,527 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The same labelled outline AbstractSyntaxTree.accept() replays, stored in parallel arrays instead
+    of one object per node. A node is an index:
+
+        kinds[n]        NodeType ordinal
+        firstChild[n]   index of its first child, or NONE
+        nextSibling[n]  index of its next sibling, or NONE
+        texts[n]        index into the string pool, or NONE
+
+    Texts are interned, so a name used a million times is stored once. Node 0 is the PROGRAM root,
+    and nodes are numbered in the order they were entered, so a node's subtree follows it directly.
+ */
+public class FlatTree {
+
+    public static final int NONE = -1;
+
+    private static final NodeType[] KINDS = NodeType.values();
+
+    private byte[] kinds;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] texts;
+    private int size = 0;
+
+    private final List<String> pool = new ArrayList<>();
+    private final Map<String, Integer> interned = new HashMap<>();
+
+    // Nodes still being filled while encoding, with the last child appended to each
+    private int[] open = new int[32];
+    private int[] lastChild = new int[32];
+    private int depth = 0;
+
+    private final TreeVisitor encoder = new TreeVisitor() {
+        @Override
+        public void enter(NodeType kind, String text) {
+            add(kind, text);
+        }
+
+        @Override
+        public void leave(NodeType kind) {
+            depth--;
+        }
+    };
+
+    public FlatTree() {
+        this(64);
+    }
+
+    FlatTree(int capacity) {
+        kinds = new byte[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        texts = new int[capacity];
+        add(NodeType.PROGRAM, null);
+    }
+
+    public static FlatTree encode(AbstractSyntaxTree ast) {
+        FlatTree tree = new FlatTree();
+        for (Statement stmt : ast.getStatements()) {
+            tree.append(stmt);
+        }
+        return tree.trim();
+    }
+
+    // Adds one more top-level statement, so a parser can encode as it goes and drop the records
+    public void append(Statement stmt) {
+        AbstractSyntaxTree.accept(stmt, encoder);
+    }
+
+    private void add(NodeType kind, String text) {
+        if (size == kinds.length) {
+            int capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+
+        int node = size++;
+        kinds[node] = (byte) kind.ordinal();
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        texts[node] = (text == null) ? NONE : intern(text);
+
+        if (depth > 0) {
+            int parent = depth - 1;
+            if (lastChild[parent] == NONE) firstChild[open[parent]] = node;
+            else nextSibling[lastChild[parent]] = node;
+            lastChild[parent] = node;
+        }
+
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+            lastChild = Arrays.copyOf(lastChild, depth * 2);
+        }
+        open[depth] = node;
+        lastChild[depth] = NONE;
+        depth++;
+    }
+
+    private int intern(String text) {
+        Integer index = interned.get(text);
+        if (index == null) {
+            index = pool.size();
+            pool.add(text);
+            interned.put(text, index);
+        }
+        return index;
+    }
+
+    // Drops the spare capacity once encoding is done
+    public FlatTree trim() {
+        kinds = Arrays.copyOf(kinds, size);
+        firstChild = Arrays.copyOf(firstChild, size);
+        nextSibling = Arrays.copyOf(nextSibling, size);
+        texts = Arrays.copyOf(texts, size);
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    public NodeType kind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    public String text(int node) {
+        return (texts[node] == NONE) ? null : pool.get(texts[node]);
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public int strings() {
+        return pool.size();
+    }
+
+    // Bytes held by the node arrays and the pooled strings, ignoring the pool's own map
+    public long footprint() {
+        long bytes = kinds.length + 12L * firstChild.length;
+        for (String s : pool) bytes += 24 + 16 + s.length();
+        return bytes;
+    }
+
+    public void accept(TreeVisitor v) {
+        accept(root(), v);
+    }
+
+    public void accept(int node, TreeVisitor v) {
+        NodeType kind = kind(node);
+        v.enter(kind, text(node));
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            accept(child, v);
+        }
+        v.leave(kind);
+    }
+
+    public void print() {
+        accept(new TreePrinter(System.out));
+    }
+
+    // ---------------------------------------------------------------------------
+    // SERIALIZATION
+    // ---------------------------------------------------------------------------
+
+    /*
+        Bump FORMAT whenever the layout below or the NodeType order changes.
+
+        int      FORMAT
+        varint   pooled string count, then each string as a varint UTF-8 length and its bytes
+        varint   node count, then per node in index order:
+                 byte kind, varint text index + 1 (0 for none), varint child count
+
+        Nodes are numbered in depth-first order, so child counts are enough to rebuild the links.
+     */
+    public static final int FORMAT = 2;
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(FORMAT);
+
+        writeVarint(out, pool.size());
+        for (String s : pool) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+
+        writeVarint(out, size);
+        for (int node = 0; node < size; node++) {
+            int children = 0;
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) children++;
+            out.writeByte(kinds[node]);
+            writeVarint(out, texts[node] + 1);
+            writeVarint(out, children);
+        }
+    }
+
+    // Fills the arrays straight from the bytes; the strings are already unique, so nothing is re-interned
+    public static FlatTree read(ByteBuffer in) throws IOException {
+        try {
+            int format = in.getInt();
+            if (format != FORMAT) throw new IOException("Unsupported tree format " + format);
+
+            FlatTree tree = new FlatTree(1);
+            // Every string takes at least the byte of its length and every node three, so a count
+            // the bytes left cannot hold is corrupt rather than something to allocate for
+            int strings = readCount(in, 1);
+            for (int i = 0; i < strings; i++) {
+                byte[] bytes = new byte[readCount(in, 1)];
+                in.get(bytes);
+                String text = new String(bytes, StandardCharsets.UTF_8);
+                tree.pool.add(text);
+                tree.interned.put(text, i);
+            }
+
+            int nodes = readCount(in, 3);
+            tree.kinds = new byte[nodes];
+            tree.firstChild = new int[nodes];
+            tree.nextSibling = new int[nodes];
+            tree.texts = new int[nodes];
+            tree.size = nodes;
+
+            // Open nodes with the children each still expects and the last child linked to it
+            int[] remaining = new int[32];
+            int depth = 0;
+            for (int node = 0; node < nodes; node++) {
+                byte kind = in.get();
+                int text = readVarint(in) - 1;
+                int children = readVarint(in);
+                if (kind < 0 || kind >= KINDS.length || text < -1 || text >= strings) throw new IOException("Corrupt tree");
+
+                tree.kinds[node] = kind;
+                tree.texts[node] = text;
+                tree.firstChild[node] = NONE;
+                tree.nextSibling[node] = NONE;
+
+                if (depth > 0) {
+                    int parent = depth - 1;
+                    if (tree.lastChild[parent] == NONE) tree.firstChild[tree.open[parent]] = node;
+                    else tree.nextSibling[tree.lastChild[parent]] = node;
+                    tree.lastChild[parent] = node;
+                    remaining[parent]--;
+                }
+
+                if (depth == tree.open.length) {
+                    tree.open = Arrays.copyOf(tree.open, depth * 2);
+                    tree.lastChild = Arrays.copyOf(tree.lastChild, depth * 2);
+                    remaining = Arrays.copyOf(remaining, depth * 2);
+                }
+                tree.open[depth] = node;
+                tree.lastChild[depth] = NONE;
+                remaining[depth] = children;
+                depth++;
+
+                // Close every node that has all its children, the root stays open for append()
+                while (depth > 1 && remaining[depth - 1] == 0) depth--;
+            }
+            if (depth != 1 || remaining[0] != 0) throw new IOException("Corrupt tree");
+            tree.depth = 1;
+            return tree;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt tree", e);
+        }
+    }
+
+    private static void writeVarint(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    // A varint counting things of at least bytesEach bytes that are still to be read
+    private static int readCount(ByteBuffer in, int bytesEach) throws IOException {
+        int count = readVarint(in);
+        if (count < 0 || count > in.remaining() / bytesEach) throw new IOException("Corrupt tree");
+        return count;
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupt varint");
+    }
+
+    // ---------------------------------------------------------------------------
+    // DECODING
+    // ---------------------------------------------------------------------------
+
+    // A tree whose statements are rebuilt from the arrays one at a time as they are read, so running
+    // a flat tree never holds more than the current top-level statement as records
+    public AbstractSyntaxTree decode() {
+        List<Integer> top = new ArrayList<>();
+        for (int child = firstChild[root()]; child != NONE; child = nextSibling[child]) {
+            top.add(child);
+        }
+        int[] statements = top.stream().mapToInt(Integer::intValue).toArray();
+
+        return new AbstractSyntaxTree(new AbstractList<>() {
+            @Override
+            public Statement get(int index) {
+                return statement(statements[index]);
+            }
+
+            @Override
+            public int size() {
+                return statements.length;
+            }
+        });
+    }
+
+    // Decodes every statement once and drops it, so a tree that reads but does not decode fails
+    // here, before any of it runs. Still only one statement is held at a time.
+    public void check() throws IOException {
+        try {
+            for (int child = firstChild[root()]; child != NONE; child = nextSibling[child]) statement(child);
+        } catch (RuntimeException | StackOverflowError e) {
+            throw new IOException("Corrupt tree", e);
+        }
+    }
+
+    private int child(int node, NodeType kind) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            if (kind(child) == kind) return child;
+        }
+        return NONE;
+    }
+
+    // The text of a labelled child, or null if the node has none
+    private String childText(int node, NodeType kind) {
+        int child = child(node, kind);
+        return (child == NONE) ? null : text(child);
+    }
+
+    // The statement wrapped by a labelled child such as IF_BODY
+    private Statement wrappedStatement(int node, NodeType kind) {
+        int wrapper = child(node, kind);
+        return (wrapper == NONE || firstChild[wrapper] == NONE) ? null : statement(firstChild[wrapper]);
+    }
+
+    private Expression wrappedExpression(int node, NodeType kind) {
+        int wrapper = child(node, kind);
+        return (wrapper == NONE || firstChild[wrapper] == NONE) ? null : expression(firstChild[wrapper]);
+    }
+
+    public Statement statement(int node) {
+        switch (kind(node)) {
+            case EMPTY_STATEMENT:
+                return new Statement.Empty();
+            case BREAK:
+                return new Statement.Break();
+            case CONTINUE:
+                return new Statement.Continue();
+
+            case BLOCK_STATEMENT: {
+                List<Statement> statements = new ArrayList<>();
+                for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                    statements.add(statement(child));
+                }
+                return new Statement.Block(statements);
+            }
+
+            case PRINT:
+                return new Statement.Print((firstChild[node] == NONE) ? null : expression(firstChild[node]));
+
+            case RETURN_STATEMENT: {
+                int value = firstChild[node];
+                return new Statement.Return((value == NONE || kind(value) == NodeType.NO_RETURN) ? null : expression(value));
+            }
+
+            case VARIABLE_DECLARATION:
+                return new Statement.VariableDeclaration(
+                        childText(node, NodeType.VARIABLE_NAME),
+                        childText(node, NodeType.VARIABLE_TYPE),
+                        wrappedExpression(node, NodeType.VARIABLE_BODY));
+
+            case ARRAY_DECLARATION: {
+                List<String> elements = null;
+                String copyOf = null;
+                int body = child(node, NodeType.ARRAY_BODY);
+                if (body != NONE) {
+                    int source = firstChild[body];
+                    if (kind(source) == NodeType.LITERAL_ARRAY) {
+                        elements = new ArrayList<>();
+                        for (int el = firstChild[source]; el != NONE; el = nextSibling[el]) elements.add(text(el));
+                    } else {
+                        copyOf = text(source);
+                    }
+                }
+                return new Statement.ArrayDeclaration(
+                        childText(node, NodeType.ARRAY_NAME),
+                        wrappedExpression(node, NodeType.ARRAY_SIZE),
+                        childText(node, NodeType.ARRAY_ELEMENT_TYPE),
+                        elements, copyOf);
+            }
+
+            case FUNCTION_DECLARATION: {
+                List<Statement.Parameter> parameters = null;
+                int params = child(node, NodeType.FUNCTION_PARAMETERS);
+                if (params != NONE) {
+                    parameters = new ArrayList<>();
+                    for (int p = firstChild[params]; p != NONE; p = nextSibling[p]) {
+                        parameters.add(new Statement.Parameter(
+                                childText(p, NodeType.FUNCTION_PARAMETER_NAME),
+                                childText(p, NodeType.FUNCTION_PARAMETER_TYPE)));
+                    }
+                }
+                int returns = child(node, NodeType.FUNCTION_RETURN_TYPE);
+                return new Statement.FunctionDeclaration(
+                        childText(node, NodeType.FUNCTION_NAME),
+                        parameters,
+                        (returns == NONE) ? null : text(firstChild[returns]),
+                        wrappedStatement(node, NodeType.FUNCTION_BODY));
+            }
+
+            case CONDITIONAL: {
+                List<Statement.Branch> branches = new ArrayList<>();
+                Statement otherwise = null;
+                for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                    switch (kind(child)) {
+                        case IF -> branches.add(new Statement.Branch(
+                                wrappedExpression(child, NodeType.IF_CONDITION), wrappedStatement(child, NodeType.IF_BODY)));
+                        case ELSE_IF -> branches.add(new Statement.Branch(
+                                wrappedExpression(child, NodeType.ELSE_IF_CONDITION), wrappedStatement(child, NodeType.ELSE_IF_BODY)));
+                        default -> otherwise = wrappedStatement(child, NodeType.ELSE_BODY);
+                    }
+                }
+                return new Statement.Conditional(branches, otherwise);
+            }
+
+            case SWITCH: {
+                List<Statement.Case> cases = new ArrayList<>();
+                Statement otherwise = null;
+                int casesNode = child(node, NodeType.CASES);
+                for (int child = firstChild[casesNode]; child != NONE; child = nextSibling[child]) {
+                    if (kind(child) == NodeType.CASE) {
+                        cases.add(new Statement.Case(
+                                wrappedExpression(child, NodeType.CASE_EXPRESSION), wrappedStatement(child, NodeType.CASE_BODY)));
+                    } else {
+                        otherwise = wrappedStatement(child, NodeType.DEFAULT_BODY);
+                    }
+                }
+                return new Statement.Switch(wrappedExpression(node, NodeType.SWITCH_EXPRESSION), cases, otherwise);
+            }
+
+            case LOOP: {
+                int loop = firstChild[node];
+                Statement body = wrappedStatement(loop, NodeType.LOOP_BODY);
+                return switch (kind(loop)) {
+                    case FOR -> new Statement.For(
+                            childText(loop, NodeType.FOR_VARIABLE), childText(loop, NodeType.FOR_ARRAY), body);
+                    case REPEAT -> new Statement.Repeat(
+                            wrappedExpression(loop, NodeType.REPEAT_AMOUNT),
+                            childText(loop, NodeType.REPEAT_VARIABLE),
+                            childText(loop, NodeType.REPEAT_VARIABLE_START),
+                            body);
+                    default -> new Statement.ConditionLoop(kind(loop), wrappedExpression(loop, NodeType.LOOP_CONDITION), body);
+                };
+            }
+
+            default:
+                return new Statement.ExpressionStatement(expression(node));
+        }
+    }
+
+    public Expression expression(int node) {
+        NodeType kind = kind(node);
+        int first = firstChild[node];
+        switch (kind) {
+            case LITERAL_INT, LITERAL_FLOAT, LITERAL_CHAR, LITERAL_STRING, LITERAL_TRUE, LITERAL_FALSE:
+                return new Expression.Literal(kind, text(node));
+
+            case VARIABLE_ACCESS:
+                return new Expression.Variable(text(node));
+
+            case ARRAY_ACCESS:
+                return new Expression.ArrayAccess(text(node), (first == NONE) ? null : expression(first));
+
+            case FUNCTION_CALL: {
+                List<Expression> arguments = new ArrayList<>();
+                for (int arg = firstChild[first]; arg != NONE; arg = nextSibling[arg]) {
+                    arguments.add(expression(firstChild[arg]));
+                }
+                return new Expression.Call(text(node), arguments);
+            }
+
+            case PRE_INCREMENT, PRE_DECREMENT, POST_INCREMENT, POST_DECREMENT, NEGATIVE, NOT:
+                return new Expression.Unary(kind, expression(first));
+
+            case ASSIGNMENT, ADDITION_ASSIGNMENT, SUBTRACTION_ASSIGNMENT,
+                 MULTIPLICATION_ASSIGNMENT, DIVISION_ASSIGNMENT, MODULO_ASSIGNMENT:
+                return new Expression.Assignment(kind, expression(first), expression(nextSibling[first]));
+
+            default:
+                return new Expression.Binary(kind, expression(first), expression(nextSibling[first]));
+        }
+    }
+}
@@ -40,8 +40,6 @@ public enum NodeType {
     FUNCTION_BODY,
     FUNCTION_ARGUMENTS,
     FUNCTION_ARGUMENT,
-    FUNCTION_ARGUMENT_NAME,
-    FUNCTION_ARGUMENT_TYPE,
 
     RETURN_STATEMENT,
     NO_RETURN,
@@ -0,0 +1,100 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+import java.util.List;
+
+// Typed statement nodes. Optional parts are null when the source left them out. Addresses and slot
+// counts are filled in by the ScopeResolver; the parser leaves them null or 0.
+public sealed interface Statement {
+
+    NodeType kind();
+
+    record Empty() implements Statement {
+        public NodeType kind() { return NodeType.EMPTY_STATEMENT; }
+    }
+
+    // The names the block declares itself take slots first to first + slots - 1 of its frame
+    record Block(List<Statement> statements, int first, int slots) implements Statement {
+        public Block(List<Statement> statements) { this(statements, 0, 0); }
+        public NodeType kind() { return NodeType.BLOCK_STATEMENT; }
+    }
+
+    record ExpressionStatement(Expression expression) implements Statement {
+        public NodeType kind() { return expression.kind(); }
+    }
+
+    record Print(Expression value) implements Statement {
+        public NodeType kind() { return NodeType.PRINT; }
+    }
+
+    record VariableDeclaration(String name, String type, Expression value, Address address) implements Statement {
+        public VariableDeclaration(String name, String type, Expression value) { this(name, type, value, null); }
+        public NodeType kind() { return NodeType.VARIABLE_DECLARATION; }
+    }
+
+    // An array is either filled from literal elements or copied from another array. elementAddresses
+    // runs parallel to elements, with an address for each element that could name a variable, and
+    // elementValues holds the decoded value of each element that has no address.
+    record ArrayDeclaration(String name, Expression size, String elementType, List<String> elements, String copyOf,
+                            Address address, List<Address> elementAddresses, List<Object> elementValues,
+                            Address source) implements Statement {
+        public ArrayDeclaration(String name, Expression size, String elementType, List<String> elements, String copyOf) {
+            this(name, size, elementType, elements, copyOf, null, null, null, null);
+        }
+        public NodeType kind() { return NodeType.ARRAY_DECLARATION; }
+    }
+
+    // parameters is null when the declaration has no accepts clause. function is its slot in the
+    // function table, slots the size of its frame, parameters first.
+    record FunctionDeclaration(String name, List<Parameter> parameters, String returnType, Statement body,
+                               int function, int slots) implements Statement {
+        public FunctionDeclaration(String name, List<Parameter> parameters, String returnType, Statement body) {
+            this(name, parameters, returnType, body, -1, 0);
+        }
+        public NodeType kind() { return NodeType.FUNCTION_DECLARATION; }
+    }
+
+    record Parameter(String name, String type) {}
+
+    // value is null for a bare return
+    record Return(Expression value) implements Statement {
+        public NodeType kind() { return NodeType.RETURN_STATEMENT; }
+    }
+
+    record Break() implements Statement {
+        public NodeType kind() { return NodeType.BREAK; }
+    }
+
+    record Continue() implements Statement {
+        public NodeType kind() { return NodeType.CONTINUE; }
+    }
+
+    // The if branch followed by any else-if branches; otherwise is the else body
+    record Conditional(List<Branch> branches, Statement otherwise) implements Statement {
+        public NodeType kind() { return NodeType.CONDITIONAL; }
+    }
+
+    record Branch(Expression condition, Statement body) {}
+
+    record Switch(Expression subject, List<Case> cases, Statement otherwise) implements Statement {
+        public NodeType kind() { return NodeType.SWITCH; }
+    }
+
+    record Case(Expression value, Statement body) {}
+
+    // WHILE and UNTIL test before the body, DO_WHILE and DO_UNTIL after it. On every loop, loop is its
+    // number among the program's loops, -1 until resolved.
+    record ConditionLoop(NodeType kind, Expression condition, Statement body, int loop) implements Statement {
+        public ConditionLoop(NodeType kind, Expression condition, Statement body) { this(kind, condition, body, -1); }
+    }
+
+    record For(String variable, String array, Statement body, Address element, Address source, int loop) implements Statement {
+        public For(String variable, String array, Statement body) { this(variable, array, body, null, null, -1); }
+        public NodeType kind() { return NodeType.FOR; }
+    }
+
+    record Repeat(Expression times, String variable, String start, Statement body, int loop) implements Statement {
+        public Repeat(Expression times, String variable, String start, Statement body) { this(times, variable, start, body, -1); }
+        public NodeType kind() { return NodeType.REPEAT; }
+    }
+
+}
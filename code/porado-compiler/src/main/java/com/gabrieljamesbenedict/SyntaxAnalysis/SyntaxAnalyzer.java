@@ -2,70 +2,94 @@ package com.gabrieljamesbenedict.SyntaxAnalysis;
 
 import com.gabrieljamesbenedict.Exceptions.CompileException;
 import com.gabrieljamesbenedict.LexicalAnalysis.Token;
+import com.gabrieljamesbenedict.LexicalAnalysis.TokenBuffer;
 import com.gabrieljamesbenedict.LexicalAnalysis.TokenCategory;
 import com.gabrieljamesbenedict.LexicalAnalysis.TokenType;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.stream.Stream;
 
 public class SyntaxAnalyzer {
 
-    private static final AbstractSyntaxTree AST = new AbstractSyntaxTree();
+    // One parser per token stream. Nothing is shared between instances, so separate scripts can be
+    // parsed on separate threads at the same time.
+    private final TokenIterator tokens;
 
-    public static AbstractSyntaxTree parse(Stream<Token> tokenStream) throws CompileException {
+    // Token classes matched as a whole, built once so that matching against them allocates nothing
+    private static final EnumSet<TokenType> VALUE_TYPES = EnumSet.of(
+            TokenType.TYPE_INT, TokenType.TYPE_FLOAT, TokenType.TYPE_CHAR, TokenType.TYPE_STRING, TokenType.TYPE_BOOLEAN);
+    private static final EnumSet<TokenType> REPEAT_BOUNDS = EnumSet.of(TokenType.IDENTIFIER, TokenType.LITERAL_INT);
 
-        TokenIterator it = new TokenIterator(tokenStream);
+    public SyntaxAnalyzer(Stream<Token> tokenStream) {
+        this.tokens = new TokenIterator(tokenStream);
+    }
 
-        Token programToken = new Token();
-        programToken.setType(TokenType.PROGRAM);
-        programToken.setCategory(TokenCategory.PROGRAM);
-        programToken.setLexeme("Program");
-        Node programNode = addNode(NodeType.PROGRAM, null, null);
-        AST.setRoot(programNode);
+    public SyntaxAnalyzer(TokenBuffer tokens) {
+        this.tokens = new TokenIterator(tokens);
+    }
 
-        parseProgram(it, programNode);
+    public static AbstractSyntaxTree parse(Stream<Token> tokenStream) throws CompileException {
+        return new SyntaxAnalyzer(tokenStream).parse();
+    }
 
-        return AST;
+    public static AbstractSyntaxTree parse(TokenBuffer tokens) throws CompileException {
+        return new SyntaxAnalyzer(tokens).parse();
     }
 
-    private static Node addNode(NodeType type, String text, Node parent) {
-        Node node = new Node();
-        node.setType(type);
-        node.setText(text);
-        if (parent != null) parent.addChild(node);
-        return node;
+    public AbstractSyntaxTree parse() throws CompileException {
+        List<Statement> program = new ArrayList<>();
+        parseProgram(tokens, program);
+        return new AbstractSyntaxTree(program);
     }
 
+    // Encodes each top-level statement as soon as it is parsed, so the records of only one
+    // statement are alive at a time
+    public FlatTree parseFlat() throws CompileException {
+        FlatTree tree = new FlatTree();
+        while (!tokens.eof()) {
+            Statement stmt = parseStatement(tokens);
+            if (stmt != null) tree.append(stmt);
+        }
+        return tree.trim();
+    }
 
-    private static void parseProgram(TokenIterator it, Node parent) throws CompileException {
+
+    private void parseProgram(TokenIterator it, List<Statement> program) throws CompileException {
         while (!it.eof()) {
-            parseStatement(it, parent);
+            Statement stmt = parseStatement(it);
+            if (stmt != null) program.add(stmt);
         }
     }
 
 
-    private static Node parseStatement(TokenIterator it, Node parent) throws CompileException {
+    // Returns null once the end of the input is reached
+    private Statement parseStatement(TokenIterator it) throws CompileException {
+
+        // No statement looks back past the token before it, so older tokens can leave the window
+        it.release();
 
         if (it.match(TokenType.EOF)) {
-            return addNode(NodeType.EOF, null, parent);
+            return null;
         }
 
         if (it.match(TokenType.DELIMITER_SEMICOLON)) {
-            return addNode(NodeType.EMPTY_STATEMENT, null, parent);
+            return new Statement.Empty();
         }
 
         if (it.match(TokenType.DELIMITER_LBRACE)) {
-            return parseBlockStatement(it, parent);
+            return parseBlockStatement(it);
         }
 
-        Node stmt = parseSingleStatement(it, parent);
+        Statement stmt = parseSingleStatement(it);
         // Only expect semicolon if it is a statement that needs it
 
-        if (it.previous().getType() != TokenType.DELIMITER_RBRACE
-        && it.previous().getType() != TokenType.EOF
-        && it.previous().getType() != TokenType.DELIMITER_SEMICOLON)
+        if (it.previousType() != TokenType.DELIMITER_RBRACE
+        && it.previousType() != TokenType.EOF
+        && it.previousType() != TokenType.DELIMITER_SEMICOLON)
         {
-            it.expect(TokenType.DELIMITER_SEMICOLON);
+            it.skip(TokenType.DELIMITER_SEMICOLON);
         }
 
         return stmt;
@@ -73,96 +97,79 @@ public class SyntaxAnalyzer {
 
 
 
-    private static Node parseBlockStatement(TokenIterator it, Node parent) throws CompileException {
+    private Statement parseBlockStatement(TokenIterator it) throws CompileException {
 
-        Node block = addNode(NodeType.BLOCK_STATEMENT, null, parent);
+        List<Statement> statements = new ArrayList<>();
 
-        while (!it.eof() && it.peek().getType() != TokenType.DELIMITER_RBRACE) {
-            Node node = parseStatement(it, block);
-            //block.addChild(node);
+        while (!it.eof() && it.peekType() != TokenType.DELIMITER_RBRACE) {
+            Statement stmt = parseStatement(it);
+            if (stmt != null) statements.add(stmt);
         }
 
-        it.expect(TokenType.DELIMITER_RBRACE);
+        it.skip(TokenType.DELIMITER_RBRACE);
 
-        return block;
+        return new Statement.Block(statements);
     }
 
 
-    private static Node parseSingleStatement(TokenIterator it, Node parent) throws CompileException {
+    private Statement parseSingleStatement(TokenIterator it) throws CompileException {
 
-        Token current = it.peek();
-        Token ahead = it.lookahead(1);
-
-        Node stmt = null;
+        TokenType current = it.peekType();
+        TokenType ahead = it.lookaheadType(1);
 
         // Declarations
-        if (current.getCategory() == TokenCategory.IDENTIFIER && ahead.getType() == TokenType.KEYWORD_AS) {
-            stmt = parseDeclaration(it, parent);
+        if (it.peekCategory() == TokenCategory.IDENTIFIER && ahead == TokenType.KEYWORD_AS) {
+            return parseDeclaration(it);
         }
 
         // Conditional
-        else if (current.getType() == TokenType.KEYWORD_IF) {
-            stmt = parseConditional(it, parent);
+        else if (current == TokenType.KEYWORD_IF) {
+            return parseConditional(it);
         }
 
         // Switch
-        else if (current.getType() == TokenType.KEYWORD_SWITCH) {
-            stmt = parseSwitch(it, parent);
+        else if (current == TokenType.KEYWORD_SWITCH) {
+            return parseSwitch(it);
         }
 
         // Loops
-        else if (isLoopKeyword(current.getType())) {
-            stmt = parseLoop(it, parent);
+        else if (isLoopKeyword(current)) {
+            return parseLoop(it);
         }
 
         // Return
-        else if (current.getType() == TokenType.KEYWORD_RETURN) {
-            it.next();
-            stmt = addNode(NodeType.RETURN_STATEMENT, it.previous().getLexeme(), parent);
-            if (it.peek().getType() == TokenType.DELIMITER_SEMICOLON)
-                addNode(NodeType.NO_RETURN, null, stmt);
+        else if (current == TokenType.KEYWORD_RETURN) {
+            it.skip();
+            if (it.peekType() == TokenType.DELIMITER_SEMICOLON)
+                return new Statement.Return(null);
             else
-                stmt.addChild(parseExpression(it));
+                return new Statement.Return(parseExpression(it));
         }
 
         // Break
-        else if (current.getType() == TokenType.KEYWORD_BREAK) {
-            it.next();
-            stmt = addNode(NodeType.BREAK, null, parent);
+        else if (current == TokenType.KEYWORD_BREAK) {
+            it.skip();
+            return new Statement.Break();
         }
 
         // Continue
-        else if (current.getType() == TokenType.KEYWORD_CONTINUE) {
-            it.next();
-            stmt = addNode(NodeType.CONTINUE, null, parent);
+        else if (current == TokenType.KEYWORD_CONTINUE) {
+            it.skip();
+            return new Statement.Continue();
         }
 
         // Print
-        else if (current.getType() == TokenType.KEYWORD_PRINT) {
-            it.next();
-            stmt = addNode(NodeType.PRINT, null, parent);
-            Node printExpr = parseExpression(it);
-            stmt.addChild(printExpr);
+        else if (current == TokenType.KEYWORD_PRINT) {
+            it.skip();
+            return new Statement.Print(parseExpression(it));
         }
 
         // Expression
         else if (isExpression(current)) {
-            stmt = parseExpression(it);
-            parent.addChild(stmt);
-        }
-
-        // EOF
-        else if (current.getType() == TokenType.EOF) {
-            it.next();
-            stmt = addNode(NodeType.EOF, "EOF", parent);
-        }
-
-        if (stmt != null) {
-            return stmt;
+            return new Statement.ExpressionStatement(parseExpression(it));
         }
 
-
-        throw new CompileException("Syntax Error: Unexpected statement " + current.getLexeme());
+        throw new CompileException("Syntax Error: Unexpected statement " + it.peek().getLexeme());
 
     }
 
@@ -175,11 +182,11 @@ public class SyntaxAnalyzer {
                 ;
     }
 
-    private static Node parseLiteralArray(TokenIterator it) throws CompileException {
-        Node loopArr = addNode(NodeType.LITERAL_ARRAY,  null, null);
-        while (it.peek().getType() != TokenType.DELIMITER_RBRACKET) {
+    private List<String> parseLiteralArray(TokenIterator it) throws CompileException {
+        List<String> elements = new ArrayList<>();
+        while (it.peekType() != TokenType.DELIMITER_RBRACKET) {
             Token token = it.next();
-            Node arrEl = addNode(NodeType.ARRAY_ELEMENT, token.getLexeme(), loopArr);
+            elements.add(token.getLexeme());
             if (it.match(TokenType.DELIMITER_COMMA)) {
                 // Do nothing
             } else if (it.match(TokenType.DELIMITER_RBRACKET)) {
@@ -188,13 +195,13 @@ public class SyntaxAnalyzer {
                 throw new CompileException("Syntax Error: Unexpected symbol in array literal " + it.peek().getLexeme());
             }
         }
-        return loopArr;
+        return elements;
     }
 
-    private static boolean isExpression(Token tok) {
-        if (tok == null) return false;
+    private static boolean isExpression(TokenType type) {
+        if (type == null) return false;
 
-        return switch (tok.getType()) {
+        return switch (type) {
             // Literals
             case LITERAL_INT, LITERAL_FLOAT, LITERAL_STRING, LITERAL_CHAR, LITERAL_TRUE, LITERAL_FALSE -> true;
 
@@ -215,116 +222,85 @@ public class SyntaxAnalyzer {
 
 
 
-    private static Node parseDeclaration(TokenIterator it, Node parent) throws CompileException {
-        Node decl = addNode(null, null, parent);
-        Token token;
+    private Statement parseDeclaration(TokenIterator it) throws CompileException {
+        String name = it.expect(TokenType.IDENTIFIER).getLexeme();
 
-        token = it.expect(TokenType.IDENTIFIER);
-        Node identifier = addNode(null, token.getLexeme(), decl);
+        it.skip(TokenType.KEYWORD_AS);
 
-        it.expect(TokenType.KEYWORD_AS);
-
-        token = it.peek();
-        if (token.getType() == TokenType.KEYWORD_ARRAY) {
-            identifier.setType(NodeType.ARRAY_NAME);
-            decl.setType(NodeType.ARRAY_DECLARATION);
-            it.next();
-        } else if (token.getType() == TokenType.KEYWORD_FUNCTION) {
-            identifier.setType(NodeType.FUNCTION_NAME);
-            decl.setType(NodeType.FUNCTION_DECLARATION);
-            it.next();
-        } else if (token.getType() == TokenType.TYPE_INT || token.getType() == TokenType.TYPE_FLOAT
-                || token.getType() == TokenType.TYPE_CHAR || token.getType() == TokenType.TYPE_STRING
-                || token.getType() == TokenType.TYPE_BOOLEAN) {
-            identifier.setType(NodeType.VARIABLE_NAME);
-            decl.setType(NodeType.VARIABLE_DECLARATION);
+        TokenType kind = it.peekType();
+        if (kind == TokenType.KEYWORD_ARRAY) {
+            it.skip();
+            return parseArrayDeclaration(it, name);
+        } else if (kind == TokenType.KEYWORD_FUNCTION) {
+            it.skip();
+            return parseFunctionDeclaration(it, name);
+        } else if (VALUE_TYPES.contains(kind)) {
+            String type = it.expect(VALUE_TYPES).getLexeme();
+            Expression value = null;
+            if (it.match(TokenType.OPERATOR_ASSIGN)) {
+                value = parseExpression(it);
+            }
+            return new Statement.VariableDeclaration(name, type, value);
         } else {
-            throw new CompileException("Syntax Error: Expected array, function, or type, found " + token.getLexeme());
+            throw new CompileException("Syntax Error: Expected array, function, or type, found " + it.peek().getLexeme());
         }
+    }
 
-        if (decl.getType() == NodeType.ARRAY_DECLARATION) {
+    private Statement parseArrayDeclaration(TokenIterator it, String name) throws CompileException {
 
-            it.expect(TokenType.KEYWORD_OF);
+        it.skip(TokenType.KEYWORD_OF);
 
-            if (it.peek().getCategory() != TokenCategory.TYPE) {
-                Node arrSize = addNode(NodeType.ARRAY_SIZE, null, null);
-                arrSize.addChild(parseExpression(it));
-                decl.addChild(arrSize);
-            }
+        Expression size = null;
+        if (it.peekCategory() != TokenCategory.TYPE) {
+            size = parseExpression(it);
+        }
 
-            Token t1 = it.expect(TokenType.TYPE_INT, TokenType.TYPE_FLOAT, TokenType.TYPE_STRING, TokenType.TYPE_CHAR, TokenType.TYPE_BOOLEAN);
-            Node elType = addNode(NodeType.ARRAY_ELEMENT_TYPE, t1.getLexeme(), decl);
+        String elementType = it.expect(VALUE_TYPES).getLexeme();
 
-            if (it.match(TokenType.OPERATOR_ASSIGN)) {
-                Node arrBody = addNode(NodeType.ARRAY_BODY, null, decl);
-                Token t = it.peek();
-                if (it.match(TokenType.DELIMITER_LBRACKET)) {
-                    Node arrEls = parseLiteralArray(it);
-                    arrBody.addChild(arrEls);
-                } else if (it.match(TokenType.IDENTIFIER)) {
-                    Node arrEls = addNode(NodeType.ARRAY_NAME, t.getLexeme(), null);
-                    arrBody.addChild(arrEls);
-                } else {
-                    throw new CompileException("Syntax Error: Expected Array Literal or Identifier");
-                }
+        List<String> elements = null;
+        String copyOf = null;
+        if (it.match(TokenType.OPERATOR_ASSIGN)) {
+            Token t = it.peek();
+            if (it.match(TokenType.DELIMITER_LBRACKET)) {
+                elements = parseLiteralArray(it);
+            } else if (it.match(TokenType.IDENTIFIER)) {
+                copyOf = t.getLexeme();
+            } else {
+                throw new CompileException("Syntax Error: Expected Array Literal or Identifier");
             }
         }
 
-        if (decl.getType() == NodeType.FUNCTION_DECLARATION) {
-
-            boolean hasParam = it.match(TokenType.KEYWORD_ACCEPTS);
-            if (hasParam) {
-                it.expect(TokenType.DELIMITER_LPARENTH);
-                Node params = addNode(NodeType.FUNCTION_PARAMETERS, null, decl);
-                while (!it.eof() && it.peek().getType() != TokenType.DELIMITER_RPARENTH) {
-                    Token t1 = it.expect(TokenType.IDENTIFIER);
-                    it.expect(TokenType.KEYWORD_AS);
-                    Token t2 = it.next();
-                    if (t2.getCategory() != TokenCategory.TYPE) throw new CompileException("Syntax Error: Expected type in parameter declaration");
-                    it.match(TokenType.DELIMITER_COMMA);
-                    Node param = addNode(NodeType.FUNCTION_PARAMETER, null, params);
-                    addNode(NodeType.FUNCTION_PARAMETER_NAME, t1.getLexeme(), param);
-                    addNode(NodeType.FUNCTION_PARAMETER_TYPE, t2.getLexeme(), param);
-                }
-                it.expect(TokenType.DELIMITER_RPARENTH);
-            }
+        return new Statement.ArrayDeclaration(name, size, elementType, elements, copyOf);
+    }
+
+    private Statement parseFunctionDeclaration(TokenIterator it, String name) throws CompileException {
 
-            boolean hasReturn = it.match(TokenType.KEYWORD_RETURNS);
-            if (hasReturn) {
+        List<Statement.Parameter> parameters = null;
+        if (it.match(TokenType.KEYWORD_ACCEPTS)) {
+            it.skip(TokenType.DELIMITER_LPARENTH);
+            parameters = new ArrayList<>();
+            while (!it.eof() && it.peekType() != TokenType.DELIMITER_RPARENTH) {
+                Token t1 = it.expect(TokenType.IDENTIFIER);
+                it.skip(TokenType.KEYWORD_AS);
                 Token t2 = it.next();
-                if (t2.getCategory() != TokenCategory.TYPE) throw new CompileException("Syntax Error: Expected type in return type declaration");
-                Node t1 = addNode(NodeType.FUNCTION_RETURN_TYPE, null, decl);
-                NodeType type = switch (t2.getType()) {
-                    case TYPE_INT -> NodeType.TYPE_INT;
-                    case TYPE_FLOAT -> NodeType.TYPE_FLOAT;
-                    case TYPE_CHAR -> NodeType.TYPE_CHAR;
-                    case TYPE_STRING -> NodeType.TYPE_STRING;
-                    case TYPE_BOOLEAN -> NodeType.TYPE_BOOLEAN;
-                    default -> throw new CompileException("Syntax Error: Expected type on function return type");
-                };
-                addNode(type, t2.getLexeme(), t1);
+                if (t2.getCategory() != TokenCategory.TYPE) throw new CompileException("Syntax Error: Expected type in parameter declaration");
+                it.match(TokenType.DELIMITER_COMMA);
+                parameters.add(new Statement.Parameter(t1.getLexeme(), t2.getLexeme()));
             }
-
-            Node functionBody = addNode(NodeType.FUNCTION_BODY, null, decl);
-            parseStatement(it, functionBody);
-
+            it.skip(TokenType.DELIMITER_RPARENTH);
         }
 
-        if (decl.getType() == NodeType.VARIABLE_DECLARATION) {
-            Node varType;
-            Token t1 = it.expect(TokenType.TYPE_INT
-                    , TokenType.TYPE_FLOAT
-                    , TokenType.TYPE_CHAR, TokenType.TYPE_STRING
-                    , TokenType.TYPE_BOOLEAN);
-            varType = addNode(NodeType.VARIABLE_TYPE, t1.getLexeme(), decl);
-
-            if (it.match(TokenType.OPERATOR_ASSIGN)) {
-                Node varVal = addNode(NodeType.VARIABLE_BODY, null, decl);
-                varVal.addChild(parseExpression(it));
-            }
+        String returnType = null;
+        if (it.match(TokenType.KEYWORD_RETURNS)) {
+            Token t2 = it.next();
+            if (t2.getCategory() != TokenCategory.TYPE) throw new CompileException("Syntax Error: Expected type in return type declaration");
+            if (!VALUE_TYPES.contains(t2.getType())) throw new CompileException("Syntax Error: Expected type on function return type");
+            returnType = t2.getLexeme();
         }
 
-        return decl;
+        Statement body = parseStatement(it);
+
+        return new Statement.FunctionDeclaration(name, parameters, returnType, body);
     }
 
 
@@ -334,37 +310,30 @@ public class SyntaxAnalyzer {
 
 
 
-    private static Node parseConditional(TokenIterator it, Node parent) throws CompileException {
-        Node cond = addNode(NodeType.CONDITIONAL, null, parent);
+    private Statement parseConditional(TokenIterator it) throws CompileException {
+        List<Statement.Branch> branches = new ArrayList<>();
 
         if (it.match(TokenType.KEYWORD_IF)) {
-            Node ifNode = addNode(NodeType.IF, null, cond);
-            Node ifCondition = addNode(NodeType.IF_CONDITION, null, ifNode);
-            ifCondition.addChild(parseExpression(it));
-            it.expect(TokenType.KEYWORD_THEN);
-            Node ifBody = addNode(NodeType.IF_BODY, null, ifNode);
-            ifBody.addChild(parseStatement(it, null));
+            Expression condition = parseExpression(it);
+            it.skip(TokenType.KEYWORD_THEN);
+            branches.add(new Statement.Branch(condition, parseStatement(it)));
         } else {
             throw new CompileException("Syntax Error: Expected if keyword");
         }
 
         while (!it.eof() && it.match(TokenType.KEYWORD_ELSEIF)) {
-            Node elseifNode = addNode(NodeType.ELSE_IF, null, cond);
-            Node elseifCondition = addNode(NodeType.ELSE_IF_CONDITION, null, elseifNode);
-            elseifCondition.addChild(parseExpression(it));
-            it.expect(TokenType.KEYWORD_THEN);
-            Node elseifBody = addNode(NodeType.ELSE_IF_BODY, null, elseifNode);
-            elseifBody.addChild(parseStatement(it, null));
+            Expression condition = parseExpression(it);
+            it.skip(TokenType.KEYWORD_THEN);
+            branches.add(new Statement.Branch(condition, parseStatement(it)));
         }
 
+        Statement otherwise = null;
         if (it.match(TokenType.KEYWORD_ELSE)) {
-            Node elseNode = addNode(NodeType.ELSE, null, cond);
-            it.expect(TokenType.KEYWORD_THEN);
-            Node elseifBody = addNode(NodeType.ELSE_BODY, null, elseNode);
-            elseifBody.addChild(parseStatement(it, null));
+            it.skip(TokenType.KEYWORD_THEN);
+            otherwise = parseStatement(it);
         }
 
-        return cond;
+        return new Statement.Conditional(branches, otherwise);
     }
 
 
@@ -374,38 +343,32 @@ public class SyntaxAnalyzer {
 
 
 
-    private static Node parseSwitch(TokenIterator it, Node parent) throws CompileException {
-        Node switchNode = addNode(NodeType.SWITCH, null, parent);
+    private Statement parseSwitch(TokenIterator it) throws CompileException {
 
         if (!it.match(TokenType.KEYWORD_SWITCH)) {
             throw new CompileException("Syntax Error: Expected switch keyword");
         }
 
-        Node switchExpression = addNode(NodeType.SWITCH_EXPRESSION, null, switchNode);
-        switchExpression.addChild(parseExpression(it));
+        Expression subject = parseExpression(it);
 
-        it.expect(TokenType.DELIMITER_LBRACE);
+        it.skip(TokenType.DELIMITER_LBRACE);
 
-        Node casesNode = addNode(NodeType.CASES, null, switchNode);
+        List<Statement.Case> cases = new ArrayList<>();
         while (!it.eof() && it.match(TokenType.KEYWORD_CASE)) {
-            Node caseNode = addNode(NodeType.CASE, null, casesNode);
-            Node caseExpression = addNode(NodeType.CASE_EXPRESSION, null, caseNode);
-            caseExpression.addChild(parseExpression(it));
-            it.expect(TokenType.DELIMITER_COLON);
-            Node caseBody = addNode(NodeType.CASE_BODY, null, caseNode);
-            caseBody.addChild(parseStatement(it, null));
+            Expression value = parseExpression(it);
+            it.skip(TokenType.DELIMITER_COLON);
+            cases.add(new Statement.Case(value, parseStatement(it)));
         }
 
+        Statement otherwise = null;
         if (it.match(TokenType.KEYWORD_DEFAULT)) {
-            Node defaultNode = addNode(NodeType.DEFAULT, null, casesNode);
-            it.expect(TokenType.DELIMITER_COLON);
-            Node defaultBody = addNode(NodeType.DEFAULT_BODY, null, defaultNode);
-            defaultBody.addChild(parseStatement(it, null));
+            it.skip(TokenType.DELIMITER_COLON);
+            otherwise = parseStatement(it);
         }
 
-        it.expect(TokenType.DELIMITER_RBRACE);
+        it.skip(TokenType.DELIMITER_RBRACE);
 
-        return switchNode;
+        return new Statement.Switch(subject, cases, otherwise);
     }
 
 
@@ -416,479 +379,277 @@ public class SyntaxAnalyzer {
 
 
 
-    private static Node parseLoop(TokenIterator it, Node parent) throws CompileException {
-        Node loop = addNode(NodeType.LOOP, null, parent);
+    private Statement parseLoop(TokenIterator it) throws CompileException {
 
         if (it.match(TokenType.KEYWORD_WHILE)) {
-            Node loopNode = addNode(NodeType.WHILE, null, loop);
-            Node loopCondition = addNode(NodeType.LOOP_CONDITION, null, loopNode);
-            loopCondition.addChild(parseExpression(it));
-            it.expect(TokenType.KEYWORD_THEN);
-            Node loopBody = addNode(NodeType.LOOP_BODY, null, loopNode);
-            parseStatement(it, loopBody);
+            Expression condition = parseExpression(it);
+            it.skip(TokenType.KEYWORD_THEN);
+            return new Statement.ConditionLoop(NodeType.WHILE, condition, parseStatement(it));
         }
 
         else if (it.match(TokenType.KEYWORD_UNTIL)) {
-            Node loopNode = addNode(NodeType.UNTIL, null, loop);
-            Node loopCondition = addNode(NodeType.LOOP_CONDITION, null, loopNode);
-            loopCondition.addChild(parseExpression(it));
-            it.expect(TokenType.KEYWORD_THEN);
-            Node loopBody = addNode(NodeType.LOOP_BODY, null, loopNode);
-            parseStatement(it, loopBody);
+            Expression condition = parseExpression(it);
+            it.skip(TokenType.KEYWORD_THEN);
+            return new Statement.ConditionLoop(NodeType.UNTIL, condition, parseStatement(it));
         }
 
         else if (it.match(TokenType.KEYWORD_DO)) {
-            Node loopNode = addNode(null, null, loop);
-            Node loopBody = addNode(NodeType.LOOP_BODY, null, loopNode);
-            parseStatement(it, loopBody);
+            Statement body = parseStatement(it);
+            NodeType kind;
             if (it.match(TokenType.KEYWORD_WHILE)) {
-                loopNode.setType(NodeType.DO_WHILE);
+                kind = NodeType.DO_WHILE;
             } else if (it.match(TokenType.KEYWORD_UNTIL)) {
-                loopNode.setType(NodeType.UNTIL);
+                kind = NodeType.DO_UNTIL;
             } else {
                 throw new CompileException("Syntax Error: Expected when or until keyword");
             }
-            Node loopCondition = addNode(NodeType.LOOP_CONDITION, null, loopNode);
-            loopCondition.addChild(parseExpression(it));
+            return new Statement.ConditionLoop(kind, parseExpression(it), body);
         }
 
         else if (it.match(TokenType.KEYWORD_FOR)) {
-            Node loopNode = addNode(NodeType.FOR, null, loop);
-            it.expect(TokenType.DELIMITER_LPARENTH);
-            it.expect(TokenType.KEYWORD_EACH);
+            it.skip(TokenType.DELIMITER_LPARENTH);
+            it.skip(TokenType.KEYWORD_EACH);
             Token t1 = it.expect(TokenType.IDENTIFIER);
-            it.expect(TokenType.KEYWORD_IN);
+            it.skip(TokenType.KEYWORD_IN);
             Token t2 = it.expect(TokenType.IDENTIFIER);
-            it.expect(TokenType.DELIMITER_RPARENTH);
-            Node loopVar = addNode(NodeType.FOR_VARIABLE, t1.getLexeme(), loopNode);
-            Node loopArr = addNode(NodeType.FOR_ARRAY, t2.getLexeme(), loopNode);
-            Node loopBody = addNode(NodeType.LOOP_BODY, null, loopNode);
-            parseStatement(it, loopBody);
+            it.skip(TokenType.DELIMITER_RPARENTH);
+            return new Statement.For(t1.getLexeme(), t2.getLexeme(), parseStatement(it));
         }
 
         else if (it.match(TokenType.KEYWORD_REPEAT)) {
-            Node loopNode = addNode(NodeType.REPEAT, null, loop);
-            Node loopAmount = addNode(NodeType.REPEAT_AMOUNT, null, loopNode);
-            loopAmount.addChild(parseExpression(it));
+            Expression times = parseExpression(it);
+            String variable = null;
+            String start = null;
             if (it.match(TokenType.KEYWORD_WITH)) {
                 Token t1 = it.expect(TokenType.IDENTIFIER);
-                it.expect(TokenType.KEYWORD_AS);
+                it.skip(TokenType.KEYWORD_AS);
                 Token t2 = it.next(); if (t2.getCategory() != TokenCategory.TYPE) throw new CompileException("Syntax Error: Expected type in variable declaration");
-                Node repVar = addNode(NodeType.REPEAT_VARIABLE, t1.getLexeme(), loopNode);
+                variable = t1.getLexeme();
                 if (it.match(TokenType.OPERATOR_ASSIGN)) {
-                    Token t3 = it.expect(TokenType.IDENTIFIER, TokenType.LITERAL_INT);
-                    Node repVarStart = addNode(NodeType.REPEAT_VARIABLE_START, t3.getLexeme(), loopNode);
+                    start = it.expect(REPEAT_BOUNDS).getLexeme();
                 }
             }
-            Node loopBody = addNode(NodeType.LOOP_BODY, null, loopNode);
-            parseStatement(it, loopBody);
+            return new Statement.Repeat(times, variable, start, parseStatement(it));
         }
 
-        return loop;
+        throw new CompileException("Syntax Error: Expected loop keyword");
     }
 
     // ---------------------------------------------------------------------------
     // EXPRESSION PARSER
     // ---------------------------------------------------------------------------
 
-    // This is the most confusing thing ever
-
     /*
-        Assignment
-        Logical OR
-        Logical XOR
-        Logical AND
-        Equality
-        Comparison
-        Addition
-        Multiplication
-        Unary
-        Atomic
+        Binary operators are parsed by precedence climbing over one table instead of one method
+        per level. Higher binds tighter; 0 means the token does not continue an expression.
+
+        1  Assignment (right-associative)
+        2  Logical OR
+        3  Logical XOR
+        4  Logical AND
+        5  Equality
+        6  Comparison
+        7  Addition
+        8  Multiplication
+           Unary and atomic expressions are parsed by parseUnary
      */
 
-    // ---------------------------------------------------------------------------
-    // EXPRESSION PARSER
-    // ---------------------------------------------------------------------------
-
-    // Entry point for expressions
-    private static Node parseExpression(TokenIterator it) throws CompileException {
-        ArrayList<Token> tokens = new ArrayList<>();
-
-        while (true) {
-            Token next = it.peek();
-            if (next == null) break;
-            if (
-                    next.getCategory() == TokenCategory.KEYWORD
-                    || next.getCategory() == TokenCategory.TYPE
-                    || (next.getCategory() == TokenCategory.DELIMITER
-                    && next.getType() != TokenType.DELIMITER_LPARENTH
-                    && next.getType() != TokenType.DELIMITER_RPARENTH
-                    && next.getType() != TokenType.DELIMITER_LBRACKET
-                    && next.getType() != TokenType.DELIMITER_RBRACKET
-                    && next.getType() != TokenType.DELIMITER_COMMA)) {
-                break;
-            }
-            tokens.add(next);
-            it.next();
-        }
-
-        TokenIterator expressionStream = new TokenIterator(tokens.stream());
-        Node expressionNode = parseAssignment(expressionStream);
-        return expressionNode;
-    }
-
-    // Assignment is right-associative
-    private static Node parseAssignment(TokenIterator it) throws CompileException {
-        Node left = parseLogicalOr(it);
-        if (left == null) return null;
-
-        Token op = null;
-        NodeType type = null;
-
-        if (it.match(TokenType.OPERATOR_ASSIGN)) {
-            op = it.previous();
-            type = NodeType.ASSIGNMENT;
-        } else if (it.match(TokenType.OPERATOR_ASSIGNPLUS)) {
-            op = it.previous();
-            type = NodeType.ADDITION_ASSIGNMENT;
-        } else if (it.match(TokenType.OPERATOR_ASSIGNMINUS)) {
-            op = it.previous();
-            type = NodeType.SUBTRACTION_ASSIGNMENT;
-        } else if (it.match(TokenType.OPERATOR_ASSIGNTIMES)) {
-            op = it.previous();
-            type = NodeType.MULTIPLICATION_ASSIGNMENT;
-        } else if (it.match(TokenType.OPERATOR_ASSIGNDIVIDE)) {
-            op = it.previous();
-            type = NodeType.DIVISION_ASSIGNMENT;
-        } else if (it.match(TokenType.OPERATOR_ASSIGNMODULO)) {
-            op = it.previous();
-            type = NodeType.MODULO_ASSIGNMENT;
-        }
-
-        if (type != null) {
-            Node right = parseAssignment(it);
-            if (right == null)
-                throw new CompileException("Expected expression after " + op.getLexeme());
-
-            if (left.getType() != NodeType.VARIABLE_ACCESS && left.getType() != NodeType.ARRAY_ACCESS) {
-                throw new CompileException("Invalid assignment target: " + left.getType());
-            }
-
-            Node node = new Node();
-            node.setType(type);
-            node.setText(op.getLexeme());
-            node.addChild(left);
-            node.addChild(right);
-            return node;
-        }
-
-        return left;
-    }
-
-    // Binary logical operators (OR, XOR, AND) - left-associative
-    private static Node parseLogicalOr(TokenIterator it) throws CompileException {
-        Node left = parseLogicalXor(it);
-        if (left == null) return null;
-
-        while (true) {
-            NodeType type = null;
-            if (it.match(TokenType.OPERATOR_OR)) type = NodeType.OR;
-            else if (it.match(TokenType.OPERATOR_NOR)) type = NodeType.NOR;
-            else break;
-
-            Node right = parseLogicalXor(it);
-            if (right == null) throw new CompileException("Expected expression after logical operator");
-
-            Node node = new Node();
-            node.setType(type);
-            node.addChild(left);
-            node.addChild(right);
-            left = node;
-        }
-
-        return left;
+    private static final int ASSIGNMENT_POWER = 1;
+
+    private static final int[] BINDING_POWER = new int[TokenType.values().length];
+    private static final NodeType[] BINARY_NODE = new NodeType[TokenType.values().length];
+    private static final String[] MISSING_OPERAND = new String[TokenType.values().length];
+
+    static {
+        binary(ASSIGNMENT_POWER, null, TokenType.OPERATOR_ASSIGN, NodeType.ASSIGNMENT);
+        binary(ASSIGNMENT_POWER, null, TokenType.OPERATOR_ASSIGNPLUS, NodeType.ADDITION_ASSIGNMENT);
+        binary(ASSIGNMENT_POWER, null, TokenType.OPERATOR_ASSIGNMINUS, NodeType.SUBTRACTION_ASSIGNMENT);
+        binary(ASSIGNMENT_POWER, null, TokenType.OPERATOR_ASSIGNTIMES, NodeType.MULTIPLICATION_ASSIGNMENT);
+        binary(ASSIGNMENT_POWER, null, TokenType.OPERATOR_ASSIGNDIVIDE, NodeType.DIVISION_ASSIGNMENT);
+        binary(ASSIGNMENT_POWER, null, TokenType.OPERATOR_ASSIGNMODULO, NodeType.MODULO_ASSIGNMENT);
+
+        binary(2, "logical operator", TokenType.OPERATOR_OR, NodeType.OR);
+        binary(2, "logical operator", TokenType.OPERATOR_NOR, NodeType.NOR);
+        binary(3, "logical operator", TokenType.OPERATOR_XOR, NodeType.XOR);
+        binary(3, "logical operator", TokenType.OPERATOR_XNOR, NodeType.XNOR);
+        binary(4, "logical operator", TokenType.OPERATOR_AND, NodeType.AND);
+        binary(4, "logical operator", TokenType.OPERATOR_NAND, NodeType.NAND);
+
+        binary(5, "equality operator", TokenType.OPERATOR_EQUALS, NodeType.EQUALS);
+        binary(5, "equality operator", TokenType.OPERATOR_NOTEQUALS, NodeType.NOTEQUALS);
+
+        binary(6, "comparison operator", TokenType.OPERATOR_LESSER, NodeType.LESS);
+        binary(6, "comparison operator", TokenType.OPERATOR_LESSERQUALS, NodeType.LESSEQUALS);
+        binary(6, "comparison operator", TokenType.OPERATOR_GREATER, NodeType.GREATER);
+        binary(6, "comparison operator", TokenType.OPERATOR_GREATEREQUALS, NodeType.GREATEREQUALS);
+
+        binary(7, "+ or -", TokenType.OPERATOR_PLUS, NodeType.ADDITION);
+        binary(7, "+ or -", TokenType.OPERATOR_MINUS, NodeType.SUBTRACTION);
+
+        binary(8, "*, /, or %", TokenType.OPERATOR_TIMES, NodeType.MULTIPLICATION);
+        binary(8, "*, /, or %", TokenType.OPERATOR_DIVIDE, NodeType.DIVISION);
+        binary(8, "*, /, or %", TokenType.OPERATOR_MODULO, NodeType.MODULO);
     }
 
-    private static Node parseLogicalXor(TokenIterator it) throws CompileException {
-        Node left = parseLogicalAnd(it);
-        if (left == null) return null;
-
-        while (true) {
-            NodeType type = null;
-            if (it.match(TokenType.OPERATOR_XOR)) type = NodeType.XOR;
-            else if (it.match(TokenType.OPERATOR_XNOR)) type = NodeType.XNOR;
-            else break;
-
-            Node right = parseLogicalAnd(it);
-            if (right == null) throw new CompileException("Expected expression after logical operator");
-
-            Node node = new Node();
-            node.setType(type);
-            node.addChild(left);
-            node.addChild(right);
-            left = node;
-        }
-
-        return left;
-    }
-
-    private static Node parseLogicalAnd(TokenIterator it) throws CompileException {
-        Node left = parseEquality(it);
-        if (left == null) return null;
-
-        while (true) {
-            NodeType type = null;
-            if (it.match(TokenType.OPERATOR_AND)) type = NodeType.AND;
-            else if (it.match(TokenType.OPERATOR_NAND)) type = NodeType.NAND;
-            else break;
-
-            Node right = parseEquality(it);
-            if (right == null) throw new CompileException("Expected expression after logical operator");
-
-            Node node = new Node();
-            node.setType(type);
-            node.addChild(left);
-            node.addChild(right);
-            left = node;
-        }
-
-        return left;
+    private static void binary(int power, String operand, TokenType token, NodeType node) {
+        BINDING_POWER[token.ordinal()] = power;
+        BINARY_NODE[token.ordinal()] = node;
+        MISSING_OPERAND[token.ordinal()] = operand;
     }
 
-    // Equality and comparison
-    private static Node parseEquality(TokenIterator it) throws CompileException {
-        Node left = parseComparison(it);
-        if (left == null) return null;
-
-        while (true) {
-            NodeType type = null;
-            if (it.match(TokenType.OPERATOR_EQUALS)) type = NodeType.EQUALS;
-            else if (it.match(TokenType.OPERATOR_NOTEQUALS)) type = NodeType.NOTEQUALS;
-            else break;
-
-            Node right = parseComparison(it);
-            if (right == null) throw new CompileException("Expected expression after equality operator");
-
-            Node node = new Node();
-            node.setType(type);
-            node.addChild(left);
-            node.addChild(right);
-            left = node;
-        }
-
-        return left;
+    // Entry point for expressions. Parses straight off the statement cursor and stops at the first
+    // token that cannot continue the expression, leaving it for the statement parser.
+    private Expression parseExpression(TokenIterator it) throws CompileException {
+        return parseExpression(it, ASSIGNMENT_POWER);
     }
 
-    private static Node parseComparison(TokenIterator it) throws CompileException {
-        Node left = parseAddition(it);
+    private Expression parseExpression(TokenIterator it, int minPower) throws CompileException {
+        Expression left = parseUnary(it);
         if (left == null) return null;
 
         while (true) {
-            NodeType type = null;
-            if (it.match(TokenType.OPERATOR_LESSER)) type = NodeType.LESS;
-            else if (it.match(TokenType.OPERATOR_LESSERQUALS)) type = NodeType.LESSEQUALS;
-            else if (it.match(TokenType.OPERATOR_GREATER)) type = NodeType.GREATER;
-            else if (it.match(TokenType.OPERATOR_GREATEREQUALS)) type = NodeType.GREATEREQUALS;
-            else break;
-
-            Node right = parseAddition(it);
-            if (right == null) throw new CompileException("Expected expression after comparison operator");
-
-            Node node = new Node();
-            node.setType(type);
-            node.addChild(left);
-            node.addChild(right);
-            left = node;
-        }
-
-        return left;
-    }
-
-    // Addition/Subtraction
-    private static Node parseAddition(TokenIterator it) throws CompileException {
-        Node left = parseMultiplication(it);
-        if (left == null) return null;
-
-        while (true) {
-            NodeType type = null;
-            if (it.match(TokenType.OPERATOR_PLUS)) type = NodeType.ADDITION;
-            else if (it.match(TokenType.OPERATOR_MINUS)) type = NodeType.SUBTRACTION;
-            else break;
-
-            Node right = parseMultiplication(it);
-            if (right == null) throw new CompileException("Expected expression after + or -");
-
-            Node node = new Node();
-            node.setType(type);
-            node.addChild(left);
-            node.addChild(right);
-            left = node;
+            TokenType next = it.peekType();
+            int power = (next != null) ? BINDING_POWER[next.ordinal()] : 0;
+            if (power == 0 || power < minPower) break;
+            it.skip();
+
+            // Assignment binds to the right, everything else to the left
+            Expression right = parseExpression(it, (power == ASSIGNMENT_POWER) ? power : power + 1);
+
+            if (power == ASSIGNMENT_POWER) {
+                if (right == null)
+                    throw new CompileException("Expected expression after " + AbstractSyntaxTree.operator(BINARY_NODE[next.ordinal()]));
+                if (!(left instanceof Expression.Variable) && !(left instanceof Expression.ArrayAccess)) {
+                    throw new CompileException("Invalid assignment target: " + left.kind());
+                }
+                left = new Expression.Assignment(BINARY_NODE[next.ordinal()], left, right);
+            } else {
+                if (right == null)
+                    throw new CompileException("Expected expression after " + MISSING_OPERAND[next.ordinal()]);
+                left = new Expression.Binary(BINARY_NODE[next.ordinal()], left, right);
+            }
         }
 
         return left;
     }
 
-    // Multiplication/Division/Modulo
-    private static Node parseMultiplication(TokenIterator it) throws CompileException {
-        Node left = parseUnary(it);
-        if (left == null) return null;
-
-        while (true) {
-            NodeType type = null;
-            if (it.match(TokenType.OPERATOR_TIMES)) type = NodeType.MULTIPLICATION;
-            else if (it.match(TokenType.OPERATOR_DIVIDE)) type = NodeType.DIVISION;
-            else if (it.match(TokenType.OPERATOR_MODULO)) type = NodeType.MODULO;
-            else break;
-
-            Node right = parseUnary(it);
-            if (right == null) throw new CompileException("Expected expression after *, /, or %");
-
-            Node node = new Node();
-            node.setType(type);
-            node.addChild(left);
-            node.addChild(right);
-            left = node;
-        }
-
-        return left;
+    // Keywords, types and statement punctuation end an expression
+    private static boolean endsExpression(TokenType type, TokenCategory category) {
+        return category == TokenCategory.KEYWORD
+                || category == TokenCategory.TYPE
+                || (category == TokenCategory.DELIMITER
+                && type != TokenType.DELIMITER_LPARENTH
+                && type != TokenType.DELIMITER_RPARENTH
+                && type != TokenType.DELIMITER_LBRACKET
+                && type != TokenType.DELIMITER_RBRACKET
+                && type != TokenType.DELIMITER_COMMA);
     }
 
     // Unary operators
-    private static Node parseUnary(TokenIterator it) throws CompileException {
+    private Expression parseUnary(TokenIterator it) throws CompileException {
 
         // Pre-increment / Pre-decrement
         if (it.match(TokenType.OPERATOR_INCREMENT)) {
-            Node node = new Node();
-            node.setType(NodeType.PRE_INCREMENT);
-            node.setText("++");
-            Node child = parseUnary(it);
-            if (child == null) throw new CompileException("Expected expression after ++");
-            node.addChild(child);
-            return node;
+            return new Expression.Unary(NodeType.PRE_INCREMENT, operand(it, "++"));
         } else if (it.match(TokenType.OPERATOR_DECREMENT)) {
-            Node node = new Node();
-            node.setType(NodeType.PRE_DECREMENT);
-            node.setText("--");
-            Node child = parseUnary(it);
-            if (child == null) throw new CompileException("Expected expression after --");
-            node.addChild(child);
-            return node;
+            return new Expression.Unary(NodeType.PRE_DECREMENT, operand(it, "--"));
         }
 
         // Unary minus / not
         else if (it.match(TokenType.OPERATOR_NEGATIVE)) {
-            Node node = new Node();
-            node.setType(NodeType.NEGATIVE);
-            node.setText("-");
-            Node child = parseUnary(it);
-            if (child == null) throw new CompileException("Expected expression after -");
-            node.addChild(child);
-            return node;
+            return new Expression.Unary(NodeType.NEGATIVE, operand(it, "-"));
         } else if (it.match(TokenType.OPERATOR_NOT)) {
-            Node node = new Node();
-            node.setType(NodeType.NOT);
-            node.setText("!");
-            Node child = parseUnary(it);
-            if (child == null) throw new CompileException("Expected expression after !");
-            node.addChild(child);
-            return node;
+            return new Expression.Unary(NodeType.NOT, operand(it, "!"));
         }
 
         // Atomic expressions
         else {
-            Node node = parseAtomic(it);
+            Expression node = parseAtomic(it);
 
             // Post-increment / Post-decrement
             if (it.match(TokenType.OPERATOR_INCREMENT)) {
-                Node postNode = new Node();
-                postNode.setType(NodeType.POST_INCREMENT);
-                postNode.setText("++");
-                postNode.addChild(node);
-                node = postNode;
+                node = new Expression.Unary(NodeType.POST_INCREMENT, node);
             } else if (it.match(TokenType.OPERATOR_DECREMENT)) {
-                Node postNode = new Node();
-                postNode.setType(NodeType.POST_DECREMENT);
-                postNode.setText("--");
-                postNode.addChild(node);
-                node = postNode;
+                node = new Expression.Unary(NodeType.POST_DECREMENT, node);
             }
 
             return node;
         }
     }
 
+    private Expression operand(TokenIterator it, String operator) throws CompileException {
+        Expression operand = parseUnary(it);
+        if (operand == null) throw new CompileException("Expected expression after " + operator);
+        return operand;
+    }
+
 
     // Atomic literals, identifiers, parentheses, arrays, function calls
-    private static Node parseAtomic(TokenIterator it) throws CompileException {
-        Token token = it.peek();
-        if (token == null) return null;
-
-        Node node = new Node();
-
-        // Literals
-        if (it.match(TokenType.LITERAL_INT)) {
-            node.setType(NodeType.LITERAL_INT);
-            node.setText(token.getLexeme());
-        } else if (it.match(TokenType.LITERAL_FLOAT)) {
-            node.setType(NodeType.LITERAL_FLOAT);
-            node.setText(token.getLexeme());
-        } else if (it.match(TokenType.LITERAL_CHAR)) {
-            node.setType(NodeType.LITERAL_CHAR);
-            node.setText("'" + token.getLexeme() + "'");
-        } else if (it.match(TokenType.LITERAL_STRING)) {
-            node.setType(NodeType.LITERAL_STRING);
-            node.setText("\"" + token.getLexeme() + "\"");
-        } else if (it.match(TokenType.LITERAL_TRUE)) {
-            node.setType(NodeType.LITERAL_TRUE);
-            node.setText(token.getLexeme());
-        } else if (it.match(TokenType.LITERAL_FALSE)) {
-            node.setType(NodeType.LITERAL_FALSE);
-            node.setText(token.getLexeme());
-        }
-
-        // Identifiers (variables, arrays, function calls)
-        else if (it.match(TokenType.IDENTIFIER)) {
-            node.setType(NodeType.VARIABLE_ACCESS);
-            node.setText(it.previous().getLexeme());
-
-
-            // Array access
-            if (it.match(TokenType.DELIMITER_LBRACKET)) {
-                Node index = parseExpression(it);
-                node.addChild(index);
-                node.setType(NodeType.ARRAY_ACCESS);
+    private Expression parseAtomic(TokenIterator it) throws CompileException {
+        TokenType type = it.peekType();
+        if (type == null || endsExpression(type, it.peekCategory())) return null;
+
+        // Literals; the lexeme is only read for the atoms that keep it
+        switch (type) {
+            case LITERAL_INT:
+                it.skip();
+                return new Expression.Literal(NodeType.LITERAL_INT, it.previousLexeme());
+            case LITERAL_FLOAT:
+                it.skip();
+                return new Expression.Literal(NodeType.LITERAL_FLOAT, it.previousLexeme());
+            case LITERAL_CHAR:
+                it.skip();
+                return new Expression.Literal(NodeType.LITERAL_CHAR, "'" + it.previousLexeme() + "'");
+            case LITERAL_STRING:
+                it.skip();
+                return new Expression.Literal(NodeType.LITERAL_STRING, "\"" + it.previousLexeme() + "\"");
+            case LITERAL_TRUE:
+                it.skip();
+                return new Expression.Literal(NodeType.LITERAL_TRUE, it.previousLexeme());
+            case LITERAL_FALSE:
+                it.skip();
+                return new Expression.Literal(NodeType.LITERAL_FALSE, it.previousLexeme());
+            case IDENTIFIER:
+                it.skip();
+                return parseIdentifier(it, it.previousLexeme());
+            case DELIMITER_LPARENTH: {
+                // Parenthesized expressions
+                it.skip();
+                Expression expr = parseExpression(it);
+                it.skip(TokenType.DELIMITER_RPARENTH);
+                return expr;
             }
+            default:
+                throw new CompileException("Unexpected token " + it.peek().getLexeme());
+        }
+    }
 
-            // Function call
-            else if (it.match(TokenType.DELIMITER_LPARENTH)) {
-                Node args = new Node();
-                args.setType(NodeType.FUNCTION_ARGUMENTS);
-
-                while (!it.eof() && it.peek().getType() != TokenType.DELIMITER_RPARENTH) {
-                    Token t1 = it.next();
-                    Node arg = addNode(NodeType.FUNCTION_ARGUMENT, null, args);
-                    Node argName = addNode(NodeType.FUNCTION_ARGUMENT_NAME, t1.getLexeme(), arg);
-                    Node argType = addNode(NodeType.FUNCTION_ARGUMENT_TYPE, t1.getType().toString(), arg);
-                    it.match(TokenType.DELIMITER_COMMA);
-                }
-
-                node.addChild(args);
-                node.setType(NodeType.FUNCTION_CALL);
-            }
+    // Identifiers (variables, arrays, function calls), with the name already consumed
+    private Expression parseIdentifier(TokenIterator it, String name) throws CompileException {
+        // Array access
+        if (it.match(TokenType.DELIMITER_LBRACKET)) {
+            Expression index = parseExpression(it);
+            it.skip(TokenType.DELIMITER_RBRACKET);
+            return new Expression.ArrayAccess(name, index);
         }
 
-        // Parenthesized expressions
+        // Function call
         else if (it.match(TokenType.DELIMITER_LPARENTH)) {
-            Node expr = parseExpression(it);
-            //it.expect(TokenType.DELIMITER_RPARENTH);
-            return expr;
-        }
+            List<Expression> arguments = new ArrayList<>();
+
+            if (!it.match(TokenType.DELIMITER_RPARENTH)) {
+                do {
+                    Expression argument = parseExpression(it);
+                    if (argument == null) throw new CompileException("Syntax Error: Expected argument in call to " + name);
+                    arguments.add(argument);
+                } while (it.match(TokenType.DELIMITER_COMMA));
+                it.skip(TokenType.DELIMITER_RPARENTH);
+            }
 
-        else {
-            throw new CompileException("Unexpected token " + token.getLexeme());
+            return new Expression.Call(name, arguments);
         }
 
-        return node;
+        return new Expression.Variable(name);
     }
 
-}
\ No newline at end of file
+}
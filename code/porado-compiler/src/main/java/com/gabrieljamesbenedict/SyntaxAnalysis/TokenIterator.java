@@ -2,103 +2,192 @@ package com.gabrieljamesbenedict.SyntaxAnalysis;
 
 import com.gabrieljamesbenedict.Exceptions.CompileException;
 import com.gabrieljamesbenedict.LexicalAnalysis.Token;
+import com.gabrieljamesbenedict.LexicalAnalysis.TokenBuffer;
+import com.gabrieljamesbenedict.LexicalAnalysis.TokenCategory;
 import com.gabrieljamesbenedict.LexicalAnalysis.TokenType;
 
-import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Deque;
+import java.util.EnumSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class TokenIterator {
 
-    private final Deque<Token> tokens;
+    // Reads tokens straight out of a TokenBuffer; Token objects are only built for callers that ask for one.
+    // A lazily filled buffer is scanned as the cursor moves through it.
+    private final TokenBuffer tokens;
+    private int position = 0;
     private boolean doLogging = false;
-    Token lastConsumed = null;
+    private int lastConsumed = -1;
+
+    // Saved cursor states for backtracking, innermost last. Each mark holds position and lastConsumed.
+    private int[] marks = new int[8];
+    private int markCount = 0;
 
     TokenIterator(Stream<Token> tokenStream) {
-        this.tokens = tokenStream.collect(Collectors.toCollection(ArrayDeque::new));
+        this(TokenBuffer.of(tokenStream));
+    }
+
+    TokenIterator(TokenBuffer tokens) {
+        this.tokens = tokens;
+    }
+
+    int position() {
+        return position;
+    }
+
+    // Nothing before the last consumed token will be looked at again, unless a mark still needs it
+    void release() {
+        int keep = (markCount > 0) ? marks[1] : lastConsumed;
+        if (keep >= 0) tokens.release(keep);
+    }
+
+    // Remembers the current cursor so a speculative parse can back out with reset()
+    void mark() {
+        if (markCount * 2 == marks.length) marks = Arrays.copyOf(marks, marks.length * 2);
+        marks[markCount * 2] = position;
+        marks[markCount * 2 + 1] = lastConsumed;
+        markCount++;
+    }
+
+    // Goes back to the innermost mark and forgets it
+    void reset() {
+        if (markCount == 0) throw new IllegalStateException("reset() without a matching mark()");
+        markCount--;
+        position = marks[markCount * 2];
+        lastConsumed = marks[markCount * 2 + 1];
+    }
+
+    // Keeps everything consumed since the innermost mark and forgets the mark
+    void unmark() {
+        if (markCount == 0) throw new IllegalStateException("unmark() without a matching mark()");
+        markCount--;
+    }
+
+    private boolean available(int index) {
+        return tokens.has(index);
     }
 
     Token peek() {
-        Token token = tokens.peekFirst();
-        if (doLogging && token != null) {
+        if (!available(position)) return null;
+        Token token = tokens.token(position);
+        if (doLogging) {
             System.out.println("Peek: " + token.getLexeme());
         }
         return token;
     }
 
+    TokenType peekType() {
+        return available(position) ? tokens.type(position) : null;
+    }
+
+    TokenCategory peekCategory() {
+        return available(position) ? tokens.category(position) : null;
+    }
+
     public Token lookahead(int n) {
-        Token token = tokens.stream().skip(n).findFirst().orElse(null);
-        if (doLogging && token != null) {
+        if (!available(position + n)) return null;
+        Token token = tokens.token(position + n);
+        if (doLogging) {
             System.out.println("Lookahead: " + token.getLexeme());
         }
         return token;
     }
 
+    TokenType lookaheadType(int n) {
+        return available(position + n) ? tokens.type(position + n) : null;
+    }
+
     Token next() {
-        Token token = tokens.pollFirst();
-        lastConsumed = token;
-        if (doLogging && token != null) {
+        if (!available(position)) return null;
+        lastConsumed = position++;
+        Token token = tokens.token(lastConsumed);
+        if (doLogging) {
             System.out.println("Next: " + token.getLexeme());
         }
         return token;
     }
 
-    boolean match(TokenType... types) throws CompileException {
-        String typeMatch = Arrays.stream(types).map(TokenType::toString).reduce((s1,s2)->s1 + ", " + s2).orElseThrow(() -> new CompileException("Syntax Error: Expected match value but none found"));
-        Token next = peek();
-        if (next == null) return false;
+    // Consumes the current token without materializing it
+    void skip() {
+        if (available(position)) lastConsumed = position++;
+    }
+
+    // match and expect come in single-type and EnumSet flavours so that the common case allocates
+    // nothing; the list of expected types is only spelled out when an error is actually thrown
+
+    boolean match(TokenType type) {
+        if (peekType() != type) return false;
         if (doLogging) {
-            System.out.println("Match: " + next.getLexeme() + " to " + typeMatch);
-        }
-        boolean isMatch = false;
-        for (TokenType type : types) {
-            if (next.getType() == type) {
-                if (doLogging) {
-                    System.out.println("Match True");
-                }
-                lastConsumed = tokens.pollFirst();
-                return true;
-            }
+            System.out.println("Match: " + tokens.lexeme(position) + " to " + type);
         }
-        return isMatch;
+        lastConsumed = position++;
+        return true;
     }
 
-    public Token expect(TokenType... expecteds) throws CompileException {
-        String typeMatch = Arrays.stream(expecteds).map(TokenType::toString).reduce((s1,s2)->s1 + ", " + s2).orElseThrow(() -> new CompileException("Syntax Error: Expected match value but none found"));
-        Token token = next();
-        lastConsumed = token;
+    boolean match(EnumSet<TokenType> types) {
+        TokenType next = peekType();
+        if (next == null || !types.contains(next)) return false;
         if (doLogging) {
-            System.out.println("Match: " + token.getLexeme() + " to " + typeMatch);
-        }
-        boolean isError = true;
-        for (TokenType expected : expecteds) {
-            if (token.getType() == expected) {
-                isError = false;
-            }
+            System.out.println("Match: " + tokens.lexeme(position) + " to " + types);
         }
-        if (isError) {
-            throw new CompileException(
-                    "Syntax Error: Expected " + typeMatch + " but found " + token.getType()
-            );
+        lastConsumed = position++;
+        return true;
+    }
+
+    // Consumes a token that has to be of the given type, without materializing it
+    void skip(TokenType expected) throws CompileException {
+        TokenType next = peekType();
+        if (next != expected) throw unexpected(expected.toString(), next);
+        lastConsumed = position++;
+    }
+
+    public Token expect(TokenType expected) throws CompileException {
+        skip(expected);
+        return tokens.token(lastConsumed);
+    }
+
+    public Token expect(EnumSet<TokenType> expecteds) throws CompileException {
+        TokenType next = peekType();
+        if (next == null || !expecteds.contains(next)) {
+            throw unexpected(expecteds.stream().map(TokenType::toString).collect(Collectors.joining(", ")), next);
         }
-        lastConsumed = token;
-        return token;
+        lastConsumed = position++;
+        return tokens.token(lastConsumed);
+    }
+
+    private CompileException unexpected(String expected, TokenType found) {
+        return new CompileException(
+                "Syntax Error: Expected " + expected + " but found " + ((found != null) ? found : "end of input")
+        );
     }
 
     boolean hasNext() {
-        return peek() != null;
+        return available(position);
     }
 
     boolean eof() {
-        return tokens.isEmpty();
+        return !available(position);
     }
 
     public Token previous() {
-        if (lastConsumed == null) {
+        if (lastConsumed < 0) {
+            throw new IllegalStateException("No previous token: next() has not been called yet.");
+        }
+        return tokens.token(lastConsumed);
+    }
+
+    TokenType previousType() {
+        if (lastConsumed < 0) {
+            throw new IllegalStateException("No previous token: next() has not been called yet.");
+        }
+        return tokens.type(lastConsumed);
+    }
+
+    String previousLexeme() {
+        if (lastConsumed < 0) {
             throw new IllegalStateException("No previous token: next() has not been called yet.");
         }
-        return lastConsumed;
+        return tokens.lexeme(lastConsumed);
     }
 }
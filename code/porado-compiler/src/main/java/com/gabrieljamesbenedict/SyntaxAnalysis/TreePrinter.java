@@ -0,0 +1,25 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+import java.io.PrintStream;
+
+// Prints one line per node, "KIND" or "KIND: text", indented by "--" per level below the root
+public class TreePrinter implements TreeVisitor {
+
+    private final PrintStream out;
+    private int depth = 0;
+
+    public TreePrinter(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void enter(NodeType kind, String text) {
+        out.println("--".repeat(depth) + ((text == null) ? kind.toString() : kind + ": " + text));
+        depth++;
+    }
+
+    @Override
+    public void leave(NodeType kind) {
+        depth--;
+    }
+}
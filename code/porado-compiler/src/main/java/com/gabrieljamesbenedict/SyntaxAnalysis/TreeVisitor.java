@@ -0,0 +1,12 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+// Receives a tree as a depth-first outline: enter for every labelled node, leave once its children
+// are done. Both tree representations replay the same outline, so anything written against this
+// (printing, encoding, counting) works on either.
+public interface TreeVisitor {
+
+    void enter(NodeType kind, String text);
+
+    default void leave(NodeType kind) {}
+
+}
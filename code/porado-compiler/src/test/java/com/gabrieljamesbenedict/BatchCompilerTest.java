@@ -0,0 +1,36 @@
+package com.gabrieljamesbenedict;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BatchCompilerTest
+{
+    @Test
+    public void resultsKeepFileOrderAndMatchSequentialCompilation()
+    {
+        File[] samples = new File("porado-samples").listFiles((dir, name) -> name.endsWith(".por"));
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) files.addAll(Arrays.asList(samples));
+        files.add(new File("porado-samples/missing.por"));
+
+        List<BatchCompiler.Result> results = new BatchCompiler(4).compile(files);
+
+        assertEquals(files.size(), results.size());
+        for (int i = 0; i < files.size(); i++) {
+            BatchCompiler.Result expected = BatchCompiler.compile(files.get(i));
+            BatchCompiler.Result actual = results.get(i);
+            assertEquals(files.get(i), actual.file());
+            assertEquals(expected.error(), actual.error());
+            assertEquals(expected.tokens(), actual.tokens());
+            if (!expected.failed()) assertEquals(expected.ast(), actual.ast());
+        }
+        assertTrue(results.get(files.size() - 1).error().startsWith("Error: Cannot find file"));
+    }
+}
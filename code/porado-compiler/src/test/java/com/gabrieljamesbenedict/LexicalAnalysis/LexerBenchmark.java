@@ -0,0 +1,79 @@
+package com.gabrieljamesbenedict.LexicalAnalysis;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Throughput of the buffered lexer against the legacy PushbackReader lexer, and the memory
+// retained by a List<Token> compared with a TokenBuffer.
+// Run with: java -cp target/classes:target/test-classes com.gabrieljamesbenedict.LexicalAnalysis.LexerBenchmark [MB]
+public class LexerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        Path source = generateSource(megabytes);
+        long bytes = Files.size(source);
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            long legacyTokens;
+            try (PushbackReader reader = new PushbackReader(new FileReader(source.toFile()))) {
+                legacyTokens = LegacyLexicalAnalyzer.tokenize(reader).count();
+            }
+            long legacyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long tokens = LexicalAnalyzer.tokenize(source).count();
+            long nanos = System.nanoTime() - start;
+
+            System.out.printf("round %d: legacy %8.2f MB/s (%d tokens) | buffered %8.2f MB/s (%d tokens) | %.1fx%n",
+                    round, throughput(bytes, legacyNanos), legacyTokens, throughput(bytes, nanos), tokens,
+                    (double) legacyNanos / nanos);
+        }
+
+        // Memory retained by the lexer output itself, beyond the source text
+        CharBuffer text = LexicalAnalyzer.read(source);
+        long baseline = usedMemory();
+        List<Token> tokenList = LexicalAnalyzer.tokenize(text).toList();
+        long listBytes = usedMemory() - baseline;
+        tokenList = null;
+
+        baseline = usedMemory();
+        TokenBuffer buffer = LexicalAnalyzer.scan(text);
+        long bufferBytes = usedMemory() - baseline;
+
+        System.out.printf("retained: List<Token> %.1f MB | TokenBuffer %.1f MB (%d tokens) | %.1fx smaller%n",
+                listBytes / 1e6, bufferBytes / 1e6, buffer.size(), (double) listBytes / bufferBytes);
+        Files.delete(source);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double throughput(long bytes, long nanos) {
+        return (bytes / 1e6) / (nanos / 1e9);
+    }
+
+    // Concatenates the sample programs until the file reaches the requested size
+    static Path generateSource(int megabytes) throws IOException {
+        StringBuilder samples = new StringBuilder();
+        for (File sample : new File("porado-samples").listFiles((dir, name) -> name.endsWith(".por"))) {
+            samples.append(Files.readString(sample.toPath())).append('\n');
+        }
+        StringBuilder source = new StringBuilder(megabytes << 20);
+        while (source.length() < (megabytes << 20)) {
+            source.append(samples);
+        }
+        Path path = Files.createTempFile("porado-bench", ".por");
+        Files.writeString(path, source);
+        return path;
+    }
+}
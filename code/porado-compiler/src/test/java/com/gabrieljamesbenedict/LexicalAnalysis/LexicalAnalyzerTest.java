@@ -0,0 +1,97 @@
+package com.gabrieljamesbenedict.LexicalAnalysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LexicalAnalyzerTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] FRAGMENTS = {
+            " ", "  ", "\t", "\r\n", "\n", "num", "as", "int", "float", "if", "else", "then", "negative",
+            "42", "3.14", "'a'", "'", "\"hi\"", "\"", "true", "FALSE", "=", "==", "<=", "+", "-", "*", "/",
+            "%", "++", "--", "(", ")", "[", "]", "{", "}", ",", ":", ";", "//", "/*", "*/", "return", "x1"
+    };
+
+    private static List<Token> legacy(Path path) throws IOException {
+        try (PushbackReader reader = new PushbackReader(new FileReader(path.toFile()))) {
+            return LegacyLexicalAnalyzer.tokenize(reader).toList();
+        }
+    }
+
+    @Test
+    public void samplesProduceTheSameTokensAsTheLegacyLexer() throws IOException
+    {
+        File[] samples = new File("porado-samples").listFiles((dir, name) -> name.endsWith(".por"));
+        for (File sample : samples) {
+            assertEquals(sample.getName(), legacy(sample.toPath()), LexicalAnalyzer.tokenize(sample.toPath()).toList());
+        }
+    }
+
+    @Test
+    public void randomSourcesProduceTheSameTokensAsTheLegacyLexer() throws IOException
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder source = new StringBuilder();
+            int length = random.nextInt(60);
+            for (int j = 0; j < length; j++) {
+                source.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            Path path = folder.newFile().toPath();
+            Files.writeString(path, source);
+            assertEquals(source.toString(), legacy(path), LexicalAnalyzer.tokenize(path).toList());
+            assertEquals(source.toString(), legacy(path), materialize(LexicalAnalyzer.scan(path)));
+        }
+    }
+
+    @Test
+    public void tokenBufferMaterializesTheSameTokens() throws IOException
+    {
+        File[] samples = new File("porado-samples").listFiles((dir, name) -> name.endsWith(".por"));
+        for (File sample : samples) {
+            List<Token> tokens = LexicalAnalyzer.tokenize(sample.toPath()).toList();
+            assertEquals(sample.getName(), tokens, materialize(LexicalAnalyzer.scan(sample.toPath())));
+            assertEquals(sample.getName(), tokens, materialize(TokenBuffer.of(tokens.stream())));
+        }
+    }
+
+    @Test
+    public void openedBufferScansLazilyInABoundedWindow() throws IOException
+    {
+        Path source = LexerBenchmark.generateSource(1);
+        TokenBuffer all = LexicalAnalyzer.scan(source);
+        TokenBuffer window = LexicalAnalyzer.open(source);
+
+        assertEquals(0, window.size());
+        for (int i = 0; window.has(i); i++) {
+            assertEquals(all.type(i), window.type(i));
+            assertEquals(all.lexeme(i), window.lexeme(i));
+            assertEquals(i + 1, window.size());
+            window.release(i);
+        }
+        assertEquals(all.size(), window.size());
+        assertTrue("window grew to " + window.capacity(), window.capacity() <= 64);
+    }
+
+    private static List<Token> materialize(TokenBuffer buffer) {
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < buffer.size(); i++) tokens.add(buffer.token(i));
+        return tokens;
+    }
+}
@@ -0,0 +1,44 @@
+package com.gabrieljamesbenedict.LexicalAnalysis;
+
+import java.lang.management.ManagementFactory;
+
+// Per-token cost and allocation of LiteralClassifier against the old Pattern.compile classifier.
+// Run with: java -cp target/classes:target/test-classes com.gabrieljamesbenedict.LexicalAnalysis.LiteralClassifierBenchmark
+public class LiteralClassifierBenchmark {
+
+    private static final String[] LEXEMES = {
+            "num", "42", "3.1415", "'X'", "\"Gabriel\"", "true", "false", "nums", "matrix", "1000",
+            "counter", "FALSE", "i", "0.5", "value", "isDay"
+    };
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        LegacyTokenPostProcesser legacy = new LegacyTokenPostProcesser();
+        int iterations = 2_000_000;
+
+        for (int round = 0; round < 5; round++) {
+            long legacyBytes = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            int legacyHits = 0;
+            for (int i = 0; i < iterations / 20; i++) {
+                if (legacy.checkIfLiteral(LEXEMES[i & 15]) != null) legacyHits++;
+            }
+            double legacyNanos = (System.nanoTime() - start) / (iterations / 20.0);
+            legacyBytes = (THREADS.getCurrentThreadAllocatedBytes() - legacyBytes) / (iterations / 20);
+
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            int hits = 0;
+            for (int i = 0; i < iterations; i++) {
+                if (LiteralClassifier.classify(LEXEMES[i & 15]) != null) hits++;
+            }
+            double nanos = (System.nanoTime() - start) / (double) iterations;
+            bytes = (THREADS.getCurrentThreadAllocatedBytes() - bytes) / iterations;
+
+            System.out.printf("round %d: regex %8.1f ns/token %6d B/token (%d literals) | classifier %5.1f ns/token %3d B/token (%d literals)%n",
+                    round, legacyNanos, legacyBytes, legacyHits * 20, nanos, bytes, hits);
+        }
+    }
+}
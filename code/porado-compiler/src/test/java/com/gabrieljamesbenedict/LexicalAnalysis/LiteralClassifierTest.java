@@ -0,0 +1,40 @@
+package com.gabrieljamesbenedict.LexicalAnalysis;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class LiteralClassifierTest
+{
+    private static final char[] ALPHABET = {
+            '0', '1', '9', '.', '\'', '"', 'a', 't', 'T', 'r', 'R', 'u', 'e', 'E', 'f', 'F', 'l', 's', 'S',
+            'ſ', '\u0085', ' ', ' ', '-'
+    };
+
+    private static final String[] EDGE_CASES = {
+            "", "0", "007", "1.", ".5", "1.5", "1.5.5", "1..5", "'", "''", "'a'", "'ab'", "'a", "\"", "\"\"",
+            "\"hi\"", "\"'", "true", "TRUE", "tRuE", "false", "False", "truee", "fals", "ſtrue", "falſe",
+            "' '", "\"\u0085\"", "negative", "x1"
+    };
+
+    @Test
+    public void classifiesLikeTheLegacyRegexes()
+    {
+        LegacyTokenPostProcesser legacy = new LegacyTokenPostProcesser();
+        for (String lexeme : EDGE_CASES) {
+            assertEquals(lexeme, legacy.checkIfLiteral(lexeme), LiteralClassifier.classify(lexeme));
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder lexeme = new StringBuilder();
+            int length = random.nextInt(7);
+            for (int j = 0; j < length; j++) {
+                lexeme.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            assertEquals(lexeme.toString(), legacy.checkIfLiteral(lexeme.toString()), LiteralClassifier.classify(lexeme));
+        }
+    }
+}
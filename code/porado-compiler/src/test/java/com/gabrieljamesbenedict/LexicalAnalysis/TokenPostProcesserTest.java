@@ -0,0 +1,49 @@
+package com.gabrieljamesbenedict.LexicalAnalysis;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+public class TokenPostProcesserTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Lexemes that exercise the negative sign and merge rules, each written apart from the next
+    private static final String[] LEXEMES = {
+            "-", "+", "*", "/", "%", "=", "else", "if", "return", "(", "[", ",", ";", "x", "12", "'c'", "\n"
+    };
+
+    // The legacy lexer reads until ready() is false, which a file reader is at its end
+    private static List<Token> legacy(Path path) throws IOException {
+        try (PushbackReader reader = new PushbackReader(new FileReader(path.toFile()))) {
+            return LegacyLexicalAnalyzer.tokenize(reader).toList();
+        }
+    }
+
+    @Test
+    public void lexerAppliesTheRulesAsTheLegacyPassesDid() throws IOException
+    {
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder source = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                source.append(LEXEMES[random.nextInt(LEXEMES.length)]).append(' ');
+            }
+            Path path = folder.newFile().toPath();
+            Files.writeString(path, source);
+            assertEquals(source.toString(), legacy(path), LexicalAnalyzer.tokenize(path).toList());
+        }
+    }
+}
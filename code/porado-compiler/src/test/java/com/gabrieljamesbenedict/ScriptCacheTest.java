@@ -0,0 +1,122 @@
+package com.gabrieljamesbenedict;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Expression;
+import com.gabrieljamesbenedict.SyntaxAnalysis.NodeType;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+import com.gabrieljamesbenedict.SyntaxAnalysis.SyntaxAnalyzer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+public class ScriptCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void secondRunLoadsTheSameTreeFromTheCache() throws IOException, CompileException
+    {
+        ScriptCache cache = new ScriptCache(folder.newFolder("cache").toPath());
+        File samples = new File("porado-samples");
+
+        for (String name : List.of("loops.por", "functions.por", "assignment.por")) {
+            File script = new File(samples, name);
+            ScriptCache.Entry first = cache.compile(script);
+            ScriptCache.Entry second = cache.compile(script);
+
+            assertFalse(name, first.hit());
+            assertTrue(name, second.hit());
+            assertEquals(name, SyntaxAnalyzer.parse(LexicalAnalyzer.open(script.toPath())), second.tree().decode());
+        }
+    }
+
+    @Test
+    public void editedOrDamagedEntriesAreParsedAgain() throws IOException, CompileException
+    {
+        Path directory = folder.newFolder("cache").toPath();
+        ScriptCache cache = new ScriptCache(directory);
+        File script = folder.newFile("script.por");
+
+        Files.writeString(script.toPath(), "x as int = 1;\nprint(x);\n");
+        assertFalse(cache.compile(script).hit());
+        assertTrue(cache.compile(script).hit());
+
+        Files.writeString(script.toPath(), "x as int = 2;\nprint(x);\n");
+        ScriptCache.Entry edited = cache.compile(script);
+        assertFalse(edited.hit());
+        Statement.VariableDeclaration declaration = (Statement.VariableDeclaration) edited.tree().decode().getStatements().getFirst();
+        assertEquals(new Expression.Literal(NodeType.LITERAL_INT, "2"), declaration.value());
+
+        try (var entries = Files.list(directory)) {
+            for (Path entry : entries.toList()) Files.write(entry, new byte[] { 1, 2, 3 });
+        }
+        assertFalse(cache.compile(script).hit());
+        assertTrue(cache.compile(script).hit());
+    }
+
+    // Rewrites the one entry in the directory, keeping its header
+    private static void damage(Path directory, UnaryOperator<byte[]> change) throws IOException {
+        try (var entries = Files.list(directory)) {
+            for (Path entry : entries.toList()) Files.write(entry, change.apply(Files.readAllBytes(entry)));
+        }
+    }
+
+    @Test
+    public void entriesThatDoNotFitOrDoNotDecodeAreParsedAgain() throws IOException, CompileException
+    {
+        Path directory = folder.newFolder("cache").toPath();
+        ScriptCache cache = new ScriptCache(directory);
+        File script = folder.newFile("script.por");
+        Files.writeString(script.toPath(), "print(7);\n");
+        assertFalse(cache.compile(script).hit());
+
+        // A string count far past the end of the file, after the magic, parse time and format
+        damage(directory, bytes -> {
+            byte[] huge = Arrays.copyOf(bytes, 21);
+            huge[16] = (byte) 0xFF; huge[17] = (byte) 0xFF; huge[18] = (byte) 0xFF; huge[19] = (byte) 0xFF; huge[20] = 0x07;
+            return huge;
+        });
+        assertFalse(cache.compile(script).hit());
+        assertTrue(cache.compile(script).hit());
+
+        // The literal turned into an assignment, which reads as a tree but has no operands to decode
+        damage(directory, bytes -> {
+            byte[] changed = bytes.clone();
+            for (int i = changed.length - 3; i >= 16; i--) {
+                if (changed[i] == NodeType.LITERAL_INT.ordinal() && changed[i + 2] == 0) {
+                    changed[i] = (byte) NodeType.ASSIGNMENT.ordinal();
+                    break;
+                }
+            }
+            return changed;
+        });
+        assertFalse(cache.compile(script).hit());
+        assertTrue(cache.compile(script).hit());
+
+        // The program node's text index read as -2, a text nothing decodes but printing the tree would look up
+        damage(directory, bytes -> {
+            int text = 21; // after one string, "7", and the node count: the program node's kind, then its text
+            byte[] changed = new byte[bytes.length + 4];
+            System.arraycopy(bytes, 0, changed, 0, text);
+            changed[text] = (byte) 0xFF; changed[text + 1] = (byte) 0xFF; changed[text + 2] = (byte) 0xFF; changed[text + 3] = (byte) 0xFF; changed[text + 4] = 0x0F;
+            System.arraycopy(bytes, text + 1, changed, text + 5, bytes.length - text - 1);
+            return changed;
+        });
+        assertFalse(cache.compile(script).hit());
+        assertTrue(cache.compile(script).hit());
+    }
+}
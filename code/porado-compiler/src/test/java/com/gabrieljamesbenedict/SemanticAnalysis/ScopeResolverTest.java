@@ -0,0 +1,108 @@
+package com.gabrieljamesbenedict.SemanticAnalysis;
+
+import static org.junit.Assert.assertEquals;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.Interpreter.CodeRunner;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.SyntaxAnalysis.AbstractSyntaxTree;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Address;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Expression;
+import com.gabrieljamesbenedict.SyntaxAnalysis.Statement;
+import com.gabrieljamesbenedict.SyntaxAnalysis.SyntaxAnalyzer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+public class ScopeResolverTest
+{
+    private static AbstractSyntaxTree parse(String source) throws CompileException {
+        return SyntaxAnalyzer.parse(LexicalAnalyzer.open(CharBuffer.wrap(source.toCharArray())));
+    }
+
+    @Test
+    public void namesResolveToSlotsInTheFrameThatDeclaresThem() throws CompileException
+    {
+        String source = """
+                total as int = 0;
+                f as function accepts (a as int) returns int {
+                    b as int = a;
+                    return b + total;
+                }
+                { c as int = 1; { d as int = c; } { e as int = 2; } g as function { print(c); } }
+                """;
+        List<Statement> program = ScopeResolver.resolve(parse(source)).getStatements();
+
+        assertEquals(Address.global(0), ((Statement.VariableDeclaration) program.get(0)).address());
+
+        // The body block shares the function's frame, after the parameter
+        Statement.FunctionDeclaration f = (Statement.FunctionDeclaration) program.get(1);
+        assertEquals(0, f.function());
+        assertEquals(2, f.slots());
+        Statement.Block body = (Statement.Block) f.body();
+        assertEquals(1, body.first());
+        Statement.VariableDeclaration b = (Statement.VariableDeclaration) body.statements().get(0);
+        assertEquals(Address.local(0, 1), b.address());
+        assertEquals(Address.local(0, 0), ((Expression.Variable) b.value()).address());
+        Expression.Binary sum = (Expression.Binary) ((Statement.Return) body.statements().get(1)).value();
+        assertEquals(Address.local(0, 1), ((Expression.Variable) sum.left()).address());
+        assertEquals(Address.global(0), ((Expression.Variable) sum.right()).address());
+
+        // Sibling blocks reuse the slot after the outer block's own
+        List<Statement> outer = ((Statement.Block) program.get(2)).statements();
+        Statement.VariableDeclaration d = (Statement.VariableDeclaration) ((Statement.Block) outer.get(1)).statements().get(0);
+        Statement.VariableDeclaration e = (Statement.VariableDeclaration) ((Statement.Block) outer.get(2)).statements().get(0);
+        assertEquals(Address.local(0, 1), d.address());
+        assertEquals(Address.local(0, 0), ((Expression.Variable) d.value()).address());
+        assertEquals(Address.local(0, 1), e.address());
+
+        // A function reaches the frame it was declared in one level up
+        Statement.FunctionDeclaration g = (Statement.FunctionDeclaration) outer.get(3);
+        Statement.Print print = (Statement.Print) ((Statement.Block) g.body()).statements().get(0);
+        assertEquals(Address.local(1, 0), ((Expression.Variable) print.value()).address());
+    }
+
+    @Test
+    public void literalArrayElementsAreDecodedOnceAndNamesGetAddresses() throws CompileException
+    {
+        String source = """
+                x as int = 4;
+                nums as array of 4 int = [1, 2.5, true, x];
+                """;
+        List<Statement> program = ScopeResolver.resolve(parse(source)).getStatements();
+
+        Statement.ArrayDeclaration nums = (Statement.ArrayDeclaration) program.get(1);
+        assertEquals(Arrays.asList(null, null, null, Address.global(0)), nums.elementAddresses());
+        assertEquals(Arrays.asList(1L, 2.5, true, null), nums.elementValues());
+    }
+
+    @Test
+    public void functionsSeeTheScopesAroundTheirDeclaration() throws CompileException
+    {
+        String source = """
+                show as function { print(limit); }
+                limit as int = 3;
+                show();
+                caller as function { limit as int = 9; show(); }
+                caller();
+                {
+                    x as int = 2;
+                    outer as int = 3;
+                    { inner as function { print(x + outer); } inner(); }
+                }
+                """;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(out));
+        try {
+            new CodeRunner(parse(source)).run();
+        } finally {
+            System.setOut(stdout);
+        }
+        assertEquals("3\n3\n5\n", out.toString().replace("\r\n", "\n"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.LexicalAnalysis.TokenBuffer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.CharBuffer;
+
+// Retained heap and parse allocation of the record tree against the flat arena, over a synthetic
+// machine-generated program. The token buffer is scanned up front and kept alive in both cases.
+// Run with: java -Xmx3g -cp target/classes:target/test-classes com.gabrieljamesbenedict.SyntaxAnalysis.AstMemoryBenchmark [statements]
+public class AstMemoryBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws CompileException {
+        int statements = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        TokenBuffer tokens = LexicalAnalyzer.scan(CharBuffer.wrap(generateSource(statements).toCharArray()));
+        System.out.printf("%d statements, %d tokens%n", statements, tokens.size());
+
+        for (int round = 0; round < 3; round++) {
+            long heap = usedHeap();
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            AbstractSyntaxTree ast = new SyntaxAnalyzer(tokens).parse();
+            report("records", start, THREADS.getCurrentThreadAllocatedBytes() - bytes, usedHeap() - heap, statements);
+            Reference.reachabilityFence(ast);
+            ast = null;
+
+            heap = usedHeap();
+            bytes = THREADS.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            FlatTree tree = new SyntaxAnalyzer(tokens).parseFlat();
+            report("arena  ", start, THREADS.getCurrentThreadAllocatedBytes() - bytes, usedHeap() - heap, statements);
+            System.out.printf("         %d nodes, %d pooled strings, %.1f B/node by array size%n",
+                    tree.size(), tree.strings(), tree.footprint() / (double) tree.size());
+            Reference.reachabilityFence(tree);
+        }
+    }
+
+    private static void report(String name, long start, long allocated, long retained, int statements) {
+        System.out.printf("%s: %6.0f ms, %6.1f B/statement allocated, %6.1f B/statement retained%n",
+                name, (System.nanoTime() - start) / 1e6, allocated / (double) statements, retained / (double) statements);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Declarations, arithmetic, calls, conditionals and loops over a small set of generated names,
+    // the way a code generator would emit them
+    static String generateSource(int statements) {
+        StringBuilder source = new StringBuilder(statements * 24);
+        for (int i = 0; i < statements; i++) {
+            String v = "v" + (i % 1000);
+            switch (i % 8) {
+                case 0 -> source.append(v).append(" as int = ").append(i % 97).append(";\n");
+                case 1 -> source.append(v).append(" = ").append(v).append(" * 3 + ").append(i % 7).append(";\n");
+                case 2 -> source.append(v).append(" += ").append(i % 5).append(";\n");
+                case 3 -> source.append("print(").append(v).append(" - 1);\n");
+                case 4 -> source.append("if (").append(v).append(" > 10) then ").append(v).append("--;\n");
+                case 5 -> source.append("f").append(i % 50).append("(").append(v).append(", 2);\n");
+                case 6 -> source.append("while (").append(v).append(" < 3) then ").append(v).append("++;\n");
+                default -> source.append("{ ").append(v).append(" = (").append(v).append(" + 1) % 10; }\n");
+            }
+        }
+        return source.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+import static org.junit.Assert.assertEquals;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+
+public class FlatTreeTest
+{
+    private static String outline(AbstractSyntaxTree ast) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ast.accept(new TreePrinter(new PrintStream(out)));
+        return out.toString();
+    }
+
+    private static String outline(FlatTree tree) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tree.accept(new TreePrinter(new PrintStream(out)));
+        return out.toString();
+    }
+
+    private static SyntaxAnalyzer parser(String source) {
+        return new SyntaxAnalyzer(LexicalAnalyzer.open(CharBuffer.wrap(source.toCharArray())));
+    }
+
+    @Test
+    public void samplesRoundTripThroughTheArena() throws IOException
+    {
+        File[] samples = new File("porado-samples").listFiles((dir, name) -> name.endsWith(".por"));
+        for (File sample : samples) {
+            String text = Files.readString(sample.toPath());
+            AbstractSyntaxTree ast;
+            try {
+                ast = parser(text).parse();
+            } catch (CompileException | RuntimeException e) {
+                continue;
+            }
+
+            FlatTree encoded = FlatTree.encode(ast);
+            assertEquals(sample.getName(), outline(ast), outline(encoded));
+            assertEquals(sample.getName(), ast, encoded.decode());
+
+            FlatTree streamed;
+            try {
+                streamed = parser(text).parseFlat();
+            } catch (CompileException e) {
+                throw new AssertionError(sample.getName(), e);
+            }
+            assertEquals(sample.getName(), outline(encoded), outline(streamed));
+        }
+    }
+
+    @Test
+    public void repeatedTextIsPooledOnce() throws CompileException
+    {
+        FlatTree tree = parser("x = x + 1;\nx = x + 1;\nx = x + 1;\n").parseFlat();
+
+        // PROGRAM, then ASSIGNMENT(x, ADDITION(x, 1)) three times
+        assertEquals(1 + 3 * 5, tree.size());
+        // "x", "=" and "1"
+        assertEquals(3, tree.strings());
+
+        int second = tree.nextSibling(tree.firstChild(tree.root()));
+        assertEquals(NodeType.ASSIGNMENT, tree.kind(second));
+        assertEquals("x", tree.text(tree.firstChild(second)));
+    }
+}
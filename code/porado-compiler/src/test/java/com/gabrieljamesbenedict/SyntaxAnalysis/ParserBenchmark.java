@@ -0,0 +1,51 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.LexicalAnalysis.TokenBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+
+// Parse time and allocation per token over a pre-scanned buffer, so only the parser is measured.
+// Run with: java -cp target/classes:target/test-classes com.gabrieljamesbenedict.SyntaxAnalysis.ParserBenchmark [copies]
+public class ParserBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException, CompileException {
+        int copies = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        TokenBuffer tokens = LexicalAnalyzer.scan(CharBuffer.wrap(generateSource(copies).toCharArray()));
+
+        for (int round = 0; round < 5; round++) {
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            AbstractSyntaxTree ast = new SyntaxAnalyzer(tokens).parse();
+            double nanos = (System.nanoTime() - start) / (double) tokens.size();
+            bytes = THREADS.getCurrentThreadAllocatedBytes() - bytes;
+
+            System.out.printf("round %d: %6.1f ns/token %6.1f B/token (%d tokens, %d statements)%n",
+                    round, nanos, bytes / (double) tokens.size(), tokens.size(), ast.getStatements().size());
+        }
+    }
+
+    // The samples the parser accepts, repeated back to back
+    static String generateSource(int copies) throws IOException {
+        StringBuilder parseable = new StringBuilder();
+        File[] samples = new File("porado-samples").listFiles((dir, name) -> name.endsWith(".por"));
+        for (File sample : samples) {
+            String text = Files.readString(sample.toPath());
+            try {
+                SyntaxAnalyzer.parse(LexicalAnalyzer.scan(CharBuffer.wrap(text.toCharArray())));
+                parseable.append(text).append('\n');
+            } catch (CompileException | RuntimeException e) {
+                // Skip samples that use syntax the parser does not handle yet
+            }
+        }
+        return parseable.toString().repeat(copies);
+    }
+}
@@ -0,0 +1,148 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.gabrieljamesbenedict.Exceptions.CompileException;
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.LexicalAnalysis.TokenBuffer;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SyntaxAnalyzerTest
+{
+    // The parsed tree, or whatever the parser stopped on; some samples still trip it up
+    private static Object parse(TokenBuffer tokens) {
+        try {
+            return new SyntaxAnalyzer(tokens).parse().getStatements();
+        } catch (CompileException | RuntimeException e) {
+            return e.toString();
+        }
+    }
+
+    @Test
+    public void streamingParseMatchesParsingTheFullBuffer() throws IOException
+    {
+        File[] samples = new File("porado-samples").listFiles((dir, name) -> name.endsWith(".por"));
+        for (File sample : samples) {
+            Object expected = parse(LexicalAnalyzer.scan(sample.toPath()));
+            Object streamed = parse(LexicalAnalyzer.open(sample.toPath()));
+            assertEquals(sample.getName(), expected, streamed);
+        }
+    }
+
+    @Test
+    public void concurrentCompilationMatchesSequentialCompilation() throws Exception
+    {
+        File[] samples = new File("porado-samples").listFiles((dir, name) -> name.endsWith(".por"));
+        List<String> texts = new ArrayList<>();
+        for (File sample : samples) {
+            String text = Files.readString(sample.toPath());
+            if (compile(text) instanceof List) texts.add(text);
+        }
+
+        // A few hundred scripts stitched together from the samples that parse
+        Random random = new Random(6);
+        List<String> scripts = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            StringBuilder script = new StringBuilder();
+            int parts = 1 + random.nextInt(3);
+            for (int p = 0; p < parts; p++) script.append(texts.get(random.nextInt(texts.size()))).append('\n');
+            scripts.add(script.toString());
+        }
+
+        List<Object> sequential = new ArrayList<>();
+        for (String script : scripts) sequential.add(compile(script));
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> concurrent = new ArrayList<>();
+            for (String script : scripts) concurrent.add(pool.submit(() -> compile(script)));
+            for (int i = 0; i < scripts.size(); i++) {
+                assertEquals("script " + i, sequential.get(i), concurrent.get(i).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Object compile(String script) {
+        return parse(LexicalAnalyzer.open(CharBuffer.wrap(script.toCharArray())));
+    }
+
+    // Compact shape of the first statement, e.g. MULTIPLICATION(ADDITION(a, b), c)
+    private static String expression(String source) throws CompileException {
+        List<Statement> program = SyntaxAnalyzer.parse(LexicalAnalyzer.open(CharBuffer.wrap(source.toCharArray()))).getStatements();
+        return shape(((Statement.ExpressionStatement) program.get(0)).expression());
+    }
+
+    private static String shape(Expression node) {
+        return switch (node) {
+            case Expression.Literal l -> l.text();
+            case Expression.Variable v -> v.name();
+            case Expression.ArrayAccess a -> "ARRAY_ACCESS(" + shape(a.index()) + ")";
+            case Expression.Call c -> c.name() + "(" + String.join(", ", c.arguments().stream().map(SyntaxAnalyzerTest::shape).toList()) + ")";
+            case Expression.Unary u -> u.kind() + "(" + shape(u.operand()) + ")";
+            case Expression.Binary b -> b.kind() + "(" + shape(b.left()) + ", " + shape(b.right()) + ")";
+            case Expression.Assignment a -> a.kind() + "(" + shape(a.target()) + ", " + shape(a.value()) + ")";
+        };
+    }
+
+    @Test
+    public void statementsKeepTheirPartsInFields() throws CompileException
+    {
+        String source = "do { x--; } until (x < 0);\nif x then print 1; else then print 2;\n";
+        List<Statement> program = SyntaxAnalyzer.parse(LexicalAnalyzer.open(CharBuffer.wrap(source.toCharArray()))).getStatements();
+
+        Statement.ConditionLoop loop = (Statement.ConditionLoop) program.get(0);
+        assertEquals(NodeType.DO_UNTIL, loop.kind());
+        assertEquals("LESS(x, 0)", shape(loop.condition()));
+
+        Statement.Conditional conditional = (Statement.Conditional) program.get(1);
+        assertEquals(1, conditional.branches().size());
+        assertEquals(new Statement.Print(new Expression.Literal(NodeType.LITERAL_INT, "2")), conditional.otherwise());
+    }
+
+    @Test
+    public void literalsAreDecodedWhenParsed() throws CompileException
+    {
+        String source = "a as int = 42;\nb as float = 2.5;\nc as char = 'z';\nd as string = \"hi\";\n";
+        List<Statement> program = SyntaxAnalyzer.parse(LexicalAnalyzer.open(CharBuffer.wrap(source.toCharArray()))).getStatements();
+
+        List<Object> values = program.stream()
+                .map(stmt -> ((Expression.Literal) ((Statement.VariableDeclaration) stmt).value()).value())
+                .toList();
+        assertEquals(List.of(42L, 2.5, 'z', "\"hi\""), values);
+        assertNull(new Expression.Literal(NodeType.LITERAL_CHAR, "'ab").value());
+    }
+
+    @Test
+    public void expressionsFollowPrecedenceAndAssociativity() throws CompileException
+    {
+        assertEquals("ADDITION(a, MULTIPLICATION(b, c))", expression("a + b * c;\n"));
+        assertEquals("MULTIPLICATION(ADDITION(a, b), c)", expression("(a + b) * c;\n"));
+        assertEquals("SUBTRACTION(SUBTRACTION(a, b), c)", expression("a - b - c;\n"));
+        assertEquals("ASSIGNMENT(a, ASSIGNMENT(b, 1))", expression("a = b = 1;\n"));
+        assertEquals("OR(AND(a, b), EQUALS(c, d))", expression("a and b or c == d;\n"));
+        assertEquals("ADDITION_ASSIGNMENT(ARRAY_ACCESS(ADDITION(i, 1)), 5)", expression("arr[i + 1] += 5;\n"));
+        assertEquals("AND(NOT(x), y)", expression("not (x) and y;\n"));
+        assertEquals("ADDITION(b, NEGATIVE(POST_INCREMENT(a)))", expression("b + -a++;\n"));
+        assertEquals("f(SUBTRACTION(n, 1), g(), h(x, 2))", expression("f(n - 1, g(), h(x, 2));\n"));
+    }
+
+    @Test(expected = CompileException.class)
+    public void leftoverTokensAreNoLongerDropped() throws CompileException
+    {
+        expression("(a + b) c;\n");
+    }
+}
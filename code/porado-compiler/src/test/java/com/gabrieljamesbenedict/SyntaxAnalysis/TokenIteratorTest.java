@@ -0,0 +1,76 @@
+package com.gabrieljamesbenedict.SyntaxAnalysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.gabrieljamesbenedict.LexicalAnalysis.LexicalAnalyzer;
+import com.gabrieljamesbenedict.LexicalAnalysis.TokenType;
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+
+public class TokenIteratorTest
+{
+    private static TokenIterator over(String source) {
+        return new TokenIterator(LexicalAnalyzer.open(CharBuffer.wrap(source.toCharArray())));
+    }
+
+    @Test
+    public void lookaheadDoesNotMoveTheCursor()
+    {
+        TokenIterator it = over("x as int = 5;\n");
+        assertEquals(TokenType.IDENTIFIER, it.peekType());
+        assertEquals(TokenType.KEYWORD_AS, it.lookaheadType(1));
+        assertEquals(TokenType.LITERAL_INT, it.lookaheadType(4));
+        assertEquals(TokenType.EOF, it.lookaheadType(6));
+        assertNull(it.lookaheadType(7));
+        assertEquals("5", it.lookahead(4).getLexeme());
+        assertEquals(TokenType.IDENTIFIER, it.peekType());
+        assertEquals(0, it.position());
+    }
+
+    @Test
+    public void resetBacktracksToTheMark() throws Exception
+    {
+        TokenIterator it = over("a = b + c;\n");
+        it.skip();
+        it.mark();
+        it.expect(TokenType.OPERATOR_ASSIGN);
+        it.skip();
+        it.mark();
+        it.skip();
+        it.skip();
+        assertEquals(TokenType.IDENTIFIER, it.previousType());
+
+        it.reset();
+        assertEquals(TokenType.OPERATOR_PLUS, it.peekType());
+        assertEquals(TokenType.IDENTIFIER, it.previousType());
+
+        it.reset();
+        assertEquals(TokenType.OPERATOR_ASSIGN, it.peekType());
+        assertEquals("a", it.previous().getLexeme());
+    }
+
+    @Test
+    public void marksKeepTheirTokensInTheWindow() throws Exception
+    {
+        StringBuilder source = new StringBuilder("start");
+        for (int i = 0; i < 1000; i++) source.append(" x").append(i);
+        TokenIterator it = over(source.append(";\n").toString());
+
+        it.skip();
+        it.mark();
+        while (it.peekType() != TokenType.DELIMITER_SEMICOLON) {
+            it.skip();
+            it.release();
+        }
+        it.reset();
+        assertEquals("start", it.previous().getLexeme());
+        assertEquals("x0", it.peek().getLexeme());
+
+        it.mark();
+        it.skip();
+        it.unmark();
+        assertEquals("x1", it.peek().getLexeme());
+    }
+}